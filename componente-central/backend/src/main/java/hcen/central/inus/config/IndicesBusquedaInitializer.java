@@ -0,0 +1,67 @@
+package hcen.central.inus.config;
+
+import hcen.central.inus.dao.UsuarioSaludDAO;
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates on startup the INUS search indexes that JPA cannot declare with @Index
+ * (pg_trgm trigram index and varchar_pattern_ops prefix index) and fills the normalized
+ * search keys of users created before those columns existed.
+ *
+ * Statements are idempotent (IF NOT EXISTS) and run through UsuarioSaludDAO, one transaction
+ * each. If the pg_trgm extension cannot be created the search still works, only without the
+ * trigram index.
+ */
+@Singleton
+@Startup
+public class IndicesBusquedaInitializer {
+
+    private static final Logger LOGGER = Logger.getLogger(IndicesBusquedaInitializer.class.getName());
+
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final List<String> SENTENCIAS = List.of(
+        "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+        "CREATE INDEX IF NOT EXISTS idx_usuario_salud_nombre_trgm " +
+            "ON usuario_salud USING gin (nombre_busqueda gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuario_salud_cedula_prefijo " +
+            "ON usuario_salud (cedula varchar_pattern_ops)"
+    );
+
+    @EJB
+    private UsuarioSaludDAO usuarioSaludDAO;
+
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void init() {
+        for (String sentencia : SENTENCIAS) {
+            try {
+                usuarioSaludDAO.crearIndiceBusqueda(sentencia);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "No se pudo ejecutar '" + sentencia + "': " + e.getMessage());
+            }
+        }
+        try {
+            int total = 0;
+            int actualizados;
+            do {
+                actualizados = usuarioSaludDAO.completarClavesBusqueda(TAMANIO_LOTE);
+                total += actualizados;
+            } while (actualizados > 0);
+            if (total > 0) {
+                LOGGER.info("Claves de búsqueda completadas: " + total + " usuarios de salud");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudieron completar las claves de búsqueda", e);
+        }
+    }
+}
@@ -9,7 +9,10 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -62,6 +65,27 @@ public class HistoriaClinicaDAO {
         }
     }
 
+    /**
+     * Busca las historias clínicas de varios pacientes con una sola consulta
+     *
+     * @return Map cédula -> historia (solo los pacientes que ya tienen historia)
+     */
+    public Map<String, historia_clinica> findByCedulas(Collection<String> cedulas) {
+        Map<String, historia_clinica> resultado = new HashMap<>();
+        if (cedulas == null || cedulas.isEmpty()) {
+            return resultado;
+        }
+        TypedQuery<historia_clinica> query = em.createQuery(
+            "SELECT h FROM historia_clinica h WHERE h.usuarioCedula IN :cedulas",
+            historia_clinica.class
+        );
+        query.setParameter("cedulas", cedulas);
+        for (historia_clinica historia : query.getResultList()) {
+            resultado.putIfAbsent(historia.getUsuarioCedula(), historia);
+        }
+        return resultado;
+    }
+
     public Optional<historia_clinica> findByCedulaAndTenant(String cedula, UUID tenantId) {
         TypedQuery<historia_clinica> query = em.createQuery(
             "SELECT h FROM historia_clinica h JOIN h.usuarioSalud u " +
@@ -85,6 +109,20 @@ public class HistoriaClinicaDAO {
         return em.merge(doc);
     }
 
+    /**
+     * Persiste varios documentos y hace flush, de modo que Hibernate los inserte
+     * en lotes JDBC (hibernate.jdbc.batch_size)
+     */
+    public void saveDocumentos(List<historia_clinica_documento> documentos) {
+        if (documentos == null || documentos.isEmpty()) {
+            return;
+        }
+        for (historia_clinica_documento doc : documentos) {
+            em.persist(doc);
+        }
+        em.flush();
+    }
+
     public boolean existsDocumento(UUID historiaId, UUID documentoId) {
         TypedQuery<Long> query = em.createQuery(
             "SELECT COUNT(d) FROM historia_clinica_documento d " +
@@ -105,4 +143,35 @@ public class HistoriaClinicaDAO {
         return query.getResultList();
     }
 
+    public List<UUID> findDocumentoIdsByHistoria(UUID historiaId) {
+        TypedQuery<UUID> query = em.createQuery(
+            "SELECT d.documentoId FROM historia_clinica_documento d WHERE d.historiaClinica.id = :historiaId",
+            UUID.class
+        );
+        query.setParameter("historiaId", historiaId);
+        return query.getResultList();
+    }
+
+    /**
+     * Resuelve la historia clínica a la que pertenece cada documento
+     *
+     * @return Map documentoId -> historiaId (solo para los documentos registrados)
+     */
+    public Map<UUID, UUID> findHistoriaIdsByDocumentos(Collection<UUID> documentoIds) {
+        Map<UUID, UUID> resultado = new HashMap<>();
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return resultado;
+        }
+        TypedQuery<Object[]> query = em.createQuery(
+            "SELECT d.documentoId, d.historiaClinica.id FROM historia_clinica_documento d " +
+            "WHERE d.documentoId IN :documentoIds",
+            Object[].class
+        );
+        query.setParameter("documentoIds", documentoIds);
+        for (Object[] row : query.getResultList()) {
+            resultado.put((UUID) row[0], (UUID) row[1]);
+        }
+        return resultado;
+    }
+
 }
@@ -4,11 +4,13 @@ import hcen.central.inus.entity.politica_acceso;
 import hcen.central.inus.enums.EstadoPermiso;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +23,19 @@ import java.util.UUID;
 @Stateless
 public class PoliticaAccesoDAO {
 
+    /**
+     * Condición JPQL de un permiso vigente que habilita al profesional dentro de su clínica
+     */
+    private static final String CONDICION_PERMISO_VIGENTE =
+        "  AND p.tenantId = :tenantId " +
+        "  AND p.estado = :estado " +
+        "  AND p.fechaExpiracion > :ahora " +
+        "  AND (" +
+        "    (p.tipoPermiso = 'PROFESIONAL_ESPECIFICO' AND p.ciProfesional = :ciProfesional) " +
+        "    OR (p.tipoPermiso = 'POR_ESPECIALIDAD' AND p.especialidad = :especialidad) " +
+        "    OR (p.tipoPermiso = 'POR_CLINICA')" +
+        "  )";
+
     @PersistenceContext(unitName = "hcen-central-pu")
     private EntityManager em;
 
@@ -48,83 +63,32 @@ public class PoliticaAccesoDAO {
     }
 
     /**
-     * Valida si un profesional tiene permiso para acceder a un documento
+     * Obtiene la fecha de expiración más próxima entre los permisos vigentes que habilitan
+     * al profesional a acceder al documento
      *
-     * @param documentoId UUID del documento
-     * @param ciProfesional CI del profesional
-     * @param tenantId UUID de la clínica
-     * @param especialidad Especialidad del profesional
-     * @return true si existe al menos un permiso activo, false en caso contrario
+     * @return la expiración más próxima, o vacío si el profesional no tiene permiso
      */
-    public boolean tienePermisoAcceso(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad) {
-        TypedQuery<Long> query = em.createQuery(
-            "SELECT COUNT(p) FROM politica_acceso p " +
+    public Optional<LocalDateTime> buscarExpiracionPermisoAcceso(UUID documentoId, Integer ciProfesional,
+                                                                 UUID tenantId, String especialidad) {
+        TypedQuery<LocalDateTime> query = em.createQuery(
+            "SELECT MIN(p.fechaExpiracion) FROM politica_acceso p " +
             "WHERE p.documentoId = :documentoId " +
-            "  AND p.tenantId = :tenantId " +
-            "  AND p.estado = :estado " +
-            "  AND p.fechaExpiracion > :ahora " +
-            "  AND (" +
-            "    (p.tipoPermiso = 'PROFESIONAL_ESPECIFICO' AND p.ciProfesional = :ciProfesional) " +
-            "    OR (p.tipoPermiso = 'POR_ESPECIALIDAD' AND p.especialidad = :especialidad) " +
-            "    OR (p.tipoPermiso = 'POR_CLINICA')" +
-            "  )",
-            Long.class
+            CONDICION_PERMISO_VIGENTE,
+            LocalDateTime.class
         );
         query.setParameter("documentoId", documentoId);
-        query.setParameter("tenantId", tenantId);
-        query.setParameter("ciProfesional", ciProfesional);
-        query.setParameter("especialidad", especialidad);
-        query.setParameter("estado", EstadoPermiso.ACTIVO);
-        query.setParameter("ahora", LocalDateTime.now());
+        setParametrosPermisoVigente(query, ciProfesional, tenantId, especialidad);
 
-        return query.getSingleResult() > 0;
+        return Optional.ofNullable(query.getSingleResult());
     }
 
-    /**
-     * Valida si un profesional tiene permiso para acceder a múltiples documentos (batch)
-     *
-     * @param documentoIds Lista de UUIDs de documentos
-     * @param ciProfesional CI del profesional
-     * @param tenantId UUID de la clínica
-     * @param especialidad Especialidad del profesional
-     * @return Map con documentoId como key y boolean (tiene permiso) como value
-     */
-    public Map<UUID, Boolean> tienePermisoAccesoBatch(List<UUID> documentoIds, Integer ciProfesional,
-                                                       UUID tenantId, String especialidad) {
-        if (documentoIds == null || documentoIds.isEmpty()) {
-            return new HashMap<>();
-        }
-
-        // Query para obtener los documentos que SÍ tienen permiso
-        TypedQuery<UUID> query = em.createQuery(
-            "SELECT DISTINCT p.documentoId FROM politica_acceso p " +
-            "WHERE p.documentoId IN :documentoIds " +
-            "  AND p.tenantId = :tenantId " +
-            "  AND p.estado = :estado " +
-            "  AND p.fechaExpiracion > :ahora " +
-            "  AND (" +
-            "    (p.tipoPermiso = 'PROFESIONAL_ESPECIFICO' AND p.ciProfesional = :ciProfesional) " +
-            "    OR (p.tipoPermiso = 'POR_ESPECIALIDAD' AND p.especialidad = :especialidad) " +
-            "    OR (p.tipoPermiso = 'POR_CLINICA')" +
-            "  )",
-            UUID.class
-        );
-        query.setParameter("documentoIds", documentoIds);
+    private void setParametrosPermisoVigente(TypedQuery<?> query, Integer ciProfesional,
+                                             UUID tenantId, String especialidad) {
         query.setParameter("tenantId", tenantId);
         query.setParameter("ciProfesional", ciProfesional);
         query.setParameter("especialidad", especialidad);
         query.setParameter("estado", EstadoPermiso.ACTIVO);
         query.setParameter("ahora", LocalDateTime.now());
-
-        List<UUID> documentosConPermiso = query.getResultList();
-
-        // Construir mapa con todos los documentos solicitados
-        Map<UUID, Boolean> resultado = new HashMap<>();
-        for (UUID docId : documentoIds) {
-            resultado.put(docId, documentosConPermiso.contains(docId));
-        }
-
-        return resultado;
     }
 
     /**
@@ -186,6 +150,28 @@ public class PoliticaAccesoDAO {
         return query.getResultList();
     }
 
+    /**
+     * Resuelve la historia clínica de los documentos que tienen alguna política registrada
+     *
+     * @return Map documentoId -> historiaId
+     */
+    public Map<UUID, UUID> findHistoriaIdsByDocumentos(Collection<UUID> documentoIds) {
+        Map<UUID, UUID> resultado = new HashMap<>();
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return resultado;
+        }
+        TypedQuery<Object[]> query = em.createQuery(
+            "SELECT DISTINCT p.documentoId, p.historiaClinica.id FROM politica_acceso p " +
+            "WHERE p.documentoId IN :documentoIds",
+            Object[].class
+        );
+        query.setParameter("documentoIds", documentoIds);
+        for (Object[] row : query.getResultList()) {
+            resultado.put((UUID) row[0], (UUID) row[1]);
+        }
+        return resultado;
+    }
+
     /**
      * Lista todas las políticas activas de un documento específico
      */
@@ -205,22 +191,45 @@ public class PoliticaAccesoDAO {
     }
 
     /**
-     * Marca como expirados todos los permisos cuya fecha de expiración ya pasó
-     * Usado por job/scheduler para mantenimiento
+     * Lista, en orden de expiración, un lote de políticas ACTIVAS cuya fecha de expiración ya pasó.
+     * Recorre el índice (ESTADO, FECHA_EXPIRACION), por lo que cada lote es acotado y barato.
+     * Las filas se bloquean (FOR UPDATE SKIP LOCKED) para que dos nodos, o dos ciclos
+     * solapados, nunca expiren el mismo permiso: cada uno toma solo filas libres.
      *
-     * @return Cantidad de permisos marcados como expirados
+     * @param ahora Instante de corte
+     * @param limite Tamaño máximo del lote
      */
-    public int expirarPermisosVencidos() {
-        return em.createQuery(
-            "UPDATE politica_acceso p " +
-            "SET p.estado = :expirado " +
-            "WHERE p.estado = :activo " +
-            "  AND p.fechaExpiracion <= :ahora"
-        )
-        .setParameter("expirado", EstadoPermiso.EXPIRADO)
-        .setParameter("activo", EstadoPermiso.ACTIVO)
-        .setParameter("ahora", LocalDateTime.now())
-        .executeUpdate();
+    public List<politica_acceso> listarVencidasActivas(LocalDateTime ahora, int limite) {
+        TypedQuery<politica_acceso> query = em.createQuery(
+            "SELECT p FROM politica_acceso p " +
+            "WHERE p.estado = :estado " +
+            "  AND p.fechaExpiracion <= :ahora " +
+            "ORDER BY p.fechaExpiracion ASC, p.id ASC",
+            politica_acceso.class
+        );
+        query.setParameter("estado", EstadoPermiso.ACTIVO);
+        query.setParameter("ahora", ahora);
+        query.setMaxResults(limite);
+        query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        // -2 = SKIP LOCKED en el proveedor JPA del servidor
+        query.setHint("jakarta.persistence.lock.timeout", -2);
+        return query.getResultList();
+    }
+
+    /**
+     * Obtiene la fecha de expiración más antigua entre las políticas que siguen ACTIVAS
+     * aunque ya vencieron (retraso del motor de expiración)
+     */
+    public Optional<LocalDateTime> buscarVencimientoPendienteMasAntiguo(LocalDateTime ahora) {
+        TypedQuery<LocalDateTime> query = em.createQuery(
+            "SELECT MIN(p.fechaExpiracion) FROM politica_acceso p " +
+            "WHERE p.estado = :estado " +
+            "  AND p.fechaExpiracion <= :ahora",
+            LocalDateTime.class
+        );
+        query.setParameter("estado", EstadoPermiso.ACTIVO);
+        query.setParameter("ahora", ahora);
+        return Optional.ofNullable(query.getSingleResult());
     }
 
     /**
@@ -2,13 +2,21 @@ package hcen.central.inus.dao;
 
 import hcen.central.inus.entity.UsuarioSalud;
 import hcen.central.inus.enums.TipoDocumento;
+import hcen.central.inus.util.TipoDocumentoMapper;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,6 +27,8 @@ import java.util.UUID;
 @Stateless
 public class UsuarioSaludDAO {
 
+    private static final int LIMITE_BUSQUEDA = 50;
+
     @PersistenceContext(unitName = "hcen-central-pu")
     private EntityManager em;
 
@@ -50,6 +60,27 @@ public class UsuarioSaludDAO {
         }
     }
 
+    /**
+     * Busca varios usuarios por cédula con una sola consulta
+     *
+     * @return Map cédula -> usuario (solo las cédulas existentes)
+     */
+    public Map<String, UsuarioSalud> findByCedulas(Collection<String> cedulas) {
+        Map<String, UsuarioSalud> resultado = new HashMap<>();
+        if (cedulas == null || cedulas.isEmpty()) {
+            return resultado;
+        }
+        TypedQuery<UsuarioSalud> query = em.createQuery(
+            "SELECT u FROM UsuarioSalud u WHERE u.cedula IN :cedulas",
+            UsuarioSalud.class
+        );
+        query.setParameter("cedulas", cedulas);
+        for (UsuarioSalud usuario : query.getResultList()) {
+            resultado.putIfAbsent(usuario.getCedula(), usuario);
+        }
+        return resultado;
+    }
+
     /**
      * Verifica si existe un usuario con la cédula dada
      */
@@ -105,83 +136,84 @@ public class UsuarioSaludDAO {
     }
 
     /**
-     * Busca usuarios aplicando filtros opcionales
+     * Busca una página de usuarios activos aplicando filtros opcionales.
+     *
+     * - Tipo y número de documento: coincidencia exacta (se ignoran nombre y apellido)
+     * - Solo número de documento: prefijo de la cédula (índice varchar_pattern_ops)
+     * - Nombre / apellido: cada palabra, sin tildes ni mayúsculas, debe aparecer en los nombres /
+     *   apellidos; se filtra por la columna con índice trigram (nombre_busqueda)
+     *
+     * Primero se devuelven los usuarios cuyo apellido / nombre empieza por lo buscado, luego por
+     * apellidos y nombres.
      */
+    @SuppressWarnings("unchecked")
     public List<UsuarioSalud> findByFilters(TipoDocumento tipoDocumento,
                                             String numeroDocumento,
                                             String nombre,
                                             String apellido,
                                             int page,
                                             int size) {
-        StringBuilder jpql = new StringBuilder("SELECT u FROM UsuarioSalud u WHERE u.active = true");
-
-        if (tipoDocumento != null && numeroDocumento != null && !numeroDocumento.isBlank()) {
-            jpql.append(" AND u.tipoDeDocumento = :tipoDocumento AND u.cedula = :cedula");
-        } else {
-            if (nombre != null && !nombre.isBlank()) {
-                jpql.append(" AND LOWER(u.primerNombre) LIKE LOWER(:nombre)");
-            }
-            if (apellido != null && !apellido.isBlank()) {
-                jpql.append(" AND LOWER(u.primerApellido) LIKE LOWER(:apellido)");
-            }
-        }
+        StringBuilder filtro = new StringBuilder("u.active = true");
+        List<String> ranking = new ArrayList<>();
+        Map<String, Object> parametros = new HashMap<>();
 
-        jpql.append(" ORDER BY u.primerApellido, u.primerNombre");
-
-        TypedQuery<UsuarioSalud> query = em.createQuery(jpql.toString(), UsuarioSalud.class);
-
-        if (tipoDocumento != null && numeroDocumento != null && !numeroDocumento.isBlank()) {
-            query.setParameter("tipoDocumento", tipoDocumento);
-            query.setParameter("cedula", numeroDocumento.trim());
+        boolean conDocumento = numeroDocumento != null && !numeroDocumento.isBlank();
+        if (tipoDocumento != null && conDocumento) {
+            filtro.append(" AND u.tipo_documento = :tipoDocumento AND u.cedula = :cedula");
+            parametros.put("tipoDocumento", TipoDocumentoMapper.toDatabaseValue(tipoDocumento));
+            parametros.put("cedula", numeroDocumento.trim());
         } else {
-            if (nombre != null && !nombre.isBlank()) {
-                query.setParameter("nombre", "%" + nombre.trim() + "%");
-            }
-            if (apellido != null && !apellido.isBlank()) {
-                query.setParameter("apellido", "%" + apellido.trim() + "%");
+            String prefijo = conDocumento ? prefijoDocumento(numeroDocumento) : "";
+            if (!prefijo.isEmpty()) {
+                filtro.append(" AND u.cedula LIKE :cedulaPrefijo");
+                parametros.put("cedulaPrefijo", prefijo + "%");
             }
+            agregarFiltroPalabras(filtro, ranking, parametros, "nombres_busqueda", "n", nombre);
+            agregarFiltroPalabras(filtro, ranking, parametros, "apellidos_busqueda", "a", apellido);
         }
+        ranking.add("u.apellidos_busqueda");
+        ranking.add("u.nombres_busqueda");
+        ranking.add("u.cedula");
+        ranking.add("u.id");
 
-        query.setFirstResult(page * size);
-        query.setMaxResults(size);
+        Query query = em.createNativeQuery(
+            "SELECT u.* FROM usuario_salud u WHERE " + filtro +
+            " ORDER BY " + String.join(", ", ranking) + " LIMIT :limite OFFSET :desplazamiento",
+            UsuarioSalud.class
+        );
+        parametros.forEach(query::setParameter);
+        query.setParameter("limite", size);
+        query.setParameter("desplazamiento", (long) page * size);
         return query.getResultList();
     }
 
     /**
-     * Cuenta usuarios aplicando filtros
+     * Prefijo de número de documento apto para LIKE: sin espacios, puntos, guiones ni comodines
+     * ("1.234.567-8" -> "12345678")
      */
-    public long countByFilters(TipoDocumento tipoDocumento,
-                               String numeroDocumento,
-                               String nombre,
-                               String apellido) {
-        StringBuilder jpql = new StringBuilder("SELECT COUNT(u) FROM UsuarioSalud u WHERE u.active = true");
-
-        if (tipoDocumento != null && numeroDocumento != null && !numeroDocumento.isBlank()) {
-            jpql.append(" AND u.tipoDeDocumento = :tipoDocumento AND u.cedula = :cedula");
-        } else {
-            if (nombre != null && !nombre.isBlank()) {
-                jpql.append(" AND LOWER(u.primerNombre) LIKE LOWER(:nombre)");
-            }
-            if (apellido != null && !apellido.isBlank()) {
-                jpql.append(" AND LOWER(u.primerApellido) LIKE LOWER(:apellido)");
-            }
-        }
-
-        TypedQuery<Long> query = em.createQuery(jpql.toString(), Long.class);
+    private static String prefijoDocumento(String documento) {
+        return documento.replaceAll("[\\s.\\-%_\\\\]", "");
+    }
 
-        if (tipoDocumento != null && numeroDocumento != null && !numeroDocumento.isBlank()) {
-            query.setParameter("tipoDocumento", tipoDocumento);
-            query.setParameter("cedula", numeroDocumento.trim());
-        } else {
-            if (nombre != null && !nombre.isBlank()) {
-                query.setParameter("nombre", "%" + nombre.trim() + "%");
-            }
-            if (apellido != null && !apellido.isBlank()) {
-                query.setParameter("apellido", "%" + apellido.trim() + "%");
-            }
+    /**
+     * Agrega una condición por palabra del término (sobre nombre_busqueda para usar el índice
+     * trigram y sobre la columna de la parte buscada) y el criterio de ranking por prefijo
+     */
+    private void agregarFiltroPalabras(StringBuilder filtro, List<String> ranking, Map<String, Object> parametros,
+                                       String columna, String prefijoParametro, String termino) {
+        List<String> palabras = UsuarioSalud.palabrasBusqueda(termino);
+        if (palabras.isEmpty()) {
+            return;
         }
-
-        return query.getSingleResult();
+        for (int i = 0; i < palabras.size(); i++) {
+            String parametro = prefijoParametro + i;
+            filtro.append(" AND u.nombre_busqueda LIKE :").append(parametro)
+                .append(" AND u.").append(columna).append(" LIKE :").append(parametro);
+            parametros.put(parametro, "%" + palabras.get(i) + "%");
+        }
+        String parametroRanking = prefijoParametro + "Inicio";
+        ranking.add("CASE WHEN u." + columna + " LIKE :" + parametroRanking + " THEN 0 ELSE 1 END");
+        parametros.put(parametroRanking, String.join(" ", palabras) + "%");
     }
 
     /**
@@ -196,22 +228,75 @@ public class UsuarioSaludDAO {
     }
 
     /**
-     * Busca usuarios por nombre o apellido
+     * Busca usuarios por nombre o apellido (cada palabra, sin tildes ni mayúsculas, en cualquiera
+     * de los nombres o apellidos), primero los que empiezan por lo buscado
      */
     public List<UsuarioSalud> searchByNombreOrApellido(String searchTerm) {
-        TypedQuery<UsuarioSalud> query = em.createQuery(
-            "SELECT u FROM UsuarioSalud u WHERE u.active = true AND (" +
-            "LOWER(u.primerNombre) LIKE LOWER(:term) OR " +
-            "LOWER(u.segundoNombre) LIKE LOWER(:term) OR " +
-            "LOWER(u.primerApellido) LIKE LOWER(:term) OR " +
-            "LOWER(u.segundoApellido) LIKE LOWER(:term)) " +
-            "ORDER BY u.primerApellido, u.primerNombre",
-            UsuarioSalud.class
-        );
-        query.setParameter("term", "%" + searchTerm + "%");
+        List<String> palabras = UsuarioSalud.palabrasBusqueda(searchTerm);
+        if (palabras.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder jpql = new StringBuilder("SELECT u FROM UsuarioSalud u WHERE u.active = true");
+        for (int i = 0; i < palabras.size(); i++) {
+            jpql.append(" AND u.nombreBusqueda LIKE :p").append(i);
+        }
+        jpql.append(" ORDER BY CASE WHEN u.apellidosBusqueda LIKE :inicio OR u.nombreBusqueda LIKE :inicio")
+            .append(" THEN 0 ELSE 1 END, u.apellidosBusqueda, u.nombresBusqueda");
+
+        TypedQuery<UsuarioSalud> query = em.createQuery(jpql.toString(), UsuarioSalud.class);
+        for (int i = 0; i < palabras.size(); i++) {
+            query.setParameter("p" + i, "%" + palabras.get(i) + "%");
+        }
+        query.setParameter("inicio", String.join(" ", palabras) + "%");
+        query.setMaxResults(LIMITE_BUSQUEDA);
         return query.getResultList();
     }
 
+    /**
+     * Completa las claves de búsqueda de un lote de usuarios creados antes de que existieran.
+     * Transacción propia por lote para no bloquear la tabla entera al desplegar.
+     *
+     * Lee solo las columnas de nombre y escribe con UPDATE directos, que no disparan @PreUpdate:
+     * updated_at no cambia. Los usuarios sin nombre normalizable quedan con "" y no se vuelven a seleccionar.
+     *
+     * @return cantidad de usuarios completados (0 cuando ya no quedan)
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int completarClavesBusqueda(int lote) {
+        List<Object[]> pendientes = em.createQuery(
+            "SELECT u.id, u.primerNombre, u.segundoNombre, u.primerApellido, u.segundoApellido " +
+            "FROM UsuarioSalud u WHERE u.nombreBusqueda IS NULL",
+            Object[].class
+        )
+        .setMaxResults(lote)
+        .getResultList();
+        for (Object[] fila : pendientes) {
+            String primerNombre = (String) fila[1];
+            String segundoNombre = (String) fila[2];
+            String primerApellido = (String) fila[3];
+            String segundoApellido = (String) fila[4];
+            em.createQuery(
+                "UPDATE UsuarioSalud u SET u.nombreBusqueda = :nombre, u.nombresBusqueda = :nombres, " +
+                "u.apellidosBusqueda = :apellidos WHERE u.id = :id")
+            .setParameter("nombre", UsuarioSalud.normalizarBusqueda(
+                primerNombre, segundoNombre, primerApellido, segundoApellido))
+            .setParameter("nombres", UsuarioSalud.normalizarBusqueda(primerNombre, segundoNombre))
+            .setParameter("apellidos", UsuarioSalud.normalizarBusqueda(primerApellido, segundoApellido))
+            .setParameter("id", fila[0])
+            .executeUpdate();
+        }
+        return pendientes.size();
+    }
+
+    /**
+     * Ejecuta una sentencia DDL de los índices de búsqueda en su propia transacción, para que un
+     * fallo (ej. sin permisos para crear pg_trgm) no afecte a las demás
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void crearIndiceBusqueda(String sentencia) {
+        em.createNativeQuery(sentencia).executeUpdate();
+    }
+
     /**
      * Desactiva un usuario (soft delete)
      */
@@ -0,0 +1,45 @@
+package hcen.central.inus.dto;
+
+import java.io.Serializable;
+
+/**
+ * Contadores de uso de una cache en memoria del nodo (expuestos vía REST)
+ */
+public class CacheEstadisticas implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidaciones;
+    private final int tamanio;
+
+    public CacheEstadisticas(long hits, long misses, long evictions, long invalidaciones, int tamanio) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidaciones = invalidaciones;
+        this.tamanio = tamanio;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidaciones() {
+        return invalidaciones;
+    }
+
+    public int getTamanio() {
+        return tamanio;
+    }
+}
@@ -26,6 +26,10 @@ public class HistoriaClinicaDocumentoDetalleResponse {
     private String descripcionProximaConsulta;
     private String referenciaAlta;
 
+    // Disponibilidad del detalle (la clínica puede no haber respondido a tiempo)
+    private boolean detalleDisponible;
+    private String errorDetalle;
+
     public String getHistoriaId() {
         return historiaId;
     }
@@ -153,4 +157,20 @@ public class HistoriaClinicaDocumentoDetalleResponse {
     public void setReferenciaAlta(String referenciaAlta) {
         this.referenciaAlta = referenciaAlta;
     }
+
+    public boolean isDetalleDisponible() {
+        return detalleDisponible;
+    }
+
+    public void setDetalleDisponible(boolean detalleDisponible) {
+        this.detalleDisponible = detalleDisponible;
+    }
+
+    public String getErrorDetalle() {
+        return errorDetalle;
+    }
+
+    public void setErrorDetalle(String errorDetalle) {
+        this.errorDetalle = errorDetalle;
+    }
 }
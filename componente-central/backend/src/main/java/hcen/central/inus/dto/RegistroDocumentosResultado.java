@@ -0,0 +1,37 @@
+package hcen.central.inus.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resultado del registro batch de documentos en historias clínicas.
+ * Cada documento queda registrado (con su historia) o con un mensaje de error.
+ */
+public class RegistroDocumentosResultado {
+
+    private final Map<UUID, UUID> registrados = new LinkedHashMap<>();
+    private final Map<UUID, String> errores = new LinkedHashMap<>();
+
+    public void registrado(UUID documentoId, UUID historiaId) {
+        registrados.put(documentoId, historiaId);
+    }
+
+    public void error(UUID documentoId, String mensaje) {
+        errores.put(documentoId, mensaje);
+    }
+
+    /**
+     * @return Map documentoId -> historiaId de los documentos registrados (o ya existentes)
+     */
+    public Map<UUID, UUID> getRegistrados() {
+        return registrados;
+    }
+
+    /**
+     * @return Map documentoId -> descripción del error de los documentos rechazados
+     */
+    public Map<UUID, String> getErrores() {
+        return errores;
+    }
+}
@@ -0,0 +1,36 @@
+package hcen.central.inus.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resultado del registro batch de usuarios de salud (p. ej. al dar de alta los pacientes de una clínica).
+ * Cada cédula queda registrada (nueva o ya existente) o con un mensaje de error.
+ */
+public class RegistroUsuariosResultado {
+
+    private final Map<String, UsuarioSaludDTO> registrados = new LinkedHashMap<>();
+    private final Map<String, String> errores = new LinkedHashMap<>();
+
+    public void registrado(String cedula, UsuarioSaludDTO usuario) {
+        registrados.put(cedula, usuario);
+    }
+
+    public void error(String cedula, String mensaje) {
+        errores.put(cedula, mensaje);
+    }
+
+    /**
+     * @return Map cédula -> usuario de los usuarios registrados (o ya existentes)
+     */
+    public Map<String, UsuarioSaludDTO> getRegistrados() {
+        return registrados;
+    }
+
+    /**
+     * @return Map cédula -> descripción del error de los usuarios rechazados
+     */
+    public Map<String, String> getErrores() {
+        return errores;
+    }
+}
@@ -0,0 +1,101 @@
+package hcen.central.inus.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO para mensajes JMS que agrupan varias confirmaciones de sincronización
+ * de una misma clínica (tenant).
+ *
+ * El central acumula las confirmaciones de un lote de documentos procesado en una
+ * transacción y envía un único mensaje por tenant a la cola "SincronizacionConfirmaciones"
+ * (propiedad JMS tipo = CONFIRMACION_LOTE). El periférico las aplica con UPDATEs masivos.
+ *
+ * @author Sistema HCEN
+ * @version 1.0
+ */
+public class SincronizacionConfirmacionLoteMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID de la clínica (tenant) a la que pertenecen todas las confirmaciones
+     */
+    private UUID tenantId;
+
+    /**
+     * Confirmaciones individuales (éxito o error) de cada documento
+     */
+    private List<SincronizacionConfirmacionMessage> confirmaciones = new ArrayList<>();
+
+    /**
+     * Timestamp de creación del mensaje (para auditoría)
+     */
+    private LocalDateTime timestamp;
+
+    /**
+     * Constructor por defecto (requerido para JSON-B)
+     */
+    public SincronizacionConfirmacionLoteMessage() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public SincronizacionConfirmacionLoteMessage(UUID tenantId, List<SincronizacionConfirmacionMessage> confirmaciones) {
+        this.tenantId = tenantId;
+        this.confirmaciones = new ArrayList<>(confirmaciones);
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(UUID tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public List<SincronizacionConfirmacionMessage> getConfirmaciones() {
+        return confirmaciones;
+    }
+
+    public void setConfirmaciones(List<SincronizacionConfirmacionMessage> confirmaciones) {
+        this.confirmaciones = confirmaciones;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Valida el lote: tenant presente y todas las confirmaciones válidas y del mismo tenant
+     *
+     * @return true si el mensaje es válido
+     */
+    public boolean isValid() {
+        if (tenantId == null || confirmaciones == null || confirmaciones.isEmpty()) {
+            return false;
+        }
+        for (SincronizacionConfirmacionMessage confirmacion : confirmaciones) {
+            if (confirmacion == null || !confirmacion.isValid() || !tenantId.equals(confirmacion.getTenantId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SincronizacionConfirmacionLoteMessage{" +
+                "tenantId=" + tenantId +
+                ", confirmaciones=" + (confirmaciones != null ? confirmaciones.size() : 0) +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
@@ -4,10 +4,12 @@ import hcen.central.inus.entity.converter.TipoDocumentoAttributeConverter;
 import hcen.central.inus.enums.TipoDocumento;
 import jakarta.persistence.*;
 import java.io.Serializable;
+import java.text.Normalizer;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -16,7 +18,9 @@ import java.util.UUID;
  * Maps gub.uy users to local database
  */
 @Entity
-@Table(name = "usuario_salud")
+@Table(name = "usuario_salud", indexes = {
+    @Index(name = "idx_usuario_salud_apellidos_nombres", columnList = "apellidos_busqueda, nombres_busqueda")
+})
 @IdClass(UsuarioSalud.UsuarioSaludId.class)
 public class UsuarioSalud {
     
@@ -69,6 +73,21 @@ public class UsuarioSalud {
     @Column(name = "segundo_apellido", length = 100)
     private String segundoApellido;
 
+    /**
+     * Claves de búsqueda normalizadas (ver normalizarBusqueda), mantenidas en cada persist/update
+     * y nunca null ("" si no hay nada que normalizar).
+     * nombre_busqueda reúne nombres y apellidos y tiene índice trigram (IndicesBusquedaInitializer);
+     * nombres_busqueda y apellidos_busqueda permiten filtrar y ordenar por cada parte.
+     */
+    @Column(name = "nombre_busqueda", length = 420)
+    private String nombreBusqueda;
+
+    @Column(name = "nombres_busqueda", length = 210)
+    private String nombresBusqueda;
+
+    @Column(name = "apellidos_busqueda", length = 210)
+    private String apellidosBusqueda;
+
     @Column(name = "active", nullable = false, columnDefinition = "BOOLEAN DEFAULT true")
     private Boolean active = true;
 
@@ -88,11 +107,52 @@ public class UsuarioSalud {
     protected void onCreate() {
         createdAt = Instant.now();
         updatedAt = Instant.now();
+        actualizarClavesBusqueda();
     }
     
     @PreUpdate
     protected void onUpdate() {
         updatedAt = Instant.now();
+        actualizarClavesBusqueda();
+    }
+
+    /**
+     * Recalcula las claves de búsqueda a partir de los nombres y apellidos
+     */
+    public void actualizarClavesBusqueda() {
+        nombresBusqueda = normalizarBusqueda(primerNombre, segundoNombre);
+        apellidosBusqueda = normalizarBusqueda(primerApellido, segundoApellido);
+        nombreBusqueda = normalizarBusqueda(primerNombre, segundoNombre, primerApellido, segundoApellido);
+    }
+
+    /**
+     * Une y normaliza las partes como se guardan en las columnas *_busqueda: sin tildes, en
+     * minúsculas, solo letras/dígitos separados por un espacio ("Pérez-Núñez" -> "perez nunez").
+     * Los términos buscados se normalizan igual (palabrasBusqueda) para comparar sin LOWER()/unaccent(),
+     * que impedirían usar los índices.
+     *
+     * @return texto normalizado, "" si no queda nada
+     */
+    public static String normalizarBusqueda(String... partes) {
+        StringBuilder texto = new StringBuilder();
+        for (String parte : partes) {
+            if (parte != null && !parte.isBlank()) {
+                texto.append(' ').append(parte);
+            }
+        }
+        return Normalizer.normalize(texto, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^a-z0-9]+", " ")
+            .trim();
+    }
+
+    /**
+     * Palabras de un término de búsqueda, normalizadas como las columnas *_busqueda
+     */
+    public static List<String> palabrasBusqueda(String termino) {
+        String normalizado = normalizarBusqueda(termino);
+        return normalizado.isEmpty() ? new ArrayList<>() : new ArrayList<>(List.of(normalizado.split(" ")));
     }
     
     public UsuarioSalud() {}
@@ -155,6 +215,12 @@ public class UsuarioSalud {
     public String getSegundoApellido() { return segundoApellido; }
     public void setSegundoApellido(String segundoApellido) { this.segundoApellido = segundoApellido; }
     
+    public String getNombreBusqueda() { return nombreBusqueda; }
+
+    public String getNombresBusqueda() { return nombresBusqueda; }
+
+    public String getApellidosBusqueda() { return apellidosBusqueda; }
+
     public Boolean getActive() { return active; }
     public void setActive(Boolean active) { this.active = active; }
     public Boolean isActive() { return active; }
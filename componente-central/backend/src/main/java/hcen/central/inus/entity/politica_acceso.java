@@ -14,7 +14,10 @@ import java.util.UUID;
  * para acceder a documentos específicos de su historia clínica.
  */
 @Entity
-@Table(name = "POLITICA_ACCESO")
+@Table(name = "POLITICA_ACCESO",
+       indexes = {
+           @Index(name = "idx_politica_estado_expiracion", columnList = "ESTADO, FECHA_EXPIRACION")
+       })
 public class politica_acceso implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,50 @@
+package hcen.central.inus.event;
+
+import hcen.central.inus.entity.politica_acceso;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Evento CDI emitido por cada política de acceso que pasa a estado EXPIRADO.
+ * Permite que caches y notificaciones reaccionen a la expiración sin acoplarse
+ * al motor que la produce.
+ */
+public class PermisoExpiradoEvent {
+
+    private final UUID permisoId;
+    private final UUID historiaClinicaId;
+    private final UUID documentoId;
+    private final UUID tenantId;
+    private final LocalDateTime fechaExpiracion;
+
+    public PermisoExpiradoEvent(politica_acceso politica) {
+        this.permisoId = politica.getId();
+        this.historiaClinicaId = politica.getHistoriaClinica() != null
+            ? politica.getHistoriaClinica().getId()
+            : null;
+        this.documentoId = politica.getDocumentoId();
+        this.tenantId = politica.getTenantId();
+        this.fechaExpiracion = politica.getFechaExpiracion();
+    }
+
+    public UUID getPermisoId() {
+        return permisoId;
+    }
+
+    public UUID getHistoriaClinicaId() {
+        return historiaClinicaId;
+    }
+
+    public UUID getDocumentoId() {
+        return documentoId;
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public LocalDateTime getFechaExpiracion() {
+        return fechaExpiracion;
+    }
+}
@@ -0,0 +1,37 @@
+package hcen.central.inus.event;
+
+import hcen.central.inus.entity.politica_acceso;
+
+import java.util.UUID;
+
+/**
+ * Evento CDI emitido cuando se otorga, revoca o modifica una política de acceso.
+ * Las caches de decisiones lo observan en AFTER_SUCCESS para invalidarse recién
+ * cuando el cambio quedó confirmado en la base.
+ */
+public class PermisoModificadoEvent {
+
+    private final UUID permisoId;
+    private final UUID historiaClinicaId;
+    private final UUID documentoId;
+
+    public PermisoModificadoEvent(politica_acceso politica) {
+        this.permisoId = politica.getId();
+        this.historiaClinicaId = politica.getHistoriaClinica() != null
+            ? politica.getHistoriaClinica().getId()
+            : null;
+        this.documentoId = politica.getDocumentoId();
+    }
+
+    public UUID getPermisoId() {
+        return permisoId;
+    }
+
+    public UUID getHistoriaClinicaId() {
+        return historiaClinicaId;
+    }
+
+    public UUID getDocumentoId() {
+        return documentoId;
+    }
+}
@@ -0,0 +1,19 @@
+package hcen.central.inus.exception;
+
+/**
+ * Excepción lanzada cuando un componente periférico no responde o responde con error.
+ *
+ * Permite distinguir una clínica caída de una consulta sin resultados.
+ */
+public class PerifericoNoDisponibleException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public PerifericoNoDisponibleException(String message) {
+        super(message);
+    }
+
+    public PerifericoNoDisponibleException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
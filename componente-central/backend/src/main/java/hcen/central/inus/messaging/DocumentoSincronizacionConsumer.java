@@ -1,14 +1,23 @@
 package hcen.central.inus.messaging;
 
 import hcen.central.inus.dto.DocumentoSincronizacionMessage;
+import hcen.central.inus.dto.RegistroDocumentosResultado;
+import hcen.central.inus.dto.SincronizacionConfirmacionMessage;
 import hcen.central.inus.service.HistoriaClinicaService;
+import jakarta.annotation.Resource;
 import jakarta.ejb.ActivationConfigProperty;
 import jakarta.ejb.EJB;
 import jakarta.ejb.MessageDriven;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSConsumer;
+import jakarta.jms.JMSContext;
 import jakarta.jms.JMSException;
 import jakarta.jms.Message;
 import jakarta.jms.MessageListener;
-import jakarta.jms.ObjectMessage;
+import jakarta.jms.Queue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -22,14 +31,17 @@ import java.util.logging.Logger;
  *
  * Flujo:
  * 1. Recibe mensaje con datos del documento (DocumentoSincronizacionMessage)
- * 2. Registra el documento en historia_clinica usando HistoriaClinicaService
- * 3. Envía confirmación exitosa o de error a cola "SincronizacionConfirmaciones"
- * 4. Si ocurre excepción, ActiveMQ reintentará automáticamente (max 20 veces)
+ * 2. Drena hasta N mensajes más de la cola dentro de la misma transacción (modo lote)
+ * 3. Registra todos los documentos en historia_clinica con HistoriaClinicaService.registrarDocumentos
+ * 4. Envía las confirmaciones (éxito o error) a cola "SincronizacionConfirmaciones", un mensaje por tenant
+ * 5. Si ocurre excepción, ActiveMQ reintentará automáticamente (max 20 veces) todo el lote
  *
  * Características:
  * - Transaccional: CMT (Container Managed Transaction) por defecto
  * - Concurrente: Puede haber múltiples instancias procesando mensajes en paralelo
  * - Idempotente: Si el documento ya existe, no lo duplica
+ * - Lote configurable con HCEN_SYNC_DOCUMENTOS_LOTE / hcen.syncDocumentosLote (1 = un mensaje por transacción)
+ * - Formato JSON versionado (SincronizacionJsonCodec); acepta ObjectMessage heredados
  *
  * @author Sistema HCEN
  * @version 1.0
@@ -59,18 +71,31 @@ public class DocumentoSincronizacionConsumer implements MessageListener {
 
     private static final Logger LOGGER = Logger.getLogger(DocumentoSincronizacionConsumer.class.getName());
 
+    private static final String LOTE_ENV_VAR = "HCEN_SYNC_DOCUMENTOS_LOTE";
+    private static final String LOTE_SYS_PROP = "hcen.syncDocumentosLote";
+    private static final int LOTE_DEFAULT = 50;
+
     @EJB
     private HistoriaClinicaService historiaClinicaService;
 
     @EJB
     private SincronizacionConfirmacionProducer confirmacionProducer;
 
+    /**
+     * ConnectionFactory XA: los mensajes drenados participan de la transacción del MDB
+     */
+    @Resource(lookup = "java:/jms/DocumentosSyncCF")
+    private ConnectionFactory connectionFactory;
+
+    @Resource(lookup = "java:/jms/queue/DocumentosSincronizacion")
+    private Queue documentosSincronizacionQueue;
+
     /**
      * Callback invocado por el contenedor cuando llega un mensaje a la cola.
      *
      * Este método es transaccional (CMT). Si lanza una excepción:
-     * - La transacción hace rollback
-     * - ActiveMQ reintenta el mensaje (redelivery)
+     * - La transacción hace rollback (incluye los mensajes drenados)
+     * - ActiveMQ reintenta los mensajes (redelivery)
      * - Después de 20 reintentos, el mensaje va a DLQ
      *
      * @param message Mensaje JMS recibido
@@ -78,32 +103,88 @@ public class DocumentoSincronizacionConsumer implements MessageListener {
     @Override
     public void onMessage(Message message) {
 
-        String messageId = null;
-        DocumentoSincronizacionMessage docMessage = null;
+        List<DocumentoSincronizacionMessage> lote = new ArrayList<>();
 
         try {
-            // Obtener ID del mensaje para trazabilidad
-            messageId = message.getJMSMessageID();
+            List<Message> mensajes = drenarLote(message);
+
+            LOGGER.log(Level.INFO, "Procesando lote de sincronización: {0} mensajes", mensajes.size());
+
+            for (Message mensaje : mensajes) {
+                DocumentoSincronizacionMessage docMessage = extraerDocumento(mensaje);
+                if (docMessage != null) {
+                    lote.add(docMessage);
+                }
+            }
+
+            if (lote.isEmpty()) {
+                return;
+            }
 
-            LOGGER.log(Level.INFO, "Procesando mensaje de sincronización: {0}", messageId);
+            // Registrar todos los documentos del lote en historia clínica central
+            RegistroDocumentosResultado resultado = historiaClinicaService.registrarDocumentos(lote);
+
+            LOGGER.log(Level.INFO,
+                    "Lote sincronizado: {0} documentos registrados, {1} rechazados",
+                    new Object[]{resultado.getRegistrados().size(), resultado.getErrores().size()});
+
+            enviarConfirmaciones(lote, resultado);
+
+        } catch (Exception e) {
+            // Error inesperado - REINTENTAR (lanzar excepción para rollback)
+            LOGGER.log(Level.SEVERE, "Error procesando lote de " + lote.size() +
+                    " documentos (se reintentará)", e);
 
-            // Validar tipo de mensaje
-            if (!(message instanceof ObjectMessage)) {
-                LOGGER.log(Level.SEVERE, "Mensaje recibido no es ObjectMessage: {0}", message.getClass());
-                throw new IllegalArgumentException("Tipo de mensaje inválido");
+            // Enviar confirmación de error (best effort)
+            for (DocumentoSincronizacionMessage docMessage : lote) {
+                enviarConfirmacionError(docMessage, "Error temporal: " + e.getMessage());
             }
 
-            ObjectMessage objectMessage = (ObjectMessage) message;
+            // Lanzar RuntimeException para provocar rollback y reintento
+            throw new RuntimeException("Error procesando documentos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Arma el lote: el mensaje entregado por el contenedor más los que ya estén
+     * disponibles en la cola (sin esperar), hasta el tamaño de lote configurado.
+     */
+    private List<Message> drenarLote(Message primero) {
+        List<Message> mensajes = new ArrayList<>();
+        mensajes.add(primero);
+
+        int tamanioLote = resolverTamanioLote();
+        if (tamanioLote <= 1 || connectionFactory == null || documentosSincronizacionQueue == null) {
+            return mensajes;
+        }
 
-            // Deserializar mensaje
-            Object payload = objectMessage.getObject();
-            if (!(payload instanceof DocumentoSincronizacionMessage)) {
-                LOGGER.log(Level.SEVERE, "Payload no es DocumentoSincronizacionMessage: {0}",
-                        payload != null ? payload.getClass() : "null");
-                throw new IllegalArgumentException("Payload inválido");
+        try (JMSContext context = connectionFactory.createContext();
+             JMSConsumer consumer = context.createConsumer(documentosSincronizacionQueue)) {
+            while (mensajes.size() < tamanioLote) {
+                Message siguiente = consumer.receiveNoWait();
+                if (siguiente == null) {
+                    break;
+                }
+                mensajes.add(siguiente);
             }
+        }
+        return mensajes;
+    }
 
-            docMessage = (DocumentoSincronizacionMessage) payload;
+    /**
+     * Extrae y valida el documento de un mensaje JMS.
+     * Los mensajes inválidos (envenenados) se confirman como error y se consumen sin reintento.
+     *
+     * @return el documento, o null si el mensaje es inválido
+     */
+    private DocumentoSincronizacionMessage extraerDocumento(Message message) throws JMSException {
+        String messageId = message.getJMSMessageID();
+        DocumentoSincronizacionMessage docMessage = null;
+
+        try {
+            // JSON versionado (o ObjectMessage heredado durante el despliegue)
+            docMessage = SincronizacionJsonCodec.leer(message, DocumentoSincronizacionMessage.class);
+            docMessage.setMessageId(messageId);
 
             // Validar mensaje
             if (!docMessage.isValid()) {
@@ -111,88 +192,85 @@ public class DocumentoSincronizacionConsumer implements MessageListener {
                 throw new IllegalArgumentException("Mensaje de sincronización inválido: " + docMessage);
             }
 
-            LOGGER.log(Level.INFO,
-                    "Sincronizando documento {0} (paciente: {1}, tenant: {2})",
-                    new Object[]{docMessage.getDocumentoId(), docMessage.getCedula(), docMessage.getTenantId()});
-
-            // Registrar documento en historia clínica central
-            UUID historiaId = historiaClinicaService.registrarDocumento(
-                    docMessage.getCedula(),
-                    docMessage.getTenantId(),
-                    docMessage.getDocumentoId()
-            );
-
-            LOGGER.log(Level.INFO,
-                    "Documento {0} sincronizado exitosamente en historia {1}",
-                    new Object[]{docMessage.getDocumentoId(), historiaId});
-
-            // Enviar confirmación exitosa al periférico
-            try {
-                confirmacionProducer.enviarConfirmacionExitosa(
-                        docMessage.getDocumentoId(),
-                        historiaId,
-                        docMessage.getTenantId(),
-                        docMessage.getCedula(),
-                        messageId
-                );
-
-                LOGGER.log(Level.INFO,
-                        "Confirmación exitosa enviada para documento {0}",
-                        docMessage.getDocumentoId());
-
-            } catch (JMSException e) {
-                // Error al enviar confirmación - loguear pero NO fallar transacción principal
-                // El documento YA fue registrado exitosamente
-                LOGGER.log(Level.SEVERE,
-                        "Error al enviar confirmación para documento " + docMessage.getDocumentoId() +
-                        " (documento SÍ fue sincronizado)", e);
-                // No lanzar excepción - dejar que transacción se confirme
-            }
+            return docMessage;
 
         } catch (IllegalArgumentException e) {
             // Error de validación - NO reintentar (mensaje envenenado)
             LOGGER.log(Level.SEVERE, "Error de validación procesando mensaje " + messageId + ": " + e.getMessage(), e);
 
             // Enviar confirmación de error al periférico (si tenemos datos suficientes)
-            if (docMessage != null && docMessage.getDocumentoId() != null) {
-                try {
-                    confirmacionProducer.enviarConfirmacionError(
-                            docMessage.getDocumentoId(),
-                            docMessage.getTenantId(),
-                            docMessage.getCedula(),
-                            "Error de validación: " + e.getMessage(),
-                            messageId
-                    );
-                } catch (JMSException jmsEx) {
-                    LOGGER.log(Level.SEVERE, "Error al enviar confirmación de error", jmsEx);
-                }
+            if (docMessage != null) {
+                enviarConfirmacionError(docMessage, "Error de validación: " + e.getMessage());
             }
+            return null;
+        }
+    }
 
-            // NO lanzar excepción - mensaje se consumirá y no se reintentará
-            // Esto es correcto para mensajes inválidos/envenenados
-
-        } catch (Exception e) {
-            // Error inesperado - REINTENTAR (lanzar excepción para rollback)
-            LOGGER.log(Level.SEVERE, "Error procesando mensaje " + messageId +
-                    " (se reintentará)", e);
+    /**
+     * Envía las confirmaciones del lote agrupadas por tenant (un mensaje por clínica)
+     */
+    private void enviarConfirmaciones(List<DocumentoSincronizacionMessage> lote, RegistroDocumentosResultado resultado) {
+        Map<UUID, UUID> registrados = resultado.getRegistrados();
+        Map<UUID, String> errores = resultado.getErrores();
+        List<SincronizacionConfirmacionMessage> confirmaciones = new ArrayList<>(lote.size());
 
-            // Enviar confirmación de error (best effort)
-            if (docMessage != null && docMessage.getDocumentoId() != null) {
-                try {
-                    confirmacionProducer.enviarConfirmacionError(
-                            docMessage.getDocumentoId(),
-                            docMessage.getTenantId(),
-                            docMessage.getCedula(),
-                            "Error temporal: " + e.getMessage(),
-                            messageId
-                    );
-                } catch (JMSException jmsEx) {
-                    LOGGER.log(Level.SEVERE, "Error al enviar confirmación de error", jmsEx);
-                }
+        for (DocumentoSincronizacionMessage docMessage : lote) {
+            UUID historiaId = registrados.get(docMessage.getDocumentoId());
+            SincronizacionConfirmacionMessage confirmacion;
+            if (historiaId != null) {
+                confirmacion = SincronizacionConfirmacionMessage.exitoso(
+                        docMessage.getDocumentoId(), historiaId, docMessage.getTenantId(), docMessage.getCedula());
+            } else {
+                String error = errores.getOrDefault(docMessage.getDocumentoId(), "Documento no registrado");
+                confirmacion = SincronizacionConfirmacionMessage.fallido(
+                        docMessage.getDocumentoId(), docMessage.getTenantId(), docMessage.getCedula(),
+                        "Error de validación: " + error);
             }
+            confirmacion.setMessageIdOriginal(docMessage.getMessageId());
+            confirmaciones.add(confirmacion);
+        }
 
-            // Lanzar RuntimeException para provocar rollback y reintento
-            throw new RuntimeException("Error procesando documento: " + e.getMessage(), e);
+        try {
+            confirmacionProducer.enviarConfirmacionesLote(confirmaciones);
+        } catch (JMSException | RuntimeException e) {
+            // Error al enviar confirmaciones - loguear pero NO fallar transacción principal
+            // Los documentos YA fueron registrados; el periférico los reintentará si no recibe confirmación
+            LOGGER.log(Level.SEVERE,
+                    "Error al enviar confirmaciones del lote (" + confirmaciones.size() +
+                    " documentos, registrados SÍ fueron sincronizados)", e);
+        }
+    }
+
+    private void enviarConfirmacionError(DocumentoSincronizacionMessage docMessage, String error) {
+        if (docMessage == null || docMessage.getDocumentoId() == null) {
+            return;
+        }
+        try {
+            confirmacionProducer.enviarConfirmacionError(
+                    docMessage.getDocumentoId(),
+                    docMessage.getTenantId(),
+                    docMessage.getCedula(),
+                    error,
+                    docMessage.getMessageId()
+            );
+        } catch (JMSException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error al enviar confirmación de error", e);
+        }
+    }
+
+    private int resolverTamanioLote() {
+        String valor = System.getenv(LOTE_ENV_VAR);
+        if (valor == null || valor.isBlank()) {
+            valor = System.getProperty(LOTE_SYS_PROP);
+        }
+        if (valor == null || valor.isBlank()) {
+            return LOTE_DEFAULT;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Tamaño de lote inválido: {0}, se usa {1}", new Object[]{valor, LOTE_DEFAULT});
+            return LOTE_DEFAULT;
         }
     }
 }
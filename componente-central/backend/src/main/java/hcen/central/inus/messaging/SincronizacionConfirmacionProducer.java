@@ -1,9 +1,14 @@
 package hcen.central.inus.messaging;
 
+import hcen.central.inus.dto.SincronizacionConfirmacionLoteMessage;
 import hcen.central.inus.dto.SincronizacionConfirmacionMessage;
 import jakarta.annotation.Resource;
 import jakarta.ejb.Stateless;
 import jakarta.jms.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +24,8 @@ import java.util.logging.Logger;
  * - Transaccional: Las confirmaciones se envían dentro de transacciones JTA
  * - Persistente: Los mensajes sobreviven reinicios del servidor
  * - Asíncrono: No bloquea el procesamiento del documento
+ * - Formato JSON versionado (ver SincronizacionJsonCodec)
+ * - Lotes: las confirmaciones de un lote de documentos se agrupan en un mensaje por tenant
  *
  * @author Sistema HCEN
  * @version 1.0
@@ -28,6 +35,16 @@ public class SincronizacionConfirmacionProducer {
 
     private static final Logger LOGGER = Logger.getLogger(SincronizacionConfirmacionProducer.class.getName());
 
+    /**
+     * Valor de la propiedad JMS "tipo" de los mensajes que agrupan confirmaciones
+     */
+    public static final String TIPO_CONFIRMACION_LOTE = "CONFIRMACION_LOTE";
+
+    /**
+     * Máximo de confirmaciones por mensaje (acota el tamaño del mensaje y del UPDATE en el periférico)
+     */
+    private static final int MAX_CONFIRMACIONES_POR_MENSAJE = 200;
+
     /**
      * ConnectionFactory de ActiveMQ Artemis.
      * WildFly proporciona esta factory.
@@ -100,6 +117,68 @@ public class SincronizacionConfirmacionProducer {
         return enviarConfirmacion(confirmacion);
     }
 
+    /**
+     * Envía un conjunto de confirmaciones agrupadas: un mensaje por tenant
+     * (partido si supera MAX_CONFIRMACIONES_POR_MENSAJE), en vez de un mensaje por documento.
+     *
+     * @param confirmaciones Confirmaciones exitosas y/o de error, de uno o varios tenants
+     * @return Cantidad de mensajes JMS enviados
+     * @throws JMSException si ocurre error al enviar algún mensaje
+     */
+    public int enviarConfirmacionesLote(List<SincronizacionConfirmacionMessage> confirmaciones) throws JMSException {
+
+        Map<UUID, List<SincronizacionConfirmacionMessage>> porTenant = new LinkedHashMap<>();
+        for (SincronizacionConfirmacionMessage confirmacion : confirmaciones) {
+            if (!confirmacion.isValid()) {
+                LOGGER.log(Level.WARNING, "Confirmación inválida omitida: {0}", confirmacion);
+                continue;
+            }
+            porTenant.computeIfAbsent(confirmacion.getTenantId(), k -> new ArrayList<>()).add(confirmacion);
+        }
+
+        if (porTenant.isEmpty()) {
+            return 0;
+        }
+
+        int enviados = 0;
+
+        try (JMSContext context = connectionFactory.createContext()) {
+
+            JMSProducer producer = context.createProducer();
+            producer.setDeliveryMode(DeliveryMode.PERSISTENT);
+            producer.setPriority(4);
+
+            for (Map.Entry<UUID, List<SincronizacionConfirmacionMessage>> entry : porTenant.entrySet()) {
+                List<SincronizacionConfirmacionMessage> delTenant = entry.getValue();
+
+                for (int desde = 0; desde < delTenant.size(); desde += MAX_CONFIRMACIONES_POR_MENSAJE) {
+                    int hasta = Math.min(desde + MAX_CONFIRMACIONES_POR_MENSAJE, delTenant.size());
+                    SincronizacionConfirmacionLoteMessage lote =
+                            new SincronizacionConfirmacionLoteMessage(entry.getKey(), delTenant.subList(desde, hasta));
+
+                    TextMessage textMessage = SincronizacionJsonCodec.crearMensaje(context, lote);
+                    textMessage.setStringProperty("tenantId", entry.getKey().toString());
+                    textMessage.setStringProperty("tipo", TIPO_CONFIRMACION_LOTE);
+                    textMessage.setIntProperty("cantidad", hasta - desde);
+
+                    producer.send(sincronizacionConfirmacionesQueue, textMessage);
+                    enviados++;
+                }
+            }
+
+        } catch (JMSRuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error al enviar lote de confirmaciones", e);
+            JMSException jmsException = new JMSException("Error al enviar lote de confirmaciones a cola JMS");
+            jmsException.setLinkedException(e);
+            throw jmsException;
+        }
+
+        LOGGER.log(Level.INFO, "Enviadas {0} confirmaciones en {1} mensajes ({2} tenants)",
+                new Object[]{confirmaciones.size(), enviados, porTenant.size()});
+
+        return enviados;
+    }
+
     /**
      * Envía un mensaje de confirmación a la cola.
      *
@@ -127,24 +206,24 @@ public class SincronizacionConfirmacionProducer {
             // Prioridad normal
             producer.setPriority(4);
 
-            // Crear ObjectMessage con el DTO
-            ObjectMessage objectMessage = context.createObjectMessage(confirmacion);
+            // Crear TextMessage JSON versionado con el DTO
+            TextMessage textMessage = SincronizacionJsonCodec.crearMensaje(context, confirmacion);
 
             // Agregar propiedades personalizadas para filtrado/monitoreo
-            objectMessage.setStringProperty("tenantId", confirmacion.getTenantId().toString());
-            objectMessage.setStringProperty("cedula", confirmacion.getCedula());
-            objectMessage.setStringProperty("documentoId", confirmacion.getDocumentoId().toString());
-            objectMessage.setStringProperty("exito", String.valueOf(confirmacion.isExito()));
+            textMessage.setStringProperty("tenantId", confirmacion.getTenantId().toString());
+            textMessage.setStringProperty("cedula", confirmacion.getCedula());
+            textMessage.setStringProperty("documentoId", confirmacion.getDocumentoId().toString());
+            textMessage.setStringProperty("exito", String.valueOf(confirmacion.isExito()));
 
             if (confirmacion.getMessageIdOriginal() != null) {
-                objectMessage.setStringProperty("messageIdOriginal", confirmacion.getMessageIdOriginal());
+                textMessage.setStringProperty("messageIdOriginal", confirmacion.getMessageIdOriginal());
             }
 
             // Enviar mensaje a la cola
-            producer.send(sincronizacionConfirmacionesQueue, objectMessage);
+            producer.send(sincronizacionConfirmacionesQueue, textMessage);
 
             // Obtener ID del mensaje asignado por ActiveMQ
-            messageId = objectMessage.getJMSMessageID();
+            messageId = textMessage.getJMSMessageID();
 
             LOGGER.log(Level.INFO,
                     "Confirmación enviada exitosamente para documento {0}. MessageID: {1}, Éxito: {2}",
@@ -0,0 +1,96 @@
+package hcen.central.inus.messaging;
+
+import jakarta.jms.JMSContext;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.ObjectMessage;
+import jakarta.jms.TextMessage;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.bind.JsonbException;
+
+/**
+ * Formato de los mensajes de sincronización de documentos y de sus confirmaciones.
+ *
+ * Los mensajes viajan como TextMessage con JSON (JSON-B), igual que la sincronización
+ * de usuarios, y llevan la versión de esquema en la propiedad "schemaVersion".
+ * Al leer se aceptan también los ObjectMessage (serialización Java) que envían los
+ * nodos que todavía no migraron, para no perder mensajes durante el despliegue.
+ *
+ * El periférico mantiene una copia de esta clase (com.hcen.periferico.messaging).
+ */
+public final class SincronizacionJsonCodec {
+
+    public static final String PROP_SCHEMA_VERSION = "schemaVersion";
+    public static final String PROP_CONTENT_TYPE = "contentType";
+    public static final String CONTENT_TYPE_JSON = "application/json";
+
+    /**
+     * Versión de esquema que produce este nodo (y la máxima que sabe leer)
+     */
+    public static final int SCHEMA_VERSION = 1;
+
+    /**
+     * Jsonb es thread-safe: una única instancia evita recrear el contexto en cada mensaje
+     */
+    private static final Jsonb JSONB = JsonbBuilder.create();
+
+    private SincronizacionJsonCodec() {
+    }
+
+    /**
+     * Crea un TextMessage JSON con las propiedades de formato ya seteadas
+     */
+    public static TextMessage crearMensaje(JMSContext context, Object payload) throws JMSException {
+        TextMessage textMessage = context.createTextMessage(JSONB.toJson(payload));
+        textMessage.setIntProperty(PROP_SCHEMA_VERSION, SCHEMA_VERSION);
+        textMessage.setStringProperty(PROP_CONTENT_TYPE, CONTENT_TYPE_JSON);
+        return textMessage;
+    }
+
+    /**
+     * Lee el payload de un mensaje JSON (o de un ObjectMessage heredado)
+     *
+     * @throws IllegalArgumentException si el mensaje no respeta el esquema (mensaje envenenado)
+     */
+    public static <T> T leer(Message message, Class<T> tipo) throws JMSException {
+        if (message instanceof TextMessage) {
+            return leerJson((TextMessage) message, tipo);
+        }
+
+        if (message instanceof ObjectMessage) {
+            Object payload = ((ObjectMessage) message).getObject();
+            if (!tipo.isInstance(payload)) {
+                throw new IllegalArgumentException("Payload inválido: " +
+                        (payload != null ? payload.getClass().getName() : "null"));
+            }
+            return tipo.cast(payload);
+        }
+
+        throw new IllegalArgumentException("Tipo de mensaje inválido: " + message.getClass().getName());
+    }
+
+    private static <T> T leerJson(TextMessage message, Class<T> tipo) throws JMSException {
+        int version = message.propertyExists(PROP_SCHEMA_VERSION)
+                ? message.getIntProperty(PROP_SCHEMA_VERSION)
+                : SCHEMA_VERSION;
+        if (version < 1 || version > SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Versión de esquema no soportada: " + version);
+        }
+
+        String json = message.getText();
+        if (json == null || json.isBlank()) {
+            throw new IllegalArgumentException("Mensaje vacío");
+        }
+
+        try {
+            T payload = JSONB.fromJson(json, tipo);
+            if (payload == null) {
+                throw new IllegalArgumentException("Mensaje vacío");
+            }
+            return payload;
+        } catch (JsonbException e) {
+            throw new IllegalArgumentException("JSON inválido: " + e.getMessage(), e);
+        }
+    }
+}
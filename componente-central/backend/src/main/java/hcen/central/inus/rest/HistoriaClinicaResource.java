@@ -1,7 +1,9 @@
 package hcen.central.inus.rest;
 
 import hcen.central.inus.dto.HistoriaClinicaDocumentoDetalleResponse;
+import hcen.central.inus.dto.DocumentoSincronizacionMessage;
 import hcen.central.inus.dto.HistoriaClinicaIdResponse;
+import hcen.central.inus.dto.RegistroDocumentosResultado;
 import hcen.central.inus.service.HistoriaClinicaService;
 import hcen.central.notifications.dto.ApiResponse;
 import io.jsonwebtoken.Claims;
@@ -17,6 +19,10 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -80,6 +86,56 @@ public class HistoriaClinicaResource {
         }
     }
 
+    /**
+     * Registra varios documentos en una sola transacción (importaciones masivas de clínicas)
+     */
+    @POST
+    @Path("/documentos/batch")
+    public Response registrarDocumentos(List<RegistrarDocumentoRequest> requests) {
+        try {
+            if (requests == null || requests.isEmpty()) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("La lista de documentos es requerida"))
+                    .build();
+            }
+
+            List<DocumentoSincronizacionMessage> documentos = new ArrayList<>();
+            for (RegistrarDocumentoRequest request : requests) {
+                if (request == null || request.getDocumentoId() == null || request.getDocumentoId().isBlank()
+                        || request.getCedula() == null || request.getCedula().isBlank()
+                        || request.getTenantId() == null || request.getTenantId().isBlank()) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ErrorResponse("Cada documento requiere documentoId, cedula y tenantId"))
+                        .build();
+                }
+                documentos.add(new DocumentoSincronizacionMessage(
+                    UUID.fromString(request.getDocumentoId()),
+                    UUID.fromString(request.getTenantId()),
+                    request.getCedula().trim()
+                ));
+            }
+
+            RegistroDocumentosResultado resultado = historiaClinicaService.registrarDocumentos(documentos);
+
+            List<RegistrarDocumentoResponse> registrados = new ArrayList<>();
+            resultado.getRegistrados().forEach((documentoId, historiaId) ->
+                registrados.add(new RegistrarDocumentoResponse(historiaId.toString(), documentoId.toString())));
+            Map<String, String> errores = new HashMap<>();
+            resultado.getErrores().forEach((documentoId, error) -> errores.put(documentoId.toString(), error));
+
+            return Response.ok(new RegistrarDocumentosBatchResponse(registrados, errores)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error al registrar documentos en historia clínica", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Error interno al registrar los documentos: " + e.getMessage()))
+                .build();
+        }
+    }
+
     /**
      * Obtiene el ID de la historia clínica de un paciente por su cédula
      */
@@ -192,6 +248,15 @@ public class HistoriaClinicaResource {
         }
     }
 
+    /**
+     * Contadores de la cache de detalle de documentos (hits, misses, evictions)
+     */
+    @GET
+    @Path("/cache/estadisticas")
+    public Response obtenerEstadisticasCache() {
+        return Response.ok(ApiResponse.success(historiaClinicaService.obtenerEstadisticasCacheDocumentos())).build();
+    }
+
     public static class RegistrarDocumentoRequest {
         private String tenantId;
         private String cedula;
@@ -248,6 +313,32 @@ public class HistoriaClinicaResource {
         }
     }
 
+    public static class RegistrarDocumentosBatchResponse {
+        private List<RegistrarDocumentoResponse> registrados;
+        private Map<String, String> errores;
+
+        public RegistrarDocumentosBatchResponse(List<RegistrarDocumentoResponse> registrados, Map<String, String> errores) {
+            this.registrados = registrados;
+            this.errores = errores;
+        }
+
+        public List<RegistrarDocumentoResponse> getRegistrados() {
+            return registrados;
+        }
+
+        public void setRegistrados(List<RegistrarDocumentoResponse> registrados) {
+            this.registrados = registrados;
+        }
+
+        public Map<String, String> getErrores() {
+            return errores;
+        }
+
+        public void setErrores(Map<String, String> errores) {
+            this.errores = errores;
+        }
+    }
+
     public static class ErrorResponse {
         private String error;
 
@@ -2,6 +2,7 @@ package hcen.central.inus.rest;
 
 import hcen.central.inus.dto.PoliticaAccesoDTO;
 import hcen.central.inus.enums.TipoPermiso;
+import hcen.central.inus.service.PermisoExpiracionScheduler;
 import hcen.central.inus.service.PoliticaAccesoService;
 import hcen.central.notifications.dto.ApiResponse;
 import jakarta.ejb.EJB;
@@ -28,6 +29,9 @@ public class PoliticaAccesoResource {
     @EJB
     private PoliticaAccesoService politicaService;
 
+    @EJB
+    private PermisoExpiracionScheduler expiracionScheduler;
+
     /**
      * Otorga un nuevo permiso de acceso a un documento clínico
      * Llamado desde la aplicación móvil cuando el usuario otorga acceso
@@ -357,6 +361,24 @@ public class PoliticaAccesoResource {
         }
     }
 
+    /**
+     * Contadores de la cache de decisiones de acceso (hits, misses, evictions)
+     */
+    @GET
+    @Path("/cache/estadisticas")
+    public Response obtenerEstadisticasCache() {
+        return Response.ok(ApiResponse.success(politicaService.obtenerEstadisticasCache())).build();
+    }
+
+    /**
+     * Métricas del motor de expiración (retraso del permiso vencido más antiguo y throughput)
+     */
+    @GET
+    @Path("/expiracion/metricas")
+    public Response obtenerMetricasExpiracion() {
+        return Response.ok(ApiResponse.success(expiracionScheduler.getMetricas())).build();
+    }
+
     // Clases de Request/Response
 
     private void validarRequest(OtorgarPermisoRequest request) {
@@ -2,6 +2,7 @@ package hcen.central.inus.rest;
 
 import hcen.central.inus.dto.ActualizarUsuarioSaludRequest;
 import hcen.central.inus.dto.RegistrarUsuarioRequest;
+import hcen.central.inus.dto.RegistroUsuariosResultado;
 import hcen.central.inus.dto.UsuarioSaludDTO;
 import hcen.central.inus.service.UsuarioSaludService;
 import jakarta.ejb.EJB;
@@ -9,6 +10,7 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
@@ -77,6 +79,42 @@ public class UsuarioSaludResource {
         }
     }
 
+    /**
+     * Registra varios usuarios en el sistema nacional (alta masiva de pacientes de una clínica),
+     * con los datos de DNIC consultados en lote
+     * POST /api/usuarios/registrar/lote
+     */
+    @POST
+    @Path("/registrar/lote")
+    public Response registrarUsuarios(List<RegistrarUsuarioRequest> requests) {
+        try {
+            LOGGER.info("Recibida solicitud de registro en lote: " +
+                (requests != null ? requests.size() : 0) + " usuarios");
+            RegistroUsuariosResultado resultado = usuarioService.registrarUsuariosEnClinica(requests);
+            return Response.ok(resultado).build();
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Validación fallida: " + e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(Map.of("error", e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error al registrar usuarios en lote", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Error interno del servidor: " + e.getMessage()))
+                .build();
+        }
+    }
+
+    /**
+     * Contadores de la cache de consultas a DNIC (hits, misses, evictions)
+     * GET /api/usuarios/dnic/cache/estadisticas
+     */
+    @GET
+    @Path("/dnic/cache/estadisticas")
+    public Response obtenerEstadisticasCacheDnic() {
+        return Response.ok(usuarioService.obtenerEstadisticasCacheDnic()).build();
+    }
+
     /**
      * Obtiene datos de un usuario por cédula
      * GET /api/usuarios/{cedula}
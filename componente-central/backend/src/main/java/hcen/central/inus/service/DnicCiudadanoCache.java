@@ -0,0 +1,159 @@
+package hcen.central.inus.service;
+
+import hcen.central.inus.dto.CacheEstadisticas;
+import hcen.central.inus.dto.DnicCiudadanoDTO;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache en memoria (por nodo) de las consultas de ciudadanos a DNIC, por (tipo, número de documento).
+ *
+ * Los datos de DNIC (nombres, fecha de nacimiento, nacionalidad) prácticamente no cambian, así que
+ * los registros en ráfaga (p. ej. al abrir una clínica) no necesitan una llamada SOAP por paciente.
+ *
+ * - Acotada: al superar la capacidad se descarta la entrada menos usada (LRU)
+ * - TTL largo para los ciudadanos encontrados
+ * - Cache negativa con TTL corto para "ciudadano no encontrado" (solo el fault de DNIC,
+ *   nunca errores de comunicación)
+ *
+ * Los DTO cacheados se comparten entre llamadas: deben tratarse como de solo lectura.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DnicCiudadanoCache {
+
+    private static final int CAPACIDAD_MAXIMA = 50_000;
+    private static final Duration TTL_ENCONTRADO = Duration.ofHours(24);
+    private static final Duration TTL_NO_ENCONTRADO = Duration.ofMinutes(10);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private final Map<String, Consulta> entradas =
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Consulta> eldest) {
+                if (size() > CAPACIDAD_MAXIMA) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    /**
+     * Busca la consulta vigente de un documento
+     *
+     * @return la consulta cacheada (encontrado o no encontrado), o null si no hay una vigente
+     */
+    public Consulta obtener(String tipoDocumento, String numeroDocumento) {
+        String clave = clave(tipoDocumento, numeroDocumento);
+        LocalDateTime ahora = LocalDateTime.now();
+        Consulta consulta;
+        synchronized (entradas) {
+            consulta = entradas.get(clave);
+            if (consulta != null && !consulta.venceEn.isAfter(ahora)) {
+                entradas.remove(clave);
+                evictions.incrementAndGet();
+                consulta = null;
+            }
+        }
+        if (consulta != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return consulta;
+    }
+
+    /**
+     * Registra un ciudadano obtenido de DNIC
+     */
+    public void registrar(String tipoDocumento, String numeroDocumento, DnicCiudadanoDTO ciudadano) {
+        if (ciudadano == null) {
+            return;
+        }
+        guardar(clave(tipoDocumento, numeroDocumento),
+            new Consulta(ciudadano, LocalDateTime.now().plus(TTL_ENCONTRADO)));
+    }
+
+    /**
+     * Registra que DNIC respondió que el documento no existe
+     */
+    public void registrarNoEncontrado(String tipoDocumento, String numeroDocumento) {
+        guardar(clave(tipoDocumento, numeroDocumento),
+            new Consulta(null, LocalDateTime.now().plus(TTL_NO_ENCONTRADO)));
+    }
+
+    /**
+     * Descarta la consulta cacheada de un documento
+     */
+    public void invalidar(String tipoDocumento, String numeroDocumento) {
+        boolean eliminada;
+        synchronized (entradas) {
+            eliminada = entradas.remove(clave(tipoDocumento, numeroDocumento)) != null;
+        }
+        if (eliminada) {
+            invalidaciones.incrementAndGet();
+        }
+    }
+
+    /**
+     * Devuelve los contadores actuales de la cache
+     */
+    public CacheEstadisticas getEstadisticas() {
+        int tamanio;
+        synchronized (entradas) {
+            tamanio = entradas.size();
+        }
+        return new CacheEstadisticas(hits.get(), misses.get(), evictions.get(),
+            invalidaciones.get(), tamanio);
+    }
+
+    private void guardar(String clave, Consulta consulta) {
+        synchronized (entradas) {
+            entradas.put(clave, consulta);
+        }
+    }
+
+    /**
+     * Clave de un documento: el número normalizado igual que en la consulta a DNIC, para que
+     * "1.234.567-8" y "12345678" compartan la misma entrada
+     */
+    private static String clave(String tipoDocumento, String numeroDocumento) {
+        String tipo = tipoDocumento != null ? tipoDocumento.trim().toUpperCase(Locale.ROOT) : "";
+        String numero = DnicServiceClient.normalizarNumeroDocumento(numeroDocumento);
+        return tipo + "|" + numero;
+    }
+
+    /**
+     * Resultado cacheado de una consulta: el ciudadano, o null si DNIC no lo encontró
+     */
+    public static final class Consulta {
+        private final DnicCiudadanoDTO ciudadano;
+        private final LocalDateTime venceEn;
+
+        private Consulta(DnicCiudadanoDTO ciudadano, LocalDateTime venceEn) {
+            this.ciudadano = ciudadano;
+            this.venceEn = venceEn;
+        }
+
+        public DnicCiudadanoDTO getCiudadano() {
+            return ciudadano;
+        }
+
+        public boolean isNoEncontrado() {
+            return ciudadano == null;
+        }
+    }
+}
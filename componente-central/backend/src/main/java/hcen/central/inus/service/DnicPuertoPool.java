@@ -0,0 +1,101 @@
+package hcen.central.inus.service;
+
+import hcen.central.inus.ws.dnic.CiudadanoPortType;
+import hcen.central.inus.ws.dnic.CiudadanoService;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.xml.ws.BindingProvider;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Pool de puertos JAX-WS del servicio DNIC.
+ *
+ * El CiudadanoService (que parsea el WSDL empaquetado) se crea una sola vez por nodo. Los puertos
+ * se reutilizan entre llamadas: cada uno lo usa un solo hilo a la vez (tomar/devolver), porque el
+ * request context de un puerto no es seguro para uso concurrente. Si no hay puertos libres se crea
+ * uno nuevo; al devolverlo solo se conserva si el pool no supera MAX_LIBRES.
+ *
+ * El endpoint se lee de la system property al crear cada puerto (igual que antes en cada llamada).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DnicPuertoPool {
+
+    private static final Logger LOGGER = Logger.getLogger(DnicPuertoPool.class.getName());
+
+    // Endpoint del servicio DNIC (puede configurarse vía system property)
+    private static final String DEFAULT_DNIC_ENDPOINT = "http://node5823-hcen-uy.web.elasticloud.uy/mock-dnic/ciudadano-service/ciudadano_servicio_web";
+    private static final String DNIC_ENDPOINT_PROPERTY = "dnic.service.endpoint";
+
+    private static final int MAX_LIBRES = 16;
+
+    private final ConcurrentLinkedDeque<CiudadanoPortType> libres = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger cantidadLibres = new AtomicInteger();
+
+    private volatile CiudadanoService servicio;
+
+    /**
+     * Toma un puerto libre o crea uno nuevo. Debe devolverse con devolver() o descartarse.
+     */
+    public CiudadanoPortType tomar() {
+        CiudadanoPortType port = libres.pollFirst();
+        if (port != null) {
+            cantidadLibres.decrementAndGet();
+            return port;
+        }
+        return crearPuerto();
+    }
+
+    /**
+     * Devuelve un puerto en buen estado para reutilizarlo
+     */
+    public void devolver(CiudadanoPortType port) {
+        if (port == null) {
+            return;
+        }
+        if (cantidadLibres.incrementAndGet() <= MAX_LIBRES) {
+            libres.offerFirst(port);
+        } else {
+            cantidadLibres.decrementAndGet();
+        }
+    }
+
+    /**
+     * Crea el puerto usando el WSDL empaquetado y configurando el endpoint en runtime.
+     *
+     * Separa el contrato (WSDL, embebido en las clases generadas) del endpoint (configurable vía
+     * system property), por lo que no depende de que el servicio esté disponible durante el build
+     * y permite cambiar de endpoint sin recompilar.
+     */
+    private CiudadanoPortType crearPuerto() {
+        CiudadanoPortType port = obtenerServicio().getCiudadanoPort();
+
+        String endpoint = System.getProperty(DNIC_ENDPOINT_PROPERTY, DEFAULT_DNIC_ENDPOINT);
+        BindingProvider bindingProvider = (BindingProvider) port;
+        bindingProvider.getRequestContext().put(
+            BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
+            endpoint
+        );
+
+        LOGGER.fine("Puerto SOAP DNIC creado. Endpoint: " + endpoint);
+        return port;
+    }
+
+    private CiudadanoService obtenerServicio() {
+        CiudadanoService actual = servicio;
+        if (actual == null) {
+            synchronized (this) {
+                if (servicio == null) {
+                    servicio = new CiudadanoService();
+                    LOGGER.info("Servicio SOAP DNIC inicializado (WSDL empaquetado)");
+                }
+                actual = servicio;
+            }
+        }
+        return actual;
+    }
+}
@@ -1,13 +1,22 @@
 package hcen.central.inus.service;
 
+import hcen.central.inus.dto.CacheEstadisticas;
 import hcen.central.inus.dto.DnicCiudadanoDTO;
 import hcen.central.inus.exception.CiudadanoNoEncontradoException;
 import hcen.central.inus.ws.dnic.*;
+import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
-import jakarta.xml.ws.BindingProvider;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,17 +25,13 @@ import java.util.logging.Logger;
  *
  * Este servicio encapsula la comunicación con el mock DNIC y mapea
  * las respuestas SOAP a DTOs del dominio de la aplicación.
+ * Los puertos SOAP se reutilizan vía DnicPuertoPool y las respuestas se cachean en DnicCiudadanoCache.
  */
 @Stateless
 public class DnicServiceClient {
 
     private static final Logger LOGGER = Logger.getLogger(DnicServiceClient.class.getName());
 
-    // Endpoint del servicio DNIC (puede configurarse vía system property)
-    // Nota: Ya no incluye "?wsdl" porque usamos el WSDL empaquetado
-    private static final String DEFAULT_DNIC_ENDPOINT = "http://node5823-hcen-uy.web.elasticloud.uy/mock-dnic/ciudadano-service/ciudadano_servicio_web";
-    private static final String DNIC_ENDPOINT_PROPERTY = "dnic.service.endpoint";
-
     // Formatos de fecha esperados de DNIC (ISO-8601)
     private static final DateTimeFormatter[] DATE_FORMATTERS = {
         DateTimeFormatter.ISO_LOCAL_DATE,  // yyyy-MM-dd
@@ -34,23 +39,41 @@ public class DnicServiceClient {
         DateTimeFormatter.ofPattern("yyyy/MM/dd")
     };
 
+    // Documentos por llamada a obtener_ciudadanos (el servicio admite hasta 500)
+    private static final int TAMANIO_LOTE = 200;
+
+    @EJB
+    private DnicPuertoPool puertoPool;
+
+    @EJB
+    private DnicCiudadanoCache cache;
+
     /**
      * Consulta datos de un ciudadano en DNIC por tipo y número de documento.
+     * Las respuestas (incluido "no encontrado") se reutilizan desde DnicCiudadanoCache.
      *
      * @param tipoDocumento Tipo de documento (DO, PA, OTRO)
-     * @param numeroDocumento Número de documento (8 dígitos)
-     * @return DTO con datos del ciudadano
+     * @param numero Número de documento (8 dígitos; se aceptan puntos y guiones)
+     * @return DTO con datos del ciudadano (compartido con la cache: solo lectura)
      * @throws CiudadanoNoEncontradoException Si el ciudadano no existe en DNIC
      */
-    public DnicCiudadanoDTO obtenerCiudadano(String tipoDocumento, String numeroDocumento)
+    public DnicCiudadanoDTO obtenerCiudadano(String tipoDocumento, String numero)
             throws CiudadanoNoEncontradoException {
+        String numeroDocumento = normalizarNumeroDocumento(numero);
+
+        DnicCiudadanoCache.Consulta cacheada = cache.obtener(tipoDocumento, numeroDocumento);
+        if (cacheada != null) {
+            if (cacheada.isNoEncontrado()) {
+                throw new CiudadanoNoEncontradoException(tipoDocumento, numeroDocumento);
+            }
+            return cacheada.getCiudadano();
+        }
 
         LOGGER.info("Consultando DNIC para: " + tipoDocumento + " " + numeroDocumento);
 
+        // 1. Tomar un puerto SOAP del pool (se devuelve solo si la llamada terminó bien)
+        CiudadanoPortType port = puertoPool.tomar();
         try {
-            // 1. Crear cliente SOAP
-            CiudadanoPortType port = crearClienteSOAP();
-
             // 2. Construir solicitud
             SolicitudCiudadano solicitud = new SolicitudCiudadano();
             solicitud.setTipoDoc(convertirTipoDocumentoASOAP(tipoDocumento));
@@ -58,56 +81,138 @@ public class DnicServiceClient {
 
             // 3. Invocar servicio SOAP
             RespuestaCiudadano respuesta = port.obtenerCiudadano(solicitud);
+            puertoPool.devolver(port);
 
             // 4. Mapear respuesta a DTO
             DnicCiudadanoDTO dto = mapearRespuestaADTO(respuesta);
+            cache.registrar(tipoDocumento, numeroDocumento, dto);
 
             LOGGER.info("Ciudadano obtenido exitosamente de DNIC: " + dto.getNombreCompleto());
             return dto;
 
         } catch (CiudadanoNoEncontradoFaultMessage e) {
-            // SOAP Fault: ciudadano no encontrado
+            // SOAP Fault: ciudadano no encontrado (respuesta válida, el puerto sigue sano)
+            puertoPool.devolver(port);
+            cache.registrarNoEncontrado(tipoDocumento, numeroDocumento);
             LOGGER.warning("Ciudadano no encontrado en DNIC: " + tipoDocumento + " " + numeroDocumento);
             throw new CiudadanoNoEncontradoException(tipoDocumento, numeroDocumento, e);
 
         } catch (Exception e) {
-            // Error general de comunicación o parsing
+            // Error general de comunicación o parsing: no se cachea y el puerto se descarta
             LOGGER.log(Level.SEVERE, "Error consultando DNIC: " + e.getMessage(), e);
             throw new CiudadanoNoEncontradoException(tipoDocumento, numeroDocumento, e);
         }
     }
 
     /**
-     * Crea el cliente SOAP usando el WSDL empaquetado y configurando el endpoint en runtime.
+     * Consulta en lote los ciudadanos de un mismo tipo de documento (p. ej. al importar los
+     * pacientes de una clínica): primero la cache y luego la operación SOAP obtener_ciudadanos
+     * en lotes de TAMANIO_LOTE, por lo que las llamadas crecen con la cantidad de lotes y no de
+     * pacientes. Los resultados (incluidos los no encontrados) quedan en la cache, así que un
+     * registro individual posterior del mismo documento no vuelve a consultar a DNIC.
      *
-     * Esta implementación separa el contrato (WSDL) del endpoint:
-     * - WSDL: Embebido en las clases generadas (build-time)
-     * - Endpoint: Configurable vía system property (runtime)
+     * Un lote que falla por comunicación no interrumpe los demás: sus documentos se informan en
+     * conError y no se cachean.
      *
-     * Esto permite:
-     * 1. No depender de que el servicio esté disponible durante el build
-     * 2. Cambiar de endpoint sin recompilar (dev/staging/prod)
-     * 3. No requiere modificar standalone.xml del servidor
-     *
-     * @return Puerto SOAP para invocar operaciones
+     * @param tipoDocumento Tipo de documento (DO, PA, OTRO)
+     * @param numerosDocumento Números de documento (se ignoran vacíos y repetidos)
+     * @return encontrados (DTO compartidos con la cache: solo lectura), no encontrados y con error,
+     *         por número normalizado (ver normalizarNumeroDocumento)
      */
-    private CiudadanoPortType crearClienteSOAP() {
-        // 1. Crear servicio usando WSDL empaquetado (constructor sin parámetros)
-        CiudadanoService service = new CiudadanoService();
-        CiudadanoPortType port = service.getCiudadanoPort();
+    public ResultadoLote obtenerCiudadanos(String tipoDocumento, Collection<String> numerosDocumento) {
+        ResultadoLote resultado = new ResultadoLote();
+        if (numerosDocumento == null || numerosDocumento.isEmpty()) {
+            return resultado;
+        }
+
+        List<String> pendientes = new ArrayList<>();
+        Set<String> normalizados = new LinkedHashSet<>();
+        for (String numero : numerosDocumento) {
+            String numeroDocumento = normalizarNumeroDocumento(numero);
+            if (!numeroDocumento.isEmpty()) {
+                normalizados.add(numeroDocumento);
+            }
+        }
+        for (String numeroDocumento : normalizados) {
+            DnicCiudadanoCache.Consulta cacheada = cache.obtener(tipoDocumento, numeroDocumento);
+            if (cacheada == null) {
+                pendientes.add(numeroDocumento);
+            } else if (cacheada.isNoEncontrado()) {
+                resultado.noEncontrados.add(numeroDocumento);
+            } else {
+                resultado.encontrados.put(numeroDocumento, cacheada.getCiudadano());
+            }
+        }
+
+        int desdeCache = resultado.encontrados.size() + resultado.noEncontrados.size();
+        for (int desde = 0; desde < pendientes.size(); desde += TAMANIO_LOTE) {
+            List<String> lote = pendientes.subList(desde, Math.min(desde + TAMANIO_LOTE, pendientes.size()));
+            consultarLote(tipoDocumento, lote, resultado);
+        }
+
+        LOGGER.info(String.format("Consulta DNIC en lote: %d documentos, %d desde cache, %d lotes SOAP, "
+                + "%d no encontrados, %d con error",
+            resultado.encontrados.size() + resultado.noEncontrados.size() + resultado.conError.size(),
+            desdeCache,
+            (pendientes.size() + TAMANIO_LOTE - 1) / TAMANIO_LOTE,
+            resultado.noEncontrados.size(), resultado.conError.size()));
+        return resultado;
+    }
+
+    private void consultarLote(String tipoDocumento, List<String> lote, ResultadoLote resultado) {
+        hcen.central.inus.ws.dnic.TipoDocumento tipoSOAP = convertirTipoDocumentoASOAP(tipoDocumento);
+        SolicitudCiudadanos solicitud = new SolicitudCiudadanos();
+        for (String numeroDocumento : lote) {
+            SolicitudCiudadano documento = new SolicitudCiudadano();
+            documento.setTipoDoc(tipoSOAP);
+            documento.setNroDoc(numeroDocumento);
+            solicitud.getDocumento().add(documento);
+        }
 
-        // 2. Configurar endpoint del servicio en runtime
-        String endpoint = System.getProperty(DNIC_ENDPOINT_PROPERTY, DEFAULT_DNIC_ENDPOINT);
+        CiudadanoPortType port = puertoPool.tomar();
+        RespuestaCiudadanos respuesta;
+        try {
+            respuesta = port.obtenerCiudadanos(solicitud);
+            puertoPool.devolver(port);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error consultando DNIC en lote (" + lote.size() + " documentos): "
+                + e.getMessage(), e);
+            resultado.conError.addAll(lote);
+            return;
+        }
 
-        BindingProvider bindingProvider = (BindingProvider) port;
-        bindingProvider.getRequestContext().put(
-            BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
-            endpoint
-        );
+        Set<String> respondidos = new HashSet<>();
+        for (RespuestaCiudadano ciudadano : respuesta.getCiudadano()) {
+            DnicCiudadanoDTO dto = mapearRespuestaADTO(ciudadano);
+            cache.registrar(tipoDocumento, ciudadano.getNroDoc(), dto);
+            resultado.encontrados.put(ciudadano.getNroDoc(), dto);
+            respondidos.add(ciudadano.getNroDoc());
+        }
+        for (CiudadanoNoEncontradoFault noEncontrado : respuesta.getNoEncontrado()) {
+            cache.registrarNoEncontrado(tipoDocumento, noEncontrado.getNroDoc());
+            resultado.noEncontrados.add(noEncontrado.getNroDoc());
+            respondidos.add(noEncontrado.getNroDoc());
+        }
+        for (String numeroDocumento : lote) {
+            if (!respondidos.contains(numeroDocumento)) {
+                resultado.conError.add(numeroDocumento);
+            }
+        }
+    }
 
-        LOGGER.info("Cliente SOAP DNIC creado. Endpoint: " + endpoint);
+    /**
+     * Número de documento tal como se consulta a DNIC y se guarda en la cache: sin espacios,
+     * puntos ni guiones ("1.234.567-8" -> "12345678")
+     */
+    public static String normalizarNumeroDocumento(String numeroDocumento) {
+        return numeroDocumento != null ? numeroDocumento.replaceAll("[\\s.\\-]", "") : "";
+    }
 
-        return port;
+    /**
+     * Contadores de la cache de consultas a DNIC
+     */
+    public CacheEstadisticas obtenerEstadisticasCache() {
+        return cache.getEstadisticas();
     }
 
     /**
@@ -204,4 +309,28 @@ public class DnicServiceClient {
         LOGGER.warning("No se pudo parsear fecha de nacimiento: " + fechaString);
         return null;
     }
+
+    /**
+     * Resultado de una consulta en lote, por número de documento
+     */
+    public static class ResultadoLote {
+        private final Map<String, DnicCiudadanoDTO> encontrados = new LinkedHashMap<>();
+        private final Set<String> noEncontrados = new LinkedHashSet<>();
+        private final Set<String> conError = new LinkedHashSet<>();
+
+        public Map<String, DnicCiudadanoDTO> getEncontrados() {
+            return encontrados;
+        }
+
+        public Set<String> getNoEncontrados() {
+            return noEncontrados;
+        }
+
+        /**
+         * Documentos que no pudieron consultarse (error de comunicación); pueden reintentarse
+         */
+        public Set<String> getConError() {
+            return conError;
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package hcen.central.inus.service;
+
+import hcen.central.inus.dto.CacheEstadisticas;
+import hcen.central.inus.dto.DocumentoClinicoDTO;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cache en memoria (por nodo) del detalle de documentos clínicos obtenido de los periféricos.
+ *
+ * Los documentos clínicos no se modifican una vez firmados, por lo que el detalle puede
+ * reutilizarse entre vistas de la historia clínica sin volver a consultar al periférico.
+ *
+ * - Acotada: al superar la capacidad se descarta la entrada menos usada (LRU)
+ * - TTL largo como revalidación: el periférico no expone versión ni ETag de los documentos,
+ *   así que pasado el TTL el detalle se vuelve a pedir
+ * - Los documentos no encontrados no se cachean (pueden estar aún sin sincronizar)
+ * - HistoriaClinicaService la invalida al registrar un documento
+ *
+ * Los DTO cacheados se comparten entre llamadas: deben tratarse como de solo lectura.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DocumentoClinicoCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DocumentoClinicoCache.class.getName());
+
+    private static final int CAPACIDAD_MAXIMA = 20_000;
+    private static final Duration TTL = Duration.ofHours(12);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private final Map<UUID, EntradaDocumento> entradas =
+        new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, EntradaDocumento> eldest) {
+                if (size() > CAPACIDAD_MAXIMA) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    /**
+     * Busca en la cache el detalle vigente de los documentos indicados
+     *
+     * @return detalle por documentoId de los documentos cacheados (los ausentes o vencidos no se incluyen)
+     */
+    public Map<UUID, DocumentoClinicoDTO> obtenerTodos(Collection<UUID> documentoIds) {
+        Map<UUID, DocumentoClinicoDTO> encontrados = new HashMap<>();
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return encontrados;
+        }
+        LocalDateTime ahora = LocalDateTime.now();
+
+        synchronized (entradas) {
+            for (UUID documentoId : documentoIds) {
+                EntradaDocumento entrada = entradas.get(documentoId);
+                if (entrada != null && entrada.venceEn.isAfter(ahora)) {
+                    encontrados.put(documentoId, entrada.documento);
+                } else if (entrada != null) {
+                    entradas.remove(documentoId);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+        hits.addAndGet(encontrados.size());
+        misses.addAndGet(documentoIds.size() - encontrados.size());
+        return encontrados;
+    }
+
+    /**
+     * Registra el detalle de documentos obtenidos del periférico
+     */
+    public void registrarTodos(Map<UUID, DocumentoClinicoDTO> documentos) {
+        if (documentos == null || documentos.isEmpty()) {
+            return;
+        }
+        LocalDateTime venceEn = LocalDateTime.now().plus(TTL);
+        synchronized (entradas) {
+            documentos.forEach((documentoId, documento) ->
+                entradas.put(documentoId, new EntradaDocumento(documento, venceEn)));
+        }
+    }
+
+    /**
+     * Descarta el detalle cacheado de un documento
+     */
+    public void invalidar(UUID documentoId) {
+        if (documentoId == null) {
+            return;
+        }
+        boolean eliminada;
+        synchronized (entradas) {
+            eliminada = entradas.remove(documentoId) != null;
+        }
+        if (eliminada) {
+            invalidaciones.incrementAndGet();
+            LOGGER.fine("Cache de documentos invalidada: documento=" + documentoId);
+        }
+    }
+
+    /**
+     * Descarta el detalle cacheado de varios documentos
+     */
+    public void invalidarTodos(Collection<UUID> documentoIds) {
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return;
+        }
+        int eliminadas = 0;
+        synchronized (entradas) {
+            for (UUID documentoId : documentoIds) {
+                if (entradas.remove(documentoId) != null) {
+                    eliminadas++;
+                }
+            }
+        }
+        invalidaciones.addAndGet(eliminadas);
+    }
+
+    /**
+     * Descarta todo el detalle cacheado
+     */
+    public void invalidarTodo() {
+        int eliminadas;
+        synchronized (entradas) {
+            eliminadas = entradas.size();
+            entradas.clear();
+        }
+        invalidaciones.addAndGet(eliminadas);
+        LOGGER.fine(String.format("Cache de documentos vaciada: entradas=%d", eliminadas));
+    }
+
+    /**
+     * Devuelve los contadores actuales de la cache
+     */
+    public CacheEstadisticas getEstadisticas() {
+        int tamanio;
+        synchronized (entradas) {
+            tamanio = entradas.size();
+        }
+        return new CacheEstadisticas(hits.get(), misses.get(), evictions.get(),
+            invalidaciones.get(), tamanio);
+    }
+
+    private static final class EntradaDocumento {
+        private final DocumentoClinicoDTO documento;
+        private final LocalDateTime venceEn;
+
+        private EntradaDocumento(DocumentoClinicoDTO documento, LocalDateTime venceEn) {
+            this.documento = documento;
+            this.venceEn = venceEn;
+        }
+    }
+}
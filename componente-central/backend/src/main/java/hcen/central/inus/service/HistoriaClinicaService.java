@@ -2,24 +2,40 @@ package hcen.central.inus.service;
 
 import hcen.central.inus.dao.HistoriaClinicaDAO;
 import hcen.central.inus.dao.UsuarioSaludDAO;
+import hcen.central.inus.dto.CacheEstadisticas;
 import hcen.central.inus.dto.DocumentoClinicoDTO;
+import hcen.central.inus.dto.DocumentoSincronizacionMessage;
 import hcen.central.inus.dto.HistoriaClinicaDocumentoDetalleResponse;
 import hcen.central.inus.dto.HistoriaClinicaIdResponse;
+import hcen.central.inus.dto.RegistroDocumentosResultado;
 import hcen.central.inus.entity.UsuarioSalud;
 import hcen.central.inus.entity.historia_clinica;
 import hcen.central.inus.entity.historia_clinica_documento;
+import hcen.central.inus.exception.PerifericoNoDisponibleException;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -37,6 +53,17 @@ public class HistoriaClinicaService {
     @EJB
     private PerifericoDocumentosClient perifericoDocumentosClient;
 
+    @EJB
+    private DocumentoClinicoCache documentoCache;
+
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ManagedExecutorService executorService;
+
+    /**
+     * Tiempo máximo de espera por el detalle de los periféricos al armar una historia
+     */
+    private static final Duration DEADLINE_PERIFERICOS = Duration.ofSeconds(8);
+
     private static final DateTimeFormatter ISO = DateTimeFormatter.ISO_DATE_TIME;
 
     public UUID registrarDocumento(String cedula, UUID tenantId, UUID documentoId) {
@@ -73,9 +100,85 @@ public class HistoriaClinicaService {
             historiaDAO.save(historia);
         }
 
+        // Un documento re-sincronizado puede traer detalle nuevo desde el periférico
+        documentoCache.invalidar(documentoId);
+
         return historia.getId();
     }
 
+    /**
+     * Variante batch de {@link #registrarDocumento}: registra N documentos (cédula, tenant, documento)
+     * resolviendo usuarios, historias y documentos existentes con una consulta IN cada uno,
+     * e insertando los documentos nuevos en lotes JDBC.
+     *
+     * @param documentos Documentos a registrar
+     * @return Historia asignada a cada documento registrado y error de los rechazados
+     */
+    public RegistroDocumentosResultado registrarDocumentos(List<DocumentoSincronizacionMessage> documentos) {
+        RegistroDocumentosResultado resultado = new RegistroDocumentosResultado();
+        if (documentos == null || documentos.isEmpty()) {
+            return resultado;
+        }
+
+        Set<String> cedulas = new HashSet<>();
+        Set<UUID> documentoIds = new LinkedHashSet<>();
+        for (DocumentoSincronizacionMessage documento : documentos) {
+            if (documento != null && documento.isValid()) {
+                cedulas.add(documento.getCedula().trim());
+                documentoIds.add(documento.getDocumentoId());
+            }
+        }
+
+        Map<String, UsuarioSalud> usuarios = usuarioSaludDAO.findByCedulas(cedulas);
+        Map<String, historia_clinica> historias = historiaDAO.findByCedulas(usuarios.keySet());
+        Map<UUID, UUID> existentes = historiaDAO.findHistoriaIdsByDocumentos(documentoIds);
+
+        List<historia_clinica_documento> nuevos = new ArrayList<>();
+        Set<historia_clinica> actualizadas = new HashSet<>();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        for (DocumentoSincronizacionMessage documento : documentos) {
+            if (documento == null || !documento.isValid()) {
+                if (documento != null && documento.getDocumentoId() != null) {
+                    resultado.error(documento.getDocumentoId(), "Datos del documento incompletos");
+                }
+                continue;
+            }
+
+            String cedula = documento.getCedula().trim();
+            UsuarioSalud usuario = usuarios.get(cedula);
+            if (usuario == null) {
+                resultado.error(documento.getDocumentoId(),
+                    "El usuario con cédula " + cedula + " no existe en el componente central");
+                continue;
+            }
+
+            historia_clinica historia = historias.computeIfAbsent(cedula, c -> crearHistoria(usuario));
+
+            if (!historia.getId().equals(existentes.get(documento.getDocumentoId()))) {
+                historia_clinica_documento doc = new historia_clinica_documento();
+                doc.setHistoriaClinica(historia);
+                doc.setDocumentoId(documento.getDocumentoId());
+                doc.setTenantId(documento.getTenantId());
+                doc.setFecRegistro(ahora);
+                nuevos.add(doc);
+                existentes.put(documento.getDocumentoId(), historia.getId());
+                actualizadas.add(historia);
+            }
+            resultado.registrado(documento.getDocumentoId(), historia.getId());
+        }
+
+        historiaDAO.saveDocumentos(nuevos);
+        documentoCache.invalidarTodos(documentoIds);
+        // Las historias son entidades administradas: el cambio se sincroniza al confirmar la transacción
+        actualizadas.forEach(historia -> historia.setFecActualizacion(ahora));
+
+        LOGGER.info(String.format("Registro batch de documentos: %d recibidos, %d nuevos, %d errores",
+            documentos.size(), nuevos.size(), resultado.getErrores().size()));
+
+        return resultado;
+    }
+
     /**
      * Obtiene el ID de la historia clínica de un paciente por su cédula
      *
@@ -114,44 +217,102 @@ public class HistoriaClinicaService {
             .orElse(Collections.emptyList());
     }
 
+    /**
+     * Contadores de la cache de detalle de documentos de este nodo
+     */
+    public CacheEstadisticas obtenerEstadisticasCacheDocumentos() {
+        return documentoCache.getEstadisticas();
+    }
+
     private List<HistoriaClinicaDocumentoDetalleResponse> mapearDocumentos(historia_clinica historia, String cedula) {
         List<historia_clinica_documento> documentos = historiaDAO.findDocumentosByHistoria(historia.getId());
         if (documentos == null || documentos.isEmpty()) {
             return Collections.emptyList();
         }
 
-        // Agrupar documentos por tenantId para batch fetching
-        Map<UUID, List<historia_clinica_documento>> documentosPorTenant = documentos.stream()
-            .collect(Collectors.groupingBy(historia_clinica_documento::getTenantId));
+        // Detalle ya cacheado: no requiere llamar al periférico
+        Map<UUID, DocumentoClinicoDTO> documentosDetalleMap = new HashMap<>(documentoCache.obtenerTodos(
+            documentos.stream().map(historia_clinica_documento::getDocumentoId).collect(Collectors.toList())));
 
-        // Batch fetch: hacer una llamada HTTP por tenant
-        Map<UUID, DocumentoClinicoDTO> documentosDetalleMap = new HashMap<>();
-        for (Map.Entry<UUID, List<historia_clinica_documento>> entry : documentosPorTenant.entrySet()) {
-            UUID tenantId = entry.getKey();
-            List<UUID> documentoIds = entry.getValue().stream()
-                .map(historia_clinica_documento::getDocumentoId)
-                .collect(Collectors.toList());
+        // Agrupar por tenantId los documentos no cacheados para batch fetching
+        Map<UUID, List<UUID>> idsPorTenant = documentos.stream()
+            .filter(doc -> !documentosDetalleMap.containsKey(doc.getDocumentoId()))
+            .collect(Collectors.groupingBy(historia_clinica_documento::getTenantId,
+                Collectors.mapping(historia_clinica_documento::getDocumentoId, Collectors.toList())));
 
-            // Una sola llamada HTTP por tenant (en lugar de N llamadas)
-            List<DocumentoClinicoDTO> batch = perifericoDocumentosClient.obtenerDocumentosBatch(documentoIds, tenantId);
-            for (DocumentoClinicoDTO dto : batch) {
-                if (dto.getId() != null) {
-                    documentosDetalleMap.put(UUID.fromString(dto.getId()), dto);
-                }
-            }
-        }
+        Set<UUID> tenantsSinRespuesta = obtenerDetallesPorTenant(idsPorTenant, documentosDetalleMap);
 
         // Mapear con lookup en memoria (sin HTTP calls)
         return documentos.stream()
-            .map(doc -> construirDetalle(historia, doc, cedula, documentosDetalleMap))
+            .map(doc -> construirDetalle(historia, doc, cedula, documentosDetalleMap,
+                tenantsSinRespuesta.contains(doc.getTenantId())))
             .collect(Collectors.toList());
     }
 
+    /**
+     * Consulta en paralelo a cada periférico (una llamada batch por tenant) con un deadline global:
+     * la latencia queda acotada por la clínica más lenta (o el deadline), no por la suma de todas.
+     *
+     * @param idsPorTenant documentos a consultar agrupados por tenant
+     * @param destino mapa donde se agregan los detalles obtenidos
+     * @return tenants que fallaron o no respondieron antes del deadline
+     */
+    private Set<UUID> obtenerDetallesPorTenant(Map<UUID, List<UUID>> idsPorTenant,
+                                               Map<UUID, DocumentoClinicoDTO> destino) {
+        if (idsPorTenant.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Map<UUID, CompletableFuture<Map<UUID, DocumentoClinicoDTO>>> consultas = new HashMap<>();
+        idsPorTenant.forEach((tenantId, documentoIds) -> consultas.put(tenantId,
+            CompletableFuture.supplyAsync(() -> consultarPeriferico(documentoIds, tenantId), executorService)));
+
+        try {
+            CompletableFuture.allOf(consultas.values().toArray(new CompletableFuture[0]))
+                .get(DEADLINE_PERIFERICOS.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warning("Deadline de consulta a periféricos vencido; se devuelven resultados parciales");
+        } catch (ExecutionException e) {
+            // Los fallos se registran por tenant más abajo
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Set<UUID> sinRespuesta = new HashSet<>();
+        consultas.forEach((tenantId, consulta) -> {
+            if (consulta.isDone() && !consulta.isCompletedExceptionally()) {
+                destino.putAll(consulta.join());
+            } else {
+                sinRespuesta.add(tenantId);
+                LOGGER.log(Level.WARNING, "Sin detalle del periférico para tenant {0}: {1}",
+                    new Object[]{tenantId, consulta.isDone() ? "error en la consulta" : "no respondió a tiempo"});
+            }
+        });
+        return sinRespuesta;
+    }
+
+    private Map<UUID, DocumentoClinicoDTO> consultarPeriferico(List<UUID> documentoIds, UUID tenantId) {
+        try {
+            Map<UUID, DocumentoClinicoDTO> obtenidos = new HashMap<>();
+            for (DocumentoClinicoDTO dto : perifericoDocumentosClient.obtenerDocumentosBatch(documentoIds, tenantId)) {
+                if (dto.getId() != null) {
+                    obtenidos.put(UUID.fromString(dto.getId()), dto);
+                }
+            }
+            // Se cachea aunque la respuesta llegue después del deadline: la próxima vista la aprovecha
+            documentoCache.registrarTodos(obtenidos);
+            return obtenidos;
+        } catch (PerifericoNoDisponibleException e) {
+            throw new CompletionException(e);
+        }
+    }
+
     private HistoriaClinicaDocumentoDetalleResponse construirDetalle(
             historia_clinica historia,
             historia_clinica_documento doc,
             String cedula,
-            Map<UUID, DocumentoClinicoDTO> documentosDetalleMap) {
+            Map<UUID, DocumentoClinicoDTO> documentosDetalleMap,
+            boolean clinicaSinRespuesta) {
 
         HistoriaClinicaDocumentoDetalleResponse dto = new HistoriaClinicaDocumentoDetalleResponse();
         dto.setHistoriaId(historia.getId() != null ? historia.getId().toString() : null);
@@ -164,6 +325,9 @@ public class HistoriaClinicaService {
         DocumentoClinicoDTO periferico = documentosDetalleMap.get(doc.getDocumentoId());
         if (periferico != null) {
             aplicarDetalleDesdePeriferico(dto, periferico);
+            dto.setDetalleDisponible(true);
+        } else if (clinicaSinRespuesta) {
+            dto.setErrorDetalle("La clínica no respondió; el detalle del documento no está disponible");
         }
 
         return dto;
@@ -1,22 +1,29 @@
 package hcen.central.inus.service;
 
 import hcen.central.inus.dto.DocumentoClinicoDTO;
+import hcen.central.inus.exception.PerifericoNoDisponibleException;
 import jakarta.ejb.Stateless;
 import jakarta.json.Json;
-import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonValue;
 import jakarta.json.JsonString;
+import jakarta.json.stream.JsonParser;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -36,6 +43,11 @@ public class PerifericoDocumentosClient {
 
     private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(15);
 
+    /**
+     * Máximo de IDs por request batch (debe ser <= al máximo que acepta el periférico)
+     */
+    private static final int TAMANIO_CHUNK_BATCH = 200;
+
     private final HttpClient httpClient = HttpClient.newBuilder()
         .connectTimeout(DEFAULT_TIMEOUT)
         .build();
@@ -70,70 +82,124 @@ public class PerifericoDocumentosClient {
     }
 
     /**
-     * Obtiene múltiples documentos del periférico en una sola llamada HTTP (batch cross-tenant)
+     * Obtiene múltiples documentos del periférico en llamadas HTTP batch de hasta TAMANIO_CHUNK_BATCH IDs (cross-tenant)
      * Optimización para evitar N+1 queries
      * NO filtra por tenant - retorna documentos de cualquier clínica
      *
      * @param documentoIds Lista de UUIDs de documentos
      * @param tenantId UUID del tenant (DEPRECADO - se ignora, se mantiene por compatibilidad)
      * @return Lista de DocumentoClinicoDTO (puede contener menos elementos si algunos no se encuentran)
+     * @throws PerifericoNoDisponibleException si el periférico no responde o responde con error
      */
-    public List<DocumentoClinicoDTO> obtenerDocumentosBatch(List<UUID> documentoIds, UUID tenantId) {
+    public List<DocumentoClinicoDTO> obtenerDocumentosBatch(List<UUID> documentoIds, UUID tenantId)
+            throws PerifericoNoDisponibleException {
         List<DocumentoClinicoDTO> resultados = new ArrayList<>();
 
         if (documentoIds == null || documentoIds.isEmpty()) {
             return resultados;
         }
 
+        // Chunking automático: cada request lleva como máximo TAMANIO_CHUNK_BATCH IDs
+        for (int desde = 0; desde < documentoIds.size(); desde += TAMANIO_CHUNK_BATCH) {
+            List<UUID> chunk = documentoIds.subList(desde, Math.min(desde + TAMANIO_CHUNK_BATCH, documentoIds.size()));
+            resultados.addAll(obtenerChunk(chunk));
+        }
+
+        LOGGER.info("Obtenidos " + resultados.size() + " documentos del periférico en batch para tenant " + tenantId);
+        return resultados;
+    }
+
+    /**
+     * Obtiene un chunk de documentos vía POST /documentos/batch (IDs en el cuerpo, respuesta en streaming).
+     * Si el periférico aún no expone el endpoint (404/405) usa el GET con ?ids= anterior.
+     */
+    private List<DocumentoClinicoDTO> obtenerChunk(List<UUID> documentoIds) throws PerifericoNoDisponibleException {
         try {
-            // Construir query params con IDs separados por comas
-            String idsParam = documentoIds.stream()
-                .map(UUID::toString)
-                .collect(java.util.stream.Collectors.joining(","));
+            JsonArrayBuilder ids = Json.createArrayBuilder();
+            documentoIds.forEach(id -> ids.add(id.toString()));
 
             // NO enviar tenantId - queremos documentos de todos los tenants
-            String url = String.format("%s/documentos?ids=%s",
-                peripheralBaseUrl, idsParam);
+            String body = Json.createObjectBuilder().add("ids", ids).build().toString();
 
             HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(url))
+                .uri(URI.create(peripheralBaseUrl + "/documentos/batch"))
                 .timeout(DEFAULT_TIMEOUT)
-                .GET()
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == 200) {
-                resultados = parseDocumentosList(response.body());
-                LOGGER.info("Obtenidos " + resultados.size() + " documentos del periférico en batch para tenant " + tenantId);
-            } else {
-                LOGGER.log(Level.WARNING, "Fallo al obtener documentos batch del periférico. Código {0}, cuerpo: {1}",
-                    new Object[]{response.statusCode(), response.body()});
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() == 404 || response.statusCode() == 405) {
+                response.body().close();
+                LOGGER.fine("El periférico no expone POST /documentos/batch, usando GET con ids");
+                response = httpClient.send(crearRequestBatchLegacy(documentoIds), HttpResponse.BodyHandlers.ofInputStream());
             }
+            return leerRespuestaBatch(response);
 
+        } catch (PerifericoNoDisponibleException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PerifericoNoDisponibleException("Consulta de documentos al periférico interrumpida", e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error al consultar documentos batch en el periférico", e);
+            throw new PerifericoNoDisponibleException("Error al consultar documentos en el periférico: " + e.getMessage(), e);
         }
+    }
 
-        return resultados;
+    private HttpRequest crearRequestBatchLegacy(List<UUID> documentoIds) {
+        // Construir query params con IDs separados por comas
+        String idsParam = documentoIds.stream()
+            .map(UUID::toString)
+            .collect(java.util.stream.Collectors.joining(","));
+
+        return HttpRequest.newBuilder()
+            .uri(URI.create(String.format("%s/documentos?ids=%s", peripheralBaseUrl, idsParam)))
+            .timeout(DEFAULT_TIMEOUT)
+            .GET()
+            .build();
+    }
+
+    private List<DocumentoClinicoDTO> leerRespuestaBatch(HttpResponse<InputStream> response)
+            throws IOException, PerifericoNoDisponibleException {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 200) {
+                return parseDocumentosList(body);
+            }
+            LOGGER.log(Level.WARNING, "Fallo al obtener documentos batch del periférico. Código {0}, cuerpo: {1}",
+                new Object[]{response.statusCode(), new String(body.readAllBytes(), StandardCharsets.UTF_8)});
+            throw new PerifericoNoDisponibleException(
+                "El periférico respondió con código " + response.statusCode());
+        }
     }
 
     /**
-     * Parsea un array JSON de documentos clínicos
-     * Maneja tanto arrays como objetos de error
+     * Parsea un array JSON de documentos clínicos en streaming (JsonParser): no carga el cuerpo
+     * completo en memoria ni construye el árbol del array, cada documento se mapea directamente al DTO.
+     * Maneja tanto arrays como objetos de error.
+     *
+     * Un cuerpo vacío, truncado o malformado (el periférico ya había enviado el 200) se trata como
+     * fallo: nunca se devuelve una lista parcial que luego quedaría cacheada como si fuera completa.
+     *
+     * @throws PerifericoNoDisponibleException si la respuesta no es un JSON completo y válido
      */
-    private List<DocumentoClinicoDTO> parseDocumentosList(String json) {
+    private List<DocumentoClinicoDTO> parseDocumentosList(InputStream json) throws PerifericoNoDisponibleException {
         List<DocumentoClinicoDTO> documentos = new ArrayList<>();
-        try (JsonReader reader = Json.createReader(new StringReader(json))) {
-            JsonValue rootValue = reader.readValue();
+        try (JsonParser parser = Json.createParser(json)) {
+            if (!parser.hasNext()) {
+                throw new PerifericoNoDisponibleException("El periférico respondió con un cuerpo vacío");
+            }
+            JsonParser.Event inicio = parser.next();
 
             // Verificar si es un objeto (posible error) o un array
-            if (rootValue.getValueType() == JsonValue.ValueType.OBJECT) {
-                JsonObject obj = rootValue.asJsonObject();
+            if (inicio == JsonParser.Event.START_OBJECT) {
+                JsonObject obj = parser.getObject();
 
                 // Si tiene campo "error", es un ErrorResponse del periférico
                 if (obj.containsKey("error")) {
                     String errorMsg = obj.getString("error", "Error desconocido");
                     LOGGER.log(Level.WARNING, "El periférico retornó un error: {0}", errorMsg);
+                    throw new PerifericoNoDisponibleException("El periférico retornó un error: " + errorMsg);
                 } else {
                     // Podría ser un solo documento en formato objeto
                     parseDocumentoFromObject(obj).ifPresent(documentos::add);
@@ -141,21 +207,60 @@ public class PerifericoDocumentosClient {
                 return documentos;
             }
 
-            // Si es un array, procesarlo normalmente
-            if (rootValue.getValueType() == JsonValue.ValueType.ARRAY) {
-                JsonArray array = rootValue.asJsonArray();
-                for (JsonValue value : array) {
-                    if (value.getValueType() == JsonValue.ValueType.OBJECT) {
-                        JsonObject obj = value.asJsonObject();
-                        parseDocumentoFromObject(obj).ifPresent(documentos::add);
-                    }
+            if (inicio != JsonParser.Event.START_ARRAY) {
+                throw new PerifericoNoDisponibleException("Respuesta inesperada del periférico: " + inicio);
+            }
+
+            // Array: procesarlo elemento a elemento hasta su END_ARRAY
+            while (parser.hasNext()) {
+                JsonParser.Event evento = parser.next();
+                if (evento == JsonParser.Event.START_OBJECT) {
+                    leerDocumento(parser).ifPresent(documentos::add);
+                } else if (evento == JsonParser.Event.START_ARRAY) {
+                    parser.skipArray();
+                } else if (evento == JsonParser.Event.END_ARRAY) {
+                    return documentos;
                 }
             }
+            throw new PerifericoNoDisponibleException("JSON de documentos incompleto");
 
+        } catch (PerifericoNoDisponibleException e) {
+            throw e;
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error parseando documentos del periférico: " + json, e);
+            LOGGER.log(Level.SEVERE, "Error parseando documentos del periférico (leídos " + documentos.size() + ")", e);
+            throw new PerifericoNoDisponibleException(
+                "Respuesta del periférico truncada o malformada: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee un documento (el parser está posicionado en su START_OBJECT) hasta su END_OBJECT.
+     * Solo materializa como JsonValue los valores de cada campo, no el objeto completo.
+     */
+    private Optional<DocumentoClinicoDTO> leerDocumento(JsonParser parser) {
+        DocumentoClinicoDTO dto = new DocumentoClinicoDTO();
+        String campo = null;
+        boolean valido = true;
+
+        while (parser.hasNext()) {
+            JsonParser.Event evento = parser.next();
+            if (evento == JsonParser.Event.END_OBJECT) {
+                return valido ? Optional.of(dto) : Optional.empty();
+            }
+            if (evento == JsonParser.Event.KEY_NAME) {
+                campo = parser.getString();
+                continue;
+            }
+            // Valor del campo actual (getValue consume también objetos/arrays anidados)
+            JsonValue valor = parser.getValue();
+            try {
+                asignarCampo(dto, campo, valor);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error parseando documento individual", e);
+                valido = false;
+            }
         }
-        return documentos;
+        throw new IllegalStateException("JSON de documento incompleto");
     }
 
     /**
@@ -164,48 +269,88 @@ public class PerifericoDocumentosClient {
     private Optional<DocumentoClinicoDTO> parseDocumentoFromObject(JsonObject root) {
         try {
             DocumentoClinicoDTO dto = new DocumentoClinicoDTO();
+            for (Map.Entry<String, JsonValue> entry : root.entrySet()) {
+                asignarCampo(dto, entry.getKey(), entry.getValue());
+            }
+            return Optional.of(dto);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error parseando documento individual", e);
+            return Optional.empty();
+        }
+    }
 
+    /**
+     * Asigna un campo del JSON del periférico al DTO (campos desconocidos se ignoran)
+     */
+    private void asignarCampo(DocumentoClinicoDTO dto, String campo, JsonValue valor) {
+        switch (campo) {
             // Campos básicos
-            dto.setId(root.getString("id", null));
-            dto.setTenantId(root.getString("tenantId", null));
-            dto.setFecCreacion(getStringSafe(root, "fecCreacion"));
-            dto.setFechaInicioDiagnostico(getStringSafe(root, "fechaInicioDiagnostico"));
-
+            case "id":
+                dto.setId(texto(valor));
+                break;
+            case "tenantId":
+                dto.setTenantId(texto(valor));
+                break;
+            case "fecCreacion":
+                dto.setFecCreacion(valorComoString(valor));
+                break;
+            case "fechaInicioDiagnostico":
+                dto.setFechaInicioDiagnostico(valorComoString(valor));
+                break;
             // Motivo de consulta
-            dto.setCodigoMotivoConsulta(root.getString("codigoMotivoConsulta", null));
-            dto.setNombreMotivoConsulta(root.getString("nombreMotivoConsulta", null));
-
+            case "codigoMotivoConsulta":
+                dto.setCodigoMotivoConsulta(texto(valor));
+                break;
+            case "nombreMotivoConsulta":
+                dto.setNombreMotivoConsulta(texto(valor));
+                break;
             // Profesional
-            dto.setNombreCompletoProfesional(root.getString("nombreCompletoProfesional", null));
-            dto.setEspecialidadProfesional(root.getString("especialidadProfesional", null));
-            if (root.containsKey("profesionalCi") && !root.isNull("profesionalCi")) {
-                try {
-                    dto.setProfesionalCi(root.getInt("profesionalCi"));
-                } catch (Exception ignored) {
-                    dto.setProfesionalCi(null);
-                }
-            }
-
+            case "nombreCompletoProfesional":
+                dto.setNombreCompletoProfesional(texto(valor));
+                break;
+            case "especialidadProfesional":
+                dto.setEspecialidadProfesional(texto(valor));
+                break;
+            case "profesionalCi":
+                dto.setProfesionalCi(valor.getValueType() == JsonValue.ValueType.NUMBER
+                    ? ((JsonNumber) valor).intValue() : null);
+                break;
             // Clínica
-            dto.setNombreClinica(root.getString("nombreClinica", null));
-
+            case "nombreClinica":
+                dto.setNombreClinica(texto(valor));
+                break;
             // Diagnóstico
-            dto.setDescripcionDiagnostico(root.getString("descripcionDiagnostico", null));
-            dto.setNombreEstadoProblema(root.getString("nombreEstadoProblema", null));
-            dto.setNombreGradoCerteza(root.getString("nombreGradoCerteza", null));
-
+            case "descripcionDiagnostico":
+                dto.setDescripcionDiagnostico(texto(valor));
+                break;
+            case "nombreEstadoProblema":
+                dto.setNombreEstadoProblema(texto(valor));
+                break;
+            case "nombreGradoCerteza":
+                dto.setNombreGradoCerteza(texto(valor));
+                break;
             // Instrucciones de seguimiento
-            dto.setFechaProximaConsulta(getStringSafe(root, "fechaProximaConsulta"));
-            dto.setDescripcionProximaConsulta(root.getString("descripcionProximaConsulta", null));
-            dto.setReferenciaAlta(root.getString("referenciaAlta", null));
-
-            return Optional.of(dto);
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error parseando documento individual", e);
-            return Optional.empty();
+            case "fechaProximaConsulta":
+                dto.setFechaProximaConsulta(valorComoString(valor));
+                break;
+            case "descripcionProximaConsulta":
+                dto.setDescripcionProximaConsulta(texto(valor));
+                break;
+            case "referenciaAlta":
+                dto.setReferenciaAlta(texto(valor));
+                break;
+            default:
+                break;
         }
     }
 
+    /**
+     * Valor string del campo, o null si es null u otro tipo (igual que JsonObject.getString(key, null))
+     */
+    private static String texto(JsonValue valor) {
+        return valor.getValueType() == JsonValue.ValueType.STRING ? ((JsonString) valor).getString() : null;
+    }
+
     private Optional<DocumentoClinicoDTO> parseDocumento(String json) {
         try (JsonReader reader = Json.createReader(new StringReader(json))) {
             JsonObject root = reader.readObject();
@@ -276,31 +421,37 @@ public class PerifericoDocumentosClient {
             return null;
         }
         try {
-            JsonValue value = root.get(key);
-            if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
-                return null;
-            }
-            if (value.getValueType() == JsonValue.ValueType.STRING) {
-                return ((JsonString) value).getString();
-            }
-            if (value.getValueType() == JsonValue.ValueType.OBJECT) {
-                JsonObject obj = value.asJsonObject();
-                if (obj.containsKey("year") && obj.containsKey("month") && obj.containsKey("day")) {
-                    try {
-                        int year = obj.getInt("year");
-                        int month = obj.getInt("month");
-                        int day = obj.getInt("day");
-                        return java.time.LocalDate.of(year, month, day).toString();
-                    } catch (Exception ignored) {
-                        // Si falla, devolvemos el JSON como string
-                    }
-                }
-                return obj.toString();
-            }
-            return value.toString();
+            return valorComoString(root.get(key));
         } catch (Exception e) {
             LOGGER.log(Level.FINE, "No se pudo extraer campo " + key + " como String", e);
             return null;
         }
     }
+
+    /**
+     * Convierte un valor JSON a string tolerando diferentes tipos de fecha (string u objeto con year/month/day)
+     */
+    private String valorComoString(JsonValue value) {
+        if (value == null || value.getValueType() == JsonValue.ValueType.NULL) {
+            return null;
+        }
+        if (value.getValueType() == JsonValue.ValueType.STRING) {
+            return ((JsonString) value).getString();
+        }
+        if (value.getValueType() == JsonValue.ValueType.OBJECT) {
+            JsonObject obj = value.asJsonObject();
+            if (obj.containsKey("year") && obj.containsKey("month") && obj.containsKey("day")) {
+                try {
+                    int year = obj.getInt("year");
+                    int month = obj.getInt("month");
+                    int day = obj.getInt("day");
+                    return java.time.LocalDate.of(year, month, day).toString();
+                } catch (Exception ignored) {
+                    // Si falla, devolvemos el JSON como string
+                }
+            }
+            return obj.toString();
+        }
+        return value.toString();
+    }
 }
@@ -47,7 +47,8 @@ public class PerifericoUsuariosClient {
                                                             String apellido,
                                                             int limit) {
         try {
-            StringBuilder urlBuilder = new StringBuilder(peripheralBaseUrl).append("/profesionales?");
+            // Directorio de todas las clínicas: búsqueda indexada con paginación por cursor (primera página)
+            StringBuilder urlBuilder = new StringBuilder(peripheralBaseUrl).append("/profesionales/directorio?");
 
             boolean hasParam = false;
 
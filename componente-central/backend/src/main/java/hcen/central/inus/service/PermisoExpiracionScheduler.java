@@ -0,0 +1,175 @@
+package hcen.central.inus.service;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Motor de expiración de permisos de acceso.
+ *
+ * Cada 30 segundos recorre, en orden de fecha de expiración, los permisos ACTIVOS ya vencidos
+ * en lotes pequeños (cada lote en su propia transacción) hasta un máximo por ciclo, de modo
+ * que nunca bloquea POLITICA_ACCESO con un UPDATE masivo. Cada permiso expirado emite un
+ * PermisoExpiradoEvent. Expone métricas de retraso y throughput.
+ *
+ * Concurrencia gestionada por el bean: leer las métricas nunca espera a un ciclo en curso,
+ * y un ciclo que se dispara mientras el anterior sigue corriendo se omite.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PermisoExpiracionScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(PermisoExpiracionScheduler.class.getName());
+
+    private static final int TAMANIO_LOTE = 100;
+    private static final int MAX_LOTES_POR_CICLO = 20;
+
+    @EJB
+    private PoliticaAccesoService politicaService;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+
+    private volatile MetricasExpiracion metricas = new MetricasExpiracion();
+
+    @Schedule(second = "*/30", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void ejecutarCiclo() {
+        if (!enCurso.compareAndSet(false, true)) {
+            LOGGER.fine("Ciclo de expiración anterior todavía en curso, se omite este disparo");
+            return;
+        }
+        try {
+            ejecutarLotes();
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    private void ejecutarLotes() {
+        long inicio = System.nanoTime();
+        int expirados = 0;
+        int lotes = 0;
+
+        try {
+            int expiradosLote;
+            do {
+                expiradosLote = politicaService.expirarLote(TAMANIO_LOTE);
+                expirados += expiradosLote;
+                lotes++;
+            } while (expiradosLote == TAMANIO_LOTE && lotes < MAX_LOTES_POR_CICLO);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error en el ciclo de expiración de permisos", e);
+        }
+
+        long duracionMs = Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+        Optional<LocalDateTime> pendienteMasAntiguo = Optional.empty();
+        try {
+            pendienteMasAntiguo = politicaService.obtenerVencimientoPendienteMasAntiguo();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudo calcular el retraso de expiración", e);
+        }
+
+        metricas = metricas.registrarCiclo(LocalDateTime.now(), expirados, lotes, duracionMs,
+            pendienteMasAntiguo.orElse(null));
+
+        if (expirados > 0) {
+            LOGGER.info(String.format("Ciclo de expiración: %d permisos en %d lotes (%d ms), pendiente más antiguo=%s",
+                expirados, lotes, duracionMs, pendienteMasAntiguo.orElse(null)));
+        }
+    }
+
+    public MetricasExpiracion getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Métricas del motor de expiración (inmutables, se reemplazan en cada ciclo)
+     */
+    public static class MetricasExpiracion {
+        private final LocalDateTime ultimaEjecucion;
+        private final int ultimosExpirados;
+        private final int ultimosLotes;
+        private final long ultimaDuracionMs;
+        private final double permisosPorSegundo;
+        private final long totalExpirados;
+        private final long totalCiclos;
+        private final LocalDateTime vencimientoPendienteMasAntiguo;
+        private final long retrasoSegundos;
+
+        public MetricasExpiracion() {
+            this(null, 0, 0, 0, 0, 0, 0, null, 0);
+        }
+
+        private MetricasExpiracion(LocalDateTime ultimaEjecucion, int ultimosExpirados, int ultimosLotes,
+                                   long ultimaDuracionMs, double permisosPorSegundo, long totalExpirados,
+                                   long totalCiclos, LocalDateTime vencimientoPendienteMasAntiguo,
+                                   long retrasoSegundos) {
+            this.ultimaEjecucion = ultimaEjecucion;
+            this.ultimosExpirados = ultimosExpirados;
+            this.ultimosLotes = ultimosLotes;
+            this.ultimaDuracionMs = ultimaDuracionMs;
+            this.permisosPorSegundo = permisosPorSegundo;
+            this.totalExpirados = totalExpirados;
+            this.totalCiclos = totalCiclos;
+            this.vencimientoPendienteMasAntiguo = vencimientoPendienteMasAntiguo;
+            this.retrasoSegundos = retrasoSegundos;
+        }
+
+        private MetricasExpiracion registrarCiclo(LocalDateTime ahora, int expirados, int lotes, long duracionMs,
+                                                  LocalDateTime pendienteMasAntiguo) {
+            double throughput = duracionMs > 0 ? expirados * 1000.0 / duracionMs : expirados;
+            long retraso = pendienteMasAntiguo != null
+                ? Math.max(0, Duration.between(pendienteMasAntiguo, ahora).getSeconds())
+                : 0;
+            return new MetricasExpiracion(ahora, expirados, lotes, duracionMs, throughput,
+                totalExpirados + expirados, totalCiclos + 1, pendienteMasAntiguo, retraso);
+        }
+
+        public LocalDateTime getUltimaEjecucion() {
+            return ultimaEjecucion;
+        }
+
+        public int getUltimosExpirados() {
+            return ultimosExpirados;
+        }
+
+        public int getUltimosLotes() {
+            return ultimosLotes;
+        }
+
+        public long getUltimaDuracionMs() {
+            return ultimaDuracionMs;
+        }
+
+        public double getPermisosPorSegundo() {
+            return permisosPorSegundo;
+        }
+
+        public long getTotalExpirados() {
+            return totalExpirados;
+        }
+
+        public long getTotalCiclos() {
+            return totalCiclos;
+        }
+
+        public LocalDateTime getVencimientoPendienteMasAntiguo() {
+            return vencimientoPendienteMasAntiguo;
+        }
+
+        public long getRetrasoSegundos() {
+            return retrasoSegundos;
+        }
+    }
+}
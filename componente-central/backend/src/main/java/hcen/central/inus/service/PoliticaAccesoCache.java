@@ -0,0 +1,249 @@
+package hcen.central.inus.service;
+
+import hcen.central.inus.dto.CacheEstadisticas;
+import hcen.central.inus.event.PermisoExpiradoEvent;
+import hcen.central.inus.event.PermisoModificadoEvent;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.Singleton;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cache en memoria (por nodo) de decisiones de acceso a documentos clínicos.
+ *
+ * Guarda el resultado de validar (documentoId, ciProfesional, tenantId, especialidad)
+ * para evitar la consulta a POLITICA_ACCESO en cada apertura de documento.
+ *
+ * - Acotada: al superar la capacidad se descarta la entrada menos usada (LRU)
+ * - TTL consciente de la expiración: una decisión positiva nunca vive más allá de
+ *   la fecha de expiración más próxima de los permisos que la justifican
+ * - Las negativas usan un TTL corto, ya que un permiso otorgado en otro nodo
+ *   no invalida esta cache
+ * - Se invalida al confirmarse cada cambio de permisos (PermisoModificadoEvent). Una decisión
+ *   leída de la base antes de una invalidación de su documento no se registra (ver generacionActual)
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PoliticaAccesoCache {
+
+    private static final Logger LOGGER = Logger.getLogger(PoliticaAccesoCache.class.getName());
+
+    private static final int CAPACIDAD_MAXIMA = 10_000;
+    private static final Duration TTL_POSITIVO = Duration.ofMinutes(5);
+    private static final Duration TTL_NEGATIVO = Duration.ofSeconds(30);
+    private static final int MAX_INVALIDACIONES = 10_000;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private final Map<ClaveDecision, EntradaDecision> entradas =
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClaveDecision, EntradaDecision> eldest) {
+                if (size() > CAPACIDAD_MAXIMA) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    // Protegidos por el lock de entradas
+    private final Map<UUID, Long> invalidadoEn = new HashMap<>();
+    private long generacion;
+    private long generacionMinima;
+
+    /**
+     * Generación actual de invalidaciones. Debe tomarse antes de leer los permisos de la base
+     * y pasarse a registrar, que descarta la decisión si el documento se invalidó mientras tanto.
+     */
+    public long generacionActual() {
+        synchronized (entradas) {
+            return generacion;
+        }
+    }
+
+    /**
+     * Busca una decisión vigente en la cache
+     *
+     * @return la decisión cacheada, o vacío si no existe o ya venció
+     */
+    public Optional<Boolean> obtener(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad) {
+        ClaveDecision clave = new ClaveDecision(documentoId, ciProfesional, tenantId, especialidad);
+        LocalDateTime ahora = LocalDateTime.now();
+
+        synchronized (entradas) {
+            EntradaDecision entrada = entradas.get(clave);
+            if (entrada != null && entrada.venceEn.isAfter(ahora)) {
+                hits.incrementAndGet();
+                return Optional.of(entrada.permitido);
+            }
+            if (entrada != null) {
+                entradas.remove(clave);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Registra una decisión de acceso
+     *
+     * @param permitido resultado de la validación
+     * @param expiracionPermiso fecha de expiración más próxima de los permisos que habilitan
+     *                          el acceso (ignorada si permitido = false)
+     * @param generacionLectura generacionActual() tomada antes de consultar los permisos
+     */
+    public void registrar(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad,
+                          boolean permitido, LocalDateTime expiracionPermiso, long generacionLectura) {
+        LocalDateTime ahora = LocalDateTime.now();
+        LocalDateTime venceEn;
+
+        if (permitido) {
+            venceEn = ahora.plus(TTL_POSITIVO);
+            if (expiracionPermiso != null && expiracionPermiso.isBefore(venceEn)) {
+                venceEn = expiracionPermiso;
+            }
+            if (!venceEn.isAfter(ahora)) {
+                return;
+            }
+        } else {
+            venceEn = ahora.plus(TTL_NEGATIVO);
+        }
+
+        ClaveDecision clave = new ClaveDecision(documentoId, ciProfesional, tenantId, especialidad);
+        synchronized (entradas) {
+            if (invalidadoDesde(documentoId, generacionLectura)) {
+                // La lectura puede ser anterior al cambio de permisos: no se cachea
+                return;
+            }
+            entradas.put(clave, new EntradaDecision(permitido, venceEn));
+        }
+    }
+
+    /**
+     * Descarta todas las decisiones cacheadas de un documento
+     */
+    public void invalidarDocumento(UUID documentoId) {
+        if (documentoId == null) {
+            return;
+        }
+        int eliminadas = 0;
+        synchronized (entradas) {
+            registrarInvalidacion(documentoId);
+            Iterator<ClaveDecision> it = entradas.keySet().iterator();
+            while (it.hasNext()) {
+                if (documentoId.equals(it.next().documentoId)) {
+                    it.remove();
+                    eliminadas++;
+                }
+            }
+        }
+        invalidaciones.addAndGet(eliminadas);
+        LOGGER.fine(String.format("Cache de accesos invalidada: documento=%s, entradas=%d", documentoId, eliminadas));
+    }
+
+    /**
+     * Descarta las decisiones del documento cuyo permiso expiró, una vez confirmada la transacción
+     */
+    public void onPermisoExpirado(@Observes(during = TransactionPhase.AFTER_SUCCESS) PermisoExpiradoEvent evento) {
+        invalidarDocumento(evento.getDocumentoId());
+    }
+
+    /**
+     * Descarta las decisiones del documento cuyo permiso cambió, una vez confirmada la transacción
+     */
+    public void onPermisoModificado(@Observes(during = TransactionPhase.AFTER_SUCCESS) PermisoModificadoEvent evento) {
+        invalidarDocumento(evento.getDocumentoId());
+    }
+
+    /**
+     * Devuelve los contadores actuales de la cache
+     */
+    public CacheEstadisticas getEstadisticas() {
+        int tamanio;
+        synchronized (entradas) {
+            tamanio = entradas.size();
+        }
+        return new CacheEstadisticas(hits.get(), misses.get(), evictions.get(), invalidaciones.get(), tamanio);
+    }
+
+    /**
+     * Registra la invalidación de un documento (requiere el lock de entradas)
+     */
+    private void registrarInvalidacion(UUID documentoId) {
+        if (invalidadoEn.size() >= MAX_INVALIDACIONES) {
+            // Acota la memoria: toda lectura anterior a este punto se considera vieja
+            invalidadoEn.clear();
+            generacionMinima = generacion + 1;
+        }
+        invalidadoEn.put(documentoId, ++generacion);
+    }
+
+    /**
+     * Indica si el documento se invalidó después de la generación dada (requiere el lock de entradas)
+     */
+    private boolean invalidadoDesde(UUID documentoId, long inicio) {
+        if (generacionMinima > inicio) {
+            return true;
+        }
+        Long ultima = invalidadoEn.get(documentoId);
+        return ultima != null && ultima > inicio;
+    }
+
+    private static final class ClaveDecision {
+        private final UUID documentoId;
+        private final Integer ciProfesional;
+        private final UUID tenantId;
+        private final String especialidad;
+
+        private ClaveDecision(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad) {
+            this.documentoId = documentoId;
+            this.ciProfesional = ciProfesional;
+            this.tenantId = tenantId;
+            this.especialidad = especialidad;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ClaveDecision)) return false;
+            ClaveDecision that = (ClaveDecision) o;
+            return Objects.equals(documentoId, that.documentoId)
+                && Objects.equals(ciProfesional, that.ciProfesional)
+                && Objects.equals(tenantId, that.tenantId)
+                && Objects.equals(especialidad, that.especialidad);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentoId, ciProfesional, tenantId, especialidad);
+        }
+    }
+
+    private static final class EntradaDecision {
+        private final boolean permitido;
+        private final LocalDateTime venceEn;
+
+        private EntradaDecision(boolean permitido, LocalDateTime venceEn) {
+            this.permitido = permitido;
+            this.venceEn = venceEn;
+        }
+    }
+}
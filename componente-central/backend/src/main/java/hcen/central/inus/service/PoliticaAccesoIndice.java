@@ -0,0 +1,337 @@
+package hcen.central.inus.service;
+
+import hcen.central.inus.dao.HistoriaClinicaDAO;
+import hcen.central.inus.dao.PoliticaAccesoDAO;
+import hcen.central.inus.entity.politica_acceso;
+import hcen.central.inus.event.PermisoExpiradoEvent;
+import hcen.central.inus.event.PermisoModificadoEvent;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Índice compilado en memoria (por nodo) de los permisos ACTIVOS de cada historia clínica.
+ *
+ * Para cada historia se cargan una única vez todas las políticas vigentes y se compilan
+ * en bitsets por documento:
+ * - PROFESIONAL_ESPECIFICO: (tenant, CI) -> documentos
+ * - POR_ESPECIALIDAD: (tenant, especialidad) -> documentos
+ * - POR_CLINICA: tenant -> documentos
+ *
+ * La validación batch de toda la historia de un paciente queda así resuelta en memoria.
+ * Un índice deja de ser válido al alcanzar la expiración más próxima de sus permisos
+ * (o un TTL máximo, para acotar la desactualización entre nodos), y se invalida al
+ * confirmarse cualquier cambio de permisos de la historia.
+ *
+ * La compilación se hace fuera del lock; para no republicar un índice que quedó viejo
+ * por una invalidación concurrente, cada invalidación registra una generación y un
+ * índice solo se publica si su historia no fue invalidada después de empezar a compilarlo.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PoliticaAccesoIndice {
+
+    private static final Logger LOGGER = Logger.getLogger(PoliticaAccesoIndice.class.getName());
+
+    private static final int MAX_HISTORIAS = 2_000;
+    private static final Duration TTL_MAXIMO = Duration.ofMinutes(5);
+    private static final int MAX_INVALIDACIONES = 10_000;
+
+    @EJB
+    private PoliticaAccesoDAO politicaDAO;
+
+    @EJB
+    private HistoriaClinicaDAO historiaDAO;
+
+    private final Map<UUID, UUID> historiaPorDocumento = new ConcurrentHashMap<>();
+
+    private final Map<UUID, IndiceHistoria> indices =
+        new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, IndiceHistoria> eldest) {
+                if (size() > MAX_HISTORIAS) {
+                    olvidarDocumentos(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    // Protegidos por el lock de indices
+    private final Map<UUID, Long> invalidadaEn = new HashMap<>();
+    private long generacion;
+    private long generacionMinima;
+
+    /**
+     * Evalúa el acceso de un profesional a un conjunto de documentos
+     *
+     * @return Map con los documentos que SÍ tienen permiso y la fecha hasta la cual
+     *         la decisión es válida (nunca posterior a la expiración más próxima de la historia)
+     */
+    public Map<UUID, LocalDateTime> buscarPermisosVigentes(Collection<UUID> documentoIds, Integer ciProfesional,
+                                                           UUID tenantId, String especialidad) {
+        Map<UUID, LocalDateTime> resultado = new HashMap<>();
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return resultado;
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Map<UUID, List<UUID>> documentosPorHistoria = agruparPorHistoria(documentoIds);
+
+        for (Map.Entry<UUID, List<UUID>> entry : documentosPorHistoria.entrySet()) {
+            IndiceHistoria indice = obtenerIndice(entry.getKey(), ahora);
+            BitSet permitidos = indice.permitidos(ciProfesional, tenantId, especialidad);
+            if (permitidos.isEmpty()) {
+                continue;
+            }
+            for (UUID documentoId : entry.getValue()) {
+                Integer posicion = indice.posiciones.get(documentoId);
+                if (posicion != null && permitidos.get(posicion)) {
+                    resultado.put(documentoId, indice.validoHasta);
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Descarta el índice compilado de una historia clínica
+     */
+    public void invalidarHistoria(UUID historiaId) {
+        if (historiaId == null) {
+            return;
+        }
+        IndiceHistoria eliminado;
+        synchronized (indices) {
+            eliminado = indices.remove(historiaId);
+            registrarInvalidacion(historiaId);
+        }
+        if (eliminado != null) {
+            olvidarDocumentos(historiaId, eliminado);
+        }
+    }
+
+    /**
+     * Descarta el índice de la historia cuyo permiso expiró, una vez confirmada la transacción
+     */
+    public void onPermisoExpirado(@Observes(during = TransactionPhase.AFTER_SUCCESS) PermisoExpiradoEvent evento) {
+        invalidarHistoria(evento.getHistoriaClinicaId());
+    }
+
+    /**
+     * Descarta el índice de la historia cuyo permiso cambió, una vez confirmada la transacción
+     */
+    public void onPermisoModificado(@Observes(during = TransactionPhase.AFTER_SUCCESS) PermisoModificadoEvent evento) {
+        invalidarHistoria(evento.getHistoriaClinicaId());
+    }
+
+    /**
+     * Agrupa los documentos por historia clínica. Los documentos que no se conocen todavía
+     * se resuelven con una sola consulta; los que no pertenecen a ninguna historia ni tienen
+     * políticas registradas se descartan (no pueden tener permiso).
+     */
+    private Map<UUID, List<UUID>> agruparPorHistoria(Collection<UUID> documentoIds) {
+        Map<UUID, List<UUID>> agrupados = new HashMap<>();
+        Set<UUID> desconocidos = new HashSet<>();
+
+        for (UUID documentoId : documentoIds) {
+            UUID historiaId = historiaPorDocumento.get(documentoId);
+            if (historiaId != null) {
+                agrupados.computeIfAbsent(historiaId, k -> new ArrayList<>()).add(documentoId);
+            } else {
+                desconocidos.add(documentoId);
+            }
+        }
+
+        if (!desconocidos.isEmpty()) {
+            Map<UUID, UUID> resueltos = new HashMap<>(historiaDAO.findHistoriaIdsByDocumentos(desconocidos));
+            if (resueltos.size() < desconocidos.size()) {
+                Set<UUID> pendientes = new HashSet<>(desconocidos);
+                pendientes.removeAll(resueltos.keySet());
+                resueltos.putAll(politicaDAO.findHistoriaIdsByDocumentos(pendientes));
+            }
+            resueltos.forEach((documentoId, historiaId) ->
+                agrupados.computeIfAbsent(historiaId, k -> new ArrayList<>()).add(documentoId));
+
+            // Solo un documento ausente de un índice ya compilado obliga a recompilarlo
+            Set<UUID> desactualizadas = new HashSet<>();
+            synchronized (indices) {
+                resueltos.forEach((documentoId, historiaId) -> {
+                    IndiceHistoria indice = indices.get(historiaId);
+                    if (indice != null && !indice.posiciones.containsKey(documentoId)) {
+                        desactualizadas.add(historiaId);
+                    }
+                });
+            }
+            for (UUID historiaId : desactualizadas) {
+                invalidarHistoria(historiaId);
+            }
+        }
+        return agrupados;
+    }
+
+    private IndiceHistoria obtenerIndice(UUID historiaId, LocalDateTime ahora) {
+        IndiceHistoria indice;
+        long inicio;
+        synchronized (indices) {
+            indice = indices.get(historiaId);
+            inicio = generacion;
+        }
+        if (indice != null && indice.validoHasta.isAfter(ahora)) {
+            return indice;
+        }
+
+        indice = compilar(historiaDAO.findDocumentoIdsByHistoria(historiaId),
+            politicaDAO.listarActivasPorHistoria(historiaId), ahora);
+
+        synchronized (indices) {
+            if (invalidadaDesde(historiaId, inicio)) {
+                // Sirve para esta consulta, pero no se publica: ya hay cambios posteriores
+                return indice;
+            }
+            indices.put(historiaId, indice);
+        }
+        for (UUID documentoId : indice.posiciones.keySet()) {
+            historiaPorDocumento.put(documentoId, historiaId);
+        }
+
+        LOGGER.fine(String.format("Índice de permisos compilado: historia=%s, documentos=%d, politicas=%d",
+            historiaId, indice.posiciones.size(), indice.cantidadPoliticas));
+        return indice;
+    }
+
+    /**
+     * Registra la invalidación de una historia (requiere el lock de indices)
+     */
+    private void registrarInvalidacion(UUID historiaId) {
+        if (invalidadaEn.size() >= MAX_INVALIDACIONES) {
+            // Acota la memoria: todo lo compilado antes de este punto se considera viejo
+            invalidadaEn.clear();
+            generacionMinima = generacion + 1;
+        }
+        invalidadaEn.put(historiaId, ++generacion);
+    }
+
+    /**
+     * Indica si la historia se invalidó después de la generación dada (requiere el lock de indices)
+     */
+    private boolean invalidadaDesde(UUID historiaId, long inicio) {
+        if (generacionMinima > inicio) {
+            return true;
+        }
+        Long ultima = invalidadaEn.get(historiaId);
+        return ultima != null && ultima > inicio;
+    }
+
+    private void olvidarDocumentos(UUID historiaId, IndiceHistoria indice) {
+        for (UUID documentoId : indice.posiciones.keySet()) {
+            historiaPorDocumento.remove(documentoId, historiaId);
+        }
+    }
+
+    private static IndiceHistoria compilar(List<UUID> documentos, List<politica_acceso> activas, LocalDateTime ahora) {
+        IndiceHistoria indice = new IndiceHistoria();
+        LocalDateTime validoHasta = ahora.plus(TTL_MAXIMO);
+
+        for (UUID documentoId : documentos) {
+            indice.posicion(documentoId);
+        }
+
+        for (politica_acceso politica : activas) {
+            if (!politica.getFechaExpiracion().isAfter(ahora)) {
+                continue;
+            }
+            if (politica.getFechaExpiracion().isBefore(validoHasta)) {
+                validoHasta = politica.getFechaExpiracion();
+            }
+
+            int posicion = indice.posicion(politica.getDocumentoId());
+            UUID tenantId = politica.getTenantId();
+            switch (politica.getTipoPermiso()) {
+                case PROFESIONAL_ESPECIFICO:
+                    if (politica.getCiProfesional() != null) {
+                        indice.porProfesional
+                            .computeIfAbsent(tenantId, k -> new HashMap<>())
+                            .computeIfAbsent(politica.getCiProfesional(), k -> new BitSet())
+                            .set(posicion);
+                    }
+                    break;
+                case POR_ESPECIALIDAD:
+                    if (politica.getEspecialidad() != null) {
+                        indice.porEspecialidad
+                            .computeIfAbsent(tenantId, k -> new HashMap<>())
+                            .computeIfAbsent(politica.getEspecialidad(), k -> new BitSet())
+                            .set(posicion);
+                    }
+                    break;
+                case POR_CLINICA:
+                    indice.porClinica.computeIfAbsent(tenantId, k -> new BitSet()).set(posicion);
+                    break;
+            }
+            indice.cantidadPoliticas++;
+        }
+
+        indice.validoHasta = validoHasta;
+        return indice;
+    }
+
+    /**
+     * Permisos activos compilados de una historia clínica. Inmutable una vez publicado.
+     */
+    private static final class IndiceHistoria {
+        private final Map<UUID, Integer> posiciones = new HashMap<>();
+        private final Map<UUID, Map<Integer, BitSet>> porProfesional = new HashMap<>();
+        private final Map<UUID, Map<String, BitSet>> porEspecialidad = new HashMap<>();
+        private final Map<UUID, BitSet> porClinica = new HashMap<>();
+        private LocalDateTime validoHasta;
+        private int cantidadPoliticas;
+
+        private int posicion(UUID documentoId) {
+            return posiciones.computeIfAbsent(documentoId, k -> posiciones.size());
+        }
+
+        /**
+         * Documentos habilitados para el profesional: unión de los tres tipos de permiso
+         */
+        private BitSet permitidos(Integer ciProfesional, UUID tenantId, String especialidad) {
+            BitSet resultado = new BitSet();
+            BitSet clinica = porClinica.get(tenantId);
+            if (clinica != null) {
+                resultado.or(clinica);
+            }
+            Map<Integer, BitSet> profesionales = porProfesional.get(tenantId);
+            if (profesionales != null && ciProfesional != null) {
+                BitSet profesional = profesionales.get(ciProfesional);
+                if (profesional != null) {
+                    resultado.or(profesional);
+                }
+            }
+            Map<String, BitSet> especialidades = porEspecialidad.get(tenantId);
+            if (especialidades != null && especialidad != null) {
+                BitSet porEsp = especialidades.get(especialidad);
+                if (porEsp != null) {
+                    resultado.or(porEsp);
+                }
+            }
+            return resultado;
+        }
+    }
+}
@@ -2,17 +2,29 @@ package hcen.central.inus.service;
 
 import hcen.central.inus.dao.HistoriaClinicaDAO;
 import hcen.central.inus.dao.PoliticaAccesoDAO;
+import hcen.central.inus.dto.CacheEstadisticas;
 import hcen.central.inus.dto.PoliticaAccesoDTO;
 import hcen.central.inus.entity.historia_clinica;
 import hcen.central.inus.entity.politica_acceso;
 import hcen.central.inus.enums.EstadoPermiso;
 import hcen.central.inus.enums.TipoPermiso;
+import hcen.central.inus.event.PermisoExpiradoEvent;
+import hcen.central.inus.event.PermisoModificadoEvent;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -27,12 +39,29 @@ public class PoliticaAccesoService {
 
     private static final int DIAS_EXPIRACION_DEFAULT = 15;
 
+    private static final int LOTE_EXPIRACION_DEFAULT = 100;
+
     @EJB
     private PoliticaAccesoDAO politicaDAO;
 
     @EJB
     private HistoriaClinicaDAO historiaDAO;
 
+    @EJB
+    private PoliticaAccesoCache accesoCache;
+
+    @EJB
+    private PoliticaAccesoIndice accesoIndice;
+
+    @Inject
+    private Event<PermisoExpiradoEvent> permisoExpiradoEvent;
+
+    @Inject
+    private Event<PermisoModificadoEvent> permisoModificadoEvent;
+
+    @Resource
+    private SessionContext sessionContext;
+
     /**
      * Otorga un permiso de acceso a un documento clínico
      *
@@ -67,6 +96,7 @@ public class PoliticaAccesoService {
 
         // Persistir
         politica = politicaDAO.save(politica);
+        invalidarDecisiones(politica);
 
         LOGGER.info(String.format("Permiso otorgado: tipo=%s, documento=%s, tenant=%s",
             dto.getTipoPermiso(), dto.getDocumentoId(), dto.getTenantId()));
@@ -94,7 +124,17 @@ public class PoliticaAccesoService {
             throw new IllegalArgumentException("El tenantId es requerido");
         }
 
-        boolean tienePermiso = politicaDAO.tienePermisoAcceso(documentoId, ciProfesional, tenantId, especialidad);
+        Optional<Boolean> cacheado = accesoCache.obtener(documentoId, ciProfesional, tenantId, especialidad);
+        if (cacheado.isPresent()) {
+            return cacheado.get();
+        }
+
+        long generacion = accesoCache.generacionActual();
+        Optional<LocalDateTime> expiracion =
+            politicaDAO.buscarExpiracionPermisoAcceso(documentoId, ciProfesional, tenantId, especialidad);
+        boolean tienePermiso = expiracion.isPresent();
+        accesoCache.registrar(documentoId, ciProfesional, tenantId, especialidad,
+            tienePermiso, expiracion.orElse(null), generacion);
 
         LOGGER.info(String.format("Validación de acceso: documento=%s, profesional=%s, tenant=%s, resultado=%s",
             documentoId, ciProfesional, tenantId, tienePermiso));
@@ -123,10 +163,32 @@ public class PoliticaAccesoService {
             throw new IllegalArgumentException("El tenantId es requerido");
         }
 
-        Map<UUID, Boolean> permisos = politicaDAO.tienePermisoAccesoBatch(documentoIds, ciProfesional, tenantId, especialidad);
+        Map<UUID, Boolean> permisos = new HashMap<>();
+        List<UUID> noCacheados = new ArrayList<>();
+        for (UUID documentoId : documentoIds) {
+            Optional<Boolean> cacheado = accesoCache.obtener(documentoId, ciProfesional, tenantId, especialidad);
+            if (cacheado.isPresent()) {
+                permisos.put(documentoId, cacheado.get());
+            } else {
+                noCacheados.add(documentoId);
+            }
+        }
+
+        if (!noCacheados.isEmpty()) {
+            long generacion = accesoCache.generacionActual();
+            Map<UUID, LocalDateTime> expiraciones = accesoIndice.buscarPermisosVigentes(
+                noCacheados, ciProfesional, tenantId, especialidad);
+            for (UUID documentoId : noCacheados) {
+                LocalDateTime expiracion = expiraciones.get(documentoId);
+                boolean tienePermiso = expiracion != null;
+                permisos.put(documentoId, tienePermiso);
+                accesoCache.registrar(documentoId, ciProfesional, tenantId, especialidad,
+                    tienePermiso, expiracion, generacion);
+            }
+        }
 
-        LOGGER.info(String.format("Validación batch de acceso: %d documentos, profesional=%s, tenant=%s",
-            documentoIds.size(), ciProfesional, tenantId));
+        LOGGER.info(String.format("Validación batch de acceso: %d documentos (%d desde cache), profesional=%s, tenant=%s",
+            documentoIds.size(), documentoIds.size() - noCacheados.size(), ciProfesional, tenantId));
 
         return permisos;
     }
@@ -155,6 +217,7 @@ public class PoliticaAccesoService {
 
         politica.revocar(motivo != null ? motivo : "Revocado por el paciente");
         politicaDAO.save(politica);
+        invalidarDecisiones(politica);
 
         LOGGER.info(String.format("Permiso revocado: id=%s, motivo=%s", permisoId, motivo));
     }
@@ -211,17 +274,54 @@ public class PoliticaAccesoService {
     }
 
     /**
-     * Marca como expirados todos los permisos vencidos
-     * Método llamado por un scheduler/job periódicamente
+     * Marca como expirados todos los permisos vencidos, recorriéndolos en lotes
+     * Normalmente lo hace PermisoExpiracionScheduler; este método permite forzarlo.
+     * Cada lote se confirma en su propia transacción (vía el proxy del EJB)
      *
      * @return Cantidad de permisos marcados como expirados
      */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public int expirarPermisosVencidos() {
-        int cantidadExpirados = politicaDAO.expirarPermisosVencidos();
+        PoliticaAccesoService self = sessionContext.getBusinessObject(PoliticaAccesoService.class);
+        int cantidadExpirados = 0;
+        int expiradosLote;
+        do {
+            expiradosLote = self.expirarLote(LOTE_EXPIRACION_DEFAULT);
+            cantidadExpirados += expiradosLote;
+        } while (expiradosLote == LOTE_EXPIRACION_DEFAULT);
+
         LOGGER.info(String.format("Permisos expirados: %d", cantidadExpirados));
         return cantidadExpirados;
     }
 
+    /**
+     * Expira un único lote de permisos vencidos (los más antiguos primero) en su propia transacción
+     * y emite un {@link PermisoExpiradoEvent} por cada uno
+     *
+     * @param tamanioLote Cantidad máxima de permisos a procesar
+     * @return Cantidad de permisos marcados como expirados
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int expirarLote(int tamanioLote) {
+        return expirarVencidos(tamanioLote);
+    }
+
+    /**
+     * Fecha de expiración más antigua entre los permisos vencidos que siguen ACTIVOS
+     */
+    public Optional<LocalDateTime> obtenerVencimientoPendienteMasAntiguo() {
+        return politicaDAO.buscarVencimientoPendienteMasAntiguo(LocalDateTime.now());
+    }
+
+    private int expirarVencidos(int tamanioLote) {
+        List<politica_acceso> vencidas = politicaDAO.listarVencidasActivas(LocalDateTime.now(), tamanioLote);
+        for (politica_acceso politica : vencidas) {
+            politica.setEstado(EstadoPermiso.EXPIRADO);
+            permisoExpiradoEvent.fire(new PermisoExpiradoEvent(politica));
+        }
+        return vencidas.size();
+    }
+
     /**
      * Cuenta la cantidad de permisos activos para un documento
      */
@@ -264,6 +364,7 @@ public class PoliticaAccesoService {
         LocalDateTime fechaAnterior = politica.getFechaExpiracion();
         politica.setFechaExpiracion(nuevaFechaExpiracion);
         politica = politicaDAO.save(politica);
+        invalidarDecisiones(politica);
 
         LOGGER.info(String.format("Expiración extendida: permiso=%s, fechaAnterior=%s, fechaNueva=%s",
             permisoId, fechaAnterior, nuevaFechaExpiracion));
@@ -333,6 +434,7 @@ public class PoliticaAccesoService {
         }
 
         politica = politicaDAO.save(politica);
+        invalidarDecisiones(politica);
 
         LOGGER.info(String.format("Tipo de permiso modificado: permiso=%s, tipoAnterior=%s, tipoNuevo=%s",
             permisoId, tipoAnterior, nuevoTipo));
@@ -340,6 +442,21 @@ public class PoliticaAccesoService {
         return new PoliticaAccesoDTO(politica);
     }
 
+    /**
+     * Contadores de la cache de decisiones de acceso de este nodo
+     */
+    public CacheEstadisticas obtenerEstadisticasCache() {
+        return accesoCache.getEstadisticas();
+    }
+
+    /**
+     * Notifica el cambio de permiso; la cache de decisiones y el índice compilado se
+     * invalidan al confirmarse la transacción (ver observadores AFTER_SUCCESS)
+     */
+    private void invalidarDecisiones(politica_acceso politica) {
+        permisoModificadoEvent.fire(new PermisoModificadoEvent(politica));
+    }
+
     /**
      * Valida los datos del permiso antes de crearlo
      */
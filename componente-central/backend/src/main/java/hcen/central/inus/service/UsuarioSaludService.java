@@ -1,20 +1,32 @@
 package hcen.central.inus.service;
 
 import hcen.central.inus.dao.UsuarioSaludDAO;
+import hcen.central.inus.dto.CacheEstadisticas;
 import hcen.central.inus.dto.DnicCiudadanoDTO;
 import hcen.central.inus.dto.RegistrarUsuarioRequest;
+import hcen.central.inus.dto.RegistroUsuariosResultado;
 import hcen.central.inus.dto.UsuarioSaludDTO;
 import hcen.central.inus.dto.ActualizarUsuarioSaludRequest;
 import hcen.central.inus.entity.UsuarioSalud;
 import hcen.central.inus.enums.TipoDocumento;
 import hcen.central.inus.exception.CiudadanoNoEncontradoException;
 import hcen.central.inus.exception.UsuarioMenorDeEdadException;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 
 import java.time.LocalDate;
 import java.time.Period;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,6 +39,8 @@ public class UsuarioSaludService {
 
     private static final Logger LOGGER = Logger.getLogger(UsuarioSaludService.class.getName());
     private static final ZoneId URUGUAY_ZONE = ZoneId.of("America/Montevideo");
+    private static final int MAXIMO_LOTE_REGISTRO = 5_000;
+    private static final int TAMANIO_LOTE_PERSISTENCIA = 200;
 
     @EJB
     private UsuarioSaludDAO usuarioDAO;
@@ -37,6 +51,9 @@ public class UsuarioSaludService {
     @EJB
     private EdadValidacionService edadValidacionService;
 
+    @Resource
+    private SessionContext sessionContext;
+
     /**
      * Verifica si un usuario existe por cédula
      */
@@ -69,13 +86,96 @@ public class UsuarioSaludService {
         } else {
             // Usuario nuevo - crear con datos mínimos
             LOGGER.info("Creando nuevo usuario en sistema nacional con cédula " + cedula);
-            usuario = createNuevoUsuarioMinimo(request);
+            usuario = createNuevoUsuarioMinimo(request, consultarCiudadano(request));
             usuario = usuarioDAO.save(usuario);
         }
 
         return toDTO(usuario);
     }
 
+    /**
+     * Registra varios usuarios de salud con el mismo criterio que registrarUsuarioEnClinica,
+     * pero buscando los existentes con una sola consulta y los datos de DNIC de los nuevos en
+     * lote (una llamada SOAP por cada TAMANIO_LOTE documentos de un mismo tipo).
+     * Las consultas a DNIC se hacen fuera de transacción y los usuarios nuevos se guardan de a
+     * TAMANIO_LOTE_PERSISTENCIA, cada lote en su propia transacción (vía el proxy del EJB).
+     * Un usuario rechazado (p. ej. menor de edad) o un lote que no pudo guardarse quedan en los
+     * errores y no afectan a los demás.
+     */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public RegistroUsuariosResultado registrarUsuariosEnClinica(List<RegistrarUsuarioRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("La lista de usuarios es requerida");
+        }
+        if (requests.size() > MAXIMO_LOTE_REGISTRO) {
+            throw new IllegalArgumentException("Se pueden registrar hasta " + MAXIMO_LOTE_REGISTRO +
+                " usuarios por solicitud");
+        }
+
+        Map<String, RegistrarUsuarioRequest> porCedula = new LinkedHashMap<>();
+        for (RegistrarUsuarioRequest request : requests) {
+            validateRequest(request);
+            porCedula.putIfAbsent(request.getCedula().trim(), request);
+        }
+
+        RegistroUsuariosResultado resultado = new RegistroUsuariosResultado();
+        Map<String, UsuarioSalud> existentes = usuarioDAO.findByCedulas(porCedula.keySet());
+        Map<TipoDocumento, List<String>> nuevosPorTipo = new EnumMap<>(TipoDocumento.class);
+        porCedula.forEach((cedula, request) -> {
+            UsuarioSalud existente = existentes.get(cedula);
+            if (existente != null) {
+                resultado.registrado(cedula, toDTO(existente));
+            } else {
+                nuevosPorTipo.computeIfAbsent(request.getTipoDocumento(), tipo -> new ArrayList<>()).add(cedula);
+            }
+        });
+
+        List<UsuarioSalud> nuevos = new ArrayList<>();
+        nuevosPorTipo.forEach((tipo, cedulas) -> {
+            DnicServiceClient.ResultadoLote datosDnic = consultarDnic(tipo, cedulas);
+            for (String cedula : cedulas) {
+                try {
+                    nuevos.add(createNuevoUsuarioMinimo(porCedula.get(cedula), datosDnic));
+                } catch (IllegalArgumentException e) {
+                    resultado.error(cedula, e.getMessage());
+                }
+            }
+        });
+
+        UsuarioSaludService self = sessionContext.getBusinessObject(UsuarioSaludService.class);
+        for (int desde = 0; desde < nuevos.size(); desde += TAMANIO_LOTE_PERSISTENCIA) {
+            List<UsuarioSalud> lote = nuevos.subList(desde, Math.min(desde + TAMANIO_LOTE_PERSISTENCIA, nuevos.size()));
+            try {
+                for (UsuarioSalud usuario : self.guardarLote(lote)) {
+                    resultado.registrado(usuario.getCedula(), toDTO(usuario));
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "No se pudo guardar un lote de " + lote.size() + " usuarios", e);
+                for (UsuarioSalud usuario : lote) {
+                    resultado.error(usuario.getCedula(), "No se pudo guardar el usuario: " + e.getMessage());
+                }
+            }
+        }
+
+        LOGGER.info(String.format("Registro en lote: %d usuarios, %d ya existentes, %d rechazados",
+            porCedula.size(), existentes.size(), resultado.getErrores().size()));
+        return resultado;
+    }
+
+    /**
+     * Guarda un lote de usuarios nuevos en su propia transacción
+     *
+     * @return Usuarios guardados, en el mismo orden
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<UsuarioSalud> guardarLote(List<UsuarioSalud> usuarios) {
+        List<UsuarioSalud> guardados = new ArrayList<>(usuarios.size());
+        for (UsuarioSalud usuario : usuarios) {
+            guardados.add(usuarioDAO.save(usuario));
+        }
+        return guardados;
+    }
+
     /**
      * Obtiene datos de un usuario por cédula
      */
@@ -86,6 +186,13 @@ public class UsuarioSaludService {
         return usuarioDAO.findByCedula(cedula.trim()).map(this::toDTO);
     }
 
+    /**
+     * Contadores de la cache de consultas a DNIC
+     */
+    public CacheEstadisticas obtenerEstadisticasCacheDnic() {
+        return dnicClient.obtenerEstadisticasCache();
+    }
+
     /**
      * Actualiza los datos de un usuario sin modificar su documento
      */
@@ -171,10 +278,72 @@ public class UsuarioSaludService {
     }
 
     /**
-     * Crea un nuevo usuario consultando DNIC para obtener datos reales.
-     * Si DNIC falla o el usuario es menor de edad, crea con datos PENDIENTE.
+     * Consulta DNIC en lote. Si la consulta falla por completo se devuelve un resultado vacío
+     * y los usuarios se crean con datos PENDIENTE (graceful degradation)
      */
-    private UsuarioSalud createNuevoUsuarioMinimo(RegistrarUsuarioRequest request) {
+    private DnicServiceClient.ResultadoLote consultarDnic(TipoDocumento tipoDocumento, Collection<String> cedulas) {
+        try {
+            LOGGER.info("Consultando DNIC para " + cedulas.size() + " usuarios (" + tipoDocumento + ")");
+            return dnicClient.obtenerCiudadanos(tipoDocumento.name(), cedulas);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Error consultando DNIC - se crearán usuarios con datos PENDIENTE", e);
+            return new DnicServiceClient.ResultadoLote();
+        }
+    }
+
+    /**
+     * Consulta DNIC para un único usuario con la operación obtener_ciudadano.
+     * Devuelve null si el ciudadano no existe o DNIC no pudo consultarse (graceful degradation)
+     */
+    private DnicCiudadanoDTO consultarCiudadano(RegistrarUsuarioRequest request) {
+        String cedula = request.getCedula().trim();
+        try {
+            LOGGER.info("Consultando DNIC para usuario con cédula: " + cedula);
+            return dnicClient.obtenerCiudadano(request.getTipoDocumento().name(), cedula);
+        } catch (CiudadanoNoEncontradoException e) {
+            // DNIC no encontró al ciudadano - crear con datos PENDIENTE
+            LOGGER.warning("Ciudadano no encontrado en DNIC para cédula " + cedula +
+                          " - creando con datos PENDIENTE");
+        } catch (Exception e) {
+            // Error general de comunicación con DNIC - crear con datos PENDIENTE (graceful degradation)
+            LOGGER.log(Level.WARNING, "Error consultando DNIC para cédula " + cedula +
+                      " - creando con datos PENDIENTE", e);
+        }
+        return null;
+    }
+
+    /**
+     * Crea un nuevo usuario con los datos de DNIC del resultado de una consulta en lote.
+     *
+     * @param datosDnic resultado de consultarDnic que incluye la cédula del request
+     * @throws IllegalArgumentException si el usuario es menor de edad
+     */
+    private UsuarioSalud createNuevoUsuarioMinimo(RegistrarUsuarioRequest request,
+                                                  DnicServiceClient.ResultadoLote datosDnic) {
+        String cedula = request.getCedula().trim();
+        String numeroDnic = DnicServiceClient.normalizarNumeroDocumento(cedula);
+        DnicCiudadanoDTO datosFromDnic = datosDnic.getEncontrados().get(numeroDnic);
+        if (datosFromDnic == null) {
+            if (datosDnic.getNoEncontrados().contains(numeroDnic)) {
+                // DNIC no encontró al ciudadano - crear con datos PENDIENTE
+                LOGGER.warning("Ciudadano no encontrado en DNIC para cédula " + cedula +
+                              " - creando con datos PENDIENTE");
+            } else {
+                // Error de comunicación con DNIC - crear con datos PENDIENTE (graceful degradation)
+                LOGGER.warning("No se pudo consultar DNIC para cédula " + cedula +
+                              " - creando con datos PENDIENTE");
+            }
+        }
+        return createNuevoUsuarioMinimo(request, datosFromDnic);
+    }
+
+    /**
+     * Crea un nuevo usuario con los datos reales obtenidos de DNIC.
+     * Si DNIC no encontró al ciudadano o no pudo consultarse (datosFromDnic null), crea con datos PENDIENTE.
+     *
+     * @throws IllegalArgumentException si el usuario es menor de edad
+     */
+    private UsuarioSalud createNuevoUsuarioMinimo(RegistrarUsuarioRequest request, DnicCiudadanoDTO datosFromDnic) {
         UsuarioSalud usuario = new UsuarioSalud();
         usuario.setCedula(request.getCedula().trim());
         usuario.setTipoDeDocumento(request.getTipoDocumento());
@@ -182,50 +351,33 @@ public class UsuarioSaludService {
         usuario.setActive(true);
         usuario.setNotificacionesHabilitadas(Boolean.TRUE);
 
-        // Intentar obtener datos de DNIC
-        try {
-            LOGGER.info("Consultando DNIC para usuario con cédula: " + request.getCedula());
-
-            DnicCiudadanoDTO datosFromDnic = dnicClient.obtenerCiudadano(
-                request.getTipoDocumento().name(),
-                request.getCedula().trim()
-            );
+        if (datosFromDnic == null) {
+            poblarUsuarioConDatosPendientes(usuario);
+            return usuario;
+        }
 
-            // Validar mayoría de edad (18+)
-            if (datosFromDnic.getFechaNacimiento() != null) {
+        // Validar mayoría de edad (18+)
+        if (datosFromDnic.getFechaNacimiento() != null) {
+            try {
                 edadValidacionService.validarMayoriaDeEdad(datosFromDnic.getFechaNacimiento());
+            } catch (UsuarioMenorDeEdadException e) {
+                // Usuario es menor de edad - rechazar creación
+                LOGGER.warning("Usuario menor de edad detectado: " + e.getEdad() + " años - rechazando creación");
+                throw new IllegalArgumentException(
+                    "No se puede registrar un usuario menor de edad. Edad: " + e.getEdad() + " años (se requieren 18+)");
             }
-
-            // Si llegamos aquí, tenemos datos válidos de DNIC y el usuario es mayor de edad
-            usuario.setPrimerNombre(datosFromDnic.getPrimerNombre());
-            usuario.setSegundoNombre(datosFromDnic.getSegundoNombre());
-            usuario.setPrimerApellido(datosFromDnic.getPrimerApellido());
-            usuario.setSegundoApellido(datosFromDnic.getSegundoApellido());
-            usuario.setFechaNacimiento(datosFromDnic.getFechaNacimiento());
-            usuario.setNombreCompleto(datosFromDnic.getNombreCompleto());
-            usuario.setEmail("pendiente@hcen.gub.uy");  // Email sigue pendiente de confirmación
-
-            LOGGER.info("Usuario creado con datos de DNIC: " + datosFromDnic.getNombreCompleto());
-
-        } catch (CiudadanoNoEncontradoException e) {
-            // DNIC no encontró al ciudadano - crear con datos PENDIENTE
-            LOGGER.warning("Ciudadano no encontrado en DNIC para cédula " + request.getCedula() +
-                          " - creando con datos PENDIENTE");
-            poblarUsuarioConDatosPendientes(usuario);
-
-        } catch (UsuarioMenorDeEdadException e) {
-            // Usuario es menor de edad - rechazar creación
-            LOGGER.warning("Usuario menor de edad detectado: " + e.getEdad() + " años - rechazando creación");
-            throw new IllegalArgumentException(
-                "No se puede registrar un usuario menor de edad. Edad: " + e.getEdad() + " años (se requieren 18+)");
-
-        } catch (Exception e) {
-            // Error general de comunicación con DNIC - crear con datos PENDIENTE (graceful degradation)
-            LOGGER.log(Level.WARNING, "Error consultando DNIC para cédula " + request.getCedula() +
-                      " - creando con datos PENDIENTE", e);
-            poblarUsuarioConDatosPendientes(usuario);
         }
 
+        // Datos válidos de DNIC y el usuario es mayor de edad
+        usuario.setPrimerNombre(datosFromDnic.getPrimerNombre());
+        usuario.setSegundoNombre(datosFromDnic.getSegundoNombre());
+        usuario.setPrimerApellido(datosFromDnic.getPrimerApellido());
+        usuario.setSegundoApellido(datosFromDnic.getSegundoApellido());
+        usuario.setFechaNacimiento(datosFromDnic.getFechaNacimiento());
+        usuario.setNombreCompleto(datosFromDnic.getNombreCompleto());
+        usuario.setEmail("pendiente@hcen.gub.uy");  // Email sigue pendiente de confirmación
+
+        LOGGER.info("Usuario creado con datos de DNIC: " + datosFromDnic.getNombreCompleto());
         return usuario;
     }
 
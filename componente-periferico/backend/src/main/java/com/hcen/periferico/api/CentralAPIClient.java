@@ -1,5 +1,6 @@
 package com.hcen.periferico.api;
 
+import com.hcen.periferico.config.CentralHttpClient;
 import com.hcen.periferico.config.ClientCredentialsConfig;
 import com.hcen.periferico.dto.usuario_salud_dto;
 import com.hcen.periferico.enums.TipoDocumento;
@@ -8,34 +9,35 @@ import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
+import jakarta.inject.Inject;
 import jakarta.json.Json;
-import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
-import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import javax.net.ssl.SSLParameters;
-import java.security.cert.X509Certificate;
-import java.security.SecureRandom;
 
 /**
  * Cliente REST para comunicarse con el componente central (INUS)
  * Maneja todas las operaciones relacionadas con usuarios de salud
+ *
+ * Las operaciones más usadas tienen además una variante asíncrona (sufijo Async) que devuelve
+ * un CompletableFuture y no retiene el hilo invocante mientras el central responde.
+ * La petición (incluido el JWT) se construye en el hilo invocante; el procesamiento de la
+ * respuesta se ejecuta en el executor del cliente HTTP, sin contexto transaccional.
  */
 @Stateless
 public class CentralAPIClient {
@@ -51,55 +53,11 @@ public class CentralAPIClient {
     @EJB
     private CentralAuthService authService;
 
-    private final HttpClient httpClient;
-
-    public CentralAPIClient() {
-        this.httpClient = createHttpClient();
-    }
-    
     /**
-     * Crea un HttpClient que acepta certificados SSL no confiables
-     * NOTA: Esto es solo para desarrollo. En producción debe usarse un truststore apropiado.
+     * Cliente HTTP compartido (pool de conexiones, HTTP/2 y métricas por endpoint)
      */
-    private HttpClient createHttpClient() {
-        try {
-            // TrustManager que acepta todos los certificados
-            TrustManager[] trustAllCerts = new TrustManager[] {
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
-                }
-            };
-
-            // Configurar SSLContext con el TrustManager que acepta todo
-            SSLContext sslContext = SSLContext.getInstance("TLS");
-            sslContext.init(null, trustAllCerts, new SecureRandom());
-            
-            // Configurar SSL parameters para deshabilitar endpoint identification
-            SSLParameters sslParams = new SSLParameters();
-            sslParams.setEndpointIdentificationAlgorithm(null);
-
-            // Deshabilitar la verificación de hostname del HttpClient (solo para dev)
-            System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
-            
-            LOGGER.warning("CentralAPIClient configurado con SSL bypass - SIN VALIDACIÓN DE CERTIFICADOS (solo para desarrollo)");
-            
-            return HttpClient.newBuilder()
-                .connectTimeout(TIMEOUT)
-                .sslContext(sslContext)
-                .sslParameters(sslParams)
-                .build();
-                
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "No se pudo configurar SSL permisivo, usando cliente por defecto", e);
-            return HttpClient.newBuilder()
-                .connectTimeout(TIMEOUT)
-                .build();
-        }
-    }
+    @Inject
+    private CentralHttpClient centralHttpClient;
 
     /**
      * Obtiene la URL base del componente central desde la configuración
@@ -130,21 +88,36 @@ public class CentralAPIClient {
             String url = getApiUsuariosUrl() + "/verificar/" + cedula;
             LOGGER.info("Verificando existencia de usuario en central: " + url);
 
-            HttpResponse<String> response = executeAuthenticatedGet(url);
+            return leerUsuarioExiste(cedula, executeAuthenticatedGet(url));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error al verificar usuario en central", e);
+            throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
+        }
+    }
 
-            if (response.statusCode() == 200) {
-                JsonReader jsonReader = Json.createReader(new StringReader(response.body()));
+    /**
+     * Versión asíncrona de verificarUsuarioExiste
+     */
+    public CompletableFuture<Boolean> verificarUsuarioExisteAsync(String cedula) {
+        String url = getApiUsuariosUrl() + "/verificar/" + cedula;
+        LOGGER.info("Verificando existencia de usuario en central (async): " + url);
+
+        return conErrorDeComunicacion(
+            executeAuthenticatedGetAsync(url).thenApply(response -> leerUsuarioExiste(cedula, response)),
+            "Error al verificar usuario en central");
+    }
+
+    private boolean leerUsuarioExiste(String cedula, HttpResponse<String> response) {
+        if (response.statusCode() == 200) {
+            try (JsonReader jsonReader = Json.createReader(new StringReader(response.body()))) {
                 JsonObject jsonObject = jsonReader.readObject();
                 boolean existe = jsonObject.getBoolean("existe", false);
                 LOGGER.info("Usuario " + cedula + " existe en central: " + existe);
                 return existe;
-            } else {
-                LOGGER.warning("Error al verificar usuario. Status: " + response.statusCode());
-                return false;
             }
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error al verificar usuario en central", e);
-            throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
+        } else {
+            LOGGER.warning("Error al verificar usuario. Status: " + response.statusCode());
+            return false;
         }
     }
 
@@ -167,50 +140,80 @@ public class CentralAPIClient {
             LOGGER.info("CENTRAL_BASE_URL: " + getCentralBaseUrl());
             LOGGER.info("tenantId: " + (tenantId != null ? tenantId : "null (usuario global)"));
 
-            // Construir JSON del request
-            var jsonBuilder = Json.createObjectBuilder()
-                .add("cedula", cedula)
-                .add("tipoDocumento", tipoDocumento.name())
-                .add("primerNombre", primerNombre)
-                .add("primerApellido", primerApellido)
-                .add("email", email)
-                .add("fechaNacimiento", fechaNacimiento.toString());
-
-            // SOLO agregar tenantId si no es null (compatibilidad temporal)
-            // Cuando el central migre, este campo será ignorado
-            if (tenantId != null) {
-                jsonBuilder.add("tenantId", tenantId);
-            }
-
-            // Agregar campos opcionales
-            if (segundoNombre != null && !segundoNombre.isEmpty()) {
-                jsonBuilder.add("segundoNombre", segundoNombre);
-            }
-            if (segundoApellido != null && !segundoApellido.isEmpty()) {
-                jsonBuilder.add("segundoApellido", segundoApellido);
-            }
-
-            String jsonBody = jsonBuilder.build().toString();
+            String jsonBody = construirRegistroUsuario(cedula, tipoDocumento, primerNombre, segundoNombre,
+                primerApellido, segundoApellido, email, fechaNacimiento, tenantId);
             LOGGER.fine("Request body: " + jsonBody);
 
-            HttpResponse<String> response = executeAuthenticatedPost(url, jsonBody);
-
-            // Aceptar tanto 200 (ya existe) como 201 (creado) como éxito
-            if (response.statusCode() == 200 || response.statusCode() == 201) {
-                LOGGER.info("Usuario registrado exitosamente en central (status: " + response.statusCode() + ")");
-                return parseUsuarioFromJson(response.body());
-            } else {
-                String errorMsg = "Error al registrar usuario. Status: " + response.statusCode() +
-                                ", Body: " + response.body();
-                LOGGER.severe(errorMsg);
-                throw new RuntimeException(errorMsg);
-            }
+            return leerUsuarioRegistrado(executeAuthenticatedPost(url, jsonBody));
         } catch (IOException | InterruptedException e) {
             LOGGER.log(Level.SEVERE, "Error al registrar usuario en central", e);
             throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Versión asíncrona de registrarUsuarioEnClinica
+     */
+    public CompletableFuture<usuario_salud_dto> registrarUsuarioEnClinicaAsync(String cedula, TipoDocumento tipoDocumento,
+                                                                              String primerNombre, String segundoNombre,
+                                                                              String primerApellido, String segundoApellido,
+                                                                              String email, LocalDate fechaNacimiento,
+                                                                              String tenantId) {
+        String url = getApiUsuariosUrl() + "/registrar";
+        LOGGER.info("Registrando usuario en central (async): " + url);
+
+        String jsonBody = construirRegistroUsuario(cedula, tipoDocumento, primerNombre, segundoNombre,
+            primerApellido, segundoApellido, email, fechaNacimiento, tenantId);
+
+        return conErrorDeComunicacion(
+            executeAuthenticatedPostAsync(url, jsonBody).thenApply(this::leerUsuarioRegistrado),
+            "Error al registrar usuario en central");
+    }
+
+    private String construirRegistroUsuario(String cedula, TipoDocumento tipoDocumento,
+                                            String primerNombre, String segundoNombre,
+                                            String primerApellido, String segundoApellido,
+                                            String email, LocalDate fechaNacimiento,
+                                            String tenantId) {
+        // Construir JSON del request
+        var jsonBuilder = Json.createObjectBuilder()
+            .add("cedula", cedula)
+            .add("tipoDocumento", tipoDocumento.name())
+            .add("primerNombre", primerNombre)
+            .add("primerApellido", primerApellido)
+            .add("email", email)
+            .add("fechaNacimiento", fechaNacimiento.toString());
+
+        // SOLO agregar tenantId si no es null (compatibilidad temporal)
+        // Cuando el central migre, este campo será ignorado
+        if (tenantId != null) {
+            jsonBuilder.add("tenantId", tenantId);
+        }
+
+        // Agregar campos opcionales
+        if (segundoNombre != null && !segundoNombre.isEmpty()) {
+            jsonBuilder.add("segundoNombre", segundoNombre);
+        }
+        if (segundoApellido != null && !segundoApellido.isEmpty()) {
+            jsonBuilder.add("segundoApellido", segundoApellido);
+        }
+
+        return jsonBuilder.build().toString();
+    }
+
+    private usuario_salud_dto leerUsuarioRegistrado(HttpResponse<String> response) {
+        // Aceptar tanto 200 (ya existe) como 201 (creado) como éxito
+        if (response.statusCode() == 200 || response.statusCode() == 201) {
+            LOGGER.info("Usuario registrado exitosamente en central (status: " + response.statusCode() + ")");
+            return parseUsuarioFromJson(response.body());
+        } else {
+            String errorMsg = "Error al registrar usuario. Status: " + response.statusCode() +
+                            ", Body: " + response.body();
+            LOGGER.severe(errorMsg);
+            throw new RuntimeException(errorMsg);
+        }
+    }
+
     /**
      * Registra un documento en la historia clínica del componente central.
      * Sobrecarga que acepta UUID para tenantId (para usar desde adapters).
@@ -272,23 +275,37 @@ public class CentralAPIClient {
             String url = getApiUsuariosUrl() + "/" + cedula;
             LOGGER.info("Obteniendo usuario desde central: " + url);
 
-            HttpResponse<String> response = executeAuthenticatedGet(url);
-
-            if (response.statusCode() == 200) {
-                return parseUsuarioFromJson(response.body());
-            } else if (response.statusCode() == 404) {
-                LOGGER.info("Usuario no encontrado en central: " + cedula);
-                return null;
-            } else {
-                LOGGER.warning("Error al obtener usuario. Status: " + response.statusCode());
-                return null;
-            }
+            return leerUsuario(cedula, executeAuthenticatedGet(url));
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error al obtener usuario desde central", e);
             throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Versión asíncrona de getUsuarioByCedula (completa con null si el usuario no existe)
+     */
+    public CompletableFuture<usuario_salud_dto> getUsuarioByCedulaAsync(String cedula) {
+        String url = getApiUsuariosUrl() + "/" + cedula;
+        LOGGER.info("Obteniendo usuario desde central (async): " + url);
+
+        return conErrorDeComunicacion(
+            executeAuthenticatedGetAsync(url).thenApply(response -> leerUsuario(cedula, response)),
+            "Error al obtener usuario desde central");
+    }
+
+    private usuario_salud_dto leerUsuario(String cedula, HttpResponse<String> response) {
+        if (response.statusCode() == 200) {
+            return parseUsuarioFromJson(response.body());
+        } else if (response.statusCode() == 404) {
+            LOGGER.info("Usuario no encontrado en central: " + cedula);
+            return null;
+        } else {
+            LOGGER.warning("Error al obtener usuario. Status: " + response.statusCode());
+            return null;
+        }
+    }
+
     /**
      * Lista todos los usuarios de una clínica desde el componente central
      */
@@ -297,14 +314,15 @@ public class CentralAPIClient {
             String url = getApiUsuariosUrl() + "?tenantId=" + tenantId;
             LOGGER.info("Obteniendo todos los usuarios desde central: " + url);
 
-            HttpResponse<String> response = executeAuthenticatedGet(url);
+            HttpResponse<InputStream> response = executeAuthenticatedGetStream(url);
 
-            if (response.statusCode() == 200) {
-                return parseUsuariosListFromJson(response.body());
-            } else {
-                LOGGER.warning("Error al obtener usuarios. Status: " + response.statusCode());
-                return new java.util.ArrayList<>();
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 200) {
+                    return parseUsuariosListFromJson(body);
+                }
             }
+            LOGGER.warning("Error al obtener usuarios. Status: " + response.statusCode());
+            return new java.util.ArrayList<>();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error al obtener usuarios desde central", e);
             throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
@@ -320,14 +338,15 @@ public class CentralAPIClient {
             String url = getApiUsuariosUrl() + "?tenantId=" + tenantId + "&search=" + encodedTerm;
             LOGGER.info("Buscando usuarios en central: " + url);
 
-            HttpResponse<String> response = executeAuthenticatedGet(url);
+            HttpResponse<InputStream> response = executeAuthenticatedGetStream(url);
 
-            if (response.statusCode() == 200) {
-                return parseUsuariosListFromJson(response.body());
-            } else {
-                LOGGER.warning("Error al buscar usuarios. Status: " + response.statusCode());
-                return new java.util.ArrayList<>();
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 200) {
+                    return parseUsuariosListFromJson(body);
+                }
             }
+            LOGGER.warning("Error al buscar usuarios. Status: " + response.statusCode());
+            return new java.util.ArrayList<>();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error al buscar usuarios en central", e);
             throw new RuntimeException("Error al comunicarse con el componente central: " + e.getMessage(), e);
@@ -394,34 +413,23 @@ public class CentralAPIClient {
     }
 
     /**
-     * Parsea una lista de usuarios desde JSON
+     * Parsea una lista de usuarios desde JSON en streaming (JsonParser), sin cargar el cuerpo
+     * completo en memoria ni construir el árbol JSON: cada objeto se mapea directamente al DTO
      */
-    private java.util.List<usuario_salud_dto> parseUsuariosListFromJson(String jsonString) {
+    private java.util.List<usuario_salud_dto> parseUsuariosListFromJson(InputStream json) {
         java.util.List<usuario_salud_dto> usuarios = new java.util.ArrayList<>();
-        try (JsonReader reader = Json.createReader(new StringReader(jsonString))) {
-            JsonArray jsonArray = reader.readArray();
-
-            for (JsonValue jsonValue : jsonArray) {
-                JsonObject jsonObject = jsonValue.asJsonObject();
-
-                usuario_salud_dto dto = new usuario_salud_dto();
-                dto.setCedula(jsonObject.getString("cedula"));
-                dto.setPrimerNombre(jsonObject.getString("primerNombre"));
-                dto.setSegundoNombre(jsonObject.getString("segundoNombre", null));
-                dto.setPrimerApellido(jsonObject.getString("primerApellido"));
-                dto.setSegundoApellido(jsonObject.getString("segundoApellido", null));
-                dto.setEmail(jsonObject.getString("email"));
-                dto.setTenantId(jsonObject.getString("tenantId", null));
-
-                String tipoDocStr = jsonObject.getString("tipoDocumento", "DO");
-                dto.setTipoDocumento(TipoDocumento.valueOf(tipoDocStr));
-
-                String fechaNacStr = jsonObject.getString("fechaNacimiento", null);
-                if (fechaNacStr != null) {
-                    dto.setFechaNacimiento(LocalDate.parse(fechaNacStr));
-                }
+        try (JsonParser parser = Json.createParser(json)) {
+            if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
+                throw new IllegalStateException("Se esperaba un array JSON de usuarios");
+            }
 
-                usuarios.add(dto);
+            while (parser.hasNext()) {
+                JsonParser.Event evento = parser.next();
+                if (evento == JsonParser.Event.START_OBJECT) {
+                    usuarios.add(leerUsuario(parser));
+                } else if (evento == JsonParser.Event.END_ARRAY) {
+                    break;
+                }
             }
 
             return usuarios;
@@ -430,6 +438,73 @@ public class CentralAPIClient {
             throw new RuntimeException("Error al procesar respuesta del componente central", e);
         }
     }
+
+    /**
+     * Lee un objeto usuario (el parser está posicionado en su START_OBJECT) hasta su END_OBJECT
+     */
+    private usuario_salud_dto leerUsuario(JsonParser parser) {
+        usuario_salud_dto dto = new usuario_salud_dto();
+        dto.setTipoDocumento(TipoDocumento.DO);
+        String campo = null;
+
+        while (parser.hasNext()) {
+            JsonParser.Event evento = parser.next();
+            switch (evento) {
+                case KEY_NAME:
+                    campo = parser.getString();
+                    break;
+                case VALUE_STRING:
+                    asignarCampoUsuario(dto, campo, parser.getString());
+                    break;
+                case START_OBJECT:
+                    parser.skipObject();
+                    break;
+                case START_ARRAY:
+                    parser.skipArray();
+                    break;
+                case END_OBJECT:
+                    return dto;
+                default:
+                    // null, números y booleanos no se usan en el DTO
+                    break;
+            }
+        }
+        throw new IllegalStateException("JSON de usuario incompleto");
+    }
+
+    private void asignarCampoUsuario(usuario_salud_dto dto, String campo, String valor) {
+        switch (campo) {
+            case "cedula":
+                dto.setCedula(valor);
+                break;
+            case "primerNombre":
+                dto.setPrimerNombre(valor);
+                break;
+            case "segundoNombre":
+                dto.setSegundoNombre(valor);
+                break;
+            case "primerApellido":
+                dto.setPrimerApellido(valor);
+                break;
+            case "segundoApellido":
+                dto.setSegundoApellido(valor);
+                break;
+            case "email":
+                dto.setEmail(valor);
+                break;
+            case "tenantId":
+                dto.setTenantId(valor);
+                break;
+            case "tipoDocumento":
+                dto.setTipoDocumento(TipoDocumento.valueOf(valor));
+                break;
+            case "fechaNacimiento":
+                dto.setFechaNacimiento(LocalDate.parse(valor));
+                break;
+            default:
+                break;
+        }
+    }
     
     // ========== MÉTODOS AUXILIARES PARA JWT (NUEVA FUNCIONALIDAD) ==========
     
@@ -461,19 +536,81 @@ public class CentralAPIClient {
      * Método auxiliar para hacer GET con JWT
      */
     private HttpResponse<String> executeAuthenticatedGet(String url) throws IOException, InterruptedException {
-        HttpRequest request = createAuthenticatedRequestBuilder(url).GET().build();
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        return centralHttpClient.send(createAuthenticatedGet(url));
+    }
+    
+    /**
+     * Método auxiliar para hacer GET con JWT recibiendo el cuerpo como stream
+     * (el invocante debe cerrar el InputStream)
+     */
+    private HttpResponse<InputStream> executeAuthenticatedGetStream(String url) throws IOException, InterruptedException {
+        return centralHttpClient.send(createAuthenticatedGet(url), HttpResponse.BodyHandlers.ofInputStream());
     }
     
     /**
      * Método auxiliar para hacer POST con JWT
      */
     private HttpResponse<String> executeAuthenticatedPost(String url, String jsonBody) throws IOException, InterruptedException {
-        HttpRequest request = createAuthenticatedRequestBuilder(url)
+        return centralHttpClient.send(createAuthenticatedPost(url, jsonBody));
+    }
+
+    /**
+     * Método auxiliar para hacer GET con JWT sin bloquear
+     */
+    private CompletableFuture<HttpResponse<String>> executeAuthenticatedGetAsync(String url) {
+        return centralHttpClient.sendAsync(createAuthenticatedGet(url));
+    }
+
+    /**
+     * Método auxiliar para hacer POST con JWT sin bloquear
+     */
+    private CompletableFuture<HttpResponse<String>> executeAuthenticatedPostAsync(String url, String jsonBody) {
+        return centralHttpClient.sendAsync(createAuthenticatedPost(url, jsonBody));
+    }
+
+    private HttpRequest createAuthenticatedGet(String url) {
+        return createAuthenticatedRequestBuilder(url).GET().build();
+    }
+
+    private HttpRequest createAuthenticatedPost(String url, String jsonBody) {
+        return createAuthenticatedRequestBuilder(url)
             .header("Content-Type", "application/json")
             .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
             .build();
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Traduce los fallos de una llamada asíncrona al mismo error que lanzan las variantes síncronas.
+     * Los RuntimeException propios del procesamiento de la respuesta se propagan sin cambios.
+     */
+    private static <T> CompletableFuture<T> conErrorDeComunicacion(CompletableFuture<T> future, String mensajeLog) {
+        return future.handle((resultado, error) -> {
+            if (error == null) {
+                return resultado;
+            }
+            Throwable causa = causaReal(error);
+            registrarFallo(mensajeLog, causa);
+            if (causa instanceof RuntimeException) {
+                throw (RuntimeException) causa;
+            }
+            throw new RuntimeException("Error al comunicarse con el componente central: " + causa.getMessage(), causa);
+        });
+    }
+
+    /**
+     * Los rechazos del circuit breaker/bulkhead son esperables con el central degradado:
+     * se registran sin stack trace para no inundar el log
+     */
+    private static void registrarFallo(String mensaje, Throwable e) {
+        if (e instanceof CentralHttpClient.CentralNoDisponibleException) {
+            LOGGER.warning(mensaje + ": " + e.getMessage());
+        } else {
+            LOGGER.log(Level.SEVERE, mensaje, e);
+        }
+    }
+
+    private static Throwable causaReal(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
     
     /**
@@ -481,7 +618,7 @@ public class CentralAPIClient {
      */
     private HttpResponse<String> executeAuthenticatedDelete(String url) throws IOException, InterruptedException {
         HttpRequest request = createAuthenticatedRequestBuilder(url).DELETE().build();
-        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        return centralHttpClient.send(request);
     }
 
     // ========== MÉTODOS PARA VALIDACIÓN DE PERMISOS DE ACCESO A DOCUMENTOS ==========
@@ -500,29 +637,55 @@ public class CentralAPIClient {
     public boolean validarAccesoDocumento(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad) {
         try {
             String url = getCentralBaseUrl() + "/api/politicas-acceso/validar";
+            String body = construirValidacionAcceso(documentoId, ciProfesional, tenantId, especialidad);
 
-            JsonObject body = Json.createObjectBuilder()
-                .add("documentoId", documentoId.toString())
-                .add("ciProfesional", ciProfesional)
-                .add("tenantId", tenantId.toString())
-                .add("especialidad", especialidad != null ? especialidad : "")
-                .build();
+            return leerPermisoDocumento(executeAuthenticatedPost(url, body));
 
-            HttpResponse<String> response = executeAuthenticatedPost(url, body.toString());
-
-            if (response.statusCode() == 200) {
-                try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
-                    JsonObject json = reader.readObject();
-                    JsonObject data = json.getJsonObject("data");
-                    boolean tienePermiso = data.getBoolean("tienePermiso", false);
-                    return tienePermiso;
-                }
-            } else {
-                return false; // En caso de error, denegar acceso por seguridad
-            }
+        } catch (Exception e) {
+            registrarFallo("Error al validar acceso a documento", e);
+            return false; // En caso de error, denegar acceso por seguridad
+        }
+    }
 
+    /**
+     * Versión asíncrona de validarAccesoDocumento (ante cualquier error completa con false)
+     */
+    public CompletableFuture<Boolean> validarAccesoDocumentoAsync(UUID documentoId, Integer ciProfesional,
+                                                                  UUID tenantId, String especialidad) {
+        try {
+            String url = getCentralBaseUrl() + "/api/politicas-acceso/validar";
+            String body = construirValidacionAcceso(documentoId, ciProfesional, tenantId, especialidad);
+
+            return executeAuthenticatedPostAsync(url, body)
+                .thenApply(this::leerPermisoDocumento)
+                .exceptionally(e -> {
+                    registrarFallo("Error al validar acceso a documento", causaReal(e));
+                    return false; // En caso de error, denegar acceso por seguridad
+                });
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error al validar acceso a documento", e);
+            registrarFallo("Error al validar acceso a documento", e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private String construirValidacionAcceso(UUID documentoId, Integer ciProfesional, UUID tenantId, String especialidad) {
+        return Json.createObjectBuilder()
+            .add("documentoId", documentoId.toString())
+            .add("ciProfesional", ciProfesional)
+            .add("tenantId", tenantId.toString())
+            .add("especialidad", especialidad != null ? especialidad : "")
+            .build()
+            .toString();
+    }
+
+    private boolean leerPermisoDocumento(HttpResponse<String> response) {
+        if (response.statusCode() == 200) {
+            try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
+                JsonObject json = reader.readObject();
+                JsonObject data = json.getJsonObject("data");
+                return data.getBoolean("tienePermiso", false);
+            }
+        } else {
             return false; // En caso de error, denegar acceso por seguridad
         }
     }
@@ -542,46 +705,86 @@ public class CentralAPIClient {
 
         try {
             String url = getCentralBaseUrl() + "/api/politicas-acceso/validar";
+            String body = construirValidacionAccesoBatch(documentoIds, ciProfesional, tenantId, especialidad);
 
-            // Construir array de IDs
-            jakarta.json.JsonArrayBuilder idsBuilder = Json.createArrayBuilder();
-            for (UUID id : documentoIds) {
-                idsBuilder.add(id.toString());
-            }
+            resultado.putAll(leerPermisosDocumentos(documentoIds, executeAuthenticatedPost(url, body)));
 
-            JsonObject body = Json.createObjectBuilder()
-                .add("documentoIds", idsBuilder)
-                .add("ciProfesional", ciProfesional)
-                .add("tenantId", tenantId.toString())
-                .add("especialidad", especialidad != null ? especialidad : "")
-                .build();
+        } catch (Exception e) {
+            registrarFallo("Error al validar acceso batch a documentos", e);
+            // En caso de error, denegar todos por seguridad
+            documentoIds.forEach(id -> resultado.put(id, false));
+        }
 
-            HttpResponse<String> response = executeAuthenticatedPost(url, body.toString());
+        return resultado;
+    }
 
-            if (response.statusCode() == 200) {
-                try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
-                    JsonObject json = reader.readObject();
-                    JsonObject data = json.getJsonObject("data");
-                    JsonObject permisos = data.getJsonObject("permisos");
-
-                    // Convertir JsonObject a Map<UUID, Boolean>
-                    for (String key : permisos.keySet()) {
-                        UUID docId = UUID.fromString(key);
-                        boolean tienePermiso = permisos.getBoolean(key);
-                        resultado.put(docId, tienePermiso);
-                    }
-                }
-            } else {
-                // En caso de error, denegar todos por seguridad
-                documentoIds.forEach(id -> resultado.put(id, false));
-            }
+    /**
+     * Versión asíncrona de validarAccesoDocumentos (ante cualquier error deniega todos)
+     */
+    public CompletableFuture<Map<UUID, Boolean>> validarAccesoDocumentosAsync(List<UUID> documentoIds, Integer ciProfesional,
+                                                                             UUID tenantId, String especialidad) {
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
 
+        try {
+            String url = getCentralBaseUrl() + "/api/politicas-acceso/validar";
+            String body = construirValidacionAccesoBatch(documentoIds, ciProfesional, tenantId, especialidad);
+
+            return executeAuthenticatedPostAsync(url, body)
+                .thenApply(response -> leerPermisosDocumentos(documentoIds, response))
+                .exceptionally(e -> {
+                    registrarFallo("Error al validar acceso batch a documentos", causaReal(e));
+                    return denegarTodos(documentoIds);
+                });
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Error al validar acceso batch a documentos", e);
+            registrarFallo("Error al validar acceso batch a documentos", e);
+            return CompletableFuture.completedFuture(denegarTodos(documentoIds));
+        }
+    }
+
+    private String construirValidacionAccesoBatch(List<UUID> documentoIds, Integer ciProfesional,
+                                                  UUID tenantId, String especialidad) {
+        // Construir array de IDs
+        jakarta.json.JsonArrayBuilder idsBuilder = Json.createArrayBuilder();
+        for (UUID id : documentoIds) {
+            idsBuilder.add(id.toString());
+        }
+
+        return Json.createObjectBuilder()
+            .add("documentoIds", idsBuilder)
+            .add("ciProfesional", ciProfesional)
+            .add("tenantId", tenantId.toString())
+            .add("especialidad", especialidad != null ? especialidad : "")
+            .build()
+            .toString();
+    }
+
+    private Map<UUID, Boolean> leerPermisosDocumentos(List<UUID> documentoIds, HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
             // En caso de error, denegar todos por seguridad
-            documentoIds.forEach(id -> resultado.put(id, false));
+            return denegarTodos(documentoIds);
         }
 
+        Map<UUID, Boolean> resultado = new HashMap<>();
+        try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
+            JsonObject json = reader.readObject();
+            JsonObject data = json.getJsonObject("data");
+            JsonObject permisos = data.getJsonObject("permisos");
+
+            // Convertir JsonObject a Map<UUID, Boolean>
+            for (String key : permisos.keySet()) {
+                UUID docId = UUID.fromString(key);
+                boolean tienePermiso = permisos.getBoolean(key);
+                resultado.put(docId, tienePermiso);
+            }
+        }
+        return resultado;
+    }
+
+    private static Map<UUID, Boolean> denegarTodos(List<UUID> documentoIds) {
+        Map<UUID, Boolean> resultado = new HashMap<>();
+        documentoIds.forEach(id -> resultado.put(id, false));
         return resultado;
     }
 
@@ -0,0 +1,342 @@
+package com.hcen.periferico.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * Cliente HTTP (java.net.http) compartido por todas las llamadas salientes al componente central.
+ *
+ * Una única instancia por aplicación, en lugar de una por instancia de EJB:
+ * - Un solo pool de conexiones keep-alive y un solo selector
+ * - HTTP/2 (multiplexa las peticiones sobre pocas conexiones; cae a HTTP/1.1 si el central no lo soporta)
+ * - API síncrona (send) y asíncrona (sendAsync) sobre el mismo cliente
+ * - Las tareas asíncronas del cliente corren en el ManagedExecutorService del servidor
+ * - Métricas por endpoint (método + ruta normalizada): llamadas, errores, latencia promedio/máxima, en curso
+ * - Protección por endpoint (CircuitBreakerEndpoint): circuit breaker con prueba semi-abierta, bulkhead
+ *   de concurrencia y timeout adaptativo según el p99 observado. Las llamadas rechazadas fallan de
+ *   inmediato con CentralNoDisponibleException, sin retener hilos esperando a un central degradado.
+ *
+ * NOTA: Acepta certificados SSL no confiables y no verifica el hostname (igual que el CentralAPIClient
+ * original). Solo para desarrollo; en producción debe usarse un truststore apropiado.
+ */
+@ApplicationScoped
+public class CentralHttpClient {
+
+    private static final Logger LOGGER = Logger.getLogger(CentralHttpClient.class.getName());
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    /**
+     * Timeout por defecto para peticiones que no lo especifican
+     */
+    private static final Duration TIMEOUT_MAXIMO = Duration.ofSeconds(30);
+
+    /**
+     * Segmentos de ruta variables (UUID o números, ej. cédulas) que se agrupan en las métricas
+     */
+    private static final Pattern SEGMENTO_VARIABLE =
+        Pattern.compile("/([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}|\\d+)(?=/|$)");
+
+    private final Map<String, MetricasEndpoint> metricas = new ConcurrentHashMap<>();
+
+    @Resource(lookup = "java:comp/DefaultManagedExecutorService")
+    private ManagedExecutorService executorService;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    void init() {
+        httpClient = crearHttpClient(executorService);
+    }
+
+    /**
+     * Ejecuta una petición síncrona registrando sus métricas
+     */
+    public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Ejecuta una petición síncrona con el BodyHandler indicado (ej. ofInputStream para decodificar
+     * respuestas grandes en streaming). Con handlers de streaming la latencia registrada llega hasta
+     * la recepción de los headers; el cuerpo lo consume el invocante.
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        MetricasEndpoint m = metricasDe(request);
+        long inicio = m.iniciar();
+        boolean error = true;
+        try {
+            HttpResponse<T> response = httpClient.send(m.aplicarTimeout(request), bodyHandler);
+            error = response.statusCode() >= 500;
+            return response;
+        } finally {
+            m.finalizar(inicio, error);
+        }
+    }
+
+    /**
+     * Ejecuta una petición asíncrona registrando sus métricas.
+     * No bloquea el hilo invocante: la respuesta se completa en el executor del cliente,
+     * por lo que las etapas encadenadas no deben depender del contexto transaccional del EJB.
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        MetricasEndpoint m = metricasDe(request);
+        long inicio;
+        try {
+            inicio = m.iniciar();
+        } catch (CentralNoDisponibleException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return httpClient.sendAsync(m.aplicarTimeout(request), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) ->
+                    m.finalizar(inicio, error != null || response.statusCode() >= 500));
+        } catch (RuntimeException e) {
+            m.finalizar(inicio, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Cliente subyacente (para usos que requieran otras BodyHandlers)
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Métricas por endpoint, ordenadas por nombre
+     */
+    public Map<String, EstadisticasEndpoint> getMetricas() {
+        Map<String, EstadisticasEndpoint> resultado = new TreeMap<>();
+        metricas.forEach((endpoint, m) -> resultado.put(endpoint, m.snapshot()));
+        return resultado;
+    }
+
+    MetricasEndpoint metricasDe(HttpRequest request) {
+        return metricas.computeIfAbsent(nombreEndpoint(request), MetricasEndpoint::new);
+    }
+
+    /**
+     * Nombre lógico del endpoint: método + ruta con los identificadores reemplazados por {id}
+     */
+    static String nombreEndpoint(HttpRequest request) {
+        String path = request.uri().getPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        return request.method() + " " + SEGMENTO_VARIABLE.matcher(path).replaceAll("/{id}");
+    }
+
+    private static HttpClient crearHttpClient(Executor executor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(executor);
+
+        try {
+            // TrustManager que acepta todos los certificados. Es X509ExtendedTrustManager para que
+            // el JDK no lo envuelva con la verificación de hostname (la hacen los métodos con SSLEngine/Socket)
+            TrustManager[] trustAllCerts = new TrustManager[] {
+                new X509ExtendedTrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {}
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {}
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {}
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {}
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {}
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {}
+                }
+            };
+
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, trustAllCerts, new SecureRandom());
+
+            SSLParameters sslParams = new SSLParameters();
+            sslParams.setEndpointIdentificationAlgorithm(null);
+
+            LOGGER.warning("CentralHttpClient configurado con SSL bypass - SIN VALIDACIÓN DE CERTIFICADOS NI HOSTNAME (solo para desarrollo)");
+
+            return builder.sslContext(sslContext).sslParameters(sslParams).build();
+
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "No se pudo configurar SSL permisivo, usando cliente por defecto", e);
+            return builder.build();
+        }
+    }
+
+    /**
+     * Contadores y protección de un endpoint (thread-safe)
+     */
+    static final class MetricasEndpoint {
+        private final AtomicLong llamadas = new AtomicLong();
+        private final AtomicLong errores = new AtomicLong();
+        private final AtomicLong latenciaTotalMs = new AtomicLong();
+        private final AtomicLong latenciaMaximaMs = new AtomicLong();
+        private final AtomicInteger enCurso = new AtomicInteger();
+        private final CircuitBreakerEndpoint circuito;
+
+        MetricasEndpoint(String endpoint) {
+            this.circuito = new CircuitBreakerEndpoint(endpoint);
+        }
+
+        /**
+         * Reserva lugar en el circuito/bulkhead y marca el inicio de la llamada
+         */
+        long iniciar() throws CentralNoDisponibleException {
+            circuito.adquirir();
+            enCurso.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        /**
+         * Copia la petición con el timeout adaptativo si es menor al configurado
+         */
+        HttpRequest aplicarTimeout(HttpRequest request) {
+            Duration configurado = request.timeout().orElse(TIMEOUT_MAXIMO);
+            Duration timeout = circuito.timeoutPara(configurado);
+            if (timeout.equals(configurado)) {
+                return request;
+            }
+            return HttpRequest.newBuilder(request, (nombre, valor) -> true).timeout(timeout).build();
+        }
+
+        void finalizar(long inicio, boolean error) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            circuito.liberar(ms, error);
+            enCurso.decrementAndGet();
+            llamadas.incrementAndGet();
+            if (error) {
+                errores.incrementAndGet();
+            }
+            latenciaTotalMs.addAndGet(ms);
+            latenciaMaximaMs.accumulateAndGet(ms, Math::max);
+        }
+
+        EstadisticasEndpoint snapshot() {
+            long total = llamadas.get();
+            return new EstadisticasEndpoint(total, errores.get(),
+                total > 0 ? latenciaTotalMs.get() / total : 0, latenciaMaximaMs.get(), enCurso.get(),
+                circuito.getEstado().name(), circuito.getAperturas(), circuito.getRechazosCircuito(),
+                circuito.getRechazosBulkhead(), circuito.getP99Ms(),
+                circuito.timeoutPara(TIMEOUT_MAXIMO).toMillis());
+        }
+    }
+
+    /**
+     * El central no se invocó: circuito abierto o demasiadas llamadas en curso al endpoint
+     */
+    public static class CentralNoDisponibleException extends IOException {
+        public CentralNoDisponibleException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Métricas de un endpoint del central (expuestas vía REST)
+     */
+    public static class EstadisticasEndpoint {
+        private final long llamadas;
+        private final long errores;
+        private final long latenciaPromedioMs;
+        private final long latenciaMaximaMs;
+        private final int enCurso;
+        private final String estadoCircuito;
+        private final long aperturasCircuito;
+        private final long rechazosCircuito;
+        private final long rechazosBulkhead;
+        private final long latenciaP99Ms;
+        private final long timeoutActualMs;
+
+        public EstadisticasEndpoint(long llamadas, long errores, long latenciaPromedioMs,
+                                    long latenciaMaximaMs, int enCurso, String estadoCircuito,
+                                    long aperturasCircuito, long rechazosCircuito, long rechazosBulkhead,
+                                    long latenciaP99Ms, long timeoutActualMs) {
+            this.llamadas = llamadas;
+            this.errores = errores;
+            this.latenciaPromedioMs = latenciaPromedioMs;
+            this.latenciaMaximaMs = latenciaMaximaMs;
+            this.enCurso = enCurso;
+            this.estadoCircuito = estadoCircuito;
+            this.aperturasCircuito = aperturasCircuito;
+            this.rechazosCircuito = rechazosCircuito;
+            this.rechazosBulkhead = rechazosBulkhead;
+            this.latenciaP99Ms = latenciaP99Ms;
+            this.timeoutActualMs = timeoutActualMs;
+        }
+
+        public long getLlamadas() {
+            return llamadas;
+        }
+
+        public long getErrores() {
+            return errores;
+        }
+
+        public long getLatenciaPromedioMs() {
+            return latenciaPromedioMs;
+        }
+
+        public long getLatenciaMaximaMs() {
+            return latenciaMaximaMs;
+        }
+
+        public int getEnCurso() {
+            return enCurso;
+        }
+
+        public String getEstadoCircuito() {
+            return estadoCircuito;
+        }
+
+        public long getAperturasCircuito() {
+            return aperturasCircuito;
+        }
+
+        public long getRechazosCircuito() {
+            return rechazosCircuito;
+        }
+
+        public long getRechazosBulkhead() {
+            return rechazosBulkhead;
+        }
+
+        public long getLatenciaP99Ms() {
+            return latenciaP99Ms;
+        }
+
+        public long getTimeoutActualMs() {
+            return timeoutActualMs;
+        }
+    }
+}
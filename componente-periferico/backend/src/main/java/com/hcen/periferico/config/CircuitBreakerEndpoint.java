@@ -0,0 +1,217 @@
+package com.hcen.periferico.config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protección de un endpoint del central: circuit breaker, bulkhead y timeout adaptativo.
+ *
+ * - Circuit breaker: sobre las últimas VENTANA llamadas; si fallan al menos PORCENTAJE_FALLOS %
+ *   (con un mínimo de MINIMO_LLAMADAS) el circuito se abre y las llamadas se rechazan sin tocar la red.
+ *   Pasado ESPERA_ABIERTO deja pasar una única llamada de prueba (semi-abierto): si responde bien
+ *   el circuito se cierra, si falla vuelve a abrirse.
+ * - Bulkhead: como máximo MAX_CONCURRENTES llamadas en curso; el excedente se rechaza de inmediato.
+ * - Timeout adaptativo: FACTOR_TIMEOUT veces el p99 de las latencias exitosas recientes, acotado entre
+ *   TIMEOUT_MINIMO y el timeout configurado en la petición. La llamada de prueba usa el timeout
+ *   configurado y al abrirse el circuito se descartan las muestras: si la latencia normal del central
+ *   subió por encima del timeout adaptativo, la prueba igual puede responder y el p99 se recalcula.
+ *
+ * Se considera fallo una excepción (incluido el timeout) o un status >= 500.
+ */
+final class CircuitBreakerEndpoint {
+
+    enum Estado { CERRADO, ABIERTO, SEMI_ABIERTO }
+
+    static final int VENTANA = 20;
+    static final int MINIMO_LLAMADAS = 10;
+    static final int PORCENTAJE_FALLOS = 50;
+    static final Duration ESPERA_ABIERTO = Duration.ofSeconds(30);
+    static final int MAX_CONCURRENTES = 16;
+
+    static final int MUESTRAS_LATENCIA = 200;
+    static final int MINIMO_MUESTRAS = 20;
+    static final int FACTOR_TIMEOUT = 3;
+    static final Duration TIMEOUT_MINIMO = Duration.ofSeconds(2);
+
+    private final String endpoint;
+    private final Semaphore bulkhead = new Semaphore(MAX_CONCURRENTES);
+    private final AtomicLong rechazosCircuito = new AtomicLong();
+    private final AtomicLong rechazosBulkhead = new AtomicLong();
+
+    // Estado del circuito (protegido por this)
+    private Estado estado = Estado.CERRADO;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+    private long aperturas;
+    private final boolean[] fallosVentana = new boolean[VENTANA];
+    private int posicionVentana;
+    private int llamadasVentana;
+    private int fallosEnVentana;
+
+    // Latencias exitosas recientes (protegido por this)
+    private final long[] latenciasMs = new long[MUESTRAS_LATENCIA];
+    private int posicionLatencia;
+    private int muestrasLatencia;
+    private long p99Ms;
+
+    CircuitBreakerEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Reserva un lugar para una llamada
+     *
+     * @throws CentralHttpClient.CentralNoDisponibleException si el circuito está abierto o el bulkhead lleno
+     */
+    void adquirir() throws CentralHttpClient.CentralNoDisponibleException {
+        synchronized (this) {
+            if (estado == Estado.ABIERTO) {
+                if (System.nanoTime() - abiertoDesde < ESPERA_ABIERTO.toNanos()) {
+                    rechazosCircuito.incrementAndGet();
+                    throw new CentralHttpClient.CentralNoDisponibleException(
+                        "Circuito abierto para " + endpoint + ": el central no está respondiendo");
+                }
+                estado = Estado.SEMI_ABIERTO;
+                pruebaEnCurso = false;
+            }
+            if (estado == Estado.SEMI_ABIERTO) {
+                if (pruebaEnCurso) {
+                    rechazosCircuito.incrementAndGet();
+                    throw new CentralHttpClient.CentralNoDisponibleException(
+                        "Circuito semi-abierto para " + endpoint + ": llamada de prueba en curso");
+                }
+                pruebaEnCurso = true;
+            }
+        }
+
+        if (!bulkhead.tryAcquire()) {
+            synchronized (this) {
+                if (estado == Estado.SEMI_ABIERTO) {
+                    pruebaEnCurso = false;
+                }
+            }
+            rechazosBulkhead.incrementAndGet();
+            throw new CentralHttpClient.CentralNoDisponibleException(
+                "Demasiadas llamadas en curso a " + endpoint + " (máximo " + MAX_CONCURRENTES + ")");
+        }
+    }
+
+    /**
+     * Libera el lugar reservado y registra el resultado de la llamada
+     */
+    void liberar(long latenciaMs, boolean error) {
+        bulkhead.release();
+        synchronized (this) {
+            if (!error) {
+                registrarLatencia(latenciaMs);
+            }
+            switch (estado) {
+                case SEMI_ABIERTO:
+                    if (error) {
+                        abrir();
+                    } else {
+                        cerrar();
+                    }
+                    break;
+                case CERRADO:
+                    registrarResultado(error);
+                    if (llamadasVentana >= MINIMO_LLAMADAS
+                            && fallosEnVentana * 100 >= PORCENTAJE_FALLOS * llamadasVentana) {
+                        abrir();
+                    }
+                    break;
+                default:
+                    // Llamadas iniciadas antes de abrir el circuito: no cambian el estado
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Timeout a aplicar a la próxima llamada (nunca mayor al configurado)
+     */
+    synchronized Duration timeoutPara(Duration configurado) {
+        if (estado == Estado.SEMI_ABIERTO || muestrasLatencia < MINIMO_MUESTRAS) {
+            return configurado;
+        }
+        Duration adaptativo = Duration.ofMillis(p99Ms * FACTOR_TIMEOUT);
+        if (adaptativo.compareTo(TIMEOUT_MINIMO) < 0) {
+            adaptativo = TIMEOUT_MINIMO;
+        }
+        return adaptativo.compareTo(configurado) < 0 ? adaptativo : configurado;
+    }
+
+    synchronized Estado getEstado() {
+        if (estado == Estado.ABIERTO && System.nanoTime() - abiertoDesde >= ESPERA_ABIERTO.toNanos()) {
+            // Se pasará a semi-abierto con la próxima llamada
+            return Estado.SEMI_ABIERTO;
+        }
+        return estado;
+    }
+
+    synchronized long getAperturas() {
+        return aperturas;
+    }
+
+    synchronized long getP99Ms() {
+        return p99Ms;
+    }
+
+    long getRechazosCircuito() {
+        return rechazosCircuito.get();
+    }
+
+    long getRechazosBulkhead() {
+        return rechazosBulkhead.get();
+    }
+
+    private void abrir() {
+        estado = Estado.ABIERTO;
+        abiertoDesde = System.nanoTime();
+        pruebaEnCurso = false;
+        aperturas++;
+        posicionLatencia = 0;
+        muestrasLatencia = 0;
+        p99Ms = 0;
+    }
+
+    private void cerrar() {
+        estado = Estado.CERRADO;
+        pruebaEnCurso = false;
+        Arrays.fill(fallosVentana, false);
+        posicionVentana = 0;
+        llamadasVentana = 0;
+        fallosEnVentana = 0;
+    }
+
+    private void registrarResultado(boolean error) {
+        if (llamadasVentana == VENTANA && fallosVentana[posicionVentana]) {
+            fallosEnVentana--;
+        }
+        fallosVentana[posicionVentana] = error;
+        if (error) {
+            fallosEnVentana++;
+        }
+        posicionVentana = (posicionVentana + 1) % VENTANA;
+        if (llamadasVentana < VENTANA) {
+            llamadasVentana++;
+        }
+    }
+
+    private void registrarLatencia(long latenciaMs) {
+        latenciasMs[posicionLatencia] = latenciaMs;
+        posicionLatencia = (posicionLatencia + 1) % MUESTRAS_LATENCIA;
+        if (muestrasLatencia < MUESTRAS_LATENCIA) {
+            muestrasLatencia++;
+        }
+        // Recalcular el p99 cada 10 muestras (evita ordenar en cada llamada)
+        if (muestrasLatencia >= MINIMO_MUESTRAS && posicionLatencia % 10 == 0) {
+            long[] copia = Arrays.copyOf(latenciasMs, muestrasLatencia);
+            Arrays.sort(copia);
+            int indice = (int) Math.ceil(copia.length * 0.99) - 1;
+            p99Ms = copia[Math.max(0, indice)];
+        }
+    }
+}
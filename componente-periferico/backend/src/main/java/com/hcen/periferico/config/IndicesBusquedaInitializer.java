@@ -0,0 +1,97 @@
+package com.hcen.periferico.config;
+
+import com.hcen.periferico.dao.ProfesionalSaludDAO;
+import com.hcen.periferico.dao.UsuarioSaludDAO;
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Crea al desplegar los índices de búsqueda que JPA no puede declarar con @Index
+ * (trigram de pg_trgm y prefijo con varchar_pattern_ops) y completa las columnas de
+ * búsqueda normalizadas de los registros anteriores a su creación.
+ *
+ * Cada sentencia es idempotente (IF NOT EXISTS) y se ejecuta a través del DAO de su tabla,
+ * en su propia transacción. Si la extensión pg_trgm no puede crearse (usuario sin permisos)
+ * las búsquedas siguen funcionando, pero sin índice trigram.
+ */
+@Singleton
+@Startup
+public class IndicesBusquedaInitializer {
+
+    private static final Logger LOGGER = Logger.getLogger(IndicesBusquedaInitializer.class.getName());
+
+    private static final int TAMANIO_LOTE = 500;
+
+    private static final List<String> SENTENCIAS_USUARIOS = List.of(
+        "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+        "CREATE INDEX IF NOT EXISTS idx_usuario_salud_nombre_trgm " +
+            "ON usuario_salud USING gin (nombre_busqueda gin_trgm_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuario_salud_cedula_prefijo " +
+            "ON usuario_salud (tenant_id, cedula varchar_pattern_ops)",
+        "CREATE INDEX IF NOT EXISTS idx_usuario_salud_tenant_nombre_prefijo " +
+            "ON usuario_salud (tenant_id, nombre_busqueda varchar_pattern_ops)"
+    );
+
+    private static final List<String> SENTENCIAS_PROFESIONALES = List.of(
+        "CREATE INDEX IF NOT EXISTS idx_profesional_nombre_trgm " +
+            "ON profesional_salud USING gin (nombre_busqueda gin_trgm_ops)"
+    );
+
+    @EJB
+    private UsuarioSaludDAO usuarioDAO;
+
+    @EJB
+    private ProfesionalSaludDAO profesionalDAO;
+
+    @PostConstruct
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void init() {
+        ejecutar(SENTENCIAS_USUARIOS, usuarioDAO::crearIndiceBusqueda);
+        ejecutar(SENTENCIAS_PROFESIONALES, profesionalDAO::crearIndiceBusqueda);
+        completarColumnasBusqueda();
+    }
+
+    private void ejecutar(List<String> sentencias, Consumer<String> dao) {
+        for (String sentencia : sentencias) {
+            try {
+                dao.accept(sentencia);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "No se pudo ejecutar '" + sentencia + "': " + e.getMessage());
+            }
+        }
+    }
+
+    private void completarColumnasBusqueda() {
+        try {
+            int total = 0;
+            int actualizados;
+            do {
+                actualizados = usuarioDAO.completarNombresBusqueda(TAMANIO_LOTE);
+                total += actualizados;
+            } while (actualizados > 0);
+            if (total > 0) {
+                LOGGER.info("Columnas de búsqueda completadas: " + total + " usuarios de salud");
+            }
+
+            total = 0;
+            do {
+                actualizados = profesionalDAO.completarClavesBusqueda(TAMANIO_LOTE);
+                total += actualizados;
+            } while (actualizados > 0);
+            if (total > 0) {
+                LOGGER.info("Columnas de búsqueda completadas: " + total + " profesionales de salud");
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudieron completar las columnas de búsqueda", e);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package com.hcen.periferico.dao;
 
+import com.hcen.periferico.dto.documento_clinico_dto;
 import com.hcen.periferico.entity.documento_clinico;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -19,6 +21,43 @@ public class DocumentoClinicoDAO {
     @PersistenceContext(unitName = "hcen-periferico-pu")
     private EntityManager em;
 
+    /**
+     * Proyección nativa de documento_clinico_dto: documento + paciente + profesional + especialidad +
+     * clínica + nombres de codigueras en un único round trip (el orden de columnas lo usa mapearFilaDTO).
+     * Los códigos de codigueras se guardan como texto; solo se castean si son numéricos para poder
+     * usar la PK de cada codiguera sin fallar ante un código inválido.
+     */
+    private static final String SELECT_DTO =
+        "SELECT d.id, d.tenant_id, d.fec_creacion, d.usuario_salud_cedula, p.ci, " +
+        "       u.primer_nombre, u.segundo_nombre, u.primer_apellido, u.segundo_apellido, " +
+        "       p.nombre, p.apellidos, e.nombre, c.nombre, " +
+        "       d.codigo_motivo_consulta, mc.concepto, " +
+        "       d.descripcion_diagnostico, d.fecha_inicio_diagnostico, " +
+        "       d.codigo_estado_problema, ep.concepto, " +
+        "       d.codigo_grado_certeza, gc.concepto, " +
+        "       d.fecha_proxima_consulta, d.descripcion_proxima_consulta, d.referencia_alta " +
+        "FROM documento_clinico d " +
+        "JOIN profesional_salud p ON p.id = d.profesional_id " +
+        "LEFT JOIN especialidades e ON e.id = p.especialidad_id " +
+        "LEFT JOIN usuario_salud u ON u.cedula = d.usuario_salud_cedula AND u.tenant_id = d.tenant_id " +
+        "LEFT JOIN clinica c ON c.tenant_id = d.tenant_id " +
+        "LEFT JOIN motivo_consulta mc ON mc.id = " + codigoNumerico("d.codigo_motivo_consulta") +
+        "LEFT JOIN estado_problema ep ON ep.id = " + codigoNumerico("d.codigo_estado_problema") +
+        "LEFT JOIN grado_certeza gc ON gc.id = " + codigoNumerico("d.codigo_grado_certeza");
+
+    private static String codigoNumerico(String columna) {
+        return "CASE WHEN " + columna + " ~ '^[0-9]{1,9}$' THEN CAST(" + columna + " AS INTEGER) END ";
+    }
+
+    /**
+     * Relaciones que usa la conversión a DTO (paciente, profesional y su especialidad).
+     * Se traen en la misma consulta para no disparar una carga lazy por documento.
+     */
+    private static final String FETCH_RELACIONES_DTO =
+        "LEFT JOIN FETCH d.paciente " +
+        "LEFT JOIN FETCH d.profesionalFirmante pf " +
+        "LEFT JOIN FETCH pf.especialidad ";
+
     /**
      * Guarda o actualiza un documento clínico
      */
@@ -87,6 +126,67 @@ public class DocumentoClinicoDAO {
         return query.getResultList();
     }
 
+    /**
+     * Busca un documento por ID ya proyectado a DTO (una sola consulta, ver SELECT_DTO)
+     *
+     * @param tenantId clínica del documento; null para buscar en todas las clínicas
+     */
+    public Optional<documento_clinico_dto> findDTOById(UUID id, UUID tenantId) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        List<documento_clinico_dto> resultado = findDTOsByIds(List.of(id), tenantId);
+        return resultado.isEmpty() ? Optional.empty() : Optional.of(resultado.get(0));
+    }
+
+    /**
+     * Busca múltiples documentos por IDs ya proyectados a DTO, en una sola consulta que resuelve
+     * paciente, profesional, especialidad, clínica y los nombres de las tres codigueras.
+     * Reemplaza la conversión entidad -> DTO, que disparaba cargas lazy y consultas por codiguera.
+     *
+     * @param tenantId clínica de los documentos; null para buscar en todas las clínicas (cross-tenant)
+     */
+    @SuppressWarnings("unchecked")
+    public List<documento_clinico_dto> findDTOsByIds(Collection<UUID> ids, UUID tenantId) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = SELECT_DTO + "WHERE d.id IN (:ids)" +
+            (tenantId != null ? " AND d.tenant_id = :tenantId" : "") +
+            " ORDER BY d.fec_creacion DESC, d.id DESC";
+        jakarta.persistence.Query query = em.createNativeQuery(sql);
+        query.setParameter("ids", ids);
+        if (tenantId != null) {
+            query.setParameter("tenantId", tenantId);
+        }
+        List<Object[]> filas = query.getResultList();
+        List<documento_clinico_dto> resultado = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            resultado.add(mapearFilaDTO(fila));
+        }
+        return resultado;
+    }
+
+    /**
+     * Asigna hist_clinica_id a varios documentos de una clínica en un único UPDATE.
+     * Solo actualiza documentos del tenant indicado que aún no la tienen (idempotente).
+     *
+     * @return Cantidad de documentos actualizados
+     */
+    public int asignarHistClinicaId(Collection<UUID> ids, UUID tenantId, UUID histClinicaId) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        return em.createQuery(
+            "UPDATE documento_clinico d SET d.histClinicaId = :histClinicaId " +
+            "WHERE d.id IN :ids AND d.tenantId = :tenantId AND d.histClinicaId IS NULL"
+        )
+        .setParameter("histClinicaId", histClinicaId)
+        .setParameter("ids", ids)
+        .setParameter("tenantId", tenantId)
+        .executeUpdate();
+    }
+
     /**
      * Lista todos los documentos de un paciente específico (solo de una clínica)
      */
@@ -108,7 +208,7 @@ public class DocumentoClinicoDAO {
      */
     public List<documento_clinico> findByPacienteAllTenants(String cedula) {
         TypedQuery<documento_clinico> query = em.createQuery(
-            "SELECT d FROM documento_clinico d " +
+            "SELECT d FROM documento_clinico d " + FETCH_RELACIONES_DTO +
             "WHERE d.usuarioSaludCedula = :cedula " +
             "ORDER BY d.fecCreacion DESC",
             documento_clinico.class
@@ -148,6 +248,88 @@ public class DocumentoClinicoDAO {
         return query.getResultList();
     }
 
+    /**
+     * Lista documentos de una clínica con paginación por cursor (keyset) sobre (fecCreacion, id).
+     * A diferencia de OFFSET, el costo no crece con la profundidad de la página:
+     * la consulta se resuelve con el índice idx_documento_tenant_fecha.
+     *
+     * @param fecCursor fecha del último documento de la página anterior (null para la primera página)
+     * @param idCursor  id del último documento de la página anterior (null para la primera página)
+     * @param limite    cantidad máxima de documentos a devolver
+     */
+    public List<documento_clinico> findAllByTenantIdKeyset(UUID tenantId, LocalDateTime fecCursor,
+                                                            UUID idCursor, int limite) {
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("tenantId", tenantId);
+        return findKeyset("d.tenantId = :tenantId", parametros, fecCursor, idCursor, limite);
+    }
+
+    /**
+     * Lista documentos de un paciente con paginación por cursor (keyset) sobre (fecCreacion, id).
+     * Si tenantId es null se listan los documentos de TODAS las clínicas.
+     */
+    public List<documento_clinico> findByPacienteKeyset(String cedula, UUID tenantId, LocalDateTime fecCursor,
+                                                         UUID idCursor, int limite) {
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("cedula", cedula);
+        String filtro = "d.usuarioSaludCedula = :cedula";
+        if (tenantId != null) {
+            filtro += " AND d.tenantId = :tenantId";
+            parametros.put("tenantId", tenantId);
+        }
+        return findKeyset(filtro, parametros, fecCursor, idCursor, limite);
+    }
+
+    /**
+     * Lista documentos firmados por un profesional con paginación por cursor (keyset) sobre (fecCreacion, id)
+     */
+    public List<documento_clinico> findByProfesionalKeyset(Integer profesionalCi, UUID tenantId,
+                                                            LocalDateTime fecCursor, UUID idCursor, int limite) {
+        Map<String, Object> parametros = new HashMap<>();
+        parametros.put("profesionalCi", profesionalCi);
+        parametros.put("tenantId", tenantId);
+        return findKeyset("d.profesionalFirmante.ci = :profesionalCi AND d.tenantId = :tenantId",
+            parametros, fecCursor, idCursor, limite);
+    }
+
+    /**
+     * Consulta keyset común: documentos que cumplen el filtro y van después del cursor
+     * en el orden (fecCreacion DESC, id DESC)
+     */
+    private List<documento_clinico> findKeyset(String filtro, Map<String, Object> parametros,
+                                               LocalDateTime fecCursor, UUID idCursor, int limite) {
+        StringBuilder jpql = new StringBuilder("SELECT d FROM documento_clinico d ")
+            .append(FETCH_RELACIONES_DTO).append("WHERE ").append(filtro);
+        boolean conCursor = fecCursor != null && idCursor != null;
+        if (conCursor) {
+            jpql.append(" AND (d.fecCreacion < :fecCursor OR (d.fecCreacion = :fecCursor AND d.id < :idCursor))");
+        }
+        jpql.append(" ORDER BY d.fecCreacion DESC, d.id DESC");
+
+        TypedQuery<documento_clinico> query = em.createQuery(jpql.toString(), documento_clinico.class);
+        parametros.forEach(query::setParameter);
+        if (conCursor) {
+            query.setParameter("fecCursor", fecCursor);
+            query.setParameter("idCursor", idCursor);
+        }
+        query.setMaxResults(limite);
+        return query.getResultList();
+    }
+
+    /**
+     * Cuenta documentos firmados por un profesional en una clínica
+     */
+    public long countByProfesional(Integer profesionalCi, UUID tenantId) {
+        TypedQuery<Long> query = em.createQuery(
+            "SELECT COUNT(d) FROM documento_clinico d " +
+            "WHERE d.profesionalFirmante.ci = :profesionalCi AND d.tenantId = :tenantId",
+            Long.class
+        );
+        query.setParameter("profesionalCi", profesionalCi);
+        query.setParameter("tenantId", tenantId);
+        return query.getSingleResult();
+    }
+
     /**
      * Cuenta documentos de una clínica
      */
@@ -222,111 +404,21 @@ public class DocumentoClinicoDAO {
     }
 
     // ============ MÉTODOS PARA CODIGUERAS ============
-
-    /**
-     * Obtiene el nombre de un motivo de consulta por código
-     */
-    public Optional<String> getNombreMotivoConsulta(String codigo) {
-        try {
-            Integer id = parseCodigo(codigo);
-            if (id == null) {
-                return Optional.empty();
-            }
-            String result = em.createNativeQuery(
-                "SELECT concepto FROM motivo_consulta WHERE id = ?", String.class
-            )
-            .setParameter(1, id)
-            .getSingleResult().toString();
-            return Optional.of(result);
-        } catch (Exception e) {
-            return Optional.empty();
-        }
-    }
-
-    /**
-     * Obtiene el nombre de un estado de problema por código
-     */
-    public Optional<String> getNombreEstadoProblema(String codigo) {
-        try {
-            Integer id = parseCodigo(codigo);
-            if (id == null) {
-                return Optional.empty();
-            }
-            String result = em.createNativeQuery(
-                "SELECT concepto FROM estado_problema WHERE id = ?", String.class
-            )
-            .setParameter(1, id)
-            .getSingleResult().toString();
-            return Optional.of(result);
-        } catch (Exception e) {
-            return Optional.empty();
-        }
-    }
-
-    /**
-     * Obtiene el nombre de un grado de certeza por código
-     */
-    public Optional<String> getNombreGradoCerteza(String codigo) {
-        try {
-            Integer id = parseCodigo(codigo);
-            if (id == null) {
-                return Optional.empty();
-            }
-            String result = em.createNativeQuery(
-                "SELECT concepto FROM grado_certeza WHERE id = ?", String.class
-            )
-            .setParameter(1, id)
-            .getSingleResult().toString();
-            return Optional.of(result);
-        } catch (Exception e) {
-            return Optional.empty();
-        }
-    }
-
-    /**
-     * Busca motivos de consulta por término (para autocompletado)
-     * Limitado a 50 resultados para optimizar rendimiento
-     */
-    @SuppressWarnings("unchecked")
-    public Map<String, String> buscarMotivosConsulta(String termino) {
-        Map<String, String> motivos = new LinkedHashMap<>();
-        try {
-            String query = "SELECT id, concepto FROM motivo_consulta " +
-                          "WHERE LOWER(concepto) LIKE LOWER(?) " +
-                          "ORDER BY concepto LIMIT 50";
-
-            List<Object[]> results = em.createNativeQuery(query)
-                .setParameter(1, "%" + termino + "%")
-                .getResultList();
-
-            for (Object[] row : results) {
-                motivos.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            // Log error si es necesario
-            e.printStackTrace();
-        }
-        return motivos;
-    }
+    // Los errores de lectura se propagan: CodigueraCache conserva el contenido anterior
 
     /**
      * Obtiene todos los motivos de consulta disponibles
-     * NOTA: Este método carga TODOS los registros (~12k) y puede ser muy lento.
-     * Se recomienda usar buscarMotivosConsulta() con filtro para mejor rendimiento.
+     * NOTA: Este método carga TODOS los registros (~12k); solo lo usa CodigueraCache al recargar.
      */
     @SuppressWarnings("unchecked")
     public Map<String, String> getAllMotivosConsulta() {
         Map<String, String> motivos = new LinkedHashMap<>();
-        try {
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM motivo_consulta ORDER BY concepto"
-            ).getResultList();
+        List<Object[]> results = em.createNativeQuery(
+            "SELECT id, concepto FROM motivo_consulta ORDER BY concepto"
+        ).getResultList();
 
-            for (Object[] row : results) {
-                motivos.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            // Log error si es necesario
+        for (Object[] row : results) {
+            motivos.put(row[0].toString(), row[1].toString());
         }
         return motivos;
     }
@@ -337,16 +429,12 @@ public class DocumentoClinicoDAO {
     @SuppressWarnings("unchecked")
     public Map<String, String> getAllEstadosProblema() {
         Map<String, String> estados = new LinkedHashMap<>();
-        try {
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM estado_problema ORDER BY concepto"
-            ).getResultList();
+        List<Object[]> results = em.createNativeQuery(
+            "SELECT id, concepto FROM estado_problema ORDER BY concepto"
+        ).getResultList();
 
-            for (Object[] row : results) {
-                estados.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            // Log error si es necesario
+        for (Object[] row : results) {
+            estados.put(row[0].toString(), row[1].toString());
         }
         return estados;
     }
@@ -357,150 +445,72 @@ public class DocumentoClinicoDAO {
     @SuppressWarnings("unchecked")
     public Map<String, String> getAllGradosCerteza() {
         Map<String, String> grados = new LinkedHashMap<>();
-        try {
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM grado_certeza ORDER BY concepto"
-            ).getResultList();
+        List<Object[]> results = em.createNativeQuery(
+            "SELECT id, concepto FROM grado_certeza ORDER BY concepto"
+        ).getResultList();
 
-            for (Object[] row : results) {
-                grados.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            // Log error si es necesario
+        for (Object[] row : results) {
+            grados.put(row[0].toString(), row[1].toString());
         }
         return grados;
     }
 
     /**
-     * Obtiene nombres de múltiples motivos de consulta en una sola query (batch)
-     * Optimizado para evitar N consultas individuales
-     *
-     * @param codigos Lista de códigos de motivos
-     * @return Map con código -> nombre (solo incluye los que existen en BD)
+     * Arma el DTO a partir de una fila de SELECT_DTO
      */
-    @SuppressWarnings("unchecked")
-    public Map<String, String> getNombresMotivosConsultaBatch(Collection<String> codigos) {
-        Map<String, String> resultado = new HashMap<>();
-        if (codigos == null || codigos.isEmpty()) {
-            return resultado;
-        }
-
-        try {
-            // Convertir códigos String a Integer y filtrar nulls
-            List<Integer> ids = codigos.stream()
-                .map(this::parseCodigo)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
-
-            if (ids.isEmpty()) {
-                return resultado;
+    private documento_clinico_dto mapearFilaDTO(Object[] fila) {
+        documento_clinico_dto dto = new documento_clinico_dto();
+        dto.setId(texto(fila[0]));
+        dto.setTenantId(texto(fila[1]));
+        dto.setFecCreacion(aLocalDateTime(fila[2]));
+        dto.setUsuarioSaludCedula(texto(fila[3]));
+        dto.setProfesionalCi(fila[4] != null ? ((Number) fila[4]).intValue() : null);
+
+        // Mismo formato que UsuarioSalud.getNombreCompleto()
+        if (fila[5] != null || fila[6] != null || fila[7] != null || fila[8] != null) {
+            StringBuilder nombre = new StringBuilder();
+            for (int i = 5; i <= 8; i++) {
+                if (fila[i] != null) {
+                    nombre.append(' ').append(fila[i]);
+                }
             }
-
-            // UNA sola consulta con IN clause
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM motivo_consulta WHERE id IN (:ids)"
-            )
-            .setParameter("ids", ids)
-            .getResultList();
-
-            for (Object[] row : results) {
-                resultado.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            // Log error si es necesario
-            e.printStackTrace();
+            dto.setNombreCompletoPaciente(nombre.toString().trim());
         }
-        return resultado;
+        dto.setNombreCompletoProfesional(fila[9] + " " + fila[10]);
+        dto.setEspecialidadProfesional(texto(fila[11]));
+        dto.setNombreClinica(texto(fila[12]));
+
+        dto.setCodigoMotivoConsulta(texto(fila[13]));
+        dto.setNombreMotivoConsulta(texto(fila[14]));
+        dto.setDescripcionDiagnostico(texto(fila[15]));
+        dto.setFechaInicioDiagnostico(aLocalDate(fila[16]));
+        dto.setCodigoEstadoProblema(texto(fila[17]));
+        dto.setNombreEstadoProblema(texto(fila[18]));
+        dto.setCodigoGradoCerteza(texto(fila[19]));
+        dto.setNombreGradoCerteza(texto(fila[20]));
+
+        dto.setFechaProximaConsulta(aLocalDate(fila[21]));
+        dto.setDescripcionProximaConsulta(texto(fila[22]));
+        dto.setReferenciaAlta(texto(fila[23]));
+        return dto;
     }
 
-    /**
-     * Obtiene nombres de múltiples estados de problema en una sola query (batch)
-     *
-     * @param codigos Lista de códigos de estados
-     * @return Map con código -> nombre (solo incluye los que existen en BD)
-     */
-    @SuppressWarnings("unchecked")
-    public Map<String, String> getNombresEstadosProblemaBatch(Collection<String> codigos) {
-        Map<String, String> resultado = new HashMap<>();
-        if (codigos == null || codigos.isEmpty()) {
-            return resultado;
-        }
-
-        try {
-            List<Integer> ids = codigos.stream()
-                .map(this::parseCodigo)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
-
-            if (ids.isEmpty()) {
-                return resultado;
-            }
-
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM estado_problema WHERE id IN (:ids)"
-            )
-            .setParameter("ids", ids)
-            .getResultList();
-
-            for (Object[] row : results) {
-                resultado.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return resultado;
+    private static String texto(Object valor) {
+        return valor != null ? valor.toString() : null;
     }
 
-    /**
-     * Obtiene nombres de múltiples grados de certeza en una sola query (batch)
-     *
-     * @param codigos Lista de códigos de grados
-     * @return Map con código -> nombre (solo incluye los que existen en BD)
-     */
-    @SuppressWarnings("unchecked")
-    public Map<String, String> getNombresGradosCertezaBatch(Collection<String> codigos) {
-        Map<String, String> resultado = new HashMap<>();
-        if (codigos == null || codigos.isEmpty()) {
-            return resultado;
+    private static LocalDateTime aLocalDateTime(Object valor) {
+        if (valor instanceof java.sql.Timestamp) {
+            return ((java.sql.Timestamp) valor).toLocalDateTime();
         }
-
-        try {
-            List<Integer> ids = codigos.stream()
-                .map(this::parseCodigo)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(java.util.stream.Collectors.toList());
-
-            if (ids.isEmpty()) {
-                return resultado;
-            }
-
-            List<Object[]> results = em.createNativeQuery(
-                "SELECT id, concepto FROM grado_certeza WHERE id IN (:ids)"
-            )
-            .setParameter("ids", ids)
-            .getResultList();
-
-            for (Object[] row : results) {
-                resultado.put(row[0].toString(), row[1].toString());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return resultado;
+        return (LocalDateTime) valor;
     }
 
-    private Integer parseCodigo(String codigo) {
-        if (codigo == null) {
-            return null;
-        }
-        try {
-            return Integer.valueOf(codigo);
-        } catch (NumberFormatException ex) {
-            return null;
+    private static java.time.LocalDate aLocalDate(Object valor) {
+        if (valor instanceof java.sql.Date) {
+            return ((java.sql.Date) valor).toLocalDate();
         }
+        return (java.time.LocalDate) valor;
     }
 
     /**
@@ -1,7 +1,10 @@
 package com.hcen.periferico.dao;
 
 import com.hcen.periferico.entity.profesional_salud;
+import com.hcen.periferico.util.TextoBusqueda;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
@@ -12,6 +15,8 @@ import java.util.stream.Collectors;
 @Stateless
 public class ProfesionalSaludDAO {
 
+    private static final String ORDEN_DIRECTORIO = " ORDER BY p.apellidosBusqueda, p.nombreBusqueda, p.id";
+
     @PersistenceContext(unitName = "hcen-periferico-pu")
     private EntityManager em;
 
@@ -43,7 +48,7 @@ public class ProfesionalSaludDAO {
 
     public List<profesional_salud> findAll() {
         TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p WHERE p.active = true ORDER BY p.apellidos, p.nombre",
+            "SELECT p FROM profesional_salud p WHERE p.active = true" + ORDEN_DIRECTORIO,
             profesional_salud.class
         );
         return query.getResultList();
@@ -51,7 +56,7 @@ public class ProfesionalSaludDAO {
 
     public List<profesional_salud> findByEspecialidadId(UUID especialidadId) {
         TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p WHERE p.especialidadId = :especialidadId AND p.active = true ORDER BY p.apellidos, p.nombre",
+            "SELECT p FROM profesional_salud p WHERE p.especialidadId = :especialidadId AND p.active = true" + ORDEN_DIRECTORIO,
             profesional_salud.class
         );
         query.setParameter("especialidadId", especialidadId);
@@ -82,19 +87,12 @@ public class ProfesionalSaludDAO {
     }
 
     public List<profesional_salud> findByNombreOrApellido(String searchTerm) {
-        TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p WHERE " +
-            "p.active = true AND (LOWER(p.nombre) LIKE LOWER(:term) OR LOWER(p.apellidos) LIKE LOWER(:term)) " +
-            "ORDER BY p.apellidos, p.nombre",
-            profesional_salud.class
-        );
-        query.setParameter("term", "%" + searchTerm + "%");
-        return query.getResultList();
+        return buscar(searchTerm, null, null, ORDEN_DIRECTORIO).getResultList();
     }
 
     public List<profesional_salud> findAllPaginated(int page, int size) {
         TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p WHERE p.active = true ORDER BY p.apellidos, p.nombre",
+            "SELECT p FROM profesional_salud p WHERE p.active = true" + ORDEN_DIRECTORIO,
             profesional_salud.class
         );
         query.setFirstResult(page * size);
@@ -103,13 +101,7 @@ public class ProfesionalSaludDAO {
     }
 
     public List<profesional_salud> findByNombreOrApellidoPaginated(String searchTerm, int page, int size) {
-        TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p WHERE " +
-            "p.active = true AND (LOWER(p.nombre) LIKE LOWER(:term) OR LOWER(p.apellidos) LIKE LOWER(:term)) " +
-            "ORDER BY p.apellidos, p.nombre",
-            profesional_salud.class
-        );
-        query.setParameter("term", "%" + searchTerm + "%");
+        TypedQuery<profesional_salud> query = buscar(searchTerm, null, null, ORDEN_DIRECTORIO);
         query.setFirstResult(page * size);
         query.setMaxResults(size);
         return query.getResultList();
@@ -124,13 +116,7 @@ public class ProfesionalSaludDAO {
     }
 
     public long countByNombreOrApellido(String searchTerm) {
-        TypedQuery<Long> query = em.createQuery(
-            "SELECT COUNT(p) FROM profesional_salud p WHERE " +
-            "p.active = true AND (LOWER(p.nombre) LIKE LOWER(:term) OR LOWER(p.apellidos) LIKE LOWER(:term))",
-            Long.class
-        );
-        query.setParameter("term", "%" + searchTerm + "%");
-        return query.getSingleResult();
+        return contar(searchTerm, null);
     }
 
     /**
@@ -139,8 +125,8 @@ public class ProfesionalSaludDAO {
     public List<profesional_salud> findByTenantIdPaginated(UUID tenantId, int page, int size) {
         TypedQuery<profesional_salud> query = em.createQuery(
             "SELECT p FROM profesional_salud p " +
-            "WHERE p.tenantId = :tenantId AND p.active = true " +
-            "ORDER BY p.apellidos, p.nombre",
+            "WHERE p.tenantId = :tenantId AND p.active = true" +
+            ORDEN_DIRECTORIO,
             profesional_salud.class
         );
         query.setParameter("tenantId", tenantId);
@@ -154,15 +140,7 @@ public class ProfesionalSaludDAO {
      */
     public List<profesional_salud> findByNombreOrApellidoAndTenantIdPaginated(
             String searchTerm, UUID tenantId, int page, int size) {
-        TypedQuery<profesional_salud> query = em.createQuery(
-            "SELECT p FROM profesional_salud p " +
-            "WHERE p.tenantId = :tenantId AND p.active = true AND " +
-            "(LOWER(p.nombre) LIKE LOWER(:term) OR LOWER(p.apellidos) LIKE LOWER(:term)) " +
-            "ORDER BY p.apellidos, p.nombre",
-            profesional_salud.class
-        );
-        query.setParameter("tenantId", tenantId);
-        query.setParameter("term", "%" + searchTerm + "%");
+        TypedQuery<profesional_salud> query = buscar(searchTerm, null, tenantId, ORDEN_DIRECTORIO);
         query.setFirstResult(page * size);
         query.setMaxResults(size);
         return query.getResultList();
@@ -185,17 +163,120 @@ public class ProfesionalSaludDAO {
      * Cuenta profesionales que coinciden con el término de búsqueda en una clínica
      */
     public long countByNombreOrApellidoAndTenantId(String searchTerm, UUID tenantId) {
+        return contar(searchTerm, tenantId);
+    }
+
+    /**
+     * Página del directorio de profesionales ordenada por (apellidos, nombre, id) con paginación
+     * por cursor (keyset): la posición se indica con las claves del último profesional de la página
+     * anterior (todas null para la primera), por lo que el costo no depende de la profundidad.
+     *
+     * @param termino   palabras que deben aparecer en nombre o apellidos (sin tildes ni mayúsculas), opcional
+     * @param ci        cédula exacta, opcional
+     * @param tenantId  clínica, o null para el directorio de todas las clínicas
+     * @param limite    máximo de filas (el servicio pide una de más para saber si hay otra página)
+     */
+    public List<profesional_salud> findDirectorioKeyset(String termino, Integer ci, UUID tenantId,
+                                                        String apellidosCursor, String nombreCursor,
+                                                        UUID idCursor, int limite) {
+        String keyset = "";
+        if (apellidosCursor != null && nombreCursor != null && idCursor != null) {
+            keyset = " AND (p.apellidosBusqueda > :apellidosCursor" +
+                " OR (p.apellidosBusqueda = :apellidosCursor AND p.nombreBusqueda > :nombreCursor)" +
+                " OR (p.apellidosBusqueda = :apellidosCursor AND p.nombreBusqueda = :nombreCursor" +
+                " AND p.id > :idCursor))";
+        }
+        TypedQuery<profesional_salud> query = buscar(termino, ci, tenantId, keyset + ORDEN_DIRECTORIO);
+        if (!keyset.isEmpty()) {
+            query.setParameter("apellidosCursor", apellidosCursor);
+            query.setParameter("nombreCursor", nombreCursor);
+            query.setParameter("idCursor", idCursor);
+        }
+        query.setMaxResults(limite);
+        return query.getResultList();
+    }
+
+    /**
+     * Completa las claves de búsqueda de un lote de profesionales creados antes de que existieran.
+     * Transacción propia por lote para no bloquear la tabla entera al desplegar.
+     *
+     * @return cantidad de profesionales actualizados (0 cuando no quedan pendientes)
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int completarClavesBusqueda(int lote) {
+        List<profesional_salud> pendientes = em.createQuery(
+            "SELECT p FROM profesional_salud p WHERE p.nombreBusqueda IS NULL OR p.apellidosBusqueda IS NULL",
+            profesional_salud.class
+        )
+        .setMaxResults(lote)
+        .getResultList();
+        for (profesional_salud profesional : pendientes) {
+            profesional.actualizarClavesBusqueda();
+        }
+        return pendientes.size();
+    }
+
+    /**
+     * Ejecuta una sentencia DDL de los índices de búsqueda en su propia transacción, para que un
+     * fallo (ej. sin permisos para crear pg_trgm) no afecte a las demás
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void crearIndiceBusqueda(String sentencia) {
+        em.createNativeQuery(sentencia).executeUpdate();
+    }
+
+    /**
+     * Consulta de profesionales activos filtrada por palabras del término (columna nombre_busqueda,
+     * con índice trigram), cédula y clínica opcionales; sufijo agrega condiciones y el orden
+     */
+    private TypedQuery<profesional_salud> buscar(String termino, Integer ci, UUID tenantId, String sufijo) {
+        List<String> palabras = TextoBusqueda.palabras(termino);
+        TypedQuery<profesional_salud> query = em.createQuery(
+            "SELECT p FROM profesional_salud p WHERE p.active = true" +
+            filtroBusqueda(palabras, ci, tenantId) + sufijo,
+            profesional_salud.class
+        );
+        asignarFiltroBusqueda(query, palabras, ci, tenantId);
+        return query;
+    }
+
+    private long contar(String termino, UUID tenantId) {
+        List<String> palabras = TextoBusqueda.palabras(termino);
         TypedQuery<Long> query = em.createQuery(
-            "SELECT COUNT(p) FROM profesional_salud p " +
-            "WHERE p.tenantId = :tenantId AND p.active = true AND " +
-            "(LOWER(p.nombre) LIKE LOWER(:term) OR LOWER(p.apellidos) LIKE LOWER(:term))",
+            "SELECT COUNT(p) FROM profesional_salud p WHERE p.active = true" +
+            filtroBusqueda(palabras, null, tenantId),
             Long.class
         );
-        query.setParameter("tenantId", tenantId);
-        query.setParameter("term", "%" + searchTerm + "%");
+        asignarFiltroBusqueda(query, palabras, null, tenantId);
         return query.getSingleResult();
     }
 
+    private String filtroBusqueda(List<String> palabras, Integer ci, UUID tenantId) {
+        StringBuilder filtro = new StringBuilder();
+        if (tenantId != null) {
+            filtro.append(" AND p.tenantId = :tenantId");
+        }
+        if (ci != null) {
+            filtro.append(" AND p.ci = :ci");
+        }
+        for (int i = 0; i < palabras.size(); i++) {
+            filtro.append(" AND p.nombreBusqueda LIKE :p").append(i);
+        }
+        return filtro.toString();
+    }
+
+    private void asignarFiltroBusqueda(TypedQuery<?> query, List<String> palabras, Integer ci, UUID tenantId) {
+        if (tenantId != null) {
+            query.setParameter("tenantId", tenantId);
+        }
+        if (ci != null) {
+            query.setParameter("ci", ci);
+        }
+        for (int i = 0; i < palabras.size(); i++) {
+            query.setParameter("p" + i, "%" + palabras.get(i) + "%");
+        }
+    }
+
     /**
      * Busca un profesional por email y clínica (tenant) para autenticación.
      */
@@ -5,10 +5,16 @@ import com.hcen.periferico.entity.SincronizacionPendiente.EstadoSincronizacion;
 import com.hcen.periferico.enums.TipoSincronizacion;
 import jakarta.ejb.Stateless;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,6 +24,11 @@ import java.util.UUID;
 @Stateless
 public class SincronizacionPendienteDAO {
 
+    /**
+     * Valor de lock.timeout que Hibernate traduce a FOR UPDATE SKIP LOCKED (LockOptions.SKIP_LOCKED)
+     */
+    private static final int LOCK_TIMEOUT_SKIP_LOCKED = -2;
+
     @PersistenceContext(unitName = "hcen-periferico-pu")
     private EntityManager em;
 
@@ -66,6 +77,106 @@ public class SincronizacionPendienteDAO {
         return query.getResultList();
     }
 
+    /**
+     * Transición de estado de la auditoría de un documento en una única sentencia
+     * (UPDATE ... WHERE id = (...) RETURNING id), sin leer ni mergear la entidad.
+     *
+     * El registro se correlaciona por message_id (el mensaje JMS que originó la confirmación)
+     * y, si no coincide ninguno, por documento_id: el registro abierto más reciente del documento.
+     *
+     * @param documentoId ID del documento sincronizado
+     * @param tenantId ID de la clínica
+     * @param messageId ID del mensaje JMS original (puede ser null)
+     * @param estado Nuevo estado (RESUELTA o ERROR)
+     * @param error Mensaje de error (null conserva el anterior)
+     * @return ID del registro actualizado, o vacío si no había ninguno abierto
+     */
+    public Optional<UUID> transicionarEstadoDocumento(UUID documentoId, UUID tenantId, String messageId,
+                                                     EstadoSincronizacion estado, String error) {
+        boolean conMessageId = messageId != null && !messageId.isBlank();
+        boolean conError = error != null;
+
+        // Los parámetros null se omiten del SQL: PostgreSQL no infiere el tipo de un NULL sin contexto
+        Query query = em.createNativeQuery(
+            "UPDATE sincronizacion_pendiente " +
+            "SET estado = :estado, updated_at = :ahora" +
+            (conError ? ", ultimo_error = :error " : " ") +
+            "WHERE id = (" +
+            "SELECT s.id FROM sincronizacion_pendiente s " +
+            "WHERE s.tenant_id = :tenantId AND s.estado IN ('PENDIENTE', 'ERROR') " +
+            (conMessageId
+                ? "AND (s.documento_id = :documentoId OR s.message_id = :messageId) " +
+                  "ORDER BY CASE WHEN s.message_id = :messageId THEN 0 ELSE 1 END, s.created_at DESC "
+                : "AND s.documento_id = :documentoId ORDER BY s.created_at DESC ") +
+            "LIMIT 1" +
+            ") RETURNING id"
+        );
+        query.setParameter("estado", estado.name());
+        query.setParameter("ahora", LocalDateTime.now());
+        query.setParameter("tenantId", tenantId);
+        query.setParameter("documentoId", documentoId);
+        if (conError) {
+            query.setParameter("error", error);
+        }
+        if (conMessageId) {
+            query.setParameter("messageId", messageId);
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object> ids = query.getResultList();
+
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        Object id = ids.get(0);
+        return Optional.of(id instanceof UUID ? (UUID) id : UUID.fromString(id.toString()));
+    }
+
+    /**
+     * Marca como RESUELTA, en un único UPDATE, la auditoría de varios documentos de una clínica
+     *
+     * @return Cantidad de registros actualizados
+     */
+    public int marcarDocumentosResueltos(Collection<UUID> documentoIds, UUID tenantId) {
+        return actualizarEstadoDocumentos(documentoIds, tenantId, EstadoSincronizacion.RESUELTA, null);
+    }
+
+    /**
+     * Marca como ERROR, en un único UPDATE, la auditoría de varios documentos de una clínica
+     *
+     * @return Cantidad de registros actualizados
+     */
+    public int marcarDocumentosConError(Collection<UUID> documentoIds, UUID tenantId, String error) {
+        return actualizarEstadoDocumentos(documentoIds, tenantId, EstadoSincronizacion.ERROR, error);
+    }
+
+    /**
+     * Transición masiva de estado (solo registros aún PENDIENTE o ERROR).
+     * Los UPDATE JPQL no disparan @PreUpdate, por eso updatedAt se setea explícitamente.
+     */
+    private int actualizarEstadoDocumentos(Collection<UUID> documentoIds, UUID tenantId,
+                                           EstadoSincronizacion estado, String error) {
+        if (documentoIds == null || documentoIds.isEmpty()) {
+            return 0;
+        }
+        Query query = em.createQuery(
+            "UPDATE SincronizacionPendiente s " +
+            "SET s.estado = :estado, s.updatedAt = :ahora" +
+            (error != null ? ", s.ultimoError = :error " : " ") +
+            "WHERE s.documentoId IN :documentoIds AND s.tenantId = :tenantId " +
+            "AND s.estado IN :estadosAbiertos"
+        );
+        query.setParameter("estado", estado);
+        query.setParameter("ahora", LocalDateTime.now());
+        query.setParameter("documentoIds", documentoIds);
+        query.setParameter("tenantId", tenantId);
+        query.setParameter("estadosAbiertos", List.of(EstadoSincronizacion.PENDIENTE, EstadoSincronizacion.ERROR));
+        if (error != null) {
+            query.setParameter("error", error);
+        }
+        return query.executeUpdate();
+    }
+
     /**
      * Obtiene todas las sincronizaciones pendientes
      */
@@ -122,6 +233,105 @@ public class SincronizacionPendienteDAO {
         return query.getResultList();
     }
 
+    /**
+     * Página de candidatos a reintento (paginación keyset por created_at, id).
+     *
+     * Candidatos: registros del tipo indicado en ERROR, con menos de maxIntentos y cuyo
+     * próximo intento ya venció. Los que nunca se encolaron los publica el relay del outbox.
+     *
+     * Las filas se bloquean con SKIP LOCKED: un reenvío manual (procesarInmediato) y el ciclo
+     * programado pueden correr a la vez sin reenviar dos veces el mismo registro.
+     *
+     * @param desdeCreatedAt created_at del último registro de la página anterior (null = primera página)
+     * @param desdeId id del último registro de la página anterior
+     */
+    public List<SincronizacionPendiente> findParaReintentarDesde(TipoSincronizacion tipo, int maxIntentos,
+                                                                LocalDateTime ahora, LocalDateTime desdeCreatedAt,
+                                                                UUID desdeId, int limite) {
+        boolean conCursor = desdeCreatedAt != null && desdeId != null;
+        TypedQuery<SincronizacionPendiente> query = em.createQuery(
+            "SELECT s FROM SincronizacionPendiente s " +
+            "WHERE s.tipo = :tipo AND s.intentos < :maxIntentos " +
+            "AND s.estado = :error " +
+            "AND (s.proximoIntento IS NULL OR s.proximoIntento <= :ahora) " +
+            (conCursor ? "AND (s.createdAt > :desdeCreatedAt OR (s.createdAt = :desdeCreatedAt AND s.id > :desdeId)) " : "") +
+            "ORDER BY s.createdAt, s.id",
+            SincronizacionPendiente.class
+        );
+        query.setParameter("tipo", tipo);
+        query.setParameter("maxIntentos", maxIntentos);
+        query.setParameter("error", EstadoSincronizacion.ERROR);
+        query.setParameter("ahora", ahora);
+        if (conCursor) {
+            query.setParameter("desdeCreatedAt", desdeCreatedAt);
+            query.setParameter("desdeId", desdeId);
+        }
+        query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        query.setHint("jakarta.persistence.lock.timeout", LOCK_TIMEOUT_SKIP_LOCKED);
+        query.setMaxResults(limite);
+        return query.getResultList();
+    }
+
+    /**
+     * Registros del outbox todavía no publicados (PENDIENTE sin message_id), más antiguos primero.
+     *
+     * Las filas se bloquean con SKIP LOCKED: varios nodos pueden ejecutar el relay
+     * sin publicar dos veces el mismo registro.
+     */
+    public List<SincronizacionPendiente> findOutboxSinPublicar(TipoSincronizacion tipo, int limite) {
+        TypedQuery<SincronizacionPendiente> query = em.createQuery(
+            "SELECT s FROM SincronizacionPendiente s " +
+            "WHERE s.tipo = :tipo AND s.estado = :pendiente AND s.messageId IS NULL " +
+            "ORDER BY s.createdAt, s.id",
+            SincronizacionPendiente.class
+        );
+        query.setParameter("tipo", tipo);
+        query.setParameter("pendiente", EstadoSincronizacion.PENDIENTE);
+        query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+        query.setHint("jakarta.persistence.lock.timeout", LOCK_TIMEOUT_SKIP_LOCKED);
+        query.setMaxResults(limite);
+        return query.getResultList();
+    }
+
+    /**
+     * Fecha de creación del registro del outbox sin publicar más antiguo (para medir el retraso del relay)
+     */
+    public Optional<LocalDateTime> findOutboxSinPublicarMasAntiguo(TipoSincronizacion tipo) {
+        LocalDateTime masAntiguo = em.createQuery(
+            "SELECT MIN(s.createdAt) FROM SincronizacionPendiente s " +
+            "WHERE s.tipo = :tipo AND s.estado = :pendiente AND s.messageId IS NULL",
+            LocalDateTime.class
+        )
+        .setParameter("tipo", tipo)
+        .setParameter("pendiente", EstadoSincronizacion.PENDIENTE)
+        .getSingleResult();
+        return Optional.ofNullable(masAntiguo);
+    }
+
+    /**
+     * Cuenta, por tenant, los envíos en vuelo: encolados desde "enviadosDesde"
+     * y todavía sin confirmación del central
+     */
+    public Map<UUID, Long> countEnVueloPorTenant(TipoSincronizacion tipo, LocalDateTime enviadosDesde) {
+        List<Object[]> filas = em.createQuery(
+            "SELECT s.tenantId, COUNT(s) FROM SincronizacionPendiente s " +
+            "WHERE s.tipo = :tipo AND s.estado = :pendiente AND s.messageId IS NOT NULL " +
+            "AND s.fecEnvioCola >= :enviadosDesde " +
+            "GROUP BY s.tenantId",
+            Object[].class
+        )
+        .setParameter("tipo", tipo)
+        .setParameter("pendiente", EstadoSincronizacion.PENDIENTE)
+        .setParameter("enviadosDesde", enviadosDesde)
+        .getResultList();
+
+        Map<UUID, Long> resultado = new HashMap<>();
+        for (Object[] fila : filas) {
+            resultado.put((UUID) fila[0], (Long) fila[1]);
+        }
+        return resultado;
+    }
+
     /**
      * Elimina una sincronización pendiente
      */
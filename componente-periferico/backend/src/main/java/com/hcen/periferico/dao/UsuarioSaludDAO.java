@@ -2,7 +2,10 @@ package com.hcen.periferico.dao;
 
 import com.hcen.periferico.entity.UsuarioSalud;
 import com.hcen.periferico.entity.UsuarioSalud.UsuarioSaludId;
+import com.hcen.periferico.util.TextoBusqueda;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
@@ -30,6 +33,11 @@ public class UsuarioSaludDAO {
 
     private static final Logger LOGGER = Logger.getLogger(UsuarioSaludDAO.class.getName());
 
+    /**
+     * Máximo de resultados de las búsquedas por nombre/cédula (autocompletado en las UIs)
+     */
+    private static final int LIMITE_BUSQUEDA = 50;
+
     @PersistenceContext(unitName = "hcen-periferico-pu")
     private EntityManager em;
 
@@ -91,20 +99,109 @@ public class UsuarioSaludDAO {
      * Busca usuarios por nombre o apellido dentro de una clínica
      */
     public List<UsuarioSalud> searchByNombreOrApellidoAndTenant(String searchTerm, UUID tenantId) {
-        TypedQuery<UsuarioSalud> query = em.createQuery(
-            "SELECT u FROM UsuarioSalud u WHERE u.tenantId = :tenantId AND u.active = true AND " +
-            "(LOWER(u.primerNombre) LIKE LOWER(:term) OR " +
-            "LOWER(u.segundoNombre) LIKE LOWER(:term) OR " +
-            "LOWER(u.primerApellido) LIKE LOWER(:term) OR " +
-            "LOWER(u.segundoApellido) LIKE LOWER(:term)) " +
-            "ORDER BY u.primerApellido, u.primerNombre",
-            UsuarioSalud.class
-        );
+        return buscarPorTenant(searchTerm, tenantId, LIMITE_BUSQUEDA);
+    }
+
+    /**
+     * Búsqueda de pacientes de una clínica por nombre/apellido o por prefijo de cédula.
+     *
+     * - Si el término es un número de documento se busca por prefijo de cédula
+     *   (índice idx_usuario_salud_cedula_prefijo).
+     * - Si no, cada palabra del término (normalizada con TextoBusqueda) debe aparecer en nombre_busqueda;
+     *   el LIKE '%palabra%' se resuelve con el índice trigram idx_usuario_salud_nombre_trgm.
+     *
+     * Los resultados se ordenan por relevancia: cédula exacta, nombre que empieza con el término,
+     * alguna palabra que empieza con el término y por último coincidencias parciales.
+     */
+    public List<UsuarioSalud> buscarPorTenant(String termino, UUID tenantId, int limite) {
+        if (termino == null || termino.isBlank()) {
+            return List.of();
+        }
+
+        if (TextoBusqueda.esNumeroDocumento(termino)) {
+            String digitos = TextoBusqueda.soloDigitos(termino);
+            TypedQuery<UsuarioSalud> query = em.createQuery(
+                "SELECT u FROM UsuarioSalud u " +
+                "WHERE u.tenantId = :tenantId AND u.active = true AND u.cedula LIKE :prefijo " +
+                "ORDER BY CASE WHEN u.cedula = :cedula THEN 0 ELSE 1 END, u.cedula",
+                UsuarioSalud.class
+            );
+            query.setParameter("tenantId", tenantId);
+            query.setParameter("prefijo", digitos + "%");
+            query.setParameter("cedula", digitos);
+            query.setMaxResults(limite);
+            return query.getResultList();
+        }
+
+        List<String> palabras = TextoBusqueda.palabras(termino);
+        if (palabras.isEmpty()) {
+            return List.of();
+        }
+
+        StringBuilder jpql = new StringBuilder(
+            "SELECT u FROM UsuarioSalud u WHERE u.tenantId = :tenantId AND u.active = true");
+        for (int i = 0; i < palabras.size(); i++) {
+            jpql.append(" AND u.nombreBusqueda LIKE :palabra").append(i);
+        }
+        jpql.append(" ORDER BY CASE")
+            .append(" WHEN u.nombreBusqueda LIKE :inicio THEN 0")
+            .append(" WHEN u.nombreBusqueda LIKE :inicioPalabra THEN 1")
+            .append(" ELSE 2 END, u.primerApellido, u.primerNombre");
+
+        String frase = String.join(" ", palabras);
+        TypedQuery<UsuarioSalud> query = em.createQuery(jpql.toString(), UsuarioSalud.class);
         query.setParameter("tenantId", tenantId);
-        query.setParameter("term", "%" + searchTerm + "%");
+        for (int i = 0; i < palabras.size(); i++) {
+            query.setParameter("palabra" + i, "%" + palabras.get(i) + "%");
+        }
+        query.setParameter("inicio", frase + "%");
+        query.setParameter("inicioPalabra", "% " + frase + "%");
+        query.setMaxResults(limite);
         return query.getResultList();
     }
 
+    /**
+     * Completa nombre_busqueda en usuarios creados antes de existir la columna.
+     * Procesa un lote por transacción para no bloquear la tabla con un único UPDATE.
+     *
+     * Lee solo las columnas de nombre (sin cargar entidades) y escribe con UPDATE directos, que no
+     * disparan @PreUpdate: updated_at no cambia. Los usuarios sin nombre normalizable quedan con ""
+     * y no se vuelven a seleccionar.
+     *
+     * @return cantidad de usuarios completados (0 cuando ya no quedan)
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int completarNombresBusqueda(int lote) {
+        List<Object[]> pendientes = em.createQuery(
+            "SELECT u.cedula, u.tenantId, u.primerNombre, u.segundoNombre, u.primerApellido, u.segundoApellido " +
+            "FROM UsuarioSalud u WHERE u.nombreBusqueda IS NULL",
+            Object[].class
+        )
+        .setMaxResults(lote)
+        .getResultList();
+        for (Object[] fila : pendientes) {
+            String nombre = TextoBusqueda.normalizar(
+                (String) fila[2], (String) fila[3], (String) fila[4], (String) fila[5]);
+            em.createQuery(
+                "UPDATE UsuarioSalud u SET u.nombreBusqueda = :nombre " +
+                "WHERE u.cedula = :cedula AND u.tenantId = :tenantId")
+            .setParameter("nombre", Objects.requireNonNullElse(nombre, ""))
+            .setParameter("cedula", fila[0])
+            .setParameter("tenantId", fila[1])
+            .executeUpdate();
+        }
+        return pendientes.size();
+    }
+
+    /**
+     * Ejecuta una sentencia DDL de los índices de búsqueda en su propia transacción, para que un
+     * fallo (ej. sin permisos para crear pg_trgm) no afecte a las demás
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void crearIndiceBusqueda(String sentencia) {
+        em.createNativeQuery(sentencia).executeUpdate();
+    }
+
     /**
      * Busca usuarios pendientes de sincronización con el central
      */
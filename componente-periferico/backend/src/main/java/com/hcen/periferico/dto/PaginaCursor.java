@@ -0,0 +1,61 @@
+package com.hcen.periferico.dto;
+
+import com.hcen.periferico.util.CursorKeyset;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página obtenida por cursor (keyset), con el cursor para pedir la siguiente.
+ * Se devuelve tal cual en los endpoints REST; totalCount solo se informa si el cliente lo pidió.
+ */
+public class PaginaCursor<T> {
+
+    private List<T> data;
+    private String siguienteCursor;
+    private boolean hayMas;
+    private int pageSize;
+    private Long totalCount;
+
+    public PaginaCursor() {}
+
+    public PaginaCursor(List<T> data, String siguienteCursor, boolean hayMas, int pageSize) {
+        this.data = data;
+        this.siguienteCursor = siguienteCursor;
+        this.hayMas = hayMas;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Arma la página a partir de una consulta que pidió un elemento de más:
+     * si vino, hay otra página y el cursor apunta al último elemento devuelto
+     *
+     * @param posicion valores de la clave de orden de un elemento
+     */
+    public static <E> PaginaCursor<E> desdeConsulta(List<E> filas, int size, Function<E, CursorKeyset> posicion) {
+        boolean hayMas = filas.size() > size;
+        List<E> pagina = hayMas ? filas.subList(0, size) : filas;
+        String siguienteCursor = hayMas ? posicion.apply(pagina.get(pagina.size() - 1)).codificar() : null;
+        return new PaginaCursor<>(pagina, siguienteCursor, hayMas, size);
+    }
+
+    /**
+     * Misma página con los elementos convertidos (ej. entidades a DTOs)
+     */
+    public <R> PaginaCursor<R> convertir(Function<List<T>, List<R>> conversion) {
+        PaginaCursor<R> convertida = new PaginaCursor<>(conversion.apply(data), siguienteCursor, hayMas, pageSize);
+        convertida.setTotalCount(totalCount);
+        return convertida;
+    }
+
+    public List<T> getData() { return data; }
+    public void setData(List<T> data) { this.data = data; }
+    public String getSiguienteCursor() { return siguienteCursor; }
+    public void setSiguienteCursor(String siguienteCursor) { this.siguienteCursor = siguienteCursor; }
+    public boolean isHayMas() { return hayMas; }
+    public void setHayMas(boolean hayMas) { this.hayMas = hayMas; }
+    public int getPageSize() { return pageSize; }
+    public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+    public Long getTotalCount() { return totalCount; }
+    public void setTotalCount(Long totalCount) { this.totalCount = totalCount; }
+}
@@ -22,7 +22,10 @@ import java.util.UUID;
        indexes = {
            @Index(name = "idx_usuario_ref", columnList = "usuario_cedula,tenant_id"),
            @Index(name = "idx_created", columnList = "created_at"),
-           @Index(name = "idx_tipo_estado", columnList = "tipo,estado")
+           @Index(name = "idx_tipo_estado", columnList = "tipo,estado"),
+           @Index(name = "idx_sync_documento", columnList = "documento_id,tenant_id"),
+           @Index(name = "idx_sync_message", columnList = "message_id"),
+           @Index(name = "idx_sync_reintento", columnList = "tipo,estado,proximo_intento")
        })
 public class SincronizacionPendiente implements Serializable {
 
@@ -102,6 +105,13 @@ public class SincronizacionPendiente implements Serializable {
     @Column(name = "ultimo_error", columnDefinition = "TEXT")
     private String ultimoError;
 
+    /**
+     * Momento a partir del cual el scheduler puede volver a reenviar el registro
+     * (backoff exponencial con jitter). Null = reintentable de inmediato.
+     */
+    @Column(name = "proximo_intento")
+    private LocalDateTime proximoIntento;
+
     // ============ AUDITORÍA ============
 
     /**
@@ -219,6 +229,14 @@ public class SincronizacionPendiente implements Serializable {
         this.ultimoError = ultimoError;
     }
 
+    public LocalDateTime getProximoIntento() {
+        return proximoIntento;
+    }
+
+    public void setProximoIntento(LocalDateTime proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -285,6 +303,7 @@ public class SincronizacionPendiente implements Serializable {
                 ", tenantId=" + tenantId +
                 ", estado=" + estado +
                 ", intentos=" + intentos +
+                ", proximoIntento=" + proximoIntento +
                 ", ultimoError='" + (ultimoError != null ? ultimoError.substring(0, Math.min(50, ultimoError.length())) + "..." : null) + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
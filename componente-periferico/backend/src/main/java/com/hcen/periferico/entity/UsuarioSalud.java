@@ -1,5 +1,6 @@
 package com.hcen.periferico.entity;
 
+import com.hcen.periferico.util.TextoBusqueda;
 import jakarta.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDate;
@@ -47,6 +48,15 @@ public class UsuarioSalud implements Serializable {
     @Column(name = "segundo_apellido", length = 50)
     private String segundoApellido;
 
+    /**
+     * Nombre completo normalizado para búsqueda (sin tildes, minúsculas; ver TextoBusqueda).
+     * Se recalcula al persistir/actualizar y nunca queda en null ("" si no hay nombre), de modo que
+     * NULL identifica a los registros que aún no se completaron. Sus índices (trigram y prefijo con
+     * varchar_pattern_ops) los crea IndicesBusquedaInitializer.
+     */
+    @Column(name = "nombre_busqueda", length = 220)
+    private String nombreBusqueda;
+
     @Column(name = "email", length = 100)
     private String email;
 
@@ -74,6 +84,7 @@ public class UsuarioSalud implements Serializable {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        actualizarNombreBusqueda();
         if (active == null) {
             active = true;
         }
@@ -85,6 +96,15 @@ public class UsuarioSalud implements Serializable {
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        actualizarNombreBusqueda();
+    }
+
+    /**
+     * Recalcula la columna de búsqueda a partir de los nombres y apellidos
+     */
+    public void actualizarNombreBusqueda() {
+        nombreBusqueda = Objects.requireNonNullElse(
+            TextoBusqueda.normalizar(primerNombre, segundoNombre, primerApellido, segundoApellido), "");
     }
 
     // Constructores
@@ -97,6 +117,10 @@ public class UsuarioSalud implements Serializable {
     }
 
     // Getters y Setters
+    public String getNombreBusqueda() {
+        return nombreBusqueda;
+    }
+
     public String getCedula() {
         return cedula;
     }
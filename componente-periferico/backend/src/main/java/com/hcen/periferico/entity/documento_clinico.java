@@ -15,7 +15,11 @@ import java.util.UUID;
 @Table(name = "DOCUMENTO_CLINICO", indexes = {
     @Index(name = "idx_documento_tenant", columnList = "TENANT_ID"),
     @Index(name = "idx_documento_paciente", columnList = "USUARIO_SALUD_CEDULA, TENANT_ID"),
-    @Index(name = "idx_documento_profesional", columnList = "PROFESIONAL_CI")
+    @Index(name = "idx_documento_profesional", columnList = "PROFESIONAL_CI"),
+    // Índices para paginación por cursor (keyset) sobre (FEC_CREACION, ID)
+    @Index(name = "idx_documento_tenant_fecha", columnList = "TENANT_ID, FEC_CREACION, ID"),
+    @Index(name = "idx_documento_paciente_fecha", columnList = "USUARIO_SALUD_CEDULA, FEC_CREACION, ID"),
+    @Index(name = "idx_documento_profesional_fecha", columnList = "profesional_id, TENANT_ID, FEC_CREACION, ID")
 })
 public class documento_clinico {
 
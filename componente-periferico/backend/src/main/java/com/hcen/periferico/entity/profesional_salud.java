@@ -1,5 +1,6 @@
 package com.hcen.periferico.entity;
 
+import com.hcen.periferico.util.TextoBusqueda;
 import jakarta.persistence.*;
 import java.util.*;
 
@@ -8,6 +9,11 @@ import java.util.*;
     uniqueConstraints = {
         @UniqueConstraint(columnNames = {"ci", "tenant_id"}),
         @UniqueConstraint(columnNames = {"email", "tenant_id"})
+    },
+    indexes = {
+        // Orden del directorio y paginación por cursor (keyset) sobre (apellidos, nombre, ID)
+        @Index(name = "idx_profesional_orden", columnList = "apellidos_busqueda, nombre_busqueda, ID"),
+        @Index(name = "idx_profesional_tenant_orden", columnList = "tenant_id, apellidos_busqueda, nombre_busqueda, ID")
     }
 )
 public class profesional_salud {
@@ -40,6 +46,16 @@ public class profesional_salud {
     @Column(nullable = false, length = 150)
     private String email;
 
+    /**
+     * Claves normalizadas (ver TextoBusqueda), nunca null para poder usarlas como cursor.
+     * nombre_busqueda (nombre + apellidos) tiene además índice trigram (IndicesBusquedaInitializer).
+     */
+    @Column(name = "nombre_busqueda", length = 210)
+    private String nombreBusqueda;
+
+    @Column(name = "apellidos_busqueda", length = 110)
+    private String apellidosBusqueda;
+
     @Column(name = "PASSWORD", length = 200, nullable = false)
     private String password;
 
@@ -50,6 +66,20 @@ public class profesional_salud {
     @OneToMany(mappedBy = "profesionalFirmante")
     private List<documento_clinico> documentosFirmados = new ArrayList<>();
 
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        actualizarClavesBusqueda();
+    }
+
+    /**
+     * Recalcula las claves de búsqueda a partir del nombre y los apellidos
+     */
+    public void actualizarClavesBusqueda() {
+        nombreBusqueda = Objects.requireNonNullElse(TextoBusqueda.normalizar(nombre, apellidos), "");
+        apellidosBusqueda = Objects.requireNonNullElse(TextoBusqueda.normalizar(apellidos), "");
+    }
+
     // Getters y Setters
     public UUID getId() { return id; }
     public void setId(UUID id) { this.id = id; }
@@ -78,6 +108,10 @@ public class profesional_salud {
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
 
+    public String getNombreBusqueda() { return nombreBusqueda; }
+
+    public String getApellidosBusqueda() { return apellidosBusqueda; }
+
     public Boolean getActive() { return active; }
     public void setActive(Boolean active) { this.active = active; }
 
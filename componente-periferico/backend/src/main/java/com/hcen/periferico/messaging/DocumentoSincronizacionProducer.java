@@ -4,6 +4,10 @@ import hcen.central.inus.dto.DocumentoSincronizacionMessage;
 import jakarta.annotation.Resource;
 import jakarta.ejb.Stateless;
 import jakarta.jms.*;
+import jakarta.json.bind.JsonbException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -19,6 +23,7 @@ import java.util.logging.Logger;
  * - Transaccional: Los mensajes se envían dentro de transacciones JTA
  * - Persistente: Los mensajes sobreviven reinicios del servidor
  * - Asíncrono: No bloquea la creación del documento
+ * - Formato JSON versionado (ver SincronizacionJsonCodec), sin serialización Java
  *
  * @author Sistema HCEN
  * @version 1.0
@@ -85,20 +90,20 @@ public class DocumentoSincronizacionProducer {
             // Establecer prioridad normal (4 = default)
             producer.setPriority(4);
 
-            // Crear ObjectMessage con el DTO
-            ObjectMessage objectMessage = context.createObjectMessage(mensaje);
+            // Crear TextMessage JSON versionado con el DTO
+            TextMessage textMessage = SincronizacionJsonCodec.crearMensaje(context, mensaje);
 
             // Agregar propiedades personalizadas para filtrado/monitoreo
-            objectMessage.setStringProperty("tenantId", tenantId.toString());
-            objectMessage.setStringProperty("cedula", cedula);
-            objectMessage.setStringProperty("documentoId", documentoId.toString());
-            objectMessage.setStringProperty("tipo", "DOCUMENTO");
+            textMessage.setStringProperty("tenantId", tenantId.toString());
+            textMessage.setStringProperty("cedula", cedula);
+            textMessage.setStringProperty("documentoId", documentoId.toString());
+            textMessage.setStringProperty("tipo", "DOCUMENTO");
 
             // Enviar mensaje a la cola
-            producer.send(documentosSincronizacionQueue, objectMessage);
+            producer.send(documentosSincronizacionQueue, textMessage);
 
             // Obtener ID del mensaje asignado por ActiveMQ
-            messageId = objectMessage.getJMSMessageID();
+            messageId = textMessage.getJMSMessageID();
 
             LOGGER.log(Level.INFO, "Documento {0} enviado exitosamente a cola. MessageID: {1}",
                     new Object[]{documentoId, messageId});
@@ -121,9 +126,21 @@ public class DocumentoSincronizacionProducer {
      * @param mensajes Lista de mensajes a enviar
      * @return Número de mensajes enviados exitosamente
      */
-    public int enviarDocumentos(java.util.List<DocumentoSincronizacionMessage> mensajes) {
+    public int enviarDocumentos(List<DocumentoSincronizacionMessage> mensajes) {
+        return enviarDocumentosLote(mensajes).size();
+    }
+
+    /**
+     * Envía un lote de documentos usando un único JMSContext.
+     *
+     * Un error en un mensaje no interrumpe el resto del lote.
+     *
+     * @param mensajes Lista de mensajes a enviar
+     * @return Map documentoId -> ID del mensaje JMS, solo de los enviados exitosamente
+     */
+    public Map<UUID, String> enviarDocumentosLote(List<DocumentoSincronizacionMessage> mensajes) {
 
-        int enviados = 0;
+        Map<UUID, String> enviados = new LinkedHashMap<>();
 
         try (JMSContext context = connectionFactory.createContext()) {
 
@@ -139,18 +156,18 @@ public class DocumentoSincronizacionProducer {
                 }
 
                 try {
-                    ObjectMessage objectMessage = context.createObjectMessage(mensaje);
+                    TextMessage textMessage = SincronizacionJsonCodec.crearMensaje(context, mensaje);
 
-                    objectMessage.setStringProperty("tenantId", mensaje.getTenantId().toString());
-                    objectMessage.setStringProperty("cedula", mensaje.getCedula());
-                    objectMessage.setStringProperty("documentoId", mensaje.getDocumentoId().toString());
-                    objectMessage.setStringProperty("tipo", "DOCUMENTO");
+                    textMessage.setStringProperty("tenantId", mensaje.getTenantId().toString());
+                    textMessage.setStringProperty("cedula", mensaje.getCedula());
+                    textMessage.setStringProperty("documentoId", mensaje.getDocumentoId().toString());
+                    textMessage.setStringProperty("tipo", "DOCUMENTO");
 
-                    producer.send(documentosSincronizacionQueue, objectMessage);
+                    producer.send(documentosSincronizacionQueue, textMessage);
 
-                    enviados++;
+                    enviados.put(mensaje.getDocumentoId(), textMessage.getJMSMessageID());
 
-                } catch (JMSException e) {
+                } catch (JMSException | JMSRuntimeException | JsonbException e) {
                     LOGGER.log(Level.SEVERE, "Error al enviar mensaje: " + mensaje, e);
                     // Continuar con siguiente mensaje
                 }
@@ -161,7 +178,7 @@ public class DocumentoSincronizacionProducer {
         }
 
         LOGGER.log(Level.INFO, "Enviados {0} de {1} documentos a cola de sincronización",
-                new Object[]{enviados, mensajes.size()});
+                new Object[]{enviados.size(), mensajes.size()});
 
         return enviados;
     }
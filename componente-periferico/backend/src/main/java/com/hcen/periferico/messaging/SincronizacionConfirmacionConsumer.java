@@ -2,6 +2,7 @@ package com.hcen.periferico.messaging;
 
 import com.hcen.periferico.dao.DocumentoClinicoDAO;
 import com.hcen.periferico.dao.SincronizacionPendienteDAO;
+import hcen.central.inus.dto.SincronizacionConfirmacionLoteMessage;
 import hcen.central.inus.dto.SincronizacionConfirmacionMessage;
 import com.hcen.periferico.entity.SincronizacionPendiente;
 import com.hcen.periferico.entity.documento_clinico;
@@ -10,8 +11,13 @@ import jakarta.ejb.EJB;
 import jakarta.ejb.MessageDriven;
 import jakarta.jms.Message;
 import jakarta.jms.MessageListener;
-import jakarta.jms.ObjectMessage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,7 +28,8 @@ import java.util.logging.Logger;
  * enviadas desde el componente central después de centralizar un documento clínico.
  *
  * Flujo:
- * 1. Recibe confirmación (SincronizacionConfirmacionMessage)
+ * 1. Recibe confirmación (SincronizacionConfirmacionMessage) o lote de confirmaciones
+ *    de un tenant (SincronizacionConfirmacionLoteMessage, propiedad tipo = CONFIRMACION_LOTE)
  * 2. Si éxito: Actualiza documento.hist_clinica_id con ID retornado por el central
  * 3. Actualiza sincronizacion_pendiente: estado = RESUELTA (si éxito) o ERROR (si falló)
  * 4. Si excepción: ActiveMQ reintenta automáticamente
@@ -30,7 +37,9 @@ import java.util.logging.Logger;
  * Características:
  * - Transaccional: CMT (Container Managed Transaction)
  * - Idempotente: Puede procesar misma confirmación múltiples veces sin problemas
+ * - Sin read-modify-write: documento y auditoría se actualizan con UPDATEs directos
  * - Tolerante a fallos: Si no encuentra documento/auditoría, loguea pero no falla
+ * - Formato JSON versionado (SincronizacionJsonCodec); acepta ObjectMessage heredados
  *
  * @author Sistema HCEN
  * @version 1.0
@@ -60,6 +69,13 @@ public class SincronizacionConfirmacionConsumer implements MessageListener {
 
     private static final Logger LOGGER = Logger.getLogger(SincronizacionConfirmacionConsumer.class.getName());
 
+    /**
+     * Propiedad JMS "tipo" de los mensajes que agrupan confirmaciones (ver SincronizacionConfirmacionProducer del central)
+     */
+    private static final String TIPO_CONFIRMACION_LOTE = "CONFIRMACION_LOTE";
+
+    private static final String ERROR_SIN_DETALLE = "Error de sincronización sin detalle";
+
     @EJB
     private DocumentoClinicoDAO documentoDAO;
 
@@ -83,23 +99,14 @@ public class SincronizacionConfirmacionConsumer implements MessageListener {
 
             LOGGER.log(Level.INFO, "Procesando confirmación de sincronización: {0}", messageId);
 
-            // Validar tipo de mensaje
-            if (!(message instanceof ObjectMessage)) {
-                LOGGER.log(Level.SEVERE, "Mensaje recibido no es ObjectMessage: {0}", message.getClass());
-                throw new IllegalArgumentException("Tipo de mensaje inválido");
-            }
-
-            ObjectMessage objectMessage = (ObjectMessage) message;
-
-            // Deserializar mensaje
-            Object payload = objectMessage.getObject();
-            if (!(payload instanceof SincronizacionConfirmacionMessage)) {
-                LOGGER.log(Level.SEVERE, "Payload no es SincronizacionConfirmacionMessage: {0}",
-                        payload != null ? payload.getClass() : "null");
-                throw new IllegalArgumentException("Payload inválido");
+            // Confirmaciones agrupadas por tenant: se aplican con UPDATEs masivos
+            if (TIPO_CONFIRMACION_LOTE.equals(message.getStringProperty("tipo"))) {
+                procesarLote(SincronizacionJsonCodec.leer(message, SincronizacionConfirmacionLoteMessage.class));
+                return;
             }
 
-            confirmacion = (SincronizacionConfirmacionMessage) payload;
+            // JSON versionado (o ObjectMessage heredado durante el despliegue)
+            confirmacion = SincronizacionJsonCodec.leer(message, SincronizacionConfirmacionMessage.class);
 
             // Validar mensaje
             if (!confirmacion.isValid()) {
@@ -139,6 +146,58 @@ public class SincronizacionConfirmacionConsumer implements MessageListener {
         }
     }
 
+    /**
+     * Procesa un lote de confirmaciones de un mismo tenant con UPDATEs masivos:
+     * - Un UPDATE de documento.hist_clinica_id por historia clínica (normalmente una por paciente)
+     * - Un UPDATE de sincronizacion_pendiente para los exitosos y uno por cada mensaje de error distinto
+     *
+     * El filtro por tenant_id en los UPDATE reemplaza la verificación de tenant documento a documento.
+     */
+    private void procesarLote(SincronizacionConfirmacionLoteMessage lote) {
+
+        if (!lote.isValid()) {
+            LOGGER.log(Level.SEVERE, "Lote de confirmaciones inválido: {0}", lote);
+            throw new IllegalArgumentException("Lote de confirmaciones inválido: " + lote);
+        }
+
+        UUID tenantId = lote.getTenantId();
+        List<UUID> exitosos = new ArrayList<>();
+        Map<UUID, List<UUID>> exitososPorHistoria = new HashMap<>();
+        Map<String, List<UUID>> fallidosPorError = new LinkedHashMap<>();
+
+        for (SincronizacionConfirmacionMessage confirmacion : lote.getConfirmaciones()) {
+            if (confirmacion.isExito()) {
+                exitosos.add(confirmacion.getDocumentoId());
+                if (confirmacion.getHistoriaId() != null) {
+                    exitososPorHistoria.computeIfAbsent(confirmacion.getHistoriaId(), k -> new ArrayList<>())
+                            .add(confirmacion.getDocumentoId());
+                }
+            } else {
+                String error = confirmacion.getErrorMensaje() != null ? confirmacion.getErrorMensaje() : ERROR_SIN_DETALLE;
+                fallidosPorError.computeIfAbsent(error, k -> new ArrayList<>()).add(confirmacion.getDocumentoId());
+            }
+        }
+
+        int documentosActualizados = 0;
+        for (Map.Entry<UUID, List<UUID>> entry : exitososPorHistoria.entrySet()) {
+            documentosActualizados += documentoDAO.asignarHistClinicaId(entry.getValue(), tenantId, entry.getKey());
+        }
+
+        int resueltas = sincronizacionDAO.marcarDocumentosResueltos(exitosos, tenantId);
+
+        int conError = 0;
+        for (Map.Entry<String, List<UUID>> entry : fallidosPorError.entrySet()) {
+            LOGGER.log(Level.WARNING, "Sincronización FALLÓ para {0} documentos: {1}",
+                    new Object[]{entry.getValue().size(), entry.getKey()});
+            conError += sincronizacionDAO.marcarDocumentosConError(entry.getValue(), tenantId, entry.getKey());
+        }
+
+        LOGGER.log(Level.INFO,
+                "Lote de confirmaciones procesado (tenant {0}): {1} confirmaciones, {2} documentos con hist_clinica_id, " +
+                "{3} auditorías resueltas, {4} con error",
+                new Object[]{tenantId, lote.getConfirmaciones().size(), documentosActualizados, resueltas, conError});
+    }
+
     /**
      * Procesa una confirmación exitosa:
      * - Actualiza documento.hist_clinica_id
@@ -146,45 +205,53 @@ public class SincronizacionConfirmacionConsumer implements MessageListener {
      */
     private void procesarConfirmacionExitosa(SincronizacionConfirmacionMessage confirmacion) {
 
-        // 1. Actualizar documento con hist_clinica_id
-        Optional<documento_clinico> documentoOpt = documentoDAO.findById(confirmacion.getDocumentoId());
-
-        if (documentoOpt.isPresent()) {
-            documento_clinico documento = documentoOpt.get();
+        // 1. Actualizar documento con hist_clinica_id (un UPDATE filtrado por tenant, idempotente)
+        int actualizados = documentoDAO.asignarHistClinicaId(
+                List.of(confirmacion.getDocumentoId()), confirmacion.getTenantId(), confirmacion.getHistoriaId());
 
-            // Verificar tenant (seguridad multi-tenancy)
-            if (!confirmacion.getTenantId().equals(documento.getTenantId())) {
-                LOGGER.log(Level.SEVERE,
-                        "TenantId mismatch para documento {0}: confirmación={1}, documento={2}",
-                        new Object[]{confirmacion.getDocumentoId(), confirmacion.getTenantId(),
-                                documento.getTenantId()});
-                throw new SecurityException("TenantId mismatch - posible ataque de seguridad");
-            }
+        if (actualizados > 0) {
+            LOGGER.log(Level.INFO,
+                    "Documento {0} actualizado con hist_clinica_id={1}",
+                    new Object[]{confirmacion.getDocumentoId(), confirmacion.getHistoriaId()});
+        } else {
+            // Solo en el caso raro se lee el documento, para diagnosticar
+            diagnosticarDocumentoNoActualizado(confirmacion);
+        }
 
-            // Actualizar hist_clinica_id solo si no está ya seteado (idempotencia)
-            if (documento.getHistClinicaId() == null) {
-                documento.setHistClinicaId(confirmacion.getHistoriaId());
-                documentoDAO.save(documento);
+        // 2. Actualizar tabla de auditoría
+        actualizarAuditoria(confirmacion, SincronizacionPendiente.EstadoSincronizacion.RESUELTA, null);
+    }
 
-                LOGGER.log(Level.INFO,
-                        "Documento {0} actualizado con hist_clinica_id={1}",
-                        new Object[]{confirmacion.getDocumentoId(), confirmacion.getHistoriaId()});
-            } else {
-                LOGGER.log(Level.INFO,
-                        "Documento {0} ya tiene hist_clinica_id={1} (idempotencia)",
-                        new Object[]{confirmacion.getDocumentoId(), documento.getHistClinicaId()});
-            }
+    /**
+     * Explica por qué no se actualizó hist_clinica_id: documento inexistente,
+     * ya sincronizado (idempotencia) o de otro tenant (error de seguridad).
+     */
+    private void diagnosticarDocumentoNoActualizado(SincronizacionConfirmacionMessage confirmacion) {
+        Optional<documento_clinico> documentoOpt = documentoDAO.findById(confirmacion.getDocumentoId());
 
-        } else {
+        if (documentoOpt.isEmpty()) {
             // Documento no encontrado - loguear pero NO fallar
             // Puede ser que se haya eliminado manualmente
             LOGGER.log(Level.WARNING,
                     "Documento {0} no encontrado para actualizar hist_clinica_id",
                     confirmacion.getDocumentoId());
+            return;
         }
 
-        // 2. Actualizar tabla de auditoría
-        actualizarAuditoria(confirmacion, SincronizacionPendiente.EstadoSincronizacion.RESUELTA, null);
+        documento_clinico documento = documentoOpt.get();
+
+        // Verificar tenant (seguridad multi-tenancy)
+        if (!confirmacion.getTenantId().equals(documento.getTenantId())) {
+            LOGGER.log(Level.SEVERE,
+                    "TenantId mismatch para documento {0}: confirmación={1}, documento={2}",
+                    new Object[]{confirmacion.getDocumentoId(), confirmacion.getTenantId(),
+                            documento.getTenantId()});
+            throw new SecurityException("TenantId mismatch - posible ataque de seguridad");
+        }
+
+        LOGGER.log(Level.INFO,
+                "Documento {0} ya tiene hist_clinica_id={1} (idempotencia)",
+                new Object[]{confirmacion.getDocumentoId(), documento.getHistClinicaId()});
     }
 
     /**
@@ -215,28 +282,19 @@ public class SincronizacionConfirmacionConsumer implements MessageListener {
             SincronizacionPendiente.EstadoSincronizacion estado,
             String errorMensaje) {
 
-        // Buscar registro de auditoría por usuario y tenant
-        Optional<SincronizacionPendiente> auditoriaOpt =
-                sincronizacionDAO.findByUsuarioCedulaAndTenant(
-                        confirmacion.getCedula(),
-                        confirmacion.getTenantId()
-                );
-
-        if (auditoriaOpt.isPresent()) {
-            SincronizacionPendiente auditoria = auditoriaOpt.get();
-
-            // Actualizar estado
-            auditoria.setEstado(estado);
-
-            if (errorMensaje != null) {
-                auditoria.setUltimoError(errorMensaje);
-            }
-
-            sincronizacionDAO.save(auditoria);
+        // Transición en una sola sentencia, correlacionada por message_id / documento_id
+        Optional<UUID> auditoriaId = sincronizacionDAO.transicionarEstadoDocumento(
+                confirmacion.getDocumentoId(),
+                confirmacion.getTenantId(),
+                confirmacion.getMessageIdOriginal(),
+                estado,
+                errorMensaje
+        );
 
+        if (auditoriaId.isPresent()) {
             LOGGER.log(Level.INFO,
-                    "Auditoría actualizada para documento {0}: estado={1}",
-                    new Object[]{confirmacion.getDocumentoId(), estado});
+                    "Auditoría {0} actualizada para documento {1}: estado={2}",
+                    new Object[]{auditoriaId.get(), confirmacion.getDocumentoId(), estado});
 
         } else {
             // No se encontró registro de auditoría - loguear pero NO fallar
@@ -0,0 +1,60 @@
+package com.hcen.periferico.rest;
+
+import com.hcen.periferico.config.CentralHttpClient;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monitoreo de la conexión con el componente central (métricas y estado de los circuit breakers)
+ */
+@Path("/central")
+@Produces(MediaType.APPLICATION_JSON)
+public class CentralConexionResource {
+
+    @Inject
+    private CentralHttpClient centralHttpClient;
+
+    /**
+     * Métricas por endpoint de las llamadas al central
+     * GET /api/central/metricas
+     */
+    @GET
+    @Path("/metricas")
+    public Response getMetricas() {
+        return Response.ok(centralHttpClient.getMetricas()).build();
+    }
+
+    /**
+     * Estado de la conexión con el central: UP si todos los circuitos están cerrados,
+     * DEGRADADO si alguno está abierto o en prueba
+     * GET /api/central/salud
+     */
+    @GET
+    @Path("/salud")
+    public Response getSalud() {
+        Map<String, CentralHttpClient.EstadisticasEndpoint> metricas = centralHttpClient.getMetricas();
+
+        List<String> circuitosNoCerrados = new ArrayList<>();
+        long rechazos = 0;
+        for (Map.Entry<String, CentralHttpClient.EstadisticasEndpoint> entry : metricas.entrySet()) {
+            CentralHttpClient.EstadisticasEndpoint e = entry.getValue();
+            if (!"CERRADO".equals(e.getEstadoCircuito())) {
+                circuitosNoCerrados.add(entry.getKey() + " (" + e.getEstadoCircuito() + ")");
+            }
+            rechazos += e.getRechazosCircuito() + e.getRechazosBulkhead();
+        }
+
+        Map<String, Object> salud = new LinkedHashMap<>();
+        salud.put("estado", circuitosNoCerrados.isEmpty() ? "UP" : "DEGRADADO");
+        salud.put("circuitosNoCerrados", circuitosNoCerrados);
+        salud.put("rechazosTotales", rechazos);
+        return Response.ok(salud).build();
+    }
+}
@@ -1,15 +1,29 @@
 package com.hcen.periferico.rest;
 
+import com.hcen.periferico.dto.PaginaCursor;
 import com.hcen.periferico.dto.documento_clinico_dto;
 import com.hcen.periferico.entity.documento_clinico;
+import com.hcen.periferico.service.CodigueraCache;
 import com.hcen.periferico.service.DocumentoClinicoService;
-import com.hcen.periferico.dao.DocumentoClinicoDAO;
+import com.hcen.periferico.service.SincronizacionOutboxRelay;
 import com.hcen.periferico.service.SincronizacionReintentosService;
 import jakarta.ejb.EJB;
+import jakarta.json.bind.Jsonb;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
-
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.Providers;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -17,6 +31,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * REST Resource para gestión de documentos clínicos ambulatorios.
@@ -30,10 +46,27 @@ public class DocumentoClinicoResource {
     private DocumentoClinicoService documentoService;
 
     @EJB
-    private DocumentoClinicoDAO documentoDAO;
+    private SincronizacionReintentosService sincronizacionService;
 
     @EJB
-    private SincronizacionReintentosService sincronizacionService;
+    private SincronizacionOutboxRelay outboxRelay;
+
+    @EJB
+    private CodigueraCache codigueraCache;
+
+    @Context
+    private Providers providers;
+
+    /**
+     * Máximo de IDs aceptados por POST /documentos/batch
+     */
+    private static final int MAX_IDS_BATCH = 500;
+    private static final int TAMANIO_LOTE_CONSULTA = 100;
+
+    /**
+     * Tiempo que los clientes pueden reutilizar una codiguera sin revalidarla
+     */
+    private static final int CATALOGOS_MAX_AGE_SEGUNDOS = 3600;
 
     /**
      * Crea un nuevo documento clínico
@@ -173,12 +206,16 @@ public class DocumentoClinicoResource {
     /**
      * Lista documentos de un paciente
      * GET /api/documentos/paciente/{cedula}?tenantId=xxx
+     * GET /api/documentos/paciente/{cedula}?tenantId=xxx&cursor=&size=20 (paginación por cursor)
      */
     @GET
     @Path("/paciente/{cedula}")
     public Response getDocumentosPorPaciente(
             @PathParam("cedula") String cedula,
-            @QueryParam("tenantId") String tenantIdStr) {
+            @QueryParam("tenantId") String tenantIdStr,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") Integer size,
+            @QueryParam("incluirTotal") @DefaultValue("false") boolean incluirTotal) {
         try {
             if (tenantIdStr == null || tenantIdStr.trim().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
@@ -187,10 +224,24 @@ public class DocumentoClinicoResource {
             }
 
             UUID tenantId = UUID.fromString(tenantIdStr);
+
+            if (cursor != null) {
+                PaginaCursor<documento_clinico_dto> pagina =
+                        documentoService.getDocumentosPorPacienteCursor(cedula, cursor, size);
+                if (incluirTotal) {
+                    pagina.setTotalCount(documentoService.countDocumentosPorPaciente(cedula, tenantId));
+                }
+                return Response.ok(pagina).build();
+            }
+
             List<documento_clinico_dto> documentos = documentoService.getDocumentosPorPaciente(cedula, tenantId);
             long totalCount = documentoService.countDocumentosPorPaciente(cedula, tenantId);
 
             return Response.ok(new DocumentoListResponse(documentos, totalCount)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(new ErrorResponse("Error al listar documentos del paciente: " + e.getMessage()))
@@ -198,15 +249,55 @@ public class DocumentoClinicoResource {
         }
     }
 
+    /**
+     * Historia completa de un paciente (todas las clínicas) como array JSON escrito en streaming.
+     * GET /api/documentos/paciente/{cedula}/stream
+     *
+     * Recorre los documentos por cursor (keyset) en páginas de TAMANIO_LOTE_CONSULTA, cada una en su
+     * propia consulta, de modo que nunca se materializa la historia completa en memoria.
+     */
+    @GET
+    @Path("/paciente/{cedula}/stream")
+    public Response getDocumentosPorPacienteStream(@PathParam("cedula") String cedula) {
+        Jsonb jsonb = resolverJsonb();
+        StreamingOutput salida = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write('[');
+            boolean primero = true;
+            String cursor = null;
+            PaginaCursor<documento_clinico_dto> pagina;
+            do {
+                pagina = documentoService.getDocumentosPorPacienteCursor(cedula, cursor, TAMANIO_LOTE_CONSULTA);
+                for (documento_clinico_dto documento : pagina.getData()) {
+                    if (!primero) {
+                        writer.write(',');
+                    }
+                    writer.write(jsonb.toJson(documento));
+                    primero = false;
+                }
+                writer.flush();
+                cursor = pagina.getSiguienteCursor();
+            } while (pagina.isHayMas());
+            writer.write(']');
+            writer.flush();
+        };
+
+        return Response.ok(salida, MediaType.APPLICATION_JSON).build();
+    }
+
     /**
      * Lista documentos firmados por un profesional
      * GET /api/documentos/profesional/{ci}?tenantId=xxx
+     * GET /api/documentos/profesional/{ci}?tenantId=xxx&cursor=&size=20 (paginación por cursor)
      */
     @GET
     @Path("/profesional/{ci}")
     public Response getDocumentosPorProfesional(
             @PathParam("ci") Integer profesionalCi,
-            @QueryParam("tenantId") String tenantIdStr) {
+            @QueryParam("tenantId") String tenantIdStr,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") Integer size,
+            @QueryParam("incluirTotal") @DefaultValue("false") boolean incluirTotal) {
         try {
             if (tenantIdStr == null || tenantIdStr.trim().isEmpty()) {
                 return Response.status(Response.Status.BAD_REQUEST)
@@ -215,9 +306,23 @@ public class DocumentoClinicoResource {
             }
 
             UUID tenantId = UUID.fromString(tenantIdStr);
+
+            if (cursor != null) {
+                PaginaCursor<documento_clinico_dto> pagina =
+                        documentoService.getDocumentosPorProfesionalCursor(profesionalCi, tenantId, cursor, size);
+                if (incluirTotal) {
+                    pagina.setTotalCount(documentoService.countDocumentosPorProfesional(profesionalCi, tenantId));
+                }
+                return Response.ok(pagina).build();
+            }
+
             List<documento_clinico_dto> documentos = documentoService.getDocumentosPorProfesional(profesionalCi, tenantId);
 
             return Response.ok(documentos).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(new ErrorResponse("Error al listar documentos del profesional: " + e.getMessage()))
@@ -227,16 +332,22 @@ public class DocumentoClinicoResource {
 
     /**
      * Lista todos los documentos con paginación o por IDs específicos (batch)
-     * GET /api/documentos?tenantId=xxx&page=0&size=10 (paginación)
+     * GET /api/documentos?tenantId=xxx&page=0&size=10 (paginación por página, con totalCount)
+     * GET /api/documentos?tenantId=xxx&cursor=&size=10 (paginación por cursor; cursor vacío = primera página,
+     *     luego el siguienteCursor de la respuesta; el total solo se calcula con incluirTotal=true)
      * GET /api/documentos?tenantId=xxx&ids=id1,id2,id3 (batch por IDs con filtro de tenant)
      * GET /api/documentos?ids=id1,id2,id3 (batch cross-tenant - sin filtro de tenant)
+     *
+     * Para listas de IDs largas usar POST /api/documentos/batch (sin límite de longitud de URL)
      */
     @GET
     public Response getDocumentosPaginados(
             @QueryParam("tenantId") String tenantIdStr,
             @QueryParam("ids") String idsStr,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") Integer size) {
+            @QueryParam("size") Integer size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("incluirTotal") @DefaultValue("false") boolean incluirTotal) {
         try {
             // Si se proporciona 'ids', retornar documentos por IDs (batch)
             if (idsStr != null && !idsStr.trim().isEmpty()) {
@@ -276,6 +387,16 @@ public class DocumentoClinicoResource {
 
             UUID tenantId = UUID.fromString(tenantIdStr);
 
+            // Paginación por cursor (keyset): costo constante sin importar la profundidad de la página
+            if (cursor != null) {
+                PaginaCursor<documento_clinico_dto> pagina =
+                        documentoService.getDocumentosPorCursor(tenantId, cursor, size);
+                if (incluirTotal) {
+                    pagina.setTotalCount(documentoService.countDocumentos(tenantId));
+                }
+                return Response.ok(pagina).build();
+            }
+
             // Usar paginación normal
             int pageSize = size != null && size > 0 ? Math.min(size, 200) : 10;
 
@@ -284,6 +405,10 @@ public class DocumentoClinicoResource {
 
             PaginatedResponse response = new PaginatedResponse(documentos, totalCount, page, pageSize);
             return Response.ok(response).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(new ErrorResponse("Error al listar documentos: " + e.getMessage()))
@@ -291,6 +416,85 @@ public class DocumentoClinicoResource {
         }
     }
 
+    /**
+     * Obtiene documentos por IDs enviados en el cuerpo (batch)
+     * POST /api/documentos/batch  {"ids": ["id1", "id2", ...], "tenantId": "xxx" (opcional)}
+     *
+     * Sin tenantId es cross-tenant (usado por el componente central). Acepta hasta MAX_IDS_BATCH IDs;
+     * la respuesta (array JSON) se escribe en streaming, consultando la base en lotes de
+     * TAMANIO_LOTE_CONSULTA para no materializar todos los documentos a la vez.
+     */
+    @POST
+    @Path("/batch")
+    public Response getDocumentosPorIdsBatch(DocumentosBatchRequest request) {
+        if (request == null || request.getIds() == null || request.getIds().isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("La lista de IDs es requerida"))
+                    .build();
+        }
+        if (request.getIds().size() > MAX_IDS_BATCH) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Se permiten como máximo " + MAX_IDS_BATCH + " IDs por request"))
+                    .build();
+        }
+
+        List<UUID> documentoIds = new ArrayList<>(request.getIds().size());
+        UUID tenantId;
+        try {
+            for (String idStr : request.getIds()) {
+                documentoIds.add(UUID.fromString(idStr.trim()));
+            }
+            tenantId = request.getTenantId() != null && !request.getTenantId().isBlank()
+                    ? UUID.fromString(request.getTenantId().trim())
+                    : null;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("IDs inválidos: " + e.getMessage()))
+                    .build();
+        }
+
+        Jsonb jsonb = resolverJsonb();
+        StreamingOutput salida = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            writer.write('[');
+            boolean primero = true;
+            for (int desde = 0; desde < documentoIds.size(); desde += TAMANIO_LOTE_CONSULTA) {
+                List<UUID> lote = documentoIds.subList(desde, Math.min(desde + TAMANIO_LOTE_CONSULTA, documentoIds.size()));
+                List<documento_clinico_dto> documentos = tenantId != null
+                        ? documentoService.getDocumentosPorIds(lote, tenantId)
+                        : documentoService.getDocumentosPorIds(lote);
+                for (documento_clinico_dto documento : documentos) {
+                    if (!primero) {
+                        writer.write(',');
+                    }
+                    writer.write(jsonb.toJson(documento));
+                    primero = false;
+                }
+                writer.flush();
+            }
+            writer.write(']');
+            writer.flush();
+        };
+
+        return Response.ok(salida, MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Jsonb configurado para la aplicación (JsonbConfiguration), para serializar igual que JAX-RS.
+     * Si el proveedor no está registrado se usa una única instancia compartida (nunca una por request).
+     */
+    private Jsonb resolverJsonb() {
+        ContextResolver<Jsonb> resolver = providers.getContextResolver(Jsonb.class, MediaType.APPLICATION_JSON_TYPE);
+        return resolver != null ? resolver.getContext(documento_clinico_dto.class) : JsonbPorDefecto.INSTANCIA;
+    }
+
+    /**
+     * Jsonb de respaldo, creado de forma perezosa la primera vez que se necesita
+     */
+    private static final class JsonbPorDefecto {
+        private static final Jsonb INSTANCIA = new JsonbConfiguration().getContext(documento_clinico_dto.class);
+    }
+
     /**
      * Elimina un documento
      * DELETE /api/documentos/{id}?tenantId=xxx
@@ -326,22 +530,17 @@ public class DocumentoClinicoResource {
     }
 
     /**
-     * Obtiene los catálogos de codigueras
+     * Obtiene los catálogos de codigueras (servidos desde CodigueraCache)
      * GET /api/documentos/catalogos/motivos
      * GET /api/documentos/catalogos/estados
      * GET /api/documentos/catalogos/grados-certeza
+     *
+     * Responden con ETag y Cache-Control: con If-None-Match vigente se devuelve 304 sin cuerpo.
      */
     @GET
     @Path("/catalogos/motivos")
-    public Response getMotivosConsulta() {
-        try {
-            Map<String, String> motivos = documentoDAO.getAllMotivosConsulta();
-            return Response.ok(motivos).build();
-        } catch (Exception e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(new ErrorResponse("Error al obtener catálogo: " + e.getMessage()))
-                    .build();
-        }
+    public Response getMotivosConsulta(@Context Request request) {
+        return respuestaCatalogo(codigueraCache.getMotivosConsulta(), request);
     }
 
     /**
@@ -357,7 +556,7 @@ public class DocumentoClinicoResource {
                 return Response.ok(new LinkedHashMap<String, String>()).build();
             }
 
-            Map<String, String> motivos = documentoDAO.buscarMotivosConsulta(termino.trim());
+            Map<String, String> motivos = codigueraCache.buscarMotivosConsulta(termino.trim());
             return Response.ok(motivos).build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
@@ -368,23 +567,45 @@ public class DocumentoClinicoResource {
 
     @GET
     @Path("/catalogos/estados")
-    public Response getEstadosProblema() {
-        try {
-            Map<String, String> estados = documentoDAO.getAllEstadosProblema();
-            return Response.ok(estados).build();
-        } catch (Exception e) {
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity(new ErrorResponse("Error al obtener catálogo: " + e.getMessage()))
-                    .build();
-        }
+    public Response getEstadosProblema(@Context Request request) {
+        return respuestaCatalogo(codigueraCache.getEstadosProblema(), request);
     }
 
     @GET
     @Path("/catalogos/grados-certeza")
-    public Response getGradosCerteza() {
+    public Response getGradosCerteza(@Context Request request) {
+        return respuestaCatalogo(codigueraCache.getGradosCerteza(), request);
+    }
+
+    /**
+     * Vuelve a cargar las codigueras desde la base (tras actualizar las tablas)
+     * POST /api/documentos/catalogos/recargar
+     */
+    @POST
+    @Path("/catalogos/recargar")
+    public Response recargarCatalogos() {
+        if (codigueraCache.recargar()) {
+            return Response.ok(new SuccessResponse("Codigueras recargadas")).build();
+        }
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new ErrorResponse("No se pudieron recargar las codigueras"))
+                .build();
+    }
+
+    private Response respuestaCatalogo(CodigueraCache.Catalogo catalogo, Request request) {
         try {
-            Map<String, String> grados = documentoDAO.getAllGradosCerteza();
-            return Response.ok(grados).build();
+            EntityTag etag = new EntityTag(catalogo.getEtag());
+            CacheControl cacheControl = new CacheControl();
+            cacheControl.setMaxAge(CATALOGOS_MAX_AGE_SEGUNDOS);
+
+            Response.ResponseBuilder noModificado = request.evaluatePreconditions(etag);
+            if (noModificado != null) {
+                return noModificado.cacheControl(cacheControl).build();
+            }
+            return Response.ok(catalogo.getValores())
+                    .tag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(new ErrorResponse("Error al obtener catálogo: " + e.getMessage()))
@@ -414,35 +635,46 @@ public class DocumentoClinicoResource {
         }
     }
 
+    /**
+     * Métricas del relay del outbox de sincronización (throughput y retraso)
+     * GET /api/documentos/sincronizacion/outbox/metricas
+     */
+    @GET
+    @Path("/sincronizacion/outbox/metricas")
+    public Response obtenerMetricasOutbox() {
+        return Response.ok(outboxRelay.getMetricas()).build();
+    }
+
     /**
      * Valida si un profesional tiene permiso para acceder a uno o múltiples documentos
-     * Llama al componente central para verificar las políticas de acceso
+     * Llama al componente central para verificar las políticas de acceso.
+     * Respuesta asíncrona: el hilo del request se libera mientras el central responde.
      */
     @POST
     @Path("/validar-acceso")
-    public Response validarAccesoDocumento(
+    public CompletionStage<Response> validarAccesoDocumento(
             @QueryParam("tenantId") String tenantIdStr,
             ValidarAccesoRequest request) {
         try {
             if (tenantIdStr == null || tenantIdStr.isBlank()) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
                         .entity(new ErrorResponse("El tenantId es requerido"))
-                        .build();
+                        .build());
             }
             if (request == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
                         .entity(new ErrorResponse("Los datos de la solicitud son requeridos"))
-                        .build();
+                        .build());
             }
             if (request.getDocumentoIds() == null || request.getDocumentoIds().isEmpty()) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
                         .entity(new ErrorResponse("La lista de IDs de documentos es requerida"))
-                        .build();
+                        .build());
             }
             if (request.getCiProfesional() == null) {
-                return Response.status(Response.Status.BAD_REQUEST)
+                return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
                         .entity(new ErrorResponse("El CI del profesional es requerido"))
-                        .build();
+                        .build());
             }
 
             UUID tenantId = UUID.fromString(tenantIdStr);
@@ -453,29 +685,29 @@ public class DocumentoClinicoResource {
                     .collect(java.util.stream.Collectors.toList());
 
             // Validar acceso batch
-            Map<UUID, Boolean> permisos = documentoService.validarAccesoDocumentos(
+            return documentoService.validarAccesoDocumentosAsync(
                     documentoIds,
                     request.getCiProfesional(),
                     tenantId,
                     request.getEspecialidad()
-            );
-
-            // Convertir UUIDs a Strings para response
-            Map<String, Boolean> permisosStr = new java.util.HashMap<>();
-            permisos.forEach((uuid, hasPermission) -> permisosStr.put(uuid.toString(), hasPermission));
+            ).thenApply(permisos -> {
+                // Convertir UUIDs a Strings para response
+                Map<String, Boolean> permisosStr = new java.util.HashMap<>();
+                permisos.forEach((uuid, hasPermission) -> permisosStr.put(uuid.toString(), hasPermission));
 
-            return Response.ok(new ValidarAccesoResponse(permisosStr)).build();
+                return Response.ok(new ValidarAccesoResponse(permisosStr)).build();
+            });
 
         } catch (IllegalArgumentException e) {
-            return Response.status(Response.Status.BAD_REQUEST)
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
                     .entity(new ErrorResponse("Parámetros inválidos: " + e.getMessage()))
-                    .build();
+                    .build());
         } catch (Exception e) {
             System.err.println("Error al validar acceso a documentos: " + e.getMessage());
             e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+            return CompletableFuture.completedFuture(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(new ErrorResponse("Error al validar acceso: " + e.getMessage()))
-                    .build();
+                    .build());
         }
     }
 
@@ -663,6 +895,17 @@ public class DocumentoClinicoResource {
         public void setEspecialidad(String especialidad) { this.especialidad = especialidad; }
     }
 
+    // Request de consulta batch por IDs
+    public static class DocumentosBatchRequest {
+        private List<String> ids;
+        private String tenantId;
+
+        public List<String> getIds() { return ids; }
+        public void setIds(List<String> ids) { this.ids = ids; }
+        public String getTenantId() { return tenantId; }
+        public void setTenantId(String tenantId) { this.tenantId = tenantId; }
+    }
+
     // Response de validar acceso
     public static class ValidarAccesoResponse {
         private Map<String, Boolean> permisos;
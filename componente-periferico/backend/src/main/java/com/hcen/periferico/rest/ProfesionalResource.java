@@ -1,6 +1,7 @@
 package com.hcen.periferico.rest;
 
 import com.hcen.periferico.entity.profesional_salud;
+import com.hcen.periferico.dto.PaginaCursor;
 import com.hcen.periferico.dto.profesional_salud_dto;
 import com.hcen.periferico.service.ProfesionalService;
 import com.hcen.periferico.service.AuthenticationService;
@@ -24,6 +25,12 @@ public class ProfesionalResource {
     @EJB
     private AuthenticationService authenticationService;
 
+    /**
+     * Lista los profesionales de una clínica
+     * GET /api/profesionales?tenantId=xxx&search=&page=0&size=10
+     * GET /api/profesionales?tenantId=xxx&search=&cursor=&size=10 (paginación por cursor; cursor vacío =
+     *     primera página, luego el siguienteCursor de la respuesta)
+     */
     @GET
     public Response getAllProfesionales(
             @QueryParam("ci") Integer ci,
@@ -31,6 +38,7 @@ public class ProfesionalResource {
             @QueryParam("search") String searchTerm,
             @QueryParam("page") @DefaultValue("0") int page,
             @QueryParam("size") Integer size,
+            @QueryParam("cursor") String cursor,
             @QueryParam("tenantId") String tenantIdStr) {
         try {
             // Validar y limitar pageSize: default 10, máximo 200
@@ -44,6 +52,13 @@ public class ProfesionalResource {
             }
 
             UUID tenantId = UUID.fromString(tenantIdStr);
+
+            if (cursor != null) {
+                PaginaCursor<profesional_salud> pagina =
+                    profesionalService.buscarDirectorio(searchTerm, null, tenantId, cursor, pageSize);
+                return Response.ok(toCursorResponse(pagina)).build();
+            }
+
             List<profesional_salud> profesionales;
             long totalCount;
 
@@ -64,6 +79,10 @@ public class ProfesionalResource {
 
             PaginatedResponse response = new PaginatedResponse(dtos, totalCount, page, pageSize);
             return Response.ok(response).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                 .entity(new ErrorResponse("Error al listar profesionales: " + e.getMessage()))
@@ -71,6 +90,36 @@ public class ProfesionalResource {
         }
     }
 
+    /**
+     * Directorio de profesionales de todas las clínicas (o de una, si se indica tenantId),
+     * usado por el componente central para el directorio nacional de usuarios.
+     * Paginación por cursor: devuelve la página y si hay más, sin contar el total.
+     * GET /api/profesionales/directorio?search=&ci=&tenantId=&cursor=&size=50
+     */
+    @GET
+    @Path("/directorio")
+    public Response getDirectorio(
+            @QueryParam("search") String searchTerm,
+            @QueryParam("ci") Integer ci,
+            @QueryParam("tenantId") String tenantIdStr,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("size") Integer size) {
+        try {
+            UUID tenantId = tenantIdStr != null && !tenantIdStr.isBlank() ? UUID.fromString(tenantIdStr) : null;
+            PaginaCursor<profesional_salud> pagina =
+                profesionalService.buscarDirectorio(searchTerm, ci, tenantId, cursor, size);
+            return Response.ok(toCursorResponse(pagina)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new ErrorResponse(e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(new ErrorResponse("Error al buscar en el directorio de profesionales: " + e.getMessage()))
+                .build();
+        }
+    }
+
     @GET
     @Path("/{ci}")
     public Response getProfesionalByCi(@PathParam("ci") Integer ci,
@@ -251,6 +300,12 @@ public class ProfesionalResource {
         }
     }
 
+    private PaginaCursor<profesional_salud_dto> toCursorResponse(PaginaCursor<profesional_salud> pagina) {
+        return pagina.convertir(profesionales -> profesionales.stream()
+            .map(this::toDTO)
+            .collect(Collectors.toList()));
+    }
+
     private profesional_salud_dto toDTO(profesional_salud entity) {
         profesional_salud_dto dto = new profesional_salud_dto(
             entity.getCi(),
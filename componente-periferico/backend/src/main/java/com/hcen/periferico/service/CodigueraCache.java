@@ -0,0 +1,205 @@
+package com.hcen.periferico.service;
+
+import com.hcen.periferico.dao.DocumentoClinicoDAO;
+import jakarta.annotation.PostConstruct;
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Cache de aplicación de las codigueras (motivo de consulta, estado de problema y grado de certeza).
+ *
+ * Son catálogos estáticos: se cargan completos al desplegar en mapas inmutables y se reemplazan
+ * enteros al recargar (recargar()), por lo que las lecturas no necesitan sincronización.
+ * Cada catálogo tiene un ETag calculado sobre su contenido (igual en todos los nodos) para
+ * que los clientes puedan revalidar con If-None-Match.
+ *
+ * Si la carga inicial falla (p. ej. base aún sin codigueras) se reintenta en el primer acceso,
+ * como mucho una vez cada ESPERA_REINTENTO: mientras tanto se devuelven catálogos vacíos en lugar de
+ * encolar cada petición detrás de una recarga completa.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CodigueraCache {
+
+    private static final Logger LOGGER = Logger.getLogger(CodigueraCache.class.getName());
+
+    private static final int MAX_RESULTADOS_BUSQUEDA = 50;
+    private static final Duration ESPERA_REINTENTO = Duration.ofSeconds(30);
+
+    @EJB
+    private DocumentoClinicoDAO documentoDAO;
+
+    private volatile Catalogos catalogos;
+
+    /**
+     * Momento (currentTimeMillis) de la última recarga fallida, 0 si la última fue exitosa
+     */
+    private volatile long ultimoFallo;
+
+    @PostConstruct
+    public void init() {
+        recargar();
+    }
+
+    /**
+     * Vuelve a leer las tres codigueras de la base y reemplaza el contenido cacheado.
+     * Si la lectura falla o alguna codiguera viene vacía se conserva el contenido anterior:
+     * nunca se publica un catálogo vacío, que haría rechazar todos los códigos.
+     *
+     * @return true si la recarga fue exitosa
+     */
+    public boolean recargar() {
+        try {
+            Catalogos nuevos = new Catalogos(
+                new Catalogo(documentoDAO.getAllMotivosConsulta()),
+                new Catalogo(documentoDAO.getAllEstadosProblema()),
+                new Catalogo(documentoDAO.getAllGradosCerteza()));
+            if (nuevos.motivos.valores.isEmpty() || nuevos.estados.valores.isEmpty()
+                    || nuevos.grados.valores.isEmpty()) {
+                LOGGER.warning(String.format(
+                    "Codigueras incompletas (%d motivos, %d estados, %d grados): se conserva el contenido anterior",
+                    nuevos.motivos.valores.size(), nuevos.estados.valores.size(), nuevos.grados.valores.size()));
+                ultimoFallo = System.currentTimeMillis();
+                return false;
+            }
+            catalogos = nuevos;
+            ultimoFallo = 0;
+            LOGGER.info(String.format("Codigueras cargadas: %d motivos, %d estados, %d grados",
+                nuevos.motivos.valores.size(), nuevos.estados.valores.size(), nuevos.grados.valores.size()));
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudieron cargar las codigueras", e);
+            ultimoFallo = System.currentTimeMillis();
+            return false;
+        }
+    }
+
+    public Catalogo getMotivosConsulta() {
+        return obtenerCatalogos().motivos;
+    }
+
+    public Catalogo getEstadosProblema() {
+        return obtenerCatalogos().estados;
+    }
+
+    public Catalogo getGradosCerteza() {
+        return obtenerCatalogos().grados;
+    }
+
+    /**
+     * Busca motivos de consulta cuyo concepto contenga el término (sin distinguir mayúsculas),
+     * ordenados por concepto y limitados a MAX_RESULTADOS_BUSQUEDA (para autocompletado)
+     */
+    public Map<String, String> buscarMotivosConsulta(String termino) {
+        Map<String, String> encontrados = new LinkedHashMap<>();
+        if (termino == null || termino.isBlank()) {
+            return encontrados;
+        }
+        String buscado = termino.trim().toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, String> motivo : getMotivosConsulta().getValores().entrySet()) {
+            if (motivo.getValue().toLowerCase(Locale.ROOT).contains(buscado)) {
+                encontrados.put(motivo.getKey(), motivo.getValue());
+                if (encontrados.size() >= MAX_RESULTADOS_BUSQUEDA) {
+                    break;
+                }
+            }
+        }
+        return encontrados;
+    }
+
+    private Catalogos obtenerCatalogos() {
+        Catalogos actuales = catalogos;
+        if (actuales == null && !enEsperaDeReintento()) {
+            synchronized (this) {
+                if (catalogos == null && !enEsperaDeReintento()) {
+                    recargar();
+                }
+                actuales = catalogos;
+            }
+        }
+        return actuales != null ? actuales : Catalogos.VACIOS;
+    }
+
+    private boolean enEsperaDeReintento() {
+        long fallo = ultimoFallo;
+        return fallo != 0 && System.currentTimeMillis() - fallo < ESPERA_REINTENTO.toMillis();
+    }
+
+    private static final class Catalogos {
+        private static final Catalogos VACIOS = new Catalogos(new Catalogo(Map.of()), new Catalogo(Map.of()),
+            new Catalogo(Map.of()));
+
+        private final Catalogo motivos;
+        private final Catalogo estados;
+        private final Catalogo grados;
+
+        private Catalogos(Catalogo motivos, Catalogo estados, Catalogo grados) {
+            this.motivos = motivos;
+            this.estados = estados;
+            this.grados = grados;
+        }
+    }
+
+    /**
+     * Codiguera inmutable: código -> concepto (en el orden de la base) y su ETag
+     */
+    public static final class Catalogo {
+        private final Map<String, String> valores;
+        private final String etag;
+
+        private Catalogo(Map<String, String> valores) {
+            this.valores = Collections.unmodifiableMap(new LinkedHashMap<>(valores));
+            CRC32 crc = new CRC32();
+            for (Map.Entry<String, String> entrada : this.valores.entrySet()) {
+                crc.update((entrada.getKey() + '=' + entrada.getValue() + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            this.etag = Integer.toHexString(this.valores.size()) + "-" + Long.toHexString(crc.getValue());
+        }
+
+        public Map<String, String> getValores() {
+            return valores;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public Optional<String> getNombre(String codigo) {
+            String clave = normalizar(codigo);
+            return clave != null ? Optional.ofNullable(valores.get(clave)) : Optional.empty();
+        }
+
+        public boolean contiene(String codigo) {
+            return getNombre(codigo).isPresent();
+        }
+
+        /**
+         * Los códigos son los IDs numéricos de la codiguera ("007" equivale a "7")
+         */
+        private static String normalizar(String codigo) {
+            if (codigo == null) {
+                return null;
+            }
+            try {
+                return Integer.valueOf(codigo.trim()).toString();
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.hcen.periferico.dao.DocumentoClinicoDAO;
 import com.hcen.periferico.dao.ProfesionalSaludDAO;
 import com.hcen.periferico.dao.SincronizacionPendienteDAO;
 import com.hcen.periferico.dao.SolicitudAccesoDocumentoDAO;
+import com.hcen.periferico.dto.PaginaCursor;
 import com.hcen.periferico.dto.documento_clinico_dto;
 import com.hcen.periferico.entity.SincronizacionPendiente;
 import com.hcen.periferico.entity.UsuarioSalud;
@@ -13,10 +14,9 @@ import com.hcen.periferico.entity.clinica;
 import com.hcen.periferico.entity.documento_clinico;
 import com.hcen.periferico.entity.profesional_salud;
 import com.hcen.periferico.enums.TipoSincronizacion;
-import com.hcen.periferico.messaging.DocumentoSincronizacionProducer;
+import com.hcen.periferico.util.CursorKeyset;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
-import jakarta.jms.JMSException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import java.util.logging.Level;
@@ -25,6 +25,7 @@ import java.util.logging.Logger;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -56,15 +57,12 @@ public class DocumentoClinicoService {
     @EJB
     private CentralAPIClient centralAPIClient;
 
+    @EJB
+    private CodigueraCache codigueraCache;
+
     @PersistenceContext(unitName = "hcen-periferico-pu")
     private EntityManager em;
 
-    /**
-     * Productor JMS para enviar documentos a la cola de sincronización
-     */
-    @EJB
-    private DocumentoSincronizacionProducer sincronizacionProducer;
-
     /**
      * Crea un nuevo documento clínico
      */
@@ -123,8 +121,8 @@ public class DocumentoClinicoService {
         // Guardar documento localmente (Hibernate generará el UUID automáticamente)
         documento_clinico documentoGuardado = documentoDAO.save(documento);
 
-        // Enviar a cola JMS para sincronización asíncrona con el central
-        enviarDocumentoACola(documentoGuardado, tenantId);
+        // Registrar en el outbox (misma transacción) para sincronización asíncrona con el central
+        registrarEnOutbox(documentoGuardado, tenantId);
 
         return documentoGuardado;
     }
@@ -196,11 +194,13 @@ public class DocumentoClinicoService {
     }
 
     /**
-     * Obtiene un documento por ID
+     * Obtiene un documento por ID, proyectado a DTO en una sola consulta
      */
     public Optional<documento_clinico_dto> getDocumentoPorId(UUID documentoId, UUID tenantId) {
-        Optional<documento_clinico> documentoOpt = documentoDAO.findByIdAndTenantId(documentoId, tenantId);
-        return documentoOpt.map(this::convertirADTO);
+        if (tenantId == null) {
+            return Optional.empty();
+        }
+        return documentoDAO.findDTOById(documentoId, tenantId);
     }
 
     /**
@@ -229,6 +229,57 @@ public class DocumentoClinicoService {
         return convertirListaADTOConCache(documentos);
     }
 
+    /**
+     * Lista documentos de una clínica con paginación por cursor (keyset).
+     *
+     * Todas las consultas por cursor ordenan por fecCreacion DESC con id DESC como desempate
+     * (dos documentos pueden compartir fecha), y el cursor es la posición (fecCreacion, id) del
+     * último documento devuelto: la página siguiente empieza estrictamente después de esa tupla.
+     *
+     * @param cursor cursor opaco devuelto por la página anterior (null o vacío para la primera página)
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaginaCursor<documento_clinico_dto> getDocumentosPorCursor(UUID tenantId, String cursor, Integer size) {
+        int resolvedSize = normalizePageSize(size);
+        CursorKeyset desde = CursorKeyset.decodificar(cursor, 2);
+        List<documento_clinico> documentos = documentoDAO.findAllByTenantIdKeyset(
+            tenantId, desde.fecha(0), desde.uuid(1), resolvedSize + 1);
+        return armarPagina(documentos, resolvedSize);
+    }
+
+    /**
+     * Lista documentos de un paciente de TODAS las clínicas con paginación por cursor (keyset)
+     */
+    public PaginaCursor<documento_clinico_dto> getDocumentosPorPacienteCursor(String cedula, String cursor, Integer size) {
+        int resolvedSize = normalizePageSize(size);
+        CursorKeyset desde = CursorKeyset.decodificar(cursor, 2);
+        List<documento_clinico> documentos = documentoDAO.findByPacienteKeyset(
+            cedula, null, desde.fecha(0), desde.uuid(1), resolvedSize + 1);
+        return armarPagina(documentos, resolvedSize);
+    }
+
+    /**
+     * Lista documentos firmados por un profesional con paginación por cursor (keyset)
+     */
+    public PaginaCursor<documento_clinico_dto> getDocumentosPorProfesionalCursor(Integer profesionalCi, UUID tenantId,
+                                                                                 String cursor, Integer size) {
+        int resolvedSize = normalizePageSize(size);
+        CursorKeyset desde = CursorKeyset.decodificar(cursor, 2);
+        List<documento_clinico> documentos = documentoDAO.findByProfesionalKeyset(
+            profesionalCi, tenantId, desde.fecha(0), desde.uuid(1), resolvedSize + 1);
+        return armarPagina(documentos, resolvedSize);
+    }
+
+    /**
+     * Arma la página a partir de una consulta que pidió un documento de más:
+     * si vino, hay otra página y el cursor apunta al último documento devuelto
+     */
+    private PaginaCursor<documento_clinico_dto> armarPagina(List<documento_clinico> documentos, int size) {
+        return PaginaCursor.desdeConsulta(documentos, size,
+                documento -> CursorKeyset.de(documento.getFecCreacion(), documento.getId()))
+            .convertir(this::convertirListaADTOConCache);
+    }
+
     /**
      * Obtiene múltiples documentos por sus IDs (batch)
      * Útil para evitar N+1 queries cuando el backend central necesita varios documentos
@@ -237,8 +288,10 @@ public class DocumentoClinicoService {
         if (documentoIds == null || documentoIds.isEmpty()) {
             return new ArrayList<>();
         }
-        List<documento_clinico> documentos = documentoDAO.findByIdsAndTenantId(documentoIds, tenantId);
-        return convertirListaADTOConCache(documentos);
+        if (tenantId == null) {
+            return new ArrayList<>();
+        }
+        return documentoDAO.findDTOsByIds(documentoIds, tenantId);
     }
 
     /**
@@ -250,8 +303,7 @@ public class DocumentoClinicoService {
         if (documentoIds == null || documentoIds.isEmpty()) {
             return new ArrayList<>();
         }
-        List<documento_clinico> documentos = documentoDAO.findByIds(documentoIds);
-        return convertirListaADTOConCache(documentos);
+        return documentoDAO.findDTOsByIds(documentoIds, null);
     }
 
     /**
@@ -261,6 +313,13 @@ public class DocumentoClinicoService {
         return documentoDAO.countByTenantId(tenantId);
     }
 
+    /**
+     * Cuenta documentos firmados por un profesional en una clínica
+     */
+    public long countDocumentosPorProfesional(Integer profesionalCi, UUID tenantId) {
+        return documentoDAO.countByProfesional(profesionalCi, tenantId);
+    }
+
     /**
      * Cuenta documentos de un paciente de TODAS las clínicas
      */
@@ -277,71 +336,6 @@ public class DocumentoClinicoService {
 
     // ============ MÉTODOS PRIVADOS ============
 
-    /**
-     * Convierte una entidad a DTO incluyendo resolución de codigueras
-     */
-    private documento_clinico_dto convertirADTO(documento_clinico documento) {
-        documento_clinico_dto dto = new documento_clinico_dto();
-
-        // IDs y fechas
-        dto.setId(documento.getId().toString());
-        dto.setTenantId(documento.getTenantId() != null ? documento.getTenantId().toString() : null);
-        dto.setFecCreacion(documento.getFecCreacion());
-
-        // Relaciones
-        dto.setUsuarioSaludCedula(documento.getUsuarioSaludCedula());
-        dto.setProfesionalCi(documento.getProfesionalFirmante().getCi());
-
-        // Información del paciente
-        if (documento.getPaciente() != null) {
-            dto.setNombreCompletoPaciente(documento.getPaciente().getNombreCompleto());
-        }
-
-        // Información del profesional
-        profesional_salud profesional = documento.getProfesionalFirmante();
-        dto.setNombreCompletoProfesional(profesional.getNombre() + " " + profesional.getApellidos());
-        dto.setEspecialidadProfesional(profesional.getEspecialidad() != null ? profesional.getEspecialidad().getNombre() : null);
-
-        // Información de la clínica
-        if (documento.getTenantId() != null) {
-            LOGGER.info("Buscando clínica para tenantId: " + documento.getTenantId());
-            Optional<clinica> clinicaOpt = clinicaDAO.findByTenantId(documento.getTenantId());
-            if (clinicaOpt.isPresent()) {
-                String nombreClinica = clinicaOpt.get().getNombre();
-                dto.setNombreClinica(nombreClinica);
-                LOGGER.info("Clínica encontrada: '" + nombreClinica + "' para tenantId: " + documento.getTenantId());
-            } else {
-                LOGGER.warning("No se encontró clínica para tenantId: " + documento.getTenantId() + " del documento " + documento.getId());
-            }
-        } else {
-            LOGGER.warning("Documento " + documento.getId() + " no tiene tenantId");
-        }
-
-        // Motivo de consulta
-        dto.setCodigoMotivoConsulta(documento.getCodigoMotivoConsulta());
-        documentoDAO.getNombreMotivoConsulta(documento.getCodigoMotivoConsulta())
-                .ifPresent(dto::setNombreMotivoConsulta);
-
-        // Diagnóstico
-        dto.setDescripcionDiagnostico(documento.getDescripcionDiagnostico());
-        dto.setFechaInicioDiagnostico(documento.getFechaInicioDiagnostico());
-        dto.setCodigoEstadoProblema(documento.getCodigoEstadoProblema());
-        if (documento.getCodigoEstadoProblema() != null) {
-            documentoDAO.getNombreEstadoProblema(documento.getCodigoEstadoProblema())
-                    .ifPresent(dto::setNombreEstadoProblema);
-        }
-        dto.setCodigoGradoCerteza(documento.getCodigoGradoCerteza());
-        documentoDAO.getNombreGradoCerteza(documento.getCodigoGradoCerteza())
-                .ifPresent(dto::setNombreGradoCerteza);
-
-        // Instrucciones de seguimiento
-        dto.setFechaProximaConsulta(documento.getFechaProximaConsulta());
-        dto.setDescripcionProximaConsulta(documento.getDescripcionProximaConsulta());
-        dto.setReferenciaAlta(documento.getReferenciaAlta());
-
-        return dto;
-    }
-
     /**
      * Convierte una lista de documentos a DTOs con caché (optimizado para batch)
      * Evita N+1 queries haciendo consultas batch para clínicas y codigueras
@@ -357,33 +351,15 @@ public class DocumentoClinicoService {
             .filter(Objects::nonNull)
             .collect(Collectors.toSet());
 
-        // 2. Extraer todos los códigos de codigueras únicos (solo los que se usan en estos documentos)
-        Set<String> codigosMotivo = documentos.stream()
-            .map(documento_clinico::getCodigoMotivoConsulta)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
-
-        Set<String> codigosEstado = documentos.stream()
-            .map(documento_clinico::getCodigoEstadoProblema)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
-
-        Set<String> codigosGrado = documentos.stream()
-            .map(documento_clinico::getCodigoGradoCerteza)
-            .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
-
-        // 3. Hacer UNA consulta batch por cada tipo (solo trae los nombres necesarios)
-        // UNA sola consulta SQL con IN clause para clínicas
+        // 2. UNA sola consulta SQL con IN clause para clínicas
         Map<UUID, String> clinicasCache = clinicaDAO.getNombresClinicasBatch(tenantIds);
 
-        // UNA sola consulta SQL con IN clause para cada tipo de codiguera
-        Map<String, String> motivosCache = documentoDAO.getNombresMotivosConsultaBatch(codigosMotivo);
-        Map<String, String> estadosCache = documentoDAO.getNombresEstadosProblemaBatch(codigosEstado);
-        Map<String, String> gradosCache = documentoDAO.getNombresGradosCertezaBatch(codigosGrado);
+        // 3. Las codigueras salen de la cache de aplicación (NO hace consulta a BD)
+        Map<String, String> motivosCache = codigueraCache.getMotivosConsulta().getValores();
+        Map<String, String> estadosCache = codigueraCache.getEstadosProblema().getValores();
+        Map<String, String> gradosCache = codigueraCache.getGradosCerteza().getValores();
 
-        LOGGER.info(String.format("Batch conversion: %d docs, %d clinics, %d motivos, %d estados, %d grados",
-            documentos.size(), clinicasCache.size(), motivosCache.size(), estadosCache.size(), gradosCache.size()));
+        LOGGER.fine(String.format("Batch conversion: %d docs, %d clinics", documentos.size(), clinicasCache.size()));
 
         // 4. Convertir cada documento usando los cachés
         return documentos.stream()
@@ -491,19 +467,19 @@ public class DocumentoClinicoService {
      */
     private void validarCodigueras(String codigoMotivoConsulta, String codigoEstadoProblema, String codigoGradoCerteza) {
         // Validar motivo de consulta
-        if (documentoDAO.getNombreMotivoConsulta(codigoMotivoConsulta).isEmpty()) {
+        if (!codigueraCache.getMotivosConsulta().contiene(codigoMotivoConsulta)) {
             throw new IllegalArgumentException("El código de motivo de consulta '" + codigoMotivoConsulta + "' no es válido");
         }
 
         // Validar estado de problema (opcional)
         if (codigoEstadoProblema != null && !codigoEstadoProblema.trim().isEmpty()) {
-            if (documentoDAO.getNombreEstadoProblema(codigoEstadoProblema).isEmpty()) {
+            if (!codigueraCache.getEstadosProblema().contiene(codigoEstadoProblema)) {
                 throw new IllegalArgumentException("El código de estado de problema '" + codigoEstadoProblema + "' no es válido");
             }
         }
 
         // Validar grado de certeza
-        if (documentoDAO.getNombreGradoCerteza(codigoGradoCerteza).isEmpty()) {
+        if (!codigueraCache.getGradosCerteza().contiene(codigoGradoCerteza)) {
             throw new IllegalArgumentException("El código de grado de certeza '" + codigoGradoCerteza + "' no es válido");
         }
     }
@@ -519,76 +495,30 @@ public class DocumentoClinicoService {
     }
 
     /**
-     * Envía un documento recién creado a la cola JMS para sincronización asíncrona con el componente central.
-     * Registra el envío en la tabla sincronizacion_pendiente para auditoría y monitoreo.
+     * Registra un documento recién creado en el outbox de sincronización con el componente central.
      *
-     * Este método NO intenta sincronizar directamente vía REST. En su lugar:
-     * 1. Envía mensaje a cola "DocumentosSincronizacion"
-     * 2. Registra en tabla de auditoría (sincronizacion_pendiente)
-     * 3. El componente central consumirá el mensaje y procesará el documento
-     * 4. El central enviará confirmación a cola "SincronizacionConfirmaciones"
-     * 5. El consumidor de confirmaciones actualizará hist_clinica_id y estado de auditoría
+     * El registro en sincronizacion_pendiente (estado PENDIENTE, sin message_id) se confirma en
+     * la misma transacción que el documento, por lo que no se pierde ante una caída ni bloquea
+     * la creación si el broker no está disponible:
+     * 1. SincronizacionOutboxRelay publica los registros en la cola "DocumentosSincronizacion" y les asigna message_id
+     * 2. El componente central consumirá el mensaje y procesará el documento
+     * 3. El central enviará confirmación a cola "SincronizacionConfirmaciones"
+     * 4. El consumidor de confirmaciones actualizará hist_clinica_id y estado de auditoría
      *
      * @param documento Documento recién creado
      * @param tenantId ID de la clínica
      */
-    private void enviarDocumentoACola(documento_clinico documento, UUID tenantId) {
-
-        LOGGER.log(Level.INFO, "Enviando documento {0} a cola de sincronización (paciente: {1}, tenant: {2})",
-                new Object[]{documento.getId(), documento.getUsuarioSaludCedula(), tenantId});
-
-        String messageId = null;
-
-        try {
-            // Enviar mensaje JMS a la cola
-            messageId = sincronizacionProducer.enviarDocumento(
-                    documento.getId(),
-                    documento.getUsuarioSaludCedula(),
-                    tenantId
-            );
-
-            LOGGER.log(Level.INFO, "Documento {0} enviado a cola exitosamente. MessageID: {1}",
-                    new Object[]{documento.getId(), messageId});
-
-        } catch (JMSException e) {
-            // Error crítico: no se pudo enviar a la cola
-            LOGGER.log(Level.SEVERE, "Error al enviar documento " + documento.getId() +
-                    " a cola de sincronización", e);
-
-            // Continuar para registrar en tabla de auditoría con estado ERROR
-        }
-
-        // Registrar en tabla de auditoría para monitoreo
-        // Se crea SIEMPRE, independientemente si el envío a cola fue exitoso o no
-        try {
-            SincronizacionPendiente auditoria = new SincronizacionPendiente(
-                    documento.getUsuarioSaludCedula(),
-                    tenantId,
-                    documento.getId() // documento_id
-            );
-
-            auditoria.setMessageId(messageId);
-            auditoria.setFecEnvioCola(LocalDateTime.now());
-
-            if (messageId != null) {
-                // Mensaje enviado exitosamente
-                auditoria.setEstado(SincronizacionPendiente.EstadoSincronizacion.PENDIENTE);
-            } else {
-                // Falló envío a cola
-                auditoria.setEstado(SincronizacionPendiente.EstadoSincronizacion.ERROR);
-                auditoria.registrarError("Error al enviar mensaje a cola JMS");
-            }
-
-            sincronizacionDAO.save(auditoria);
-
-            LOGGER.log(Level.INFO, "Registro de auditoría creado para documento {0}",
-                    documento.getId());
+    private void registrarEnOutbox(documento_clinico documento, UUID tenantId) {
+        SincronizacionPendiente outbox = new SincronizacionPendiente(
+                documento.getUsuarioSaludCedula(),
+                tenantId,
+                documento.getId() // documento_id
+        );
+        outbox.setEstado(SincronizacionPendiente.EstadoSincronizacion.PENDIENTE);
+        sincronizacionDAO.save(outbox);
 
-        } catch (Exception e) {
-            // Error al guardar auditoría - loguear pero no fallar la transacción principal
-            LOGGER.log(Level.SEVERE, "Error al crear registro de auditoría para documento " +
-                    documento.getId(), e);
-        }
+        LOGGER.log(Level.INFO, "Documento {0} registrado en outbox de sincronización (tenant: {1})",
+                new Object[]{documento.getId(), tenantId});
     }
 
     // ========== MÉTODOS PARA VALIDACIÓN DE PERMISOS DE ACCESO ==========
@@ -661,17 +591,28 @@ public class DocumentoClinicoService {
      */
     public Map<UUID, Boolean> validarAccesoDocumentos(List<UUID> documentoIds, Integer ciProfesional,
                                                         UUID tenantId, String especialidad) {
+        return validarAccesoDocumentosAsync(documentoIds, ciProfesional, tenantId, especialidad).join();
+    }
+
+    /**
+     * Versión asíncrona de validarAccesoDocumentos.
+     * Las consultas locales se hacen en el hilo invocante (dentro de la transacción); la validación
+     * con el central no bloquea: el resultado se completa cuando responde el central.
+     * El future nunca completa con error: ante cualquier fallo se deniega el acceso.
+     */
+    public CompletableFuture<Map<UUID, Boolean>> validarAccesoDocumentosAsync(List<UUID> documentoIds, Integer ciProfesional,
+                                                                             UUID tenantId, String especialidad) {
         Map<UUID, Boolean> resultado = new HashMap<>();
 
         if (documentoIds == null || documentoIds.isEmpty()) {
-            return resultado;
+            return CompletableFuture.completedFuture(resultado);
         }
 
         if (ciProfesional == null || tenantId == null) {
             LOGGER.warning("Parámetros inválidos para validar acceso batch");
             // Denegar todos por seguridad
             documentoIds.forEach(id -> resultado.put(id, false));
-            return resultado;
+            return CompletableFuture.completedFuture(resultado);
         }
 
         try {
@@ -681,7 +622,7 @@ public class DocumentoClinicoService {
                 LOGGER.warning(String.format("Profesional no encontrado: CI=%d, tenant=%s", ciProfesional, tenantId));
                 // Denegar todos
                 documentoIds.forEach(id -> resultado.put(id, false));
-                return resultado;
+                return CompletableFuture.completedFuture(resultado);
             }
 
             profesional_salud profesional = profesionalOpt.get();
@@ -719,20 +660,23 @@ public class DocumentoClinicoService {
                 documentosCreados.size(), ciProfesional, documentosAValidarConCentral.size()));
 
             // 5. Validar con central solo los que no son creados por este profesional (BATCH)
-            if (!documentosAValidarConCentral.isEmpty()) {
-                Map<UUID, Boolean> permisosCentral = centralAPIClient.validarAccesoDocumentos(
-                    documentosAValidarConCentral, ciProfesional, tenantId, especialidadNombre);
-
-                resultado.putAll(permisosCentral);
+            if (documentosAValidarConCentral.isEmpty()) {
+                return CompletableFuture.completedFuture(resultado);
             }
 
-            return resultado;
+            return centralAPIClient.validarAccesoDocumentosAsync(
+                    documentosAValidarConCentral, ciProfesional, tenantId, especialidadNombre)
+                .thenApply(permisosCentral -> {
+                    Map<UUID, Boolean> combinado = new HashMap<>(resultado);
+                    combinado.putAll(permisosCentral);
+                    return combinado;
+                });
 
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Error al validar acceso batch a documentos", e);
             // En caso de error, denegar todos por seguridad
             documentoIds.forEach(id -> resultado.put(id, false));
-            return resultado;
+            return CompletableFuture.completedFuture(resultado);
         }
     }
 
@@ -2,6 +2,8 @@ package com.hcen.periferico.service;
 
 import com.hcen.periferico.entity.profesional_salud;
 import com.hcen.periferico.dao.ProfesionalSaludDAO;
+import com.hcen.periferico.dto.PaginaCursor;
+import com.hcen.periferico.util.CursorKeyset;
 import jakarta.ejb.EJB;
 import jakarta.ejb.Stateless;
 import org.mindrot.jbcrypt.BCrypt;
@@ -224,6 +226,25 @@ public class ProfesionalService {
         return profesionalDAO.countByNombreOrApellidoAndTenantId(searchTerm.trim(), tenantId);
     }
 
+    /**
+     * Página del directorio de profesionales con paginación por cursor (keyset): una sola consulta
+     * que trae un profesional de más para saber si hay otra página, sin COUNT aparte.
+     *
+     * @param tenantId clínica, o null para buscar en todas
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public PaginaCursor<profesional_salud> buscarDirectorio(String searchTerm, Integer ci, UUID tenantId,
+                                                            String cursor, Integer size) {
+        int resolvedSize = normalizePageSize(size);
+        // Posición (apellidos, nombre, id) con las claves normalizadas del último profesional
+        CursorKeyset desde = CursorKeyset.decodificar(cursor, 3);
+        List<profesional_salud> profesionales = profesionalDAO.findDirectorioKeyset(
+            searchTerm, ci, tenantId, desde.texto(0), desde.texto(1), desde.uuid(2), resolvedSize + 1);
+
+        return PaginaCursor.desdeConsulta(profesionales, resolvedSize, profesional -> CursorKeyset.de(
+            profesional.getApellidosBusqueda(), profesional.getNombreBusqueda(), profesional.getId()));
+    }
+
     /**
      * Hashea una contraseña usando BCrypt
      */
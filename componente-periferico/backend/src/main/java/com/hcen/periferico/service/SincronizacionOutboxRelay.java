@@ -0,0 +1,125 @@
+package com.hcen.periferico.service;
+
+import jakarta.ejb.ConcurrencyManagement;
+import jakarta.ejb.ConcurrencyManagementType;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Relay del outbox de sincronización de documentos.
+ *
+ * Cada 5 segundos publica los documentos pendientes del outbox en lotes (cada lote en su
+ * propia transacción, con un único JMSContext) hasta vaciarlo o alcanzar el máximo por ciclo.
+ * Expone métricas de throughput y del retraso del registro más antiguo sin publicar.
+ *
+ * Concurrencia gestionada por el bean: las métricas se leen sin esperar al ciclo en curso
+ * y un disparo que llega con el ciclo anterior todavía corriendo se omite.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class SincronizacionOutboxRelay {
+
+    private static final Logger LOGGER = Logger.getLogger(SincronizacionOutboxRelay.class.getName());
+
+    private static final int TAMANIO_LOTE = 100;
+    private static final int MAX_LOTES_POR_CICLO = 20;
+
+    @EJB
+    private SincronizacionOutboxService outboxService;
+
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private final AtomicLong totalPublicados = new AtomicLong();
+    private final AtomicLong totalCiclos = new AtomicLong();
+
+    private volatile LocalDateTime ultimaEjecucion;
+    private volatile int ultimosPublicados;
+    private volatile int ultimosLotes;
+    private volatile long ultimaDuracionMs;
+    private volatile LocalDateTime pendienteMasAntiguo;
+
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void ejecutarCiclo() {
+        if (!enCurso.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            publicarPendientes();
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    private void publicarPendientes() {
+        long inicio = System.nanoTime();
+        int publicados = 0;
+        int lotes = 0;
+
+        try {
+            SincronizacionOutboxService.ResultadoPublicacion resultado;
+            do {
+                resultado = outboxService.publicarLote(TAMANIO_LOTE);
+                publicados += resultado.getPublicados();
+                lotes++;
+            } while (resultado.getLeidos() == TAMANIO_LOTE && lotes < MAX_LOTES_POR_CICLO);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error en el ciclo del relay de sincronización", e);
+        }
+
+        long duracionMs = Duration.ofNanos(System.nanoTime() - inicio).toMillis();
+        Optional<LocalDateTime> sinPublicar = Optional.empty();
+        try {
+            sinPublicar = outboxService.obtenerSinPublicarMasAntiguo();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "No se pudo calcular el retraso del outbox", e);
+        }
+
+        ultimosPublicados = publicados;
+        ultimosLotes = lotes;
+        ultimaDuracionMs = duracionMs;
+        pendienteMasAntiguo = sinPublicar.orElse(null);
+        ultimaEjecucion = LocalDateTime.now();
+        totalPublicados.addAndGet(publicados);
+        totalCiclos.incrementAndGet();
+
+        if (publicados > 0) {
+            LOGGER.info(String.format("Relay de sincronización: %d documentos publicados en %d lotes (%d ms), pendiente más antiguo=%s",
+                publicados, lotes, duracionMs, sinPublicar.orElse(null)));
+        }
+    }
+
+    /**
+     * Métricas del relay: último ciclo, totales y retraso del registro más antiguo sin publicar
+     */
+    public Map<String, Object> getMetricas() {
+        LocalDateTime pendiente = pendienteMasAntiguo;
+        LocalDateTime ejecucion = ultimaEjecucion;
+        long retraso = pendiente != null && ejecucion != null
+            ? Math.max(0, Duration.between(pendiente, ejecucion).getSeconds())
+            : 0;
+
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("ultimaEjecucion", ejecucion);
+        metricas.put("ultimosPublicados", ultimosPublicados);
+        metricas.put("ultimosLotes", ultimosLotes);
+        metricas.put("ultimaDuracionMs", ultimaDuracionMs);
+        metricas.put("totalPublicados", totalPublicados.get());
+        metricas.put("totalCiclos", totalCiclos.get());
+        metricas.put("pendienteMasAntiguo", pendiente);
+        metricas.put("retrasoSegundos", retraso);
+        return metricas;
+    }
+}
@@ -0,0 +1,143 @@
+package com.hcen.periferico.service;
+
+import com.hcen.periferico.dao.DocumentoClinicoDAO;
+import com.hcen.periferico.dao.SincronizacionPendienteDAO;
+import com.hcen.periferico.entity.SincronizacionPendiente;
+import com.hcen.periferico.entity.documento_clinico;
+import com.hcen.periferico.enums.TipoSincronizacion;
+import com.hcen.periferico.messaging.DocumentoSincronizacionProducer;
+import hcen.central.inus.dto.DocumentoSincronizacionMessage;
+import jakarta.ejb.EJB;
+import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publica en la cola "DocumentosSincronizacion" los documentos registrados en el outbox
+ * (sincronizacion_pendiente en estado PENDIENTE y sin message_id).
+ *
+ * Cada lote se publica en su propia transacción: el envío JMS (connection factory XA) y
+ * la marca de publicado (message_id, fec_envio_cola) se confirman juntos. Los registros
+ * que no se pudieron publicar quedan en ERROR con backoff y los retoma
+ * SincronizacionReintentosService.
+ */
+@Stateless
+public class SincronizacionOutboxService {
+
+    private static final Logger LOGGER = Logger.getLogger(SincronizacionOutboxService.class.getName());
+
+    @EJB
+    private SincronizacionPendienteDAO sincronizacionDAO;
+
+    @EJB
+    private DocumentoClinicoDAO documentoDAO;
+
+    @EJB
+    private DocumentoSincronizacionProducer documentoProducer;
+
+    /**
+     * Publica un lote del outbox
+     *
+     * @param limite cantidad máxima de registros a publicar
+     * @return registros leídos del outbox (publicados, fallidos o cancelados) y publicados
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ResultadoPublicacion publicarLote(int limite) {
+        List<SincronizacionPendiente> registros =
+            sincronizacionDAO.findOutboxSinPublicar(TipoSincronizacion.DOCUMENTO, limite);
+
+        if (registros.isEmpty()) {
+            return new ResultadoPublicacion(0, 0);
+        }
+
+        List<UUID> documentoIds = new ArrayList<>();
+        for (SincronizacionPendiente registro : registros) {
+            if (registro.getDocumentoId() != null) {
+                documentoIds.add(registro.getDocumentoId());
+            }
+        }
+        Map<UUID, documento_clinico> documentos = new HashMap<>();
+        for (documento_clinico documento : documentoDAO.findByIds(documentoIds)) {
+            documentos.put(documento.getId(), documento);
+        }
+
+        List<SincronizacionPendiente> aPublicar = new ArrayList<>();
+        List<DocumentoSincronizacionMessage> mensajes = new ArrayList<>();
+
+        for (SincronizacionPendiente registro : registros) {
+            documento_clinico documento = documentos.get(registro.getDocumentoId());
+            if (documento == null || !documento.getTenantId().equals(registro.getTenantId())) {
+                LOGGER.log(Level.WARNING,
+                        "Registro de outbox {0} sin documento local válido. Marcando como CANCELADA.",
+                        registro.getId());
+                registro.marcarComoCancelada();
+                registro.setUltimoError("Documento inexistente en base local");
+                sincronizacionDAO.save(registro);
+                continue;
+            }
+            aPublicar.add(registro);
+            mensajes.add(new DocumentoSincronizacionMessage(
+                    documento.getId(), documento.getTenantId(), documento.getUsuarioSaludCedula()));
+        }
+
+        int publicados = 0;
+        if (!mensajes.isEmpty()) {
+            Map<UUID, String> enviados = documentoProducer.enviarDocumentosLote(mensajes);
+            LocalDateTime ahora = LocalDateTime.now();
+
+            for (SincronizacionPendiente registro : aPublicar) {
+                String messageId = enviados.get(registro.getDocumentoId());
+                if (messageId != null) {
+                    registro.setMessageId(messageId);
+                    registro.setFecEnvioCola(ahora);
+                    publicados++;
+                } else {
+                    registro.registrarError("Error al enviar mensaje a cola JMS");
+                    registro.setProximoIntento(
+                        SincronizacionReintentosService.calcularProximoIntento(ahora, registro.getIntentos()));
+                }
+                sincronizacionDAO.save(registro);
+            }
+        }
+
+        return new ResultadoPublicacion(registros.size(), publicados);
+    }
+
+    /**
+     * Fecha de creación del registro más antiguo aún sin publicar
+     */
+    public Optional<LocalDateTime> obtenerSinPublicarMasAntiguo() {
+        return sincronizacionDAO.findOutboxSinPublicarMasAntiguo(TipoSincronizacion.DOCUMENTO);
+    }
+
+    /**
+     * Resultado de publicar un lote del outbox
+     */
+    public static class ResultadoPublicacion {
+        private final int leidos;
+        private final int publicados;
+
+        public ResultadoPublicacion(int leidos, int publicados) {
+            this.leidos = leidos;
+            this.publicados = publicados;
+        }
+
+        public int getLeidos() {
+            return leidos;
+        }
+
+        public int getPublicados() {
+            return publicados;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.hcen.periferico.service;
+
+import jakarta.ejb.EJB;
+import jakarta.ejb.Schedule;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispara automáticamente los reintentos de sincronización de documentos.
+ *
+ * Cada minuto recorre los candidatos de SincronizacionReintentosService lote a lote
+ * (cada lote en su propia transacción) hasta agotarlos o alcanzar el máximo por ciclo.
+ * El backoff por registro y el tope por tenant los aplica el servicio.
+ */
+@Singleton
+public class SincronizacionReintentosScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(SincronizacionReintentosScheduler.class.getName());
+
+    private static final int MAX_LOTES_POR_CICLO = 10;
+
+    @EJB
+    private SincronizacionReintentosService reintentosService;
+
+    @Schedule(second = "0", minute = "*", hour = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void ejecutarCiclo() {
+        int reenviados = 0;
+        int diferidos = 0;
+        int lotes = 0;
+        SincronizacionReintentosService.ResultadoLote lote = null;
+
+        try {
+            do {
+                lote = reintentosService.procesarLote(lote, SincronizacionReintentosService.TAMANIO_LOTE_DEFAULT);
+                reenviados += lote.getReenviados();
+                diferidos += lote.getDiferidos();
+                lotes++;
+            } while (lote.hayMas() && lotes < MAX_LOTES_POR_CICLO);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error en el ciclo de reintentos de sincronización", e);
+        }
+
+        if (reenviados > 0 || diferidos > 0) {
+            LOGGER.log(Level.INFO,
+                    "Ciclo de reintentos: {0} documentos reenviados, {1} diferidos por tenant, {2} lotes",
+                    new Object[]{reenviados, diferidos, lotes});
+        }
+    }
+}
@@ -6,13 +6,23 @@ import com.hcen.periferico.entity.SincronizacionPendiente;
 import com.hcen.periferico.entity.documento_clinico;
 import com.hcen.periferico.enums.TipoSincronizacion;
 import com.hcen.periferico.messaging.DocumentoSincronizacionProducer;
+import hcen.central.inus.dto.DocumentoSincronizacionMessage;
+import jakarta.annotation.Resource;
 import jakarta.ejb.EJB;
+import jakarta.ejb.SessionContext;
 import jakarta.ejb.Stateless;
-import jakarta.jms.JMSException;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
 
+import java.io.Serializable;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,8 +30,15 @@ import java.util.logging.Logger;
  * Servicio encargado de reintentar la sincronización de documentos clínicos que
  * quedaron en estado ERROR dentro de la tabla sincronizacion_pendiente.
  *
- * Se utiliza desde endpoints administrativos para forzar el reenvío manual de
- * documentos a la cola JMS procesada por el componente central.
+ * Lo invoca periódicamente SincronizacionReintentosScheduler (un lote por transacción)
+ * y también los endpoints administrativos para forzar el reenvío manual.
+ *
+ * - Recorre los candidatos con paginación keyset (created_at, id), sin cargar toda la tabla
+ * - Cada reenvío fija proximo_intento con backoff exponencial y jitter
+ * - Un único JMSContext por lote
+ * - Tope de envíos en vuelo por tenant: una clínica con problemas no acapara los reintentos.
+ *   Los registros diferidos por el tope corren su proximo_intento (sin consumir intentos), así
+ *   los ciclos siguientes no vuelven a empezar por ellos y llegan a los demás tenants
  */
 @Stateless
 public class SincronizacionReintentosService {
@@ -29,6 +46,26 @@ public class SincronizacionReintentosService {
     private static final Logger LOGGER = Logger.getLogger(SincronizacionReintentosService.class.getName());
     private static final int MAX_INTENTOS_DEFAULT = 5;
 
+    public static final int TAMANIO_LOTE_DEFAULT = 100;
+
+    /**
+     * Máximo de documentos encolados y sin confirmar por tenant
+     */
+    private static final int MAX_EN_VUELO_POR_TENANT = 20;
+
+    /**
+     * Ventana tras la cual un envío sin confirmación deja de contar como "en vuelo"
+     */
+    private static final Duration VENTANA_EN_VUELO = Duration.ofMinutes(10);
+
+    private static final Duration BACKOFF_BASE = Duration.ofSeconds(30);
+    private static final Duration BACKOFF_MAXIMO = Duration.ofMinutes(30);
+
+    /**
+     * Espera de un registro diferido por el tope de su tenant (mayor al período del scheduler)
+     */
+    private static final Duration ESPERA_TENANT_SATURADO = Duration.ofMinutes(2);
+
     @EJB
     private SincronizacionPendienteDAO sincronizacionDAO;
 
@@ -38,111 +75,222 @@ public class SincronizacionReintentosService {
     @EJB
     private DocumentoSincronizacionProducer documentoProducer;
 
+    @Resource
+    private SessionContext sessionContext;
+
     /**
-     * Reenvía los documentos que siguen pendientes o con errores hacia la cola
-     * JMS. Solo se consideran aquellos registros que aún no superan el límite
-     * de intentos configurado.
+     * Reenvía los documentos con errores hacia la cola JMS (los que nunca se
+     * encolaron los publica SincronizacionOutboxRelay). Solo se consideran aquellos
+     * registros que aún no superan el límite de intentos configurado y cuyo backoff ya venció.
+     * Cada lote se confirma en su propia transacción (vía el proxy del EJB).
      *
      * @return cantidad de documentos que se volvieron a encolar
      */
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public int procesarInmediato() {
-        List<SincronizacionPendiente> candidatos =
-            sincronizacionDAO.findByTipoParaReintentar(TipoSincronizacion.DOCUMENTO, MAX_INTENTOS_DEFAULT);
-
+        SincronizacionReintentosService self =
+                sessionContext.getBusinessObject(SincronizacionReintentosService.class);
         int reenviados = 0;
+        int candidatos = 0;
+        ResultadoLote lote = null;
+
+        do {
+            lote = self.procesarLote(lote, TAMANIO_LOTE_DEFAULT);
+            reenviados += lote.getReenviados();
+            candidatos += lote.getCandidatos();
+        } while (lote.hayMas());
+
+        LOGGER.log(Level.INFO,
+                "Reintentos ejecutados. reenviados={0}, total_candidatos={1}",
+                new Object[]{reenviados, candidatos});
+
+        return reenviados;
+    }
+
+    /**
+     * Procesa una página de candidatos en su propia transacción.
+     *
+     * @param anterior resultado del lote anterior (cursor), o null para empezar desde el principio
+     * @param tamanioLote cantidad máxima de candidatos a leer
+     * @return resultado del lote, con el cursor para continuar
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public ResultadoLote procesarLote(ResultadoLote anterior, int tamanioLote) {
+        LocalDateTime ahora = LocalDateTime.now();
+
+        List<SincronizacionPendiente> candidatos = sincronizacionDAO.findParaReintentarDesde(
+                TipoSincronizacion.DOCUMENTO, MAX_INTENTOS_DEFAULT, ahora,
+                anterior != null ? anterior.ultimoCreatedAt : null,
+                anterior != null ? anterior.ultimoId : null,
+                tamanioLote);
+
+        if (candidatos.isEmpty()) {
+            return new ResultadoLote(0, 0, 0, null, null, false);
+        }
+
+        Map<UUID, Long> enVuelo = sincronizacionDAO.countEnVueloPorTenant(
+                TipoSincronizacion.DOCUMENTO, ahora.minus(VENTANA_EN_VUELO));
 
+        // Un solo SELECT para todos los documentos del lote
+        List<UUID> documentoIds = new ArrayList<>();
         for (SincronizacionPendiente pendiente : candidatos) {
-            if (!requiereReintento(pendiente)) {
+            if (pendiente.getDocumentoId() != null) {
+                documentoIds.add(pendiente.getDocumentoId());
+            }
+        }
+        Map<UUID, documento_clinico> documentos = new HashMap<>();
+        for (documento_clinico documento : documentoDAO.findByIds(documentoIds)) {
+            documentos.put(documento.getId(), documento);
+        }
+
+        List<SincronizacionPendiente> aReenviar = new ArrayList<>();
+        List<DocumentoSincronizacionMessage> mensajes = new ArrayList<>();
+        int diferidosPorTenant = 0;
+
+        for (SincronizacionPendiente pendiente : candidatos) {
+            documento_clinico documento = resolverDocumento(pendiente, documentos);
+            if (documento == null) {
+                continue;
+            }
+
+            long enVueloTenant = enVuelo.getOrDefault(pendiente.getTenantId(), 0L);
+            if (enVueloTenant >= MAX_EN_VUELO_POR_TENANT) {
+                pendiente.setProximoIntento(ahora.plus(ESPERA_TENANT_SATURADO));
+                sincronizacionDAO.save(pendiente);
+                diferidosPorTenant++;
                 continue;
             }
+            enVuelo.put(pendiente.getTenantId(), enVueloTenant + 1);
+
+            aReenviar.add(pendiente);
+            mensajes.add(new DocumentoSincronizacionMessage(
+                    documento.getId(), documento.getTenantId(), documento.getUsuarioSaludCedula()));
+        }
+
+        int reenviados = 0;
+        if (!mensajes.isEmpty()) {
+            Map<UUID, String> enviados = documentoProducer.enviarDocumentosLote(mensajes);
 
-            try {
-                if (reenviarDocumento(pendiente)) {
+            for (SincronizacionPendiente pendiente : aReenviar) {
+                String messageId = enviados.get(pendiente.getDocumentoId());
+                pendiente.incrementarIntentos();
+                pendiente.setProximoIntento(calcularProximoIntento(ahora, pendiente.getIntentos()));
+
+                if (messageId != null) {
+                    pendiente.setEstado(SincronizacionPendiente.EstadoSincronizacion.PENDIENTE);
+                    pendiente.setUltimoError(null);
+                    pendiente.setMessageId(messageId);
+                    pendiente.setFecEnvioCola(ahora);
                     reenviados++;
+                } else {
+                    pendiente.setEstado(SincronizacionPendiente.EstadoSincronizacion.ERROR);
+                    pendiente.setUltimoError("Error al reenviar mensaje a cola JMS");
                 }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE,
-                        "Error inesperado reintentando sincronización {0}: {1}",
-                        new Object[]{pendiente.getId(), e.getMessage()});
-                pendiente.registrarError("Error inesperado en reintento: " + e.getMessage());
                 sincronizacionDAO.save(pendiente);
             }
         }
 
-        LOGGER.log(Level.INFO,
-                "Reintentos ejecutados. reenviados={0}, total_candidatos={1}",
-                new Object[]{reenviados, candidatos.size()});
+        if (diferidosPorTenant > 0) {
+            LOGGER.log(Level.INFO,
+                    "{0} reintentos diferidos por tope de {1} envíos en vuelo por tenant",
+                    new Object[]{diferidosPorTenant, MAX_EN_VUELO_POR_TENANT});
+        }
 
-        return reenviados;
+        SincronizacionPendiente ultimo = candidatos.get(candidatos.size() - 1);
+        return new ResultadoLote(candidatos.size(), reenviados, diferidosPorTenant,
+                ultimo.getCreatedAt(), ultimo.getId(), candidatos.size() == tamanioLote);
     }
 
-    private boolean requiereReintento(SincronizacionPendiente pendiente) {
-        if (pendiente == null) {
-            return false;
-        }
-
+    /**
+     * Devuelve el documento a reenviar, o null si el registro no es reintentable
+     * (en cuyo caso queda CANCELADO)
+     */
+    private documento_clinico resolverDocumento(SincronizacionPendiente pendiente,
+                                                Map<UUID, documento_clinico> documentos) {
         if (pendiente.getDocumentoId() == null) {
             LOGGER.log(Level.WARNING,
                     "Registro de sincronización sin documento_id. Marcando como CANCELADA. id={0}",
                     pendiente.getId());
-            pendiente.marcarComoCancelada();
-            pendiente.setUltimoError("Documento asociado no existe");
-            sincronizacionDAO.save(pendiente);
-            return false;
+            cancelar(pendiente, "Documento asociado no existe");
+            return null;
         }
 
         if (pendiente.getTenantId() == null) {
             LOGGER.log(Level.WARNING,
                     "Registro de sincronización sin tenantId. Marcando como CANCELADA. id={0}",
                     pendiente.getId());
-            pendiente.marcarComoCancelada();
-            pendiente.setUltimoError("Tenant asociado no existe");
-            sincronizacionDAO.save(pendiente);
-            return false;
+            cancelar(pendiente, "Tenant asociado no existe");
+            return null;
         }
 
-        if (pendiente.getEstado() == SincronizacionPendiente.EstadoSincronizacion.RESUELTA ||
-            pendiente.getEstado() == SincronizacionPendiente.EstadoSincronizacion.CANCELADA) {
-            return false;
+        documento_clinico documento = documentos.get(pendiente.getDocumentoId());
+        if (documento == null || !pendiente.getTenantId().equals(documento.getTenantId())) {
+            LOGGER.log(Level.WARNING,
+                    "Documento {0} no existe localmente. Cancelando sincronización.",
+                    pendiente.getDocumentoId());
+            cancelar(pendiente, "Documento inexistente en base local");
+            return null;
         }
 
-        // Solo reintentar errores o envíos que nunca llegaron a encolarse
-        return pendiente.getEstado() == SincronizacionPendiente.EstadoSincronizacion.ERROR ||
-               pendiente.getMessageId() == null;
+        return documento;
+    }
+
+    private void cancelar(SincronizacionPendiente pendiente, String motivo) {
+        pendiente.marcarComoCancelada();
+        pendiente.setUltimoError(motivo);
+        sincronizacionDAO.save(pendiente);
     }
 
-    private boolean reenviarDocumento(SincronizacionPendiente pendiente) throws JMSException {
-        Optional<documento_clinico> documentoOpt =
-            documentoDAO.findByIdAndTenantId(pendiente.getDocumentoId(), pendiente.getTenantId());
+    /**
+     * Backoff exponencial con "equal jitter": base * 2^(intentos-1), acotado al máximo,
+     * del que se toma una mitad fija y otra aleatoria para no reenviar en ráfagas sincronizadas.
+     */
+    static LocalDateTime calcularProximoIntento(LocalDateTime ahora, int intentos) {
+        int exponente = Math.max(0, Math.min(intentos - 1, 16));
+        long esperaMs = Math.min(BACKOFF_BASE.toMillis() << exponente, BACKOFF_MAXIMO.toMillis());
+        long mitad = esperaMs / 2;
+        long conJitter = mitad + ThreadLocalRandom.current().nextLong(mitad + 1);
+        return ahora.plus(Duration.ofMillis(conJitter));
+    }
 
-        if (documentoOpt.isEmpty()) {
-            LOGGER.log(Level.WARNING,
-                    "Documento {0} no existe localmente. Cancelando sincronización.",
-                    pendiente.getDocumentoId());
-            pendiente.marcarComoCancelada();
-            pendiente.setUltimoError("Documento inexistente en base local");
-            sincronizacionDAO.save(pendiente);
-            return false;
+    /**
+     * Resultado de un lote de reintentos, con el cursor keyset para continuar
+     */
+    public static class ResultadoLote implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int candidatos;
+        private final int reenviados;
+        private final int diferidos;
+        private final LocalDateTime ultimoCreatedAt;
+        private final UUID ultimoId;
+        private final boolean hayMas;
+
+        public ResultadoLote(int candidatos, int reenviados, int diferidos,
+                             LocalDateTime ultimoCreatedAt, UUID ultimoId, boolean hayMas) {
+            this.candidatos = candidatos;
+            this.reenviados = reenviados;
+            this.diferidos = diferidos;
+            this.ultimoCreatedAt = ultimoCreatedAt;
+            this.ultimoId = ultimoId;
+            this.hayMas = hayMas;
         }
 
-        documento_clinico documento = documentoOpt.get();
-        String messageId = documentoProducer.enviarDocumento(
-                documento.getId(),
-                documento.getUsuarioSaludCedula(),
-                documento.getTenantId()
-        );
-
-        pendiente.incrementarIntentos();
-        pendiente.setEstado(SincronizacionPendiente.EstadoSincronizacion.PENDIENTE);
-        pendiente.setUltimoError(null);
-        pendiente.setMessageId(messageId);
-        pendiente.setFecEnvioCola(LocalDateTime.now());
-        sincronizacionDAO.save(pendiente);
+        public int getCandidatos() {
+            return candidatos;
+        }
 
-        LOGGER.log(Level.INFO,
-                "Documento {0} reenviado a cola. messageId={1}",
-                new Object[]{documento.getId(), messageId});
+        public int getReenviados() {
+            return reenviados;
+        }
+
+        public int getDiferidos() {
+            return diferidos;
+        }
 
-        return true;
+        public boolean hayMas() {
+            return hayMas;
+        }
     }
 }
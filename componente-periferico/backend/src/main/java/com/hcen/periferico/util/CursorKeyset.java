@@ -0,0 +1,100 @@
+package com.hcen.periferico.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Cursor de paginación keyset: la posición (valores de la clave de orden + id de desempate)
+ * del último elemento de una página.
+ *
+ * Se expone a los clientes como texto opaco (Base64 URL-safe de los valores separados por '|'),
+ * para poder cambiar el formato sin romperlos. Los valores no pueden contener '|': se usan
+ * fechas ISO, UUIDs y claves normalizadas con TextoBusqueda.
+ */
+public final class CursorKeyset {
+
+    private static final String SEPARADOR = "|";
+
+    private final String[] valores;
+
+    private CursorKeyset(String[] valores) {
+        this.valores = valores;
+    }
+
+    /**
+     * Cursor que apunta a la posición de los valores dados (en el orden de la clave)
+     */
+    public static CursorKeyset de(Object... valores) {
+        String[] texto = new String[valores.length];
+        for (int i = 0; i < valores.length; i++) {
+            texto[i] = valores[i] != null ? valores[i].toString() : "";
+        }
+        return new CursorKeyset(texto);
+    }
+
+    /**
+     * Decodifica un cursor recibido de un cliente
+     *
+     * @param cursor texto opaco, o null/vacío para la primera página
+     * @param cantidadValores cantidad de valores que debe tener la clave
+     * @return el cursor, o un cursor de inicio (todos los valores null) si no se envió ninguno
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public static CursorKeyset decodificar(String cursor, int cantidadValores) {
+        if (cursor == null || cursor.isBlank()) {
+            return new CursorKeyset(new String[cantidadValores]);
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] partes = valor.split("\\|", -1);
+            if (partes.length != cantidadValores) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new CursorKeyset(partes);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    public String codificar() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(String.join(SEPARADOR, valores).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String texto(int posicion) {
+        return valores[posicion];
+    }
+
+    /**
+     * @throws IllegalArgumentException si el valor no es un UUID
+     */
+    public UUID uuid(int posicion) {
+        String valor = valores[posicion];
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(valor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException si el valor no es una fecha ISO
+     */
+    public LocalDateTime fecha(int posicion) {
+        String valor = valores[posicion];
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
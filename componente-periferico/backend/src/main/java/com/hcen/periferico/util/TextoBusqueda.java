@@ -0,0 +1,69 @@
+package com.hcen.periferico.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalización de texto para las columnas y términos de búsqueda.
+ *
+ * La misma función se aplica al escribir (columnas *_busqueda de las entidades) y al buscar,
+ * de modo que la comparación sea insensible a mayúsculas, tildes y puntuación sin usar
+ * LOWER()/unaccent() en la consulta (lo que impediría usar los índices).
+ */
+public final class TextoBusqueda {
+
+    private TextoBusqueda() {
+        // Utility class
+    }
+
+    /**
+     * Une y normaliza las partes: sin tildes, en minúsculas, solo letras/dígitos separados por un espacio.
+     * "José  MARÍA", "Pérez-Núñez" -> "jose maria perez nunez"
+     *
+     * @return texto normalizado, o null si no queda nada
+     */
+    public static String normalizar(String... partes) {
+        StringBuilder texto = new StringBuilder();
+        for (String parte : partes) {
+            if (parte != null && !parte.isBlank()) {
+                texto.append(' ').append(parte);
+            }
+        }
+        String normalizado = Normalizer.normalize(texto, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}", "")
+            .toLowerCase(Locale.ROOT)
+            .replaceAll("[^a-z0-9]+", " ")
+            .trim();
+        return normalizado.isEmpty() ? null : normalizado;
+    }
+
+    /**
+     * Palabras del término de búsqueda ya normalizadas
+     */
+    public static List<String> palabras(String termino) {
+        String normalizado = normalizar(termino);
+        List<String> palabras = new ArrayList<>();
+        if (normalizado != null) {
+            for (String palabra : normalizado.split(" ")) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    /**
+     * Deja solo los dígitos de un número de documento ("1.234.567-8" -> "12345678")
+     */
+    public static String soloDigitos(String documento) {
+        return documento != null ? documento.replaceAll("[^0-9]", "") : "";
+    }
+
+    /**
+     * true si el término parece un número de documento (dígitos con puntos o guiones)
+     */
+    public static boolean esNumeroDocumento(String termino) {
+        return termino != null && termino.trim().matches("[0-9][0-9.\\-]*");
+    }
+}
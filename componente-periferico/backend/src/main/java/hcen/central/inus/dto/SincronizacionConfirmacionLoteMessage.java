@@ -0,0 +1,79 @@
+package hcen.central.inus.dto;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO para mensajes JMS con varias confirmaciones de sincronización de un mismo tenant enviados por el central.
+ */
+public class SincronizacionConfirmacionLoteMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private UUID tenantId;
+    private List<SincronizacionConfirmacionMessage> confirmaciones = new ArrayList<>();
+    private LocalDateTime timestamp;
+
+    public SincronizacionConfirmacionLoteMessage() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public SincronizacionConfirmacionLoteMessage(UUID tenantId, List<SincronizacionConfirmacionMessage> confirmaciones) {
+        this.tenantId = tenantId;
+        this.confirmaciones = new ArrayList<>(confirmaciones);
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(UUID tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    public List<SincronizacionConfirmacionMessage> getConfirmaciones() {
+        return confirmaciones;
+    }
+
+    public void setConfirmaciones(List<SincronizacionConfirmacionMessage> confirmaciones) {
+        this.confirmaciones = confirmaciones;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Valida el lote: tenant presente y todas las confirmaciones válidas y del mismo tenant
+     *
+     * @return true si el mensaje es válido
+     */
+    public boolean isValid() {
+        if (tenantId == null || confirmaciones == null || confirmaciones.isEmpty()) {
+            return false;
+        }
+        for (SincronizacionConfirmacionMessage confirmacion : confirmaciones) {
+            if (confirmacion == null || !confirmacion.isValid() || !tenantId.equals(confirmacion.getTenantId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SincronizacionConfirmacionLoteMessage{" +
+                "tenantId=" + tenantId +
+                ", confirmaciones=" + (confirmaciones != null ? confirmaciones.size() : 0) +
+                ", timestamp=" + timestamp +
+                '}';
+    }
+}
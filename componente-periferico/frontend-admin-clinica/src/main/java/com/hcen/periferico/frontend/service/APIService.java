@@ -39,6 +39,12 @@ import javax.net.ssl.SSLContext;
 public class APIService implements Serializable {
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * Codigueras obtenidas del backend, por ruta (ver obtenerCatalogo)
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, CatalogoCacheado> catalogos =
+        new java.util.concurrent.ConcurrentHashMap<>();
     private static final String BACKEND_URL_PROD = "https://node5823-hcen-uy.web.elasticloud.uy/multitenant-api";
     private static final String BACKEND_URL_DEV = "http://localhost:8080/multitenant-api";
 
@@ -717,51 +723,15 @@ public class APIService implements Serializable {
     }
 
     public java.util.Map<String, String> getMotivosConsulta() {
-        try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(BACKEND_URL() + "/documentos/catalogos/motivos");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                if (response.getCode() == 200) {
-                    String responseBody = readEntityContent(response);
-                    return parseMapFromJson(responseBody);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return new java.util.HashMap<>();
+        return obtenerCatalogo("/documentos/catalogos/motivos");
     }
 
     public java.util.Map<String, String> getEstadosProblema() {
-        try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(BACKEND_URL() + "/documentos/catalogos/estados");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                if (response.getCode() == 200) {
-                    String responseBody = readEntityContent(response);
-                    return parseMapFromJson(responseBody);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return new java.util.HashMap<>();
+        return obtenerCatalogo("/documentos/catalogos/estados");
     }
 
     public java.util.Map<String, String> getGradosCerteza() {
-        try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(BACKEND_URL() + "/documentos/catalogos/grados-certeza");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                if (response.getCode() == 200) {
-                    String responseBody = readEntityContent(response);
-                    return parseMapFromJson(responseBody);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return new java.util.HashMap<>();
+        return obtenerCatalogo("/documentos/catalogos/grados-certeza");
     }
 
     private com.hcen.periferico.frontend.dto.documento_clinico_dto parseDocumentoFromJson(String jsonString) {
@@ -968,4 +938,75 @@ public class APIService implements Serializable {
             return new String(stream.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
         }
     }
+
+    /**
+     * Obtiene una codiguera del backend reutilizando la copia local mientras esté vigente
+     * (max-age del Cache-Control) y revalidándola con If-None-Match cuando vence:
+     * si el backend responde 304 no se vuelve a transferir ni parsear el catálogo.
+     */
+    private java.util.Map<String, String> obtenerCatalogo(String ruta) {
+        CatalogoCacheado cacheado = catalogos.get(ruta);
+        if (cacheado != null && cacheado.vigente()) {
+            return new java.util.LinkedHashMap<>(cacheado.valores);
+        }
+
+        try (CloseableHttpClient httpClient = createHttpClient()) {
+            HttpGet request = new HttpGet(BACKEND_URL() + ruta);
+            if (cacheado != null && cacheado.etag != null) {
+                request.setHeader("If-None-Match", cacheado.etag);
+            }
+
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                long maxAgeSegundos = leerMaxAge(response);
+                if (response.getCode() == 304 && cacheado != null) {
+                    cacheado = new CatalogoCacheado(cacheado.valores, cacheado.etag, maxAgeSegundos);
+                    catalogos.put(ruta, cacheado);
+                    return new java.util.LinkedHashMap<>(cacheado.valores);
+                }
+                if (response.getCode() == 200) {
+                    String responseBody = readEntityContent(response);
+                    java.util.Map<String, String> valores = parseMapFromJson(responseBody);
+                    org.apache.hc.core5.http.Header etag = response.getFirstHeader("ETag");
+                    catalogos.put(ruta, new CatalogoCacheado(valores, etag != null ? etag.getValue() : null, maxAgeSegundos));
+                    return new java.util.LinkedHashMap<>(valores);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        // Ante un error se sirve la última copia conocida (las codigueras son estáticas)
+        return cacheado != null ? new java.util.LinkedHashMap<>(cacheado.valores) : new java.util.HashMap<>();
+    }
+
+    private long leerMaxAge(CloseableHttpResponse response) {
+        org.apache.hc.core5.http.Header cacheControl = response.getFirstHeader("Cache-Control");
+        if (cacheControl != null) {
+            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("max-age=(\\d+)").matcher(cacheControl.getValue());
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copia local de una codiguera con su ETag y vencimiento
+     */
+    private static final class CatalogoCacheado implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final java.util.Map<String, String> valores;
+        private final String etag;
+        private final long vigenteHastaMillis;
+
+        private CatalogoCacheado(java.util.Map<String, String> valores, String etag, long maxAgeSegundos) {
+            this.valores = java.util.Collections.unmodifiableMap(new java.util.LinkedHashMap<>(valores));
+            this.etag = etag;
+            this.vigenteHastaMillis = System.currentTimeMillis() + maxAgeSegundos * 1000;
+        }
+
+        private boolean vigente() {
+            return System.currentTimeMillis() < vigenteHastaMillis;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.hcen.periferico.profesional.bean;
 
 import com.hcen.periferico.profesional.dto.documento_clinico_dto;
 import com.hcen.periferico.profesional.dto.documento_con_permiso_dto;
+import com.hcen.periferico.profesional.dto.pagina_documentos_dto;
 import com.hcen.periferico.profesional.dto.usuario_salud_dto;
 import com.hcen.periferico.profesional.service.APIService;
 import jakarta.annotation.PostConstruct;
@@ -33,8 +34,15 @@ public class DocumentoClinicoBean implements Serializable {
     @Inject
     private SessionBean sessionBean;
 
+    /**
+     * Documentos de la historia clínica pedidos al backend por página
+     */
+    private static final int TAMANIO_PAGINA_DOCUMENTOS = 20;
+
     // Listas
     private List<documento_con_permiso_dto> documentos;
+    private String siguienteCursorDocumentos;
+    private boolean hayMasDocumentos;
 
     // Catálogos (codigueras)
     private Map<String, String> motivosConsulta;
@@ -100,46 +108,80 @@ public class DocumentoClinicoBean implements Serializable {
                 addMessage(FacesMessage.SEVERITY_WARN, "No se encontró un paciente con esa cédula en esta clínica");
                 pacienteSeleccionado = null;
                 documentos = new ArrayList<>();
+                hayMasDocumentos = false;
                 return;
             }
 
             pacienteSeleccionado = paciente;
 
-            // Cargar documentos desde el backend
-            List<documento_clinico_dto> docs = apiService.getDocumentosPorPaciente(cedulaPacienteSeleccionado, UUID.fromString(tenantId));
-
-            // Validar permisos para TODOS los documentos en una sola llamada (batch)
-            Integer ciProfesional = sessionBean.getProfesionalCi();
-            String especialidad = sessionBean.getEspecialidad();
+            // Cargar la primera página de documentos desde el backend
+            documentos = new ArrayList<>();
+            siguienteCursorDocumentos = null;
+            cargarPaginaDocumentos(tenantId);
 
-            // Extraer IDs de documentos
-            List<UUID> documentoIds = docs.stream()
-                .map(doc -> UUID.fromString(doc.getId()))
-                .collect(Collectors.toList());
-
-            // Validar acceso batch (1 sola llamada HTTP en lugar de N)
-            Map<UUID, Boolean> permisos = apiService.validarAccesoDocumentos(
-                documentoIds,
-                UUID.fromString(tenantId),
-                ciProfesional,
-                especialidad
-            );
-
-            // Combinar documentos con permisos
-            documentos = docs.stream()
-                .map(doc -> {
-                    UUID docId = UUID.fromString(doc.getId());
-                    boolean tienePermiso = permisos.getOrDefault(docId, false);
-                    return new documento_con_permiso_dto(doc, tienePermiso);
-                })
-                .collect(Collectors.toList());
+        } catch (Exception e) {
+            addMessage(FacesMessage.SEVERITY_ERROR, "Error al cargar documentos: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * Agrega la siguiente página de documentos del paciente seleccionado
+     */
+    public void cargarMasDocumentos() {
+        if (!hayMasDocumentos || pacienteSeleccionado == null) {
+            return;
+        }
+        try {
+            cargarPaginaDocumentos(sessionBean.getTenantId());
         } catch (Exception e) {
             addMessage(FacesMessage.SEVERITY_ERROR, "Error al cargar documentos: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Pide una página de documentos (por cursor) y valida los permisos solo de esa página
+     */
+    private void cargarPaginaDocumentos(String tenantId) {
+        pagina_documentos_dto pagina = apiService.getDocumentosPorPacientePagina(
+            cedulaPacienteSeleccionado.trim(), UUID.fromString(tenantId),
+            siguienteCursorDocumentos, TAMANIO_PAGINA_DOCUMENTOS);
+        List<documento_clinico_dto> docs = pagina.getDocumentos() != null ? pagina.getDocumentos() : new ArrayList<>();
+        siguienteCursorDocumentos = pagina.getSiguienteCursor();
+        hayMasDocumentos = pagina.isHayMas() && siguienteCursorDocumentos != null;
+
+        if (docs.isEmpty()) {
+            return;
+        }
+
+        // Validar permisos para todos los documentos de la página en una sola llamada (batch)
+        Integer ciProfesional = sessionBean.getProfesionalCi();
+        String especialidad = sessionBean.getEspecialidad();
+
+        // Extraer IDs de documentos
+        List<UUID> documentoIds = docs.stream()
+            .map(doc -> UUID.fromString(doc.getId()))
+            .collect(Collectors.toList());
+
+        // Validar acceso batch (1 sola llamada HTTP en lugar de N)
+        Map<UUID, Boolean> permisos = apiService.validarAccesoDocumentos(
+            documentoIds,
+            UUID.fromString(tenantId),
+            ciProfesional,
+            especialidad
+        );
+
+        // Combinar documentos con permisos
+        docs.stream()
+            .map(doc -> {
+                UUID docId = UUID.fromString(doc.getId());
+                boolean tienePermiso = permisos.getOrDefault(docId, false);
+                return new documento_con_permiso_dto(doc, tienePermiso);
+            })
+            .forEach(documentos::add);
+    }
+
     /**
      * Prepara el formulario para crear un nuevo documento
      */
@@ -464,6 +506,10 @@ public class DocumentoClinicoBean implements Serializable {
 
     // ============ GETTERS Y SETTERS ============
 
+    public boolean isHayMasDocumentos() {
+        return hayMasDocumentos;
+    }
+
     public List<documento_con_permiso_dto> getDocumentos() {
         return documentos;
     }
@@ -0,0 +1,51 @@
+package com.hcen.periferico.profesional.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Página de documentos clínicos obtenida por cursor.
+ * siguienteCursor se envía tal cual en el próximo pedido para obtener la página siguiente.
+ */
+public class pagina_documentos_dto implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<documento_clinico_dto> documentos = new ArrayList<>();
+    private String siguienteCursor;
+    private boolean hayMas;
+
+    public pagina_documentos_dto() {
+    }
+
+    public pagina_documentos_dto(List<documento_clinico_dto> documentos, String siguienteCursor, boolean hayMas) {
+        this.documentos = documentos;
+        this.siguienteCursor = siguienteCursor;
+        this.hayMas = hayMas;
+    }
+
+    public List<documento_clinico_dto> getDocumentos() {
+        return documentos;
+    }
+
+    public void setDocumentos(List<documento_clinico_dto> documentos) {
+        this.documentos = documentos;
+    }
+
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+
+    public void setSiguienteCursor(String siguienteCursor) {
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    public boolean isHayMas() {
+        return hayMas;
+    }
+
+    public void setHayMas(boolean hayMas) {
+        this.hayMas = hayMas;
+    }
+}
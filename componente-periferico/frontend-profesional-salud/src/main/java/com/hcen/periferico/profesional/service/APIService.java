@@ -2,6 +2,7 @@ package com.hcen.periferico.profesional.service;
 
 import com.hcen.periferico.profesional.dto.clinica_dto;
 import com.hcen.periferico.profesional.dto.documento_clinico_dto;
+import com.hcen.periferico.profesional.dto.pagina_documentos_dto;
 import com.hcen.periferico.profesional.dto.profesional_salud_dto;
 import com.hcen.periferico.profesional.dto.configuracion_clinica_dto;
 import com.hcen.periferico.profesional.dto.usuario_salud_dto;
@@ -48,6 +49,12 @@ import javax.net.ssl.SSLContext;
 public class APIService implements Serializable {
 
     private static final long serialVersionUID = 1L;
+
+    /**
+     * Codigueras obtenidas del backend, por ruta (ver obtenerCatalogo)
+     */
+    private final java.util.concurrent.ConcurrentHashMap<String, CatalogoCacheado> catalogos =
+        new java.util.concurrent.ConcurrentHashMap<>();
     private static final String BACKEND_URL_PROD = "https://node5823-hcen-uy.web.elasticloud.uy/multitenant-api";
     private static final String BACKEND_URL_DEV = "http://localhost:8080/multitenant-api";
 
@@ -247,20 +254,31 @@ public class APIService implements Serializable {
         return new ArrayList<>();
     }
 
-    public Map<String, String> getMotivosConsulta() {
+    /**
+     * Obtiene una página de la historia clínica de un paciente (paginación por cursor).
+     * Con cursor null se obtiene la primera página; luego se pasa el siguienteCursor recibido.
+     */
+    public pagina_documentos_dto getDocumentosPorPacientePagina(String cedula, UUID tenantId, String cursor, int size) {
         try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(getBackendUrl() + "/documentos/catalogos/motivos");
+            String url = getBackendUrl() + "/documentos/paciente/" + cedula + "?tenantId=" + tenantId +
+                        "&size=" + size +
+                        "&cursor=" + (cursor != null ? java.net.URLEncoder.encode(cursor, "UTF-8") : "");
+            HttpGet request = new HttpGet(url);
 
             try (CloseableHttpResponse response = httpClient.execute(request)) {
                 if (response.getCode() == 200) {
                     String responseBody = new String(response.getEntity().getContent().readAllBytes());
-                    return parseMapFromJson(responseBody);
+                    return parsePaginaDocumentosFromJson(responseBody);
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return new LinkedHashMap<>();
+        return new pagina_documentos_dto();
+    }
+
+    public Map<String, String> getMotivosConsulta() {
+        return obtenerCatalogo("/documentos/catalogos/motivos");
     }
 
     /**
@@ -285,35 +303,11 @@ public class APIService implements Serializable {
     }
 
     public Map<String, String> getEstadosProblema() {
-        try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(getBackendUrl() + "/documentos/catalogos/estados");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                if (response.getCode() == 200) {
-                    String responseBody = new String(response.getEntity().getContent().readAllBytes());
-                    return parseMapFromJson(responseBody);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return new LinkedHashMap<>();
+        return obtenerCatalogo("/documentos/catalogos/estados");
     }
 
     public Map<String, String> getGradosCerteza() {
-        try (CloseableHttpClient httpClient = createHttpClient()) {
-            HttpGet request = new HttpGet(getBackendUrl() + "/documentos/catalogos/grados-certeza");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                if (response.getCode() == 200) {
-                    String responseBody = new String(response.getEntity().getContent().readAllBytes());
-                    return parseMapFromJson(responseBody);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return new LinkedHashMap<>();
+        return obtenerCatalogo("/documentos/catalogos/grados-certeza");
     }
 
     /**
@@ -465,6 +459,31 @@ public class APIService implements Serializable {
         }
     }
 
+    private pagina_documentos_dto parsePaginaDocumentosFromJson(String jsonString) {
+        pagina_documentos_dto pagina = new pagina_documentos_dto();
+        try (JsonReader reader = Json.createReader(new StringReader(jsonString))) {
+            JsonObject response = reader.readObject();
+            JsonArray jsonArray = response.getJsonArray("data");
+            List<documento_clinico_dto> documentos = new ArrayList<>();
+            if (jsonArray != null) {
+                for (int i = 0; i < jsonArray.size(); i++) {
+                    documento_clinico_dto dto = parseDocumentoFromJsonObject(jsonArray.getJsonObject(i));
+                    if (dto != null) {
+                        documentos.add(dto);
+                    }
+                }
+            }
+            pagina.setDocumentos(documentos);
+            // El backend omite los campos null al serializar
+            JsonValue siguienteCursor = response.get("siguienteCursor");
+            pagina.setSiguienteCursor(siguienteCursor instanceof JsonString ? ((JsonString) siguienteCursor).getString() : null);
+            pagina.setHayMas(response.getBoolean("hayMas", false));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return pagina;
+    }
+
     private List<documento_clinico_dto> parseDocumentosListFromJson(String jsonString) {
         List<documento_clinico_dto> list = new ArrayList<>();
         try (JsonReader reader = Json.createReader(new StringReader(jsonString))) {
@@ -801,4 +820,75 @@ public class APIService implements Serializable {
             throw new RuntimeException("Error al enviar solicitud de acceso: " + e.getMessage());
         }
     }
+
+    /**
+     * Obtiene una codiguera del backend reutilizando la copia local mientras esté vigente
+     * (max-age del Cache-Control) y revalidándola con If-None-Match cuando vence:
+     * si el backend responde 304 no se vuelve a transferir ni parsear el catálogo.
+     */
+    private Map<String, String> obtenerCatalogo(String ruta) {
+        CatalogoCacheado cacheado = catalogos.get(ruta);
+        if (cacheado != null && cacheado.vigente()) {
+            return new LinkedHashMap<>(cacheado.valores);
+        }
+
+        try (CloseableHttpClient httpClient = createHttpClient()) {
+            HttpGet request = new HttpGet(getBackendUrl() + ruta);
+            if (cacheado != null && cacheado.etag != null) {
+                request.setHeader("If-None-Match", cacheado.etag);
+            }
+
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                long maxAgeSegundos = leerMaxAge(response);
+                if (response.getCode() == 304 && cacheado != null) {
+                    cacheado = new CatalogoCacheado(cacheado.valores, cacheado.etag, maxAgeSegundos);
+                    catalogos.put(ruta, cacheado);
+                    return new LinkedHashMap<>(cacheado.valores);
+                }
+                if (response.getCode() == 200) {
+                    String responseBody = new String(response.getEntity().getContent().readAllBytes());
+                    Map<String, String> valores = parseMapFromJson(responseBody);
+                    org.apache.hc.core5.http.Header etag = response.getFirstHeader("ETag");
+                    catalogos.put(ruta, new CatalogoCacheado(valores, etag != null ? etag.getValue() : null, maxAgeSegundos));
+                    return new LinkedHashMap<>(valores);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        // Ante un error se sirve la última copia conocida (las codigueras son estáticas)
+        return cacheado != null ? new LinkedHashMap<>(cacheado.valores) : new LinkedHashMap<>();
+    }
+
+    private long leerMaxAge(CloseableHttpResponse response) {
+        org.apache.hc.core5.http.Header cacheControl = response.getFirstHeader("Cache-Control");
+        if (cacheControl != null) {
+            java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("max-age=(\\d+)").matcher(cacheControl.getValue());
+            if (matcher.find()) {
+                return Long.parseLong(matcher.group(1));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Copia local de una codiguera con su ETag y vencimiento
+     */
+    private static final class CatalogoCacheado implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, String> valores;
+        private final String etag;
+        private final long vigenteHastaMillis;
+
+        private CatalogoCacheado(Map<String, String> valores, String etag, long maxAgeSegundos) {
+            this.valores = java.util.Collections.unmodifiableMap(new LinkedHashMap<>(valores));
+            this.etag = etag;
+            this.vigenteHastaMillis = System.currentTimeMillis() + maxAgeSegundos * 1000;
+        }
+
+        private boolean vigente() {
+            return System.currentTimeMillis() < vigenteHastaMillis;
+        }
+    }
 }
@@ -3,8 +3,11 @@ package com.hcen.mockdnic.ws;
 import com.hcen.mockdnic.dominio.Ciudadano;
 import com.hcen.mockdnic.dominio.ciudadano_id;
 import com.hcen.mockdnic.excepciones.ciudadano_no_encontrado_exception;
+import com.hcen.mockdnic.ws.dto.ciudadano_no_encontrado_fault;
 import com.hcen.mockdnic.ws.dto.respuesta_ciudadano;
+import com.hcen.mockdnic.ws.dto.respuesta_ciudadanos;
 import com.hcen.mockdnic.ws.dto.solicitud_ciudadano;
+import com.hcen.mockdnic.ws.dto.solicitud_ciudadanos;
 import jakarta.ejb.Stateless;
 import jakarta.ejb.TransactionAttribute;
 import jakarta.ejb.TransactionAttributeType;
@@ -15,6 +18,12 @@ import jakarta.jws.WebService;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.jws.soap.SOAPBinding;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Stateless
 @WebService(
@@ -52,6 +61,71 @@ public class ciudadano_servicio_web {
         return convertir(ciudadano);
     }
 
+    /**
+     * Consulta en lote: resuelve todos los documentos con una sola consulta IN sobre la clave
+     * (tipo_doc, nro_doc). Los documentos inexistentes se devuelven en no_encontrado, en el orden
+     * de la solicitud y sin duplicados.
+     */
+    @WebMethod(operationName = "obtener_ciudadanos")
+    @WebResult(
+            name = "respuesta_ciudadanos",
+            targetNamespace = "http://hcen.com/soap/ciudadano",
+            partName = "respuesta_ciudadanos"
+    )
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public respuesta_ciudadanos obtener_ciudadanos(
+            @WebParam(
+                    name = "solicitud_ciudadanos",
+                    targetNamespace = "http://hcen.com/soap/ciudadano",
+                    partName = "solicitud_ciudadanos"
+            )
+            solicitud_ciudadanos solicitud) {
+
+        if (solicitud.getDocumentos().size() > solicitud_ciudadanos.MAX_DOCUMENTOS) {
+            throw new IllegalArgumentException("La solicitud supera el máximo de "
+                    + solicitud_ciudadanos.MAX_DOCUMENTOS + " documentos");
+        }
+
+        Set<ciudadano_id> ids = new LinkedHashSet<>();
+        Set<String> tipos = new HashSet<>();
+        Set<String> numeros = new HashSet<>();
+        for (solicitud_ciudadano documento : solicitud.getDocumentos()) {
+            ids.add(new ciudadano_id(documento.getTipoDocumento(), documento.getNumeroDocumento()));
+            tipos.add(documento.getTipoDocumento());
+            numeros.add(documento.getNumeroDocumento());
+        }
+
+        respuesta_ciudadanos respuesta = new respuesta_ciudadanos();
+        if (ids.isEmpty()) {
+            return respuesta;
+        }
+
+        // IN sobre ambas columnas de la clave (usa el índice de la PK); los cruces que no se
+        // pidieron se descartan al armar la respuesta
+        List<Ciudadano> encontrados = entidad.createQuery(
+                "SELECT c FROM Ciudadano c WHERE c.id.tipoDocumento IN :tipos AND c.id.numeroDocumento IN :numeros",
+                Ciudadano.class)
+                .setParameter("tipos", tipos)
+                .setParameter("numeros", numeros)
+                .getResultList();
+
+        Map<ciudadano_id, Ciudadano> porId = new HashMap<>();
+        for (Ciudadano ciudadano : encontrados) {
+            porId.put(ciudadano.getId(), ciudadano);
+        }
+
+        for (ciudadano_id id : ids) {
+            Ciudadano ciudadano = porId.get(id);
+            if (ciudadano != null) {
+                respuesta.getCiudadanos().add(convertir(ciudadano));
+            } else {
+                respuesta.getNoEncontrados().add(
+                        new ciudadano_no_encontrado_fault(id.getTipoDocumento(), id.getNumeroDocumento()));
+            }
+        }
+        return respuesta;
+    }
+
     private respuesta_ciudadano convertir(Ciudadano ciudadano) {
         respuesta_ciudadano respuesta = new respuesta_ciudadano();
         respuesta.setTipoDocumento(ciudadano.getTipoDocumento());
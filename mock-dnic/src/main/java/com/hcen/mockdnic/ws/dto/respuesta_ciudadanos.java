@@ -0,0 +1,35 @@
+package com.hcen.mockdnic.ws.dto;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "respuesta_ciudadanos", namespace = "http://hcen.com/soap/ciudadano")
+public class respuesta_ciudadanos {
+
+    @XmlElement(name = "ciudadano", namespace = "http://hcen.com/soap/ciudadano")
+    private List<respuesta_ciudadano> ciudadanos = new ArrayList<>();
+
+    @XmlElement(name = "no_encontrado", namespace = "http://hcen.com/soap/ciudadano")
+    private List<ciudadano_no_encontrado_fault> noEncontrados = new ArrayList<>();
+
+    public List<respuesta_ciudadano> getCiudadanos() {
+        return ciudadanos;
+    }
+
+    public void setCiudadanos(List<respuesta_ciudadano> ciudadanos) {
+        this.ciudadanos = ciudadanos;
+    }
+
+    public List<ciudadano_no_encontrado_fault> getNoEncontrados() {
+        return noEncontrados;
+    }
+
+    public void setNoEncontrados(List<ciudadano_no_encontrado_fault> noEncontrados) {
+        this.noEncontrados = noEncontrados;
+    }
+}
@@ -0,0 +1,32 @@
+package com.hcen.mockdnic.ws.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "solicitud_ciudadanos", namespace = "http://hcen.com/soap/ciudadano")
+public class solicitud_ciudadanos {
+
+    public static final int MAX_DOCUMENTOS = 500;
+
+    @XmlElement(name = "documento", required = true, namespace = "http://hcen.com/soap/ciudadano")
+    @NotEmpty
+    @Size(max = MAX_DOCUMENTOS)
+    @Valid
+    private List<solicitud_ciudadano> documentos = new ArrayList<>();
+
+    public List<solicitud_ciudadano> getDocumentos() {
+        return documentos;
+    }
+
+    public void setDocumentos(List<solicitud_ciudadano> documentos) {
+        this.documentos = documentos;
+    }
+}